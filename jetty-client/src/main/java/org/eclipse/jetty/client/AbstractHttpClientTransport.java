@@ -81,7 +81,7 @@ public abstract class AbstractHttpClientTransport extends ContainerLifeCycle imp
         SocketChannel channel = null;
         try
         {
-            channel = SocketChannel.open();
+            channel = selectorManager.getSelectorProvider().openSocketChannel();
             HttpDestination destination = (HttpDestination)context.get(HTTP_DESTINATION_CONTEXT_KEY);
             HttpClient client = destination.getHttpClient();
             SocketAddress bindAddress = client.getBindAddress();
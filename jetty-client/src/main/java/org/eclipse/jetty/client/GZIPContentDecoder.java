@@ -25,13 +25,20 @@ import java.util.zip.Inflater;
 import java.util.zip.ZipException;
 
 import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.component.Destroyable;
+import org.eclipse.jetty.util.compression.CompressionPools;
+import org.eclipse.jetty.util.compression.InflaterPool;
 
 /**
  * {@link ContentDecoder} for the "gzip" encoding.
+ * <p>The {@link Inflater} is acquired from an {@link InflaterPool} when decoding
+ * starts and released when the gzip content has been decoded or the decoder is
+ * {@link #destroy() destroyed}.</p>
  */
-public class GZIPContentDecoder implements ContentDecoder
+public class GZIPContentDecoder implements ContentDecoder, Destroyable
 {
-    private final Inflater inflater = new Inflater(true);
+    private final InflaterPool inflaterPool;
+    private Inflater inflater;
     private final byte[] bytes;
     private byte[] output;
     private State state;
@@ -46,6 +53,12 @@ public class GZIPContentDecoder implements ContentDecoder
 
     public GZIPContentDecoder(int bufferSize)
     {
+        this(CompressionPools.getDefault().getInflaterPool(true), bufferSize);
+    }
+
+    public GZIPContentDecoder(InflaterPool inflaterPool, int bufferSize)
+    {
+        this.inflaterPool = inflaterPool;
         this.bytes = new byte[bufferSize];
         reset();
     }
@@ -63,6 +76,8 @@ public class GZIPContentDecoder implements ContentDecoder
     @Override
     public ByteBuffer decode(ByteBuffer buffer)
     {
+        if (inflater == null)
+            inflater = inflaterPool.acquire();
         try
         {
             while (buffer.hasRemaining())
@@ -313,7 +328,7 @@ public class GZIPContentDecoder implements ContentDecoder
 
     private void reset()
     {
-        inflater.reset();
+        releaseInflater();
         Arrays.fill(bytes, (byte)0);
         output = null;
         state = State.INITIAL;
@@ -322,6 +337,19 @@ public class GZIPContentDecoder implements ContentDecoder
         flags = 0;
     }
 
+    private void releaseInflater()
+    {
+        Inflater inflater = this.inflater;
+        this.inflater = null;
+        inflaterPool.release(inflater);
+    }
+
+    @Override
+    public void destroy()
+    {
+        releaseInflater();
+    }
+
     protected boolean isFinished()
     {
         return state == State.INITIAL;
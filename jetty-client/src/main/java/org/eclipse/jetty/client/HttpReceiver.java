@@ -37,6 +37,7 @@ import org.eclipse.jetty.http.HttpStatus;
 import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.Callback;
 import org.eclipse.jetty.util.CountingCallback;
+import org.eclipse.jetty.util.component.Destroyable;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
 
@@ -459,7 +460,7 @@ public abstract class HttpReceiver
      */
     protected void reset()
     {
-        decoder = null;
+        destroyDecoder();
     }
 
     /**
@@ -471,7 +472,15 @@ public abstract class HttpReceiver
      */
     protected void dispose()
     {
-        decoder = null;
+        destroyDecoder();
+    }
+
+    private void destroyDecoder()
+    {
+        ContentDecoder decoder = this.decoder;
+        this.decoder = null;
+        if (decoder instanceof Destroyable)
+            ((Destroyable)decoder).destroy();
     }
 
     public boolean abort(HttpExchange exchange, Throwable failure)
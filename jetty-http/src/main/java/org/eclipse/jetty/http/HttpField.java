@@ -70,25 +70,26 @@ public class HttpField
     
     public int getIntValue()
     {
-        return Integer.valueOf(_value);
+        return Integer.valueOf(getValue());
     }
     
     public long getLongValue()
     {
-        return Long.valueOf(_value);
+        return Long.valueOf(getValue());
     }
     
     public String[] getValues()
     {  
+        String value = getValue();
         ArrayList<String> list = new ArrayList<>(); 
         int state = 0;
         int start=0;
         int end=0;
         StringBuilder builder = new StringBuilder();
 
-        for (int i=0;i<_value.length();i++)
+        for (int i=0;i<value.length();i++)
         {
-            char c = _value.charAt(i);
+            char c = value.charAt(i);
             switch(state)
             {
                 case 0: // initial white space
@@ -116,7 +117,7 @@ public class HttpField
                     switch(c)
                     {
                         case ',': // next field
-                            list.add(_value.substring(start,end+1));
+                            list.add(value.substring(start,end+1));
                             state=0;
                             break;
 
@@ -176,7 +177,7 @@ public class HttpField
             case 0:
                 break;
             case 1:
-                list.add(_value.substring(start,end+1));
+                list.add(value.substring(start,end+1));
                 break;
             case 4:
                 break;
@@ -197,8 +198,9 @@ public class HttpField
      */
     public boolean contains(String search)
     {
-        if (_value==null || search==null)
-            return _value==search;
+        String value = getValue();
+        if (value==null || search==null)
+            return value==search;
         if (search.length()==0)
             return false;
 
@@ -206,9 +208,9 @@ public class HttpField
         int match=0;
         int param=0;
 
-        for (int i=0;i<_value.length();i++)
+        for (int i=0;i<value.length();i++)
         {
-            char c = _value.charAt(i);
+            char c = value.charAt(i);
             switch(state)
             {
                 case 0: // initial white space
@@ -403,9 +405,10 @@ public class HttpField
     @Override
     public int hashCode()
     {
+        String value = getValue();
         if (_header==null)
-            return _value.hashCode() ^ nameHashCode();
-        return _value.hashCode() ^ _header.hashCode();
+            return value.hashCode() ^ nameHashCode();
+        return value.hashCode() ^ _header.hashCode();
     }
 
     @Override
@@ -420,9 +423,10 @@ public class HttpField
             return false;
         if (!_name.equalsIgnoreCase(field.getName()))
             return false;
-        if (_value==null && field.getValue()!=null)
+        String value = getValue();
+        if (value==null && field.getValue()!=null)
             return false;
-        if (!_value.equals(field.getValue()))
+        if (!value.equals(field.getValue()))
             return false;
         return true;
     }
@@ -0,0 +1,326 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+
+package org.eclipse.jetty.http;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.jetty.util.AbstractTrie;
+import org.eclipse.jetty.util.ArrayTernaryTrie;
+
+
+/* ------------------------------------------------------------ */
+/** An adaptive cache of {@link HttpField}s, used by {@link HttpParser} for the
+ * fields received on a connection.
+ * <p>The fields are held in an {@link ArrayTernaryTrie} of fixed capacity, so that
+ * a field can be looked up directly in the parsed buffer without creating a String.
+ * Every cached field counts its hits, and every field that could not be cached because
+ * the trie is full is kept as a candidate that counts its misses.
+ * Once there have been as many misses as cached fields, the trie is rebuilt with the
+ * most frequently used fields and candidates, and all counts are halved so that
+ * fields that are no longer used eventually get evicted.</p>
+ * <p>Fields with custom headers are only offered once {@link #isRepeated(String, String)} has
+ * seen them before on the connection, so that the unique values of headers such as request
+ * IDs are not cached.</p>
+ * <p>This class is not thread safe and is intended to be used by a single parser.</p>
+ */
+public class HttpFieldCache extends AbstractTrie<HttpField>
+{
+    private static final int MIN_REBUILD_PERIOD = 16;
+    private static final int SEEN_SIZE = 64;
+    private static final Comparator<Entry> BY_HITS = new Comparator<Entry>()
+    {
+        @Override
+        public int compare(Entry e1, Entry e2)
+        {
+            return Integer.compare(e2._hits,e1._hits);
+        }
+    };
+
+    private final int _capacity;
+    private final List<Entry> _entries = new ArrayList<>();
+    private final Map<String,Entry> _candidates = new HashMap<>();
+    private final int[] _seen = new int[SEEN_SIZE];
+    private ArrayTernaryTrie<Entry> _trie;
+    private int _missesSinceRebuild;
+    private long _hits;
+    private long _misses;
+    private long _evictions;
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param capacity the capacity of the trie, in nodes
+     */
+    public HttpFieldCache(int capacity)
+    {
+        super(true);
+        _capacity=capacity;
+        _trie=new ArrayTernaryTrie<>(capacity);
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return the number of lookups that found a cached field
+     */
+    public long getHits()
+    {
+        return _hits;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return the number of lookups that did not find a cached field
+     */
+    public long getMisses()
+    {
+        return _misses;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return the number of cached fields evicted to make room for more frequent fields
+     */
+    public long getEvictions()
+    {
+        return _evictions;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return the number of cached fields
+     */
+    public int getSize()
+    {
+        return _entries.size();
+    }
+
+    /* ------------------------------------------------------------ */
+    @Override
+    public boolean put(String s, HttpField v)
+    {
+        if (v==null)
+            return remove(s)!=null;
+
+        Entry entry=_trie.get(s);
+        if (entry==null)
+        {
+            entry=new Entry(s,v);
+            if (_trie.put(s,entry))
+            {
+                _entries.add(entry);
+                return true;
+            }
+
+            // The trie is full, so count the miss of a candidate.
+            Entry candidate=_candidates.get(s);
+            if (candidate==null && _candidates.size()<Math.max(MIN_REBUILD_PERIOD,_entries.size()))
+            {
+                candidate=entry;
+                _candidates.put(s,candidate);
+            }
+            if (candidate!=null)
+                candidate._hits++;
+
+            if (++_missesSinceRebuild>=Math.max(MIN_REBUILD_PERIOD,_entries.size()))
+                rebuild();
+            return false;
+        }
+
+        entry._field=v;
+        return true;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Check whether a field has been seen before on this connection.
+     * <p>Seen fields are remembered by hash in a small direct mapped table, so a collision
+     * may occasionally report a field as repeated, which only costs an extra admission.</p>
+     * @param name the field name
+     * @param value the field value
+     * @return true if the field was seen before, otherwise it is remembered and false is returned
+     */
+    public boolean isRepeated(String name, String value)
+    {
+        int hash=name.hashCode();
+        for (int i=0;i<value.length();i++)
+            hash=31*hash+value.charAt(i);
+        return seen(hash);
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Check whether a field has been seen before on this connection.
+     * @param name the field name
+     * @param value the buffer holding the ISO-8859-1 encoded field value
+     * @param offset the offset of the value in the buffer
+     * @param length the length of the value
+     * @return true if the field was seen before, otherwise it is remembered and false is returned
+     * @see #isRepeated(String, String)
+     */
+    public boolean isRepeated(String name, byte[] value, int offset, int length)
+    {
+        int hash=name.hashCode();
+        for (int i=0;i<length;i++)
+            hash=31*hash+(value[offset+i]&0xFF);
+        return seen(hash);
+    }
+
+    /* ------------------------------------------------------------ */
+    private boolean seen(int hash)
+    {
+        // Zero marks an empty slot
+        if (hash==0)
+            hash=1;
+        int slot=(hash^(hash>>>16))&(SEEN_SIZE-1);
+        if (_seen[slot]==hash)
+            return true;
+        _seen[slot]=hash;
+        return false;
+    }
+
+    /* ------------------------------------------------------------ */
+    @Override
+    public HttpField remove(String s)
+    {
+        Entry entry=_trie.remove(s);
+        if (entry==null)
+            return null;
+        _entries.remove(entry);
+        return entry._field;
+    }
+
+    /* ------------------------------------------------------------ */
+    @Override
+    public HttpField get(String s, int offset, int len)
+    {
+        Entry entry=_trie.get(s,offset,len);
+        return entry==null?null:entry._field;
+    }
+
+    /* ------------------------------------------------------------ */
+    @Override
+    public HttpField get(ByteBuffer b, int offset, int len)
+    {
+        Entry entry=_trie.get(b,offset,len);
+        return entry==null?null:entry._field;
+    }
+
+    /* ------------------------------------------------------------ */
+    @Override
+    public HttpField getBest(String s, int offset, int len)
+    {
+        return hit(_trie.getBest(s,offset,len));
+    }
+
+    /* ------------------------------------------------------------ */
+    @Override
+    public HttpField getBest(ByteBuffer b, int offset, int len)
+    {
+        return hit(_trie.getBest(b,offset,len));
+    }
+
+    /* ------------------------------------------------------------ */
+    @Override
+    public Set<String> keySet()
+    {
+        return _trie.keySet();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return false, as fields are admitted by evicting less frequently used fields
+     */
+    @Override
+    public boolean isFull()
+    {
+        return false;
+    }
+
+    /* ------------------------------------------------------------ */
+    private HttpField hit(Entry entry)
+    {
+        if (entry==null)
+        {
+            _misses++;
+            return null;
+        }
+        _hits++;
+        if (entry._hits<Integer.MAX_VALUE)
+            entry._hits++;
+        return entry._field;
+    }
+
+    /* ------------------------------------------------------------ */
+    private void rebuild()
+    {
+        List<Entry> entries=new ArrayList<>(_entries.size()+_candidates.size());
+        entries.addAll(_entries);
+        entries.addAll(_candidates.values());
+        Collections.sort(entries,BY_HITS);
+
+        ArrayTernaryTrie<Entry> trie=new ArrayTernaryTrie<>(_capacity);
+        int retained=0;
+        int cached=_entries.size();
+        _entries.clear();
+        for (Entry entry : entries)
+        {
+            entry._hits>>=1;
+            if (trie.put(entry._key,entry))
+            {
+                _entries.add(entry);
+                if (_trie.get(entry._key)==entry)
+                    retained++;
+            }
+        }
+        _evictions+=cached-retained;
+
+        _trie=trie;
+        _candidates.clear();
+        _missesSinceRebuild=0;
+    }
+
+    /* ------------------------------------------------------------ */
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{size=%d,hits=%d,misses=%d,evictions=%d}",
+                getClass().getSimpleName(),hashCode(),_entries.size(),_hits,_misses,_evictions);
+    }
+
+    /* ------------------------------------------------------------ */
+    private static class Entry
+    {
+        private final String _key;
+        private HttpField _field;
+        private int _hits;
+
+        private Entry(String key, HttpField field)
+        {
+            _key=key;
+            _field=field;
+        }
+    }
+}
@@ -687,6 +687,18 @@ public class HttpFields implements Iterable<HttpField>
         _fields[_size++]=field;
     }
 
+    /**
+     * Add the fields of a pre encoded block. The fields are added in order
+     * so that the block may be generated with a single copy.
+     *
+     * @param fields the block of fields to add
+     */
+    public void add(PreEncodedHttpFields fields)
+    {
+        for (int i=0;i<fields.size();i++)
+            add(fields.getField(i));
+    }
+
     public void addAll(HttpFields fields)
     {
         for (int i=0;i<fields._size;i++)
@@ -590,10 +590,23 @@ public class HttpGenerator
         StringBuilder connection = null;
 
         // Generate fields
-        if (_info.getFields() != null)
+        final HttpFields fields=_info.getFields();
+        if (fields != null)
         {
-            for (HttpField field : _info.getFields())
+            for (int f=0;f<fields.size();f++)
             {
+                HttpField field = fields.getField(f);
+                if (field instanceof PreEncodedHttpFields.Field && ((PreEncodedHttpFields.Field)field).isFirst())
+                {
+                    // copy an intact pre encoded block in one put
+                    int put=((PreEncodedHttpFields.Field)field).getBlock().putTo(fields,f,header);
+                    if (put>0)
+                    {
+                        f+=put-1;
+                        continue;
+                    }
+                }
+
                 String v = field.getValue();
                 if (v==null || v.length()==0)
                     continue; // rfc7230 does not allow no value
@@ -29,7 +29,6 @@ import java.util.Arrays;
 import java.util.EnumSet;
 
 import org.eclipse.jetty.http.HttpTokens.EndOfContent;
-import org.eclipse.jetty.util.ArrayTernaryTrie;
 import org.eclipse.jetty.util.ArrayTrie;
 import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.Trie;
@@ -79,6 +78,14 @@ import org.eclipse.jetty.util.log.Logger;
  * case of the method and/or headers
  * </p>
  * <p>
+ * If {@link #setLazyHeaderValues(boolean) lazy header values} are enabled, then the values of
+ * header fields that are not found in a cache, and that are not needed by the parser itself,
+ * are copied into a byte buffer owned by the parser and passed to the handler as
+ * {@link LazyHttpField}s, so that a String is only created if the value is read.
+ * The byte buffer is reused for each message, so the handler must not retain such fields
+ * after the parser is {@link #reset()}.
+ * </p>
+ * <p>
  * @see <a href="http://tools.ietf.org/html/rfc7230">RFC 7230</a>
  */
 public class HttpParser
@@ -164,10 +171,16 @@ public class HttpParser
     private boolean _cr;
     private ByteBuffer _contentChunk;
     private Trie<HttpField> _connectionFields;
+    private HttpFieldCache _fieldCache;
 
     private int _length;
     private final StringBuilder _string=new StringBuilder();
 
+    private boolean _lazyValues;
+    private byte[] _values;
+    private int _valuesLength;
+    private int _valueStart=-1;
+
     static
     {
         CACHE.put(new HttpField(HttpHeader.CONNECTION,HttpHeaderValue.CLOSE));
@@ -349,6 +362,25 @@ public class HttpParser
         return _state == state;
     }
 
+    /* ------------------------------------------------------------------------------- */
+    /**
+     * @return whether header values are passed to the handler as {@link LazyHttpField}s
+     */
+    public boolean isLazyHeaderValues()
+    {
+        return _lazyValues;
+    }
+
+    /* ------------------------------------------------------------------------------- */
+    /**
+     * @param lazyValues whether header values not found in a cache are passed to the handler as
+     * {@link LazyHttpField}s that are only valid until this parser is {@link #reset()}
+     */
+    public void setLazyHeaderValues(boolean lazyValues)
+    {
+        _lazyValues=lazyValues;
+    }
+
     /* ------------------------------------------------------------------------------- */
     enum CharState { ILLEGAL, CR, LF, LEGAL }
     private final static CharState[] __charState;
@@ -515,6 +547,34 @@ public class HttpParser
         return s;
     }
 
+    /* ------------------------------------------------------------------------------- */
+    private void startLazyValue(String s)
+    {
+        _valueStart=_valuesLength;
+        for (int i=0;i<s.length();i++)
+            appendLazyValue((byte)s.charAt(i));
+        _length=s.length();
+    }
+
+    /* ------------------------------------------------------------------------------- */
+    private void appendLazyValue(byte b)
+    {
+        if (_values==null)
+            _values=new byte[INITIAL_URI_LENGTH];
+        else if (_valuesLength==_values.length)
+            _values=Arrays.copyOf(_values,_values.length*2);
+        _values[_valuesLength++]=b;
+    }
+
+    /* ------------------------------------------------------------------------------- */
+    private String takeLazyValue()
+    {
+        String s=new String(_values,_valueStart,_valuesLength-_valueStart,StandardCharsets.ISO_8859_1);
+        _valuesLength=_valueStart;
+        _valueStart=-1;
+        return s;
+    }
+
     /* ------------------------------------------------------------------------------- */
     /* Parse a request or response line
      */
@@ -740,8 +800,9 @@ public class HttpParser
                         // Should we try to cache header fields?
                         if (_connectionFields==null && _version.getVersion()>=HttpVersion.HTTP_1_1.getVersion())
                         {
-                            int header_cache = _handler.getHeaderCacheSize();
-                            _connectionFields=new ArrayTernaryTrie<>(header_cache);                            
+                            if (_fieldCache==null)
+                                _fieldCache=new HttpFieldCache(_handler.getHeaderCacheSize());
+                            _connectionFields=_fieldCache;
                         }
 
                         setState(State.HEADER);
@@ -787,11 +848,39 @@ public class HttpParser
     private void parsedHeader()
     {
         // handler last header if any.  Delayed to here just in case there was a continuation line (above)
-        if (_headerString!=null || _valueString!=null)
+        if (_headerString!=null || _valueString!=null || _valueStart>=0)
         {
             // Handle known headers
             if (_header!=null)
             {
+                // Take the values of the headers that are interpreted or cached
+                if (_valueStart>=0)
+                {
+                    switch (_header)
+                    {
+                        case CONTENT_LENGTH:
+                        case TRANSFER_ENCODING:
+                        case HOST:
+                        case CONNECTION:
+                            _valueString=takeLazyValue();
+                            break;
+
+                        case AUTHORIZATION:
+                        case ACCEPT:
+                        case ACCEPT_CHARSET:
+                        case ACCEPT_ENCODING:
+                        case ACCEPT_LANGUAGE:
+                        case COOKIE:
+                        case CACHE_CONTROL:
+                        case USER_AGENT:
+                            if (_connectionFields!=null && _field==null)
+                                _valueString=takeLazyValue();
+                            break;
+
+                        default: break;
+                    }
+                }
+
                 boolean add_to_connection_trie=false;
                 switch (_header)
                 {
@@ -865,13 +954,33 @@ public class HttpParser
                     _connectionFields.put(_field);
                 }
             }
-            _handler.parsedHeader(_field!=null?_field:new HttpField(_header,_headerString,_valueString));
+            else if (_connectionFields!=null && _field==null && _headerString!=null)
+            {
+                // Cache custom headers that repeat on this connection
+                boolean repeated=_valueStart>=0
+                    ?_fieldCache.isRepeated(_headerString,_values,_valueStart,_valuesLength-_valueStart)
+                    :_valueString!=null && _fieldCache.isRepeated(_headerString,_valueString);
+                if (repeated)
+                {
+                    if (_valueStart>=0)
+                        _valueString=takeLazyValue();
+                    _field=new HttpField(_header,_headerString,_valueString);
+                    _connectionFields.put(_field);
+                }
+            }
+            if (_field!=null)
+                _handler.parsedHeader(_field);
+            else if (_valueStart>=0)
+                _handler.parsedHeader(new LazyHttpField(_header,_headerString,_values,_valueStart,_valuesLength-_valueStart));
+            else
+                _handler.parsedHeader(new HttpField(_header,_headerString,_valueString));
         }
         
         _headerString=_valueString=null;
         _header=null;
         _value=null;
         _field=null;
+        _valueStart=-1;
     }
     
     
@@ -1038,7 +1147,10 @@ public class HttpParser
                                         else
                                         {
                                             setState(State.HEADER_IN_VALUE);
-                                            setString(v);
+                                            if (_lazyValues)
+                                                startLazyValue(v);
+                                            else
+                                                setString(v);
                                             buffer.position(pos);
                                             break;
                                         }
@@ -1090,8 +1202,17 @@ public class HttpParser
                 case HEADER_VALUE:
                     if (ch>HttpTokens.SPACE || ch<0)
                     {
-                        _string.append((char)(0xff&ch));
-                        _length=_string.length();
+                        if (_lazyValues)
+                        {
+                            _valueStart=_valuesLength;
+                            appendLazyValue(ch);
+                            _length=1;
+                        }
+                        else
+                        {
+                            _string.append((char)(0xff&ch));
+                            _length=_string.length();
+                        }
                         setState(State.HEADER_IN_VALUE);
                         break;
                     }
@@ -1117,19 +1238,38 @@ public class HttpParser
                     {
                         if (_valueString!=null)
                         {
-                            setString(_valueString);
+                            if (_lazyValues)
+                                startLazyValue(_valueString);
+                            else
+                                setString(_valueString);
                             _valueString=null;
                             _field=null;
                         }
-                        _string.append((char)(0xff&ch));
-                        if (ch>HttpTokens.SPACE || ch<0)
-                            _length=_string.length();
+                        if (_valueStart>=0)
+                        {
+                            appendLazyValue(ch);
+                            if (ch>HttpTokens.SPACE || ch<0)
+                                _length=_valuesLength-_valueStart;
+                        }
+                        else
+                        {
+                            _string.append((char)(0xff&ch));
+                            if (ch>HttpTokens.SPACE || ch<0)
+                                _length=_string.length();
+                        }
                         break;
                     }
                     
                     if (ch==HttpTokens.LINE_FEED)
                     {
-                        if (_length > 0)
+                        if (_valueStart>=0)
+                        {
+                            // Trim trailing white space from the lazy value
+                            _value=null;
+                            _valuesLength=_valueStart+_length;
+                            _length=-1;
+                        }
+                        else if (_length > 0)
                         {
                             _value=null;
                             _valueString=takeString();
@@ -1533,6 +1673,8 @@ public class HttpParser
         _contentChunk=null;
         _headerBytes=0;
         _host=false;
+        _valuesLength=0;
+        _valueStart=-1;
     }
 
     /* ------------------------------------------------------------------------------- */
@@ -1549,6 +1691,16 @@ public class HttpParser
         return _connectionFields;
     }
 
+    /* ------------------------------------------------------------------------------- */
+    /**
+     * @return the adaptive cache of the fields received on the connection, or null if
+     * no HTTP/1.1 request has been parsed yet
+     */
+    public HttpFieldCache getHttpFieldCache()
+    {
+        return _fieldCache;
+    }
+
     /* ------------------------------------------------------------------------------- */
     private String getProxyField(ByteBuffer buffer)
     {
@@ -0,0 +1,58 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+
+package org.eclipse.jetty.http;
+
+import java.nio.charset.StandardCharsets;
+
+
+/* ------------------------------------------------------------ */
+/** A HttpField with a value converted to a String only when it is first read.
+ * <p>The value is a view of bytes owned by the {@link HttpParser} that created the field,
+ * which are reused once the parser is reset for the next message. A field that is
+ * retained beyond the handling of its message must be read before then, or copied.
+ * </p>
+ */
+public class LazyHttpField extends HttpField
+{
+    private final byte[] _bytes;
+    private final int _offset;
+    private final int _length;
+    private String _value;
+
+    public LazyHttpField(HttpHeader header, String name, byte[] bytes, int offset, int length)
+    {
+        super(header,name,null);
+        _bytes=bytes;
+        _offset=offset;
+        _length=length;
+    }
+
+    @Override
+    public String getValue()
+    {
+        String value=_value;
+        if (value==null)
+        {
+            value=new String(_bytes,_offset,_length,StandardCharsets.ISO_8859_1);
+            _value=value;
+        }
+        return value;
+    }
+}
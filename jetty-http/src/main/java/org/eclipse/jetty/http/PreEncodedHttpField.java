@@ -73,7 +73,7 @@ public class PreEncodedHttpField extends HttpField
         
         for (HttpFieldPreEncoder e:__encoders)
         {
-            _encodedField[e.getHttpVersion()==HttpVersion.HTTP_2?1:0]=e.getEncodedField(header,header.asString(),value);
+            _encodedField[e.getHttpVersion()==HttpVersion.HTTP_2?1:0]=e.getEncodedField(header,name,value);
         }
     }
     
@@ -91,4 +91,9 @@ public class PreEncodedHttpField extends HttpField
     {
         bufferInFillMode.put(_encodedField[version==HttpVersion.HTTP_2?1:0]);
     }
+
+    public int getEncodedLength(HttpVersion version)
+    {
+        return _encodedField[version==HttpVersion.HTTP_2?1:0].length;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,170 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.http;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/* ------------------------------------------------------------ */
+/** A pre encoded block of HttpFields.
+ * <p>A set of fields that is sent unchanged on many responses (for example
+ * a fixed set of security headers) can be declared once as a
+ * {@link PreEncodedHttpFields} and added to each response with
+ * {@link HttpFields#add(PreEncodedHttpFields)}.  Each field of the block is
+ * a {@link PreEncodedHttpField}, so lookups and removals on the
+ * {@link HttpFields} work as normal, but while the fields remain
+ * contiguous and in order the {@link HttpGenerator} copies the whole
+ * block with a single put of its HTTP/1 encoding.
+ * </p>
+ * <p>For HTTP/2 each field carries its HPACK pre-encoding, which the
+ * HPACK encoder uses the first time the field is sent on a connection;
+ * thereafter the field is referenced from the dynamic table.
+ * HPACK is stateful, so a block cannot be copied verbatim without either
+ * desynchronising the dynamic table or forgoing indexing altogether.
+ * </p>
+ * <p>Fields that the generator must interpret (Content-Length, Content-Type,
+ * Transfer-Encoding, Connection and Server) and fields without a value
+ * cannot be part of a block.
+ * </p>
+ */
+public class PreEncodedHttpFields implements Iterable<HttpField>
+{
+    private final Field[] _fields;
+    private final byte[] _http1;
+
+    /* ------------------------------------------------------------ */
+    public PreEncodedHttpFields(HttpField... fields)
+    {
+        this(Arrays.asList(fields));
+    }
+
+    /* ------------------------------------------------------------ */
+    public PreEncodedHttpFields(List<HttpField> fields)
+    {
+        _fields=new Field[fields.size()];
+        int length=0;
+        for (int i=0;i<_fields.length;i++)
+        {
+            HttpField field=fields.get(i);
+            HttpHeader header=field.getHeader();
+            if (header!=null)
+            {
+                switch(header)
+                {
+                    case CONTENT_LENGTH:
+                    case CONTENT_TYPE:
+                    case TRANSFER_ENCODING:
+                    case CONNECTION:
+                    case SERVER:
+                        throw new IllegalArgumentException("Cannot pre encode "+header);
+                    default:
+                        break;
+                }
+            }
+            if (field.getValue()==null || field.getValue().length()==0)
+                throw new IllegalArgumentException("No value for "+field.getName());
+
+            _fields[i]=new Field(header,field.getName(),field.getValue(),this,i);
+            length+=_fields[i].getEncodedLength(HttpVersion.HTTP_1_1);
+        }
+
+        ByteBuffer buffer=ByteBuffer.allocate(length);
+        for (Field field : _fields)
+            field.putTo(buffer,HttpVersion.HTTP_1_1);
+        _http1=buffer.array();
+    }
+
+    /* ------------------------------------------------------------ */
+    public int size()
+    {
+        return _fields.length;
+    }
+
+    /* ------------------------------------------------------------ */
+    public HttpField getField(int index)
+    {
+        return _fields[index];
+    }
+
+    /* ------------------------------------------------------------ */
+    @Override
+    public Iterator<HttpField> iterator()
+    {
+        return Arrays.<HttpField>asList(_fields).iterator();
+    }
+
+    /* ------------------------------------------------------------ */
+    /** Put the HTTP/1 encoded block if it is present intact in the fields.
+     * @param fields The fields being generated
+     * @param index The index in fields of a field of this block
+     * @param bufferInFillMode The buffer to put the encoded block to
+     * @return The number of fields put, or 0 if the fields from index
+     * are not the complete block in order.
+     */
+    int putTo(HttpFields fields, int index, ByteBuffer bufferInFillMode)
+    {
+        if (index+_fields.length>fields.size())
+            return 0;
+        for (int i=0;i<_fields.length;i++)
+            if (fields.getField(index+i)!=_fields[i])
+                return 0;
+        bufferInFillMode.put(_http1);
+        return _fields.length;
+    }
+
+    /* ------------------------------------------------------------ */
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x%s",getClass().getSimpleName(),hashCode(),Arrays.asList(_fields));
+    }
+
+    /* ------------------------------------------------------------ */
+    /** A field of a {@link PreEncodedHttpFields} block.
+     */
+    public static class Field extends PreEncodedHttpField
+    {
+        private final PreEncodedHttpFields _block;
+        private final int _index;
+
+        private Field(HttpHeader header, String name, String value, PreEncodedHttpFields block, int index)
+        {
+            super(header,name,value);
+            _block=block;
+            _index=index;
+        }
+
+        /* ------------------------------------------------------------ */
+        public PreEncodedHttpFields getBlock()
+        {
+            return _block;
+        }
+
+        /* ------------------------------------------------------------ */
+        /**
+         * @return true if this is the first field of its block
+         */
+        public boolean isFirst()
+        {
+            return _index==0;
+        }
+    }
+}
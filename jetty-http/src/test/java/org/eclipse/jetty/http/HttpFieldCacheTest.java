@@ -0,0 +1,125 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+
+package org.eclipse.jetty.http;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+
+import org.eclipse.jetty.util.BufferUtil;
+import org.junit.Test;
+
+public class HttpFieldCacheTest
+{
+    @Test
+    public void testPutAndGetBest()
+    {
+        HttpFieldCache cache = new HttpFieldCache(1024);
+        HttpField field = new HttpField(HttpHeader.ACCEPT,"text/html");
+        assertTrue(cache.put(field));
+
+        assertThat(cache.get("Accept: text/html"),is(field));
+        assertThat(cache.getBest(BufferUtil.toBuffer("accept: text/html\r\n"),0,19),is(field));
+        assertThat(cache.getBest("Accept: text/plain\r\n"),nullValue());
+        assertThat(cache.getSize(),is(1));
+        assertThat(cache.getHits(),is(1L));
+        assertThat(cache.getMisses(),is(1L));
+        assertFalse(cache.isFull());
+
+        assertThat(cache.remove("Accept: text/html"),is(field));
+        assertThat(cache.get("Accept: text/html"),nullValue());
+        assertThat(cache.getSize(),is(0));
+    }
+
+    @Test
+    public void testFrequentFieldEvictsUnusedField()
+    {
+        HttpField unused = new HttpField("X-Unused","aaaaaaaaaaaaaaaaaaaaaaaaaaaaaa");
+        HttpField frequent = new HttpField("X-Frequent","bbbbbbbbbbbbbbbbbbbbbbbbbbbbbb");
+
+        // Only room for one field.
+        HttpFieldCache cache = new HttpFieldCache(unused.toString().length()+4);
+        assertTrue(cache.put(unused));
+
+        boolean admitted=false;
+        for (int i=0;i<64 && !admitted;i++)
+            admitted=cache.put(frequent) || cache.get(frequent.toString())!=null;
+
+        assertTrue(admitted);
+        assertThat(cache.get(frequent.toString()),is(frequent));
+        assertThat(cache.get(unused.toString()),nullValue());
+        assertThat(cache.getEvictions(),is(1L));
+    }
+
+    @Test
+    public void testHitFieldIsRetained()
+    {
+        HttpField used = new HttpField("X-Used","aaaaaaaaaaaaaaaaaaaaaaaaaaaaaa");
+        HttpField other = new HttpField("X-Other","bbbbbbbbbbbbbbbbbbbbbbbbbbbbbb");
+
+        HttpFieldCache cache = new HttpFieldCache(used.toString().length()+4);
+        assertTrue(cache.put(used));
+
+        for (int i=0;i<64;i++)
+        {
+            assertThat(cache.getBest(used.toString()+"\r\n"),is(used));
+            assertThat(cache.getBest(used.toString()+"\r\n"),is(used));
+            cache.put(other);
+        }
+
+        assertThat(cache.get(used.toString()),is(used));
+        assertThat(cache.get(other.toString()),nullValue());
+        assertThat(cache.getEvictions(),is(0L));
+        assertThat(cache.getHits(),is(128L));
+        assertThat(cache.getMisses(),is(0L));
+    }
+
+    @Test
+    public void testMissesCountFailedLookups()
+    {
+        HttpFieldCache cache = new HttpFieldCache(1024);
+        HttpField field = new HttpField(HttpHeader.ACCEPT,"text/html");
+        for (int i=0;i<4;i++)
+            cache.put(field);
+        assertThat(cache.getMisses(),is(0L));
+
+        assertThat(cache.getBest("Accept: text/plain\r\n"),nullValue());
+        assertThat(cache.getBest("Accept: text/html\r\n"),is(field));
+        assertThat(cache.getMisses(),is(1L));
+        assertThat(cache.getHits(),is(1L));
+    }
+
+    @Test
+    public void testIsRepeated()
+    {
+        HttpFieldCache cache = new HttpFieldCache(1024);
+        byte[] value = "xxvaluexx".getBytes(StandardCharsets.ISO_8859_1);
+
+        assertFalse(cache.isRepeated("X-Custom","value"));
+        assertTrue(cache.isRepeated("X-Custom",value,2,5));
+        assertTrue(cache.isRepeated("X-Custom","value"));
+        assertFalse(cache.isRepeated("X-Custom","other"));
+        assertFalse(cache.isRepeated("X-Other","value"));
+    }
+}
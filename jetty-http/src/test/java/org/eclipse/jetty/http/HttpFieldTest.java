@@ -168,4 +168,17 @@ public class HttpFieldTest
         
         assertEquals("Accept: something\r\n",s);
     }
+
+    @Test
+    public void testCachedUnknownField()
+    {
+        PreEncodedHttpField field = new PreEncodedHttpField("X-Custom","something");
+        ByteBuffer buf = BufferUtil.allocate(256);
+        BufferUtil.clearToFill(buf);
+        field.putTo(buf,HttpVersion.HTTP_1_0);
+        BufferUtil.flipToFlush(buf,0);
+        String s=BufferUtil.toString(buf);
+
+        assertEquals("X-Custom: something\r\n",s);
+    }
 }
@@ -448,4 +448,49 @@ public class HttpGeneratorServerTest
         Assert.assertTrue(headers.contains(HttpHeaderValue.KEEP_ALIVE.asString()));
         Assert.assertTrue(headers.contains(customValue));
     }
+
+    @Test
+    public void testPreEncodedFields() throws Exception
+    {
+        PreEncodedHttpFields security = new PreEncodedHttpFields(
+            new HttpField(HttpHeader.CACHE_CONTROL,"no-store"),
+            new HttpField("X-Frame-Options","DENY"),
+            new HttpField("X-Content-Type-Options","nosniff"));
+
+        MetaData.Response info = new MetaData.Response(HttpVersion.HTTP_1_1, 200, null, new HttpFields(), 0);
+        info.getFields().add("Last-Modified", DateGenerator.__01Jan1970);
+        info.getFields().add(security);
+        info.getFields().add("X-After", "after");
+
+        String response = generate(info);
+        assertThat(response, containsString(
+            "Last-Modified: Thu, 01 Jan 1970 00:00:00 GMT\r\n"+
+            "Cache-Control: no-store\r\n"+
+            "X-Frame-Options: DENY\r\n"+
+            "X-Content-Type-Options: nosniff\r\n"+
+            "X-After: after\r\n"));
+
+        // A block that is no longer intact is generated field by field
+        info = new MetaData.Response(HttpVersion.HTTP_1_1, 200, null, new HttpFields(), 0);
+        info.getFields().add(security);
+        info.getFields().remove("X-Frame-Options");
+        response = generate(info);
+        assertThat(response, containsString("Cache-Control: no-store\r\nX-Content-Type-Options: nosniff\r\n"));
+        assertThat(response, not(containsString("X-Frame-Options")));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testPreEncodedFieldsRejectsContentLength() throws Exception
+    {
+        new PreEncodedHttpFields(new HttpField(HttpHeader.CONTENT_LENGTH,"10"));
+    }
+
+    private String generate(MetaData.Response info) throws Exception
+    {
+        ByteBuffer header = BufferUtil.allocate(8096);
+        HttpGenerator gen = new HttpGenerator();
+        HttpGenerator.Result result = gen.generateResponse(info, header, null, null, true);
+        assertEquals(HttpGenerator.Result.FLUSH, result);
+        return BufferUtil.toString(header);
+    }
 }
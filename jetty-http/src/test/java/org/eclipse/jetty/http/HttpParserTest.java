@@ -353,6 +353,65 @@ public class HttpParserTest
         assertEquals(9, _headers);
     }
     
+    @Test
+    public void testLazyHeaderValues() throws Exception
+    {
+        ByteBuffer buffer= BufferUtil.toBuffer(
+                "POST / HTTP/1.1\015\012" +
+                        "Host: localhost\015\012" +
+                        "Header1:   value 1  \015\012" +
+                        "Content-Length: 4\015\012" +
+                        "User-Agent: agent\015\012" +
+                        "Accept: unknown, text/plain\015\012" +
+                        "Connection: close\015\012" +
+                "\015\012" +
+                "abcd");
+        HttpParser.RequestHandler handler  = new Handler();
+        HttpParser parser= new HttpParser(handler);
+        parser.setLazyHeaderValues(true);
+        parseAll(parser,buffer);
+
+        assertEquals("localhost", _val[0]);
+        assertEquals("value 1", _val[1]);
+        assertEquals("4", _val[2]);
+        assertEquals("agent", _val[3]);
+        assertEquals("unknown, text/plain", _val[4]);
+        assertEquals("close", _val[5]);
+        assertEquals(5, _headers);
+        assertEquals("abcd", _content);
+
+        // Values of unknown headers are lazy, values needed by the parser or cached are not
+        assertTrue(_fields.get(0) instanceof HostPortHttpField);
+        assertTrue(_fields.get(1) instanceof LazyHttpField);
+        assertFalse(_fields.get(2) instanceof LazyHttpField);
+        assertFalse(_fields.get(3) instanceof LazyHttpField);
+        assertFalse(_fields.get(4) instanceof LazyHttpField);
+        assertFalse(_fields.get(5) instanceof LazyHttpField);
+    }
+
+    @Test
+    public void testLazyHeaderValuesReset() throws Exception
+    {
+        HttpParser.RequestHandler handler  = new Handler();
+        HttpParser parser= new HttpParser(handler);
+        parser.setLazyHeaderValues(true);
+
+        for (int i=0;i<3;i++)
+        {
+            ByteBuffer buffer= BufferUtil.toBuffer(
+                    "GET / HTTP/1.1\015\012" +
+                            "Host: localhost\015\012" +
+                            "Header1: value"+i+"\015\012" +
+                            "Header2: other value "+i+"\015\012" +
+                    "\015\012");
+            parseAll(parser,buffer);
+
+            assertEquals("value"+i, _fields.get(1).getValue());
+            assertEquals("other value "+i, _fields.get(2).getValue());
+            assertTrue(_fields.get(2) instanceof LazyHttpField);
+        }
+    }
+    
     @Test
     public void testHeaderParseCRLF() throws Exception
     {
@@ -1547,7 +1606,30 @@ public class HttpParserTest
         buffer.position(0);
         parseAll(parser,buffer);
         assertTrue(field==_fields.get(0));
-        
+
+    }
+
+    @Test
+    public void testCachedCustomField() throws Exception
+    {
+        HttpParser.RequestHandler handler  = new Handler();
+        HttpParser parser= new HttpParser(handler);
+        for (int i=0;i<3;i++)
+        {
+            ByteBuffer buffer= BufferUtil.toBuffer(
+                "GET / HTTP/1.1\r\n"+
+                "Host: localhost\r\n"+
+                "X-Tenant: acme\r\n"+
+                "X-Request-Id: "+i+"\r\n"+
+                "\r\n");
+            parseAll(parser,buffer);
+            assertEquals("acme",_fields.get(1).getValue());
+            assertEquals(Integer.toString(i),_fields.get(2).getValue());
+        }
+
+        assertEquals("acme",parser.getFieldCache().get("X-Tenant: acme").getValue());
+        assertEquals(null,parser.getFieldCache().get("X-Request-Id: 0"));
+        assertTrue(parser.getHttpFieldCache().getHits()>0);
     }
 
     @Test
@@ -195,7 +195,7 @@ public class HTTP2Client extends ContainerLifeCycle
     {
         try
         {
-            SocketChannel channel = SocketChannel.open();
+            SocketChannel channel = selector.getSelectorProvider().openSocketChannel();
             channel.socket().setTcpNoDelay(true);
             channel.configureBlocking(false);
 
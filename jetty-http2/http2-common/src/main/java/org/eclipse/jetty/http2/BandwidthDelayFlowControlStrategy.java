@@ -0,0 +1,418 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.http2;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.http2.frames.Frame;
+import org.eclipse.jetty.http2.frames.PingFrame;
+import org.eclipse.jetty.http2.frames.WindowUpdateFrame;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+
+/**
+ * <p>A flow control strategy that sizes the receive windows to the
+ * bandwidth-delay product of the connection.</p>
+ * <p>While data is being received, the strategy periodically sends a PING
+ * frame and counts the bytes received, for the session and for each stream,
+ * until the PING reply arrives. The round trip of the PING estimates the
+ * round trip time of the connection, and the bytes received during the
+ * round trip estimate the bandwidth-delay product, as long as the sender
+ * is not limited by the window itself.</p>
+ * <p>When the bytes received during a round trip are close to the window,
+ * the sender is likely limited by the window, which is then grown to twice
+ * the bytes received, up to a maximum; when they are much smaller than the
+ * window, the window is gradually shrunk, down to its initial size.</p>
+ * <p>Like {@link BufferingFlowControlStrategy}, window updates are sent when
+ * the data consumed reaches a fraction of the window; a grown window is
+ * advertised by a larger window update, while a shrunk window is obtained
+ * by withholding the window updates until the window is down to size.</p>
+ */
+@ManagedObject("Bandwidth-delay product flow control strategy")
+public class BandwidthDelayFlowControlStrategy extends AbstractFlowControlStrategy implements FlowControlStrategy.PingListener
+{
+    private final Map<IStream, Window> streamWindows = new ConcurrentHashMap<>();
+    private final Window sessionWindow = new Window(DEFAULT_WINDOW_SIZE);
+    private final float bufferRatio;
+    private int maxSessionRecvWindow = 16 * 1024 * 1024;
+    private int maxStreamRecvWindow = 8 * 1024 * 1024;
+    private long probeInterval = TimeUnit.MILLISECONDS.toNanos(500);
+    private int streamRecvWindowTarget;
+    private long roundTripTime = -1;
+    private long probeStart;
+    private long lastProbe;
+    private byte[] probe;
+
+    public BandwidthDelayFlowControlStrategy()
+    {
+        this(DEFAULT_WINDOW_SIZE, 0.5F);
+    }
+
+    public BandwidthDelayFlowControlStrategy(int initialStreamSendWindow, float bufferRatio)
+    {
+        super(initialStreamSendWindow);
+        this.bufferRatio = bufferRatio;
+        this.streamRecvWindowTarget = getInitialStreamRecvWindow();
+    }
+
+    @ManagedAttribute("The fraction of the window consumed before sending a window update")
+    public float getBufferRatio()
+    {
+        return bufferRatio;
+    }
+
+    @ManagedAttribute("The max session receive window")
+    public int getMaxSessionRecvWindow()
+    {
+        return maxSessionRecvWindow;
+    }
+
+    public void setMaxSessionRecvWindow(int maxSessionRecvWindow)
+    {
+        this.maxSessionRecvWindow = maxSessionRecvWindow;
+    }
+
+    @ManagedAttribute("The max stream receive window")
+    public int getMaxStreamRecvWindow()
+    {
+        return maxStreamRecvWindow;
+    }
+
+    public void setMaxStreamRecvWindow(int maxStreamRecvWindow)
+    {
+        this.maxStreamRecvWindow = maxStreamRecvWindow;
+    }
+
+    @ManagedAttribute("The min interval in ms between PING frames sent to measure the round trip")
+    public long getProbeInterval()
+    {
+        return TimeUnit.NANOSECONDS.toMillis(probeInterval);
+    }
+
+    public void setProbeInterval(long probeInterval)
+    {
+        this.probeInterval = TimeUnit.MILLISECONDS.toNanos(probeInterval);
+    }
+
+    @ManagedAttribute("The smoothed round trip time in ms, or -1 if not measured yet")
+    public synchronized long getRoundTripTime()
+    {
+        return roundTripTime < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(roundTripTime);
+    }
+
+    @ManagedAttribute("The size the session receive window is adapted to")
+    public int getSessionRecvWindowTarget()
+    {
+        return sessionWindow.getTarget();
+    }
+
+    @ManagedAttribute("The size the receive window of new streams is adapted to")
+    public synchronized int getStreamRecvWindowTarget()
+    {
+        return streamRecvWindowTarget;
+    }
+
+    @Override
+    public void onStreamCreated(IStream stream, boolean local)
+    {
+        super.onStreamCreated(stream, local);
+        Window window = new Window(getInitialStreamRecvWindow());
+        // New streams start with the window learned from previous streams,
+        // which is advertised with the first window update.
+        window.grow(getStreamRecvWindowTarget(), maxStreamRecvWindow);
+        streamWindows.put(stream, window);
+    }
+
+    @Override
+    public void onStreamDestroyed(IStream stream, boolean local)
+    {
+        streamWindows.remove(stream);
+        super.onStreamDestroyed(stream, local);
+    }
+
+    @Override
+    public void updateInitialStreamWindow(ISession session, int initialStreamWindow, boolean local)
+    {
+        int previous = getInitialStreamRecvWindow();
+        super.updateInitialStreamWindow(session, initialStreamWindow, local);
+        if (local)
+        {
+            int delta = initialStreamWindow - previous;
+            for (Window window : streamWindows.values())
+                window.resize(delta);
+            synchronized (this)
+            {
+                streamRecvWindowTarget = Math.max(streamRecvWindowTarget, initialStreamWindow);
+            }
+        }
+    }
+
+    @Override
+    public void onDataReceived(ISession session, IStream stream, int length)
+    {
+        sessionWindow.received(session.updateRecvWindow(0), length);
+        super.onDataReceived(session, stream, length);
+        if (stream != null)
+        {
+            Window window = streamWindows.get(stream);
+            if (window != null)
+                window.received(-1, length);
+        }
+        if (length > 0)
+            probe(session);
+    }
+
+    @Override
+    public void onDataConsumed(ISession session, IStream stream, int length)
+    {
+        if (length <= 0)
+            return;
+
+        WindowUpdateFrame windowFrame = null;
+        int delta = sessionWindow.consumed(length, bufferRatio);
+        if (delta > 0)
+        {
+            session.updateRecvWindow(delta);
+            if (LOG.isDebugEnabled())
+                LOG.debug("Data consumed, updated session recv window by {} to {} for {}", delta, sessionWindow, session);
+            windowFrame = new WindowUpdateFrame(0, delta);
+        }
+
+        Frame[] windowFrames = Frame.EMPTY_ARRAY;
+        if (stream != null)
+        {
+            Window window = streamWindows.get(stream);
+            if (stream.isClosed() || window == null)
+            {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Data consumed, ignoring update stream recv window by {} for closed {}", length, stream);
+            }
+            else
+            {
+                delta = window.consumed(length, bufferRatio);
+                if (delta > 0)
+                {
+                    stream.updateRecvWindow(delta);
+                    if (LOG.isDebugEnabled())
+                        LOG.debug("Data consumed, updated stream recv window by {} to {} for {}", delta, window, stream);
+                    WindowUpdateFrame frame = new WindowUpdateFrame(stream.getId(), delta);
+                    if (windowFrame == null)
+                        windowFrame = frame;
+                    else
+                        windowFrames = new Frame[]{frame};
+                }
+            }
+        }
+
+        if (windowFrame != null)
+            session.frames(stream, Callback.Adapter.INSTANCE, windowFrame, windowFrames);
+    }
+
+    private void probe(ISession session)
+    {
+        byte[] payload;
+        synchronized (this)
+        {
+            long now = System.nanoTime();
+            if (now - lastProbe < probeInterval)
+                return;
+            // A lost reply must not prevent further probes.
+            if (probe != null && now - probeStart < TimeUnit.SECONDS.toNanos(30))
+                return;
+            probeStart = now;
+            payload = probe = new byte[8];
+            for (int i = 0; i < payload.length; ++i)
+                payload[i] = (byte)(now >>> (8 * i));
+        }
+
+        sessionWindow.startProbe();
+        for (Window window : streamWindows.values())
+            window.startProbe();
+
+        if (LOG.isDebugEnabled())
+            LOG.debug("Probing round trip for {}", session);
+        session.ping(new PingFrame(payload, false), Callback.Adapter.INSTANCE);
+    }
+
+    @Override
+    public boolean onPingReply(ISession session, PingFrame frame)
+    {
+        long sample;
+        synchronized (this)
+        {
+            if (probe == null || !Arrays.equals(probe, frame.getPayload()))
+                return false;
+            long now = System.nanoTime();
+            sample = now - probeStart;
+            // Smooth the round trip time like TCP does.
+            roundTripTime = roundTripTime < 0 ? sample : (7 * roundTripTime + sample) / 8;
+            probe = null;
+            lastProbe = now;
+        }
+
+        int sessionTarget = sessionWindow.adapt(sessionWindow.stopProbe(), maxSessionRecvWindow);
+        int streamTarget = 0;
+        for (Window window : streamWindows.values())
+            streamTarget = Math.max(streamTarget, window.adapt(window.stopProbe(), maxStreamRecvWindow));
+        if (streamTarget > 0)
+        {
+            synchronized (this)
+            {
+                streamRecvWindowTarget = Math.max(getInitialStreamRecvWindow(), streamTarget);
+            }
+        }
+
+        if (LOG.isDebugEnabled())
+            LOG.debug("Round trip {}/{} ns, session recv window target {}, stream recv window target {} for {}",
+                    sample, roundTripTime, sessionTarget, streamTarget, session);
+        return true;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{rtt=%dms,session=%s,streams=%d}", getClass().getSimpleName(), hashCode(),
+                getRoundTripTime(), sessionWindow, streamWindows.size());
+    }
+
+    /**
+     * <p>The receive window of the session or of a stream, as seen by the receiver.</p>
+     */
+    private static class Window
+    {
+        private final int initial;
+        // The window size currently granted to the sender.
+        private int size;
+        // The window size the strategy adapts to.
+        private int target;
+        // The bytes consumed, not yet returned to the sender.
+        private int level;
+        // The bytes received during the current probe, or -1 if not probing.
+        private long probed = -1;
+        private boolean initialized;
+
+        private Window(int initial)
+        {
+            this.initial = initial;
+            this.size = initial;
+            this.target = initial;
+        }
+
+        private synchronized int getTarget()
+        {
+            return target;
+        }
+
+        private synchronized void received(int recvWindow, int length)
+        {
+            if (!initialized && recvWindow >= 0)
+            {
+                // The session window may have been enlarged before
+                // the strategy had a chance to know about it.
+                initialized = true;
+                size = Math.max(size, recvWindow);
+                target = Math.max(target, size);
+            }
+            if (probed >= 0)
+                probed += length;
+        }
+
+        private synchronized void grow(int target, int max)
+        {
+            this.target = Math.max(this.target, Math.min(max, target));
+        }
+
+        private synchronized void resize(int delta)
+        {
+            size += delta;
+            target = Math.max(1, target + delta);
+        }
+
+        private synchronized void startProbe()
+        {
+            probed = 0;
+        }
+
+        private synchronized long stopProbe()
+        {
+            long result = probed;
+            probed = -1;
+            return result;
+        }
+
+        /**
+         * @param bdp the bytes received during a round trip, or -1 if unknown
+         * @param max the max window size
+         * @return the new target window size
+         */
+        private synchronized int adapt(long bdp, int max)
+        {
+            if (bdp < 0)
+                return target;
+            if (3 * bdp >= 2 * (long)target)
+            {
+                // Likely limited by the window, grow it.
+                target = (int)Math.min(max, Math.max(target, 2 * bdp));
+            }
+            else if (4 * bdp < target)
+            {
+                // Much larger than needed, shrink it gradually.
+                target = (int)Math.max(Math.max(initial, 2 * bdp), target - (target - 2 * bdp) / 4);
+            }
+            return target;
+        }
+
+        /**
+         * @param length the bytes consumed
+         * @param ratio the fraction of the target to consume before updating the window
+         * @return the window update delta to send, or 0 if no update is due
+         */
+        private synchronized int consumed(int length, float ratio)
+        {
+            level += length;
+            // The threshold is on the smaller window, so that a grown
+            // target is advertised before the sender is stalled.
+            if (level <= Math.min(size, target) * ratio)
+                return 0;
+            int delta = level + target - size;
+            if (delta > 0)
+            {
+                size = target;
+            }
+            else
+            {
+                // Withhold the update to shrink the window towards the target.
+                size -= level;
+                delta = 0;
+            }
+            level = 0;
+            return delta;
+        }
+
+        @Override
+        public synchronized String toString()
+        {
+            return String.format("%d/%d", size, target);
+        }
+    }
+}
@@ -18,6 +18,7 @@
 
 package org.eclipse.jetty.http2;
 
+import org.eclipse.jetty.http2.frames.PingFrame;
 import org.eclipse.jetty.http2.frames.WindowUpdateFrame;
 
 public interface FlowControlStrategy
@@ -45,4 +46,19 @@ public interface FlowControlStrategy
     public void onSessionStalled(ISession session);
 
     public void onStreamStalled(IStream stream);
+
+    /**
+     * <p>Implemented by strategies that send PING frames, for example
+     * to measure the round trip time of the connection.</p>
+     */
+    public interface PingListener
+    {
+        /**
+         * @param session the session
+         * @param frame the PING reply received
+         * @return true if the reply was for a PING sent by the strategy,
+         * in which case the application is not notified
+         */
+        public boolean onPingReply(ISession session, PingFrame frame);
+    }
 }
@@ -18,37 +18,59 @@
 
 package org.eclipse.jetty.http2;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.ClosedChannelException;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.eclipse.jetty.http2.frames.Frame;
 import org.eclipse.jetty.http2.frames.WindowUpdateFrame;
 import org.eclipse.jetty.io.ByteBufferPool;
 import org.eclipse.jetty.io.EofException;
-import org.eclipse.jetty.util.ArrayQueue;
 import org.eclipse.jetty.util.Callback;
 import org.eclipse.jetty.util.IteratingCallback;
+import org.eclipse.jetty.util.component.ContainerLifeCycle;
+import org.eclipse.jetty.util.component.Dumpable;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
 
-public class HTTP2Flusher extends IteratingCallback
+public class HTTP2Flusher extends IteratingCallback implements Dumpable
 {
     private static final Logger LOG = Log.getLogger(HTTP2Flusher.class);
-
-    private final Queue<WindowEntry> windows = new ArrayDeque<>();
-    private final ArrayQueue<Entry> frames = new ArrayQueue<>(ArrayQueue.DEFAULT_CAPACITY, ArrayQueue.DEFAULT_GROWTH, this);
+    // The data bytes a stream is granted each time it is scheduled.
+    private static final int QUANTUM = Frame.DEFAULT_MAX_LENGTH;
+    // The max data bytes gathered in a single write, so that streams
+    // are rescheduled by priority after every write.
+    private static final int MAX_WRITE_DATA = 8 * QUANTUM;
+
+    // Producers push onto these stacks without locking; the iterating
+    // flusher, the single consumer, takes each stack whole in one swap.
+    private final AtomicReference<WindowEntry> windows = new AtomicReference<>();
+    private final AtomicReference<Entry> prepends = new AtomicReference<>();
+    private final AtomicReference<Entry> appends = new AtomicReference<>();
+    private final AtomicLong contentions = new AtomicLong();
+    // The fields below are only accessed by the iterating flusher.
+    private final List<Entry> frames = new ArrayList<>();
+    private final List<Entry> batch = new ArrayList<>();
     private final Map<IStream, Integer> streams = new HashMap<>();
+    private final Map<Integer, Entry> datas = new HashMap<>();
     private final List<Entry> resets = new ArrayList<>();
     private final List<Entry> actives = new ArrayList<>();
     private final Queue<Entry> completes = new ArrayDeque<>();
     private final HTTP2Session session;
     private final ByteBufferPool.Lease lease;
+    private volatile int queueSize;
+    private volatile long batches;
+    private volatile long drained;
+    private volatile int maxBatchSize;
 
     public HTTP2Flusher(HTTP2Session session)
     {
@@ -58,168 +80,294 @@ public class HTTP2Flusher extends IteratingCallback
 
     public void window(IStream stream, WindowUpdateFrame frame)
     {
-        boolean added = false;
-        synchronized (this)
+        if (isClosed())
+            return;
+        WindowEntry entry = new WindowEntry(stream, frame);
+        while (true)
         {
-            if (!isClosed())
-                added = windows.offer(new WindowEntry(stream, frame));
+            WindowEntry head = windows.get();
+            entry.next = head;
+            if (windows.compareAndSet(head, entry))
+                break;
+            contentions.incrementAndGet();
         }
         // Flush stalled data.
-        if (added)
-            iterate();
+        iterate();
     }
 
     public boolean prepend(Entry entry)
     {
-        boolean fail = false;
-        synchronized (this)
-        {
-            if (isClosed())
-            {
-                fail = true;
-            }
-            else
-            {
-                frames.add(0, entry);
-                if (LOG.isDebugEnabled())
-                    LOG.debug("Prepended {}, frames={}", entry, frames.size());
-            }
-        }
-        if (fail)
-            closed(entry, new ClosedChannelException());
-        return !fail;
+        boolean queued = push(prepends, entry);
+        if (queued && LOG.isDebugEnabled())
+            LOG.debug("Prepended {}", entry);
+        return queued;
     }
 
     public boolean append(Entry entry)
     {
-        boolean fail = false;
-        synchronized (this)
+        boolean queued = push(appends, entry);
+        if (queued && LOG.isDebugEnabled())
+            LOG.debug("Appended {}", entry);
+        return queued;
+    }
+
+    private boolean push(AtomicReference<Entry> stack, Entry entry)
+    {
+        if (isClosed())
         {
-            if (isClosed())
-            {
-                fail = true;
-            }
-            else
-            {
-                frames.offer(entry);
-                if (LOG.isDebugEnabled())
-                    LOG.debug("Appended {}, frames={}", entry, frames.size());
-            }
-        }
-        if (fail)
             closed(entry, new ClosedChannelException());
-        return !fail;
+            return false;
+        }
+
+        while (true)
+        {
+            Entry head = stack.get();
+            entry.next = head;
+            if (stack.compareAndSet(head, entry))
+                break;
+            contentions.incrementAndGet();
+        }
+
+        // If the flusher was closed concurrently, the entries may never be
+        // drained: take them back; whoever swaps the stack fails them.
+        if (isClosed())
+        {
+            closed(stack.getAndSet(null), new ClosedChannelException());
+            return false;
+        }
+        return true;
     }
 
-    private Entry remove(int index)
+    /**
+     * <p>Moves the entries pushed by producers into the frame queue.</p>
+     * <p>Prepended entries go to the head of the queue, the last prepended first;
+     * appended entries go to the tail of the queue, in the order they were appended.</p>
+     */
+    private void drain()
     {
-        synchronized (this)
+        int size = 0;
+        take(prepends);
+        frames.addAll(0, batch);
+        size += batch.size();
+        batch.clear();
+
+        take(appends);
+        for (int i = batch.size(); i-- > 0;)
+            frames.add(batch.get(i));
+        size += batch.size();
+        batch.clear();
+
+        if (size > 0)
         {
-            if (index == 0)
-                return frames.pollUnsafe();
-            else
-                return frames.remove(index);
+            batches = batches + 1;
+            drained = drained + size;
+            if (size > maxBatchSize)
+                maxBatchSize = size;
         }
     }
 
-    public int getQueueSize()
+    private void take(AtomicReference<Entry> stack)
     {
-        synchronized (this)
+        Entry entry = stack.getAndSet(null);
+        while (entry != null)
         {
-            return frames.size();
+            Entry next = entry.next;
+            entry.next = null;
+            batch.add(entry);
+            entry = next;
         }
     }
 
+    private Entry remove(int index)
+    {
+        return frames.remove(index);
+    }
+
+    /**
+     * @return the number of frames queued at the end of the last flusher iteration
+     */
+    public int getQueueSize()
+    {
+        return queueSize;
+    }
+
+    /**
+     * @return the number of times a thread queueing a frame had to retry
+     * because another thread was queueing a frame at the same time
+     */
+    public long getContentions()
+    {
+        return contentions.get();
+    }
+
+    /**
+     * @return the number of batches of queued frames drained by the flusher
+     */
+    public long getBatches()
+    {
+        return batches;
+    }
+
+    /**
+     * @return the number of queued frames drained by the flusher
+     */
+    public long getDrained()
+    {
+        return drained;
+    }
+
+    /**
+     * @return the max number of queued frames drained in a single batch
+     */
+    public int getMaxBatchSize()
+    {
+        return maxBatchSize;
+    }
+
     @Override
     protected Action process() throws Exception
     {
         if (LOG.isDebugEnabled())
             LOG.debug("Flushing {}", session);
 
-        synchronized (this)
+        // First thing, update the window sizes, so we can
+        // reason about the frames to remove from the queue.
+        // The order of window updates does not matter.
+        for (WindowEntry entry = windows.getAndSet(null); entry != null; entry = entry.next)
+            entry.perform();
+
+        drain();
+
+        // Now the window sizes cannot change.
+        // Window updates that happen concurrently will
+        // be queued and processed on the next iteration.
+        int sessionWindow = session.getSendWindow();
+        PriorityTree priorities = session.getPriorityTree();
+
+        int index = 0;
+        int size = frames.size();
+        while (index < size)
         {
-            // First thing, update the window sizes, so we can
-            // reason about the frames to remove from the queue.
-            while (!windows.isEmpty())
+            Entry entry = frames.get(index);
+            IStream stream = entry.stream;
+
+            // If the stream has been reset, don't send the frame.
+            if (stream != null && stream.isReset() && !entry.isProtocol())
             {
-                WindowEntry entry = windows.poll();
-                entry.perform();
+                remove(index);
+                --size;
+                resets.add(entry);
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Gathered for reset {}", entry);
+                continue;
             }
 
-            // Now the window sizes cannot change.
-            // Window updates that happen concurrently will
-            // be queued and processed on the next iteration.
-            int sessionWindow = session.getSendWindow();
-
-            int index = 0;
-            int size = frames.size();
-            while (index < size)
+            // Frames queued after data of the same stream
+            // must wait for that data to be written first.
+            if (stream != null && !entry.isProtocol() && datas.containsKey(stream.getId()))
             {
-                Entry entry = frames.get(index);
-                IStream stream = entry.stream;
+                ++index;
+                continue;
+            }
 
-                // If the stream has been reset, don't send the frame.
-                if (stream != null && stream.isReset() && !entry.isProtocol())
+            // Check if the frame fits in the flow control windows.
+            int remaining = entry.dataRemaining();
+            if (remaining > 0)
+            {
+                entry.quota = 0;
+                FlowControlStrategy flowControl = session.getFlowControlStrategy();
+                if (sessionWindow <= 0)
                 {
-                    remove(index);
-                    --size;
-                    resets.add(entry);
-                    if (LOG.isDebugEnabled())
-                        LOG.debug("Gathered for reset {}", entry);
+                    flowControl.onSessionStalled(session);
+                    if (stream != null)
+                        datas.put(stream.getId(), entry);
+                    ++index;
+                    // There may be *non* flow controlled frames to send.
                     continue;
                 }
 
-                // Check if the frame fits in the flow control windows.
-                int remaining = entry.dataRemaining();
-                if (remaining > 0)
+                if (stream != null)
                 {
-                    FlowControlStrategy flowControl = session.getFlowControlStrategy();
-                    if (sessionWindow <= 0)
+                    // The stream may have a smaller window than the session.
+                    Integer streamWindow = streams.get(stream);
+                    if (streamWindow == null)
                     {
-                        flowControl.onSessionStalled(session);
-                        ++index;
-                        // There may be *non* flow controlled frames to send.
-                        continue;
+                        streamWindow = stream.updateSendWindow(0);
+                        streams.put(stream, streamWindow);
                     }
+                    datas.put(stream.getId(), entry);
 
-                    if (stream != null)
-                    {
-                        // The stream may have a smaller window than the session.
-                        Integer streamWindow = streams.get(stream);
-                        if (streamWindow == null)
-                        {
-                            streamWindow = stream.updateSendWindow(0);
-                            streams.put(stream, streamWindow);
-                        }
-
-                        // Is it a frame belonging to an already stalled stream ?
-                        if (streamWindow <= 0)
-                        {
-                            flowControl.onStreamStalled(stream);
-                            ++index;
-                            // There may be *non* flow controlled frames to send.
-                            continue;
-                        }
-                    }
+                    // Is it a frame belonging to an already stalled stream ?
+                    if (streamWindow <= 0)
+                        flowControl.onStreamStalled(stream);
+                    else
+                        priorities.activate(stream.getId());
 
-                    // The frame fits both flow control windows, reduce them.
-                    sessionWindow -= remaining;
-                    if (stream != null)
-                        streams.put(stream, streams.get(stream) - remaining);
+                    // The data is scheduled by priority below.
+                    ++index;
+                    continue;
                 }
 
-                // The frame will be written, remove it from the queue.
-                remove(index);
-                --size;
-                actives.add(entry);
+                // The frame fits the session flow control window, reduce it.
+                entry.quota = remaining;
+                sessionWindow -= remaining;
+            }
 
+            // The frame will be written, remove it from the queue.
+            remove(index);
+            --size;
+            actives.add(entry);
+
+            if (LOG.isDebugEnabled())
+                LOG.debug("Gathered for write {}", entry);
+        }
+
+        // Grant the data windows by weighted fair queuing over the stream priorities.
+        int budget = Math.min(sessionWindow, MAX_WRITE_DATA);
+        while (budget > 0)
+        {
+            int streamId = priorities.next();
+            if (streamId == 0)
+                break;
+            Entry entry = datas.get(streamId);
+            int streamWindow = streams.get(entry.stream);
+            int length = Math.min(Math.min(QUANTUM, budget), Math.min(streamWindow, entry.dataRemaining() - entry.quota));
+            if (entry.quota == 0)
+            {
+                actives.add(entry);
                 if (LOG.isDebugEnabled())
                     LOG.debug("Gathered for write {}", entry);
             }
-            streams.clear();
+            entry.quota += length;
+            streams.put(entry.stream, streamWindow - length);
+            budget -= length;
+            priorities.charge(streamId, length);
+            if (streamWindow == length || entry.quota == entry.dataRemaining())
+                priorities.deactivate(streamId);
+        }
+
+        // Remove the scheduled data from the queue.
+        if (!datas.isEmpty())
+        {
+            for (int i = size; i-- > 0;)
+            {
+                Entry entry = frames.get(i);
+                if (entry.stream != null && entry.quota > 0 && datas.get(entry.stream.getId()) == entry)
+                    remove(i);
+            }
+            for (Map.Entry<Integer, Entry> data : datas.entrySet())
+            {
+                if (data.getValue().stream.isClosed())
+                    priorities.remove(data.getKey());
+                else
+                    priorities.deactivate(data.getKey());
+            }
+            datas.clear();
         }
+        streams.clear();
+        queueSize = frames.size();
 
-        // Perform resets outside the sync block.
+        // Perform resets.
         for (int i = 0; i < resets.size(); ++i)
         {
             Entry entry = resets.get(i);
@@ -311,12 +459,10 @@ public class HTTP2Flusher extends IteratingCallback
 
     private void abort(Throwable x)
     {
-        Queue<Entry> queued;
-        synchronized (this)
-        {
-            queued = new ArrayDeque<>(frames);
-            frames.clear();
-        }
+        drain();
+        Queue<Entry> queued = new ArrayDeque<>(frames);
+        frames.clear();
+        queueSize = 0;
 
         if (LOG.isDebugEnabled())
             LOG.debug("Aborting, queued={}", queued.size());
@@ -329,7 +475,41 @@ public class HTTP2Flusher extends IteratingCallback
 
     private void closed(Entry entry, Throwable failure)
     {
-        entry.failed(failure);
+        while (entry != null)
+        {
+            // Read the next entry first, as failing may queue it again.
+            Entry next = entry.next;
+            entry.next = null;
+            entry.failed(failure);
+            entry = next;
+        }
+    }
+
+    @Override
+    public String dump()
+    {
+        return ContainerLifeCycle.dump(this);
+    }
+
+    @Override
+    public void dump(Appendable out, String indent) throws IOException
+    {
+        // The frame queue is owned by the flusher, take a best effort snapshot.
+        List<Entry> queued = new ArrayList<>();
+        for (Object entry : frames.toArray())
+        {
+            if (entry != null)
+                queued.add((Entry)entry);
+        }
+        out.append(toString()).append(System.lineSeparator());
+        ContainerLifeCycle.dump(out, indent, Collections.singletonList(session.getPriorityTree()), queued);
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s[queueSize=%d,contentions=%d,batches=%d,drained=%d,maxBatch=%d]",
+                super.toString(), getQueueSize(), getContentions(), getBatches(), getDrained(), getMaxBatchSize());
     }
 
     public static abstract class Entry implements Callback
@@ -337,6 +517,8 @@ public class HTTP2Flusher extends IteratingCallback
         protected final Frame frame;
         protected final IStream stream;
         protected final Callback callback;
+        private int quota;
+        private Entry next;
 
         protected Entry(Frame frame, IStream stream, Callback callback)
         {
@@ -350,6 +532,15 @@ public class HTTP2Flusher extends IteratingCallback
             return 0;
         }
 
+        /**
+         * @return the flow controlled bytes that this entry
+         * has been granted to write in the current write
+         */
+        public int getDataQuota()
+        {
+            return quota;
+        }
+
         public Throwable generate(ByteBufferPool.Lease lease)
         {
             return null;
@@ -397,6 +588,7 @@ public class HTTP2Flusher extends IteratingCallback
     {
         private final IStream stream;
         private final WindowUpdateFrame frame;
+        private WindowEntry next;
 
         public WindowEntry(IStream stream, WindowUpdateFrame frame)
         {
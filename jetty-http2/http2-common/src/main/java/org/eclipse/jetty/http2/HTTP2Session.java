@@ -22,6 +22,7 @@ import java.io.IOException;
 import java.nio.channels.ClosedChannelException;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
@@ -54,11 +55,13 @@ import org.eclipse.jetty.util.Atomics;
 import org.eclipse.jetty.util.Callback;
 import org.eclipse.jetty.util.CountingCallback;
 import org.eclipse.jetty.util.Promise;
+import org.eclipse.jetty.util.component.ContainerLifeCycle;
+import org.eclipse.jetty.util.component.Dumpable;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
 import org.eclipse.jetty.util.thread.Scheduler;
 
-public abstract class HTTP2Session implements ISession, Parser.Listener
+public abstract class HTTP2Session implements ISession, Parser.Listener, Dumpable
 {
     private static final Logger LOG = Log.getLogger(HTTP2Session.class);
 
@@ -76,6 +79,7 @@ public abstract class HTTP2Session implements ISession, Parser.Listener
     private final Listener listener;
     private final FlowControlStrategy flowControl;
     private final HTTP2Flusher flusher;
+    private final PriorityTree priorities = new PriorityTree();
     private int maxLocalStreams;
     private int maxRemoteStreams;
     private long streamIdleTimeout;
@@ -103,6 +107,16 @@ public abstract class HTTP2Session implements ISession, Parser.Listener
         return flowControl;
     }
 
+    public PriorityTree getPriorityTree()
+    {
+        return priorities;
+    }
+
+    public HTTP2Flusher getFlusher()
+    {
+        return flusher;
+    }
+
     public int getMaxLocalStreams()
     {
         return maxLocalStreams;
@@ -199,6 +213,20 @@ public abstract class HTTP2Session implements ISession, Parser.Listener
     @Override
     public void onPriority(PriorityFrame frame)
     {
+        if (LOG.isDebugEnabled())
+            LOG.debug("Received {}", frame);
+
+        // The frame stream id is the stream depended upon,
+        // the dependent stream id is the stream prioritized.
+        int streamId = frame.getDependentStreamId();
+        if (streamId == frame.getStreamId())
+        {
+            // SPEC: a stream cannot depend on itself.
+            reset(new ResetFrame(streamId, ErrorCode.PROTOCOL_ERROR.code), Callback.Adapter.INSTANCE);
+            return;
+        }
+        // The weight is sent as a value between 0 and 255.
+        priorities.prioritize(streamId, frame.getStreamId(), frame.getWeight() + 1, frame.isExclusive());
     }
 
     @Override
@@ -307,6 +335,8 @@ public abstract class HTTP2Session implements ISession, Parser.Listener
             LOG.debug("Received {}", frame);
         if (frame.isReply())
         {
+            if (flowControl instanceof FlowControlStrategy.PingListener && ((FlowControlStrategy.PingListener)flowControl).onPingReply(this, frame))
+                return;
             notifyPing(this, frame);
         }
         else
@@ -443,6 +473,8 @@ public abstract class HTTP2Session implements ISession, Parser.Listener
             final IStream pushStream = createLocalStream(streamId, promise);
             if (pushStream == null)
                 return;
+            // SPEC: pushed streams initially depend on their associated stream.
+            priorities.prioritize(streamId, stream.getId(), PriorityTree.DEFAULT_WEIGHT, false);
             pushStream.setListener(listener);
 
             ControlEntry entry = new ControlEntry(frame, pushStream, new PromiseCallback<>(promise, pushStream));
@@ -599,6 +631,7 @@ public abstract class HTTP2Session implements ISession, Parser.Listener
         {
             stream.setIdleTimeout(getStreamIdleTimeout());
             flowControl.onStreamCreated(stream, true);
+            priorities.open(streamId);
             if (LOG.isDebugEnabled())
                 LOG.debug("Created local {}", stream);
             return stream;
@@ -634,6 +667,7 @@ public abstract class HTTP2Session implements ISession, Parser.Listener
             updateLastStreamId(streamId);
             stream.setIdleTimeout(getStreamIdleTimeout());
             flowControl.onStreamCreated(stream, false);
+            priorities.open(streamId);
             if (LOG.isDebugEnabled())
                 LOG.debug("Created remote {}", stream);
             return stream;
@@ -678,6 +712,7 @@ public abstract class HTTP2Session implements ISession, Parser.Listener
                 remoteStreamCount.decrementAndGet();
 
             flowControl.onStreamDestroyed(stream, local);
+            priorities.remove(stream.getId());
 
             if (LOG.isDebugEnabled())
                 LOG.debug("Removed {}", stream);
@@ -975,6 +1010,19 @@ public abstract class HTTP2Session implements ISession, Parser.Listener
         }
     }
 
+    @Override
+    public String dump()
+    {
+        return ContainerLifeCycle.dump(this);
+    }
+
+    @Override
+    public void dump(Appendable out, String indent) throws IOException
+    {
+        out.append(toString()).append(System.lineSeparator());
+        ContainerLifeCycle.dump(out, indent, Arrays.asList(flowControl, flusher));
+    }
+
     @Override
     public String toString()
     {
@@ -1127,7 +1175,8 @@ public abstract class HTTP2Session implements ISession, Parser.Listener
                 if (streamSendWindow < 0)
                     throw new IllegalStateException();
 
-                int window = Math.min(streamSendWindow, sessionSendWindow);
+                // The flusher grants the share of the windows this stream may use now.
+                int window = Math.min(Math.min(streamSendWindow, sessionSendWindow), getDataQuota());
 
                 int length = this.length = Math.min(flowControlLength, window);
                 if (LOG.isDebugEnabled())
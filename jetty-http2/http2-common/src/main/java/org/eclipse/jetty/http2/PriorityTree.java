@@ -0,0 +1,408 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.http2;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jetty.util.component.ContainerLifeCycle;
+import org.eclipse.jetty.util.component.Dumpable;
+
+/**
+ * <p>The stream dependency tree of a session, see RFC 7540 section 5.3.</p>
+ * <p>Streams are nodes of a tree rooted at the connection (stream 0); a
+ * stream depends on its parent and has a weight between 1 and 256.
+ * The tree is updated from PRIORITY frames and from the priority
+ * information of HEADERS frames, and removes the nodes of closed streams
+ * redistributing their weight to their dependents.</p>
+ * <p>The tree also schedules the streams that have data ready to send,
+ * using hierarchical weighted fair queuing: starting from the root, a
+ * ready stream is always served before its dependents, otherwise the
+ * child subtree with the smallest virtual pass is descended into.
+ * Every byte sent advances the pass of each node on the path from the
+ * stream to the root in inverse proportion to the node weight, so that
+ * siblings share the bandwidth in proportion to their weights.</p>
+ * <p>The priority of streams that are not open, such as idle streams
+ * prioritized by PRIORITY frames, is retained for at most {@code maxNodes}
+ * streams; beyond that, the oldest of them are evicted.</p>
+ */
+public class PriorityTree implements Dumpable
+{
+    public static final int DEFAULT_WEIGHT = 16;
+    public static final int MAX_WEIGHT = 256;
+
+    // Insertion ordered, so that the oldest nodes are evicted first.
+    private final Map<Integer, Node> nodes = new LinkedHashMap<>();
+    private final Node root = new Node(0, null, DEFAULT_WEIGHT);
+    private final int maxNodes;
+
+    public PriorityTree()
+    {
+        this(1024);
+    }
+
+    /**
+     * @param maxNodes the max number of streams whose priority is retained;
+     * open streams are always retained, even beyond this number
+     */
+    public PriorityTree(int maxNodes)
+    {
+        this.maxNodes = maxNodes;
+        root.open = true;
+        nodes.put(0, root);
+    }
+
+    /**
+     * <p>Marks a stream as open, so that its priority is retained until it is
+     * {@link #remove(int) removed}.</p>
+     *
+     * @param streamId the stream id
+     */
+    public synchronized void open(int streamId)
+    {
+        Node node = nodes.get(streamId);
+        if (node == null)
+            node = newNode(streamId);
+        node.open = true;
+    }
+
+    /**
+     * <p>Updates the priority of a stream.</p>
+     *
+     * @param streamId the stream to prioritize
+     * @param parentId the stream it depends on, or 0 for the connection
+     * @param weight the weight, between 1 and 256
+     * @param exclusive whether the stream becomes the only dependent of its parent
+     */
+    public synchronized void prioritize(int streamId, int parentId, int weight, boolean exclusive)
+    {
+        if (streamId == 0 || streamId == parentId)
+            throw new IllegalArgumentException("Invalid dependency " + streamId + "->" + parentId);
+
+        Node node = nodes.get(streamId);
+        if (node == null)
+            node = newNode(streamId);
+        Node parent = nodes.get(parentId);
+        if (parent == null)
+        {
+            // SPEC: a dependency on a stream not in the tree, because it is
+            // unknown or has been evicted, gets the default priority.
+            parent = root;
+            weight = DEFAULT_WEIGHT;
+            exclusive = false;
+        }
+
+        // SPEC: if the new parent depends on the stream, it is
+        // first moved to depend on the former parent of the stream.
+        if (isAncestor(node, parent))
+        {
+            Node former = node.parent;
+            detach(parent);
+            attach(parent, former);
+        }
+
+        detach(node);
+        if (exclusive)
+        {
+            for (Node child : new ArrayList<>(parent.children))
+            {
+                detach(child);
+                attach(child, node);
+            }
+        }
+        node.weight = Math.max(1, Math.min(MAX_WEIGHT, weight));
+        attach(node, parent);
+    }
+
+    /**
+     * <p>Removes a closed stream from the tree; its dependents are moved
+     * to depend on its parent, sharing the weight of the removed stream.</p>
+     *
+     * @param streamId the stream to remove
+     */
+    public synchronized void remove(int streamId)
+    {
+        Node node = streamId == 0 ? null : nodes.remove(streamId);
+        if (node != null)
+            remove(node);
+    }
+
+    private void remove(Node node)
+    {
+        if (node.ready)
+            deactivate(node);
+        Node parent = node.parent;
+        detach(node);
+
+        int total = 0;
+        for (Node child : node.children)
+            total += child.weight;
+        for (Node child : new ArrayList<>(node.children))
+        {
+            detach(child);
+            child.weight = Math.max(1, child.weight * node.weight / total);
+            attach(child, parent);
+        }
+    }
+
+    /**
+     * @param streamId the stream id
+     * @return the id of the stream the given stream depends on,
+     * 0 if it depends on the connection, or -1 if the stream is not in the tree
+     */
+    public synchronized int getParent(int streamId)
+    {
+        Node node = nodes.get(streamId);
+        return node == null || node.parent == null ? -1 : node.parent.id;
+    }
+
+    /**
+     * @param streamId the stream id
+     * @return the weight of the given stream
+     */
+    public synchronized int getWeight(int streamId)
+    {
+        Node node = nodes.get(streamId);
+        return node == null ? DEFAULT_WEIGHT : node.weight;
+    }
+
+    public synchronized int getSize()
+    {
+        return nodes.size() - 1;
+    }
+
+    /**
+     * <p>Marks a stream as having data ready to send.</p>
+     *
+     * @param streamId the stream id
+     * @see #next()
+     */
+    public synchronized void activate(int streamId)
+    {
+        Node node = nodes.get(streamId);
+        if (node == null)
+            node = newNode(streamId);
+        if (node.ready)
+            return;
+        node.ready = true;
+        for (Node n = node; n != null; n = n.parent)
+        {
+            if (n.active++ == 0 && n.parent != null)
+            {
+                // A subtree becoming active cannot claim the bandwidth it did not use while idle.
+                n.pass = Math.max(n.pass, n.parent.time);
+            }
+        }
+    }
+
+    /**
+     * <p>Marks a stream as having no data ready to send.</p>
+     *
+     * @param streamId the stream id
+     */
+    public synchronized void deactivate(int streamId)
+    {
+        Node node = nodes.get(streamId);
+        if (node != null && node.ready)
+            deactivate(node);
+    }
+
+    /**
+     * @return the id of the ready stream that should send next, or 0 if no stream is ready
+     */
+    public synchronized int next()
+    {
+        Node node = root;
+        while (node.active > 0)
+        {
+            if (node.ready)
+                return node.id;
+            Node next = null;
+            for (Node child : node.children)
+            {
+                if (child.active > 0 && (next == null || child.pass < next.pass))
+                    next = child;
+            }
+            node = next;
+        }
+        return 0;
+    }
+
+    /**
+     * <p>Accounts the bytes sent by a stream.</p>
+     *
+     * @param streamId the stream id
+     * @param bytes the number of bytes sent
+     */
+    public synchronized void charge(int streamId, int bytes)
+    {
+        Node node = nodes.get(streamId);
+        if (node == null)
+            return;
+        for (Node n = node; n.parent != null; n = n.parent)
+        {
+            n.parent.time = Math.max(n.parent.time, n.pass);
+            n.pass += (long)bytes * MAX_WEIGHT / n.weight;
+        }
+    }
+
+    private Node newNode(int streamId)
+    {
+        if (nodes.size() > maxNodes)
+            evict();
+        Node node = new Node(streamId, root, DEFAULT_WEIGHT);
+        node.pass = root.time;
+        root.children.add(node);
+        nodes.put(streamId, node);
+        return node;
+    }
+
+    private void evict()
+    {
+        // Evict the oldest node of a stream that is not open, if any;
+        // otherwise open streams exceed maxNodes, as they must be scheduled.
+        for (Iterator<Node> iterator = nodes.values().iterator(); iterator.hasNext();)
+        {
+            Node node = iterator.next();
+            if (!node.open && !node.ready)
+            {
+                iterator.remove();
+                remove(node);
+                return;
+            }
+        }
+    }
+
+    private boolean isAncestor(Node node, Node of)
+    {
+        for (Node n = of.parent; n != null; n = n.parent)
+        {
+            if (n == node)
+                return true;
+        }
+        return false;
+    }
+
+    private void deactivate(Node node)
+    {
+        node.ready = false;
+        for (Node n = node; n != null; n = n.parent)
+            --n.active;
+    }
+
+    private void detach(Node node)
+    {
+        for (Node n = node.parent; n != null; n = n.parent)
+            n.active -= node.active;
+        node.parent.children.remove(node);
+        node.parent = null;
+    }
+
+    private void attach(Node node, Node parent)
+    {
+        node.parent = parent;
+        parent.children.add(node);
+        node.pass = Math.max(node.pass, parent.time);
+        for (Node n = parent; n != null; n = n.parent)
+            n.active += node.active;
+    }
+
+    @Override
+    public String dump()
+    {
+        return ContainerLifeCycle.dump(this);
+    }
+
+    @Override
+    public void dump(Appendable out, String indent) throws IOException
+    {
+        synchronized (this)
+        {
+            root.dump(out, indent);
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        synchronized (this)
+        {
+            return String.format("%s@%x{streams=%d,active=%d}", getClass().getSimpleName(), hashCode(), nodes.size() - 1, root.active);
+        }
+    }
+
+    private static class Node implements Dumpable
+    {
+        private static final Comparator<Node> SCHEDULE_ORDER = new Comparator<Node>()
+        {
+            @Override
+            public int compare(Node n1, Node n2)
+            {
+                if (n1.active > 0 != n2.active > 0)
+                    return n1.active > 0 ? -1 : 1;
+                return Long.compare(n1.pass, n2.pass);
+            }
+        };
+
+        private final int id;
+        private final List<Node> children = new ArrayList<>();
+        private Node parent;
+        private int weight;
+        private long pass;
+        private long time;
+        private int active;
+        private boolean ready;
+        private boolean open;
+
+        private Node(int id, Node parent, int weight)
+        {
+            this.id = id;
+            this.parent = parent;
+            this.weight = weight;
+        }
+
+        @Override
+        public String dump()
+        {
+            return ContainerLifeCycle.dump(this);
+        }
+
+        @Override
+        public void dump(Appendable out, String indent) throws IOException
+        {
+            out.append(toString()).append(System.lineSeparator());
+            // Children are dumped in the order in which they would be served.
+            List<Node> ordered = new ArrayList<>(children);
+            Collections.sort(ordered, SCHEDULE_ORDER);
+            ContainerLifeCycle.dump(out, indent, ordered);
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("#%d{weight=%d,pass=%d,active=%d%s%s}", id, weight, pass, active, open ? "" : ",idle", ready ? ",ready" : "");
+        }
+    }
+}
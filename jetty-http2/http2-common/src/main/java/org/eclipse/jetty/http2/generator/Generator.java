@@ -22,6 +22,7 @@ import org.eclipse.jetty.http2.frames.DataFrame;
 import org.eclipse.jetty.http2.frames.Frame;
 import org.eclipse.jetty.http2.frames.FrameType;
 import org.eclipse.jetty.http2.hpack.HpackEncoder;
+import org.eclipse.jetty.http2.hpack.HpackIndexingPolicy;
 import org.eclipse.jetty.io.ByteBufferPool;
 
 public class Generator
@@ -70,6 +71,11 @@ public class Generator
         hpackEncoder.setRemoteMaxDynamicTableSize(headerTableSize);
     }
 
+    public void setIndexingPolicy(HpackIndexingPolicy indexingPolicy)
+    {
+        hpackEncoder.setIndexingPolicy(indexingPolicy);
+    }
+
     public void setMaxFrameSize(int maxFrameSize)
     {
         headerGenerator.setMaxFrameSize(maxFrameSize);
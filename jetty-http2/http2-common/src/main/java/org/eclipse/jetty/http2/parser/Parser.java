@@ -49,6 +49,7 @@ public class Parser
     private final Listener listener;
     private final HeaderParser headerParser;
     private final BodyParser[] bodyParsers;
+    private final HpackDecoder hpackDecoder;
     private State state = State.HEADER;
 
     public Parser(ByteBufferPool byteBufferPool, Listener listener, int maxDynamicTableSize, int maxHeaderSize)
@@ -57,7 +58,8 @@ public class Parser
         this.headerParser = new HeaderParser();
         this.bodyParsers = new BodyParser[FrameType.values().length];
 
-        HeaderBlockParser headerBlockParser = new HeaderBlockParser(byteBufferPool, new HpackDecoder(maxDynamicTableSize, maxHeaderSize));
+        this.hpackDecoder = new HpackDecoder(maxDynamicTableSize, maxHeaderSize);
+        HeaderBlockParser headerBlockParser = new HeaderBlockParser(byteBufferPool, hpackDecoder);
 
         bodyParsers[FrameType.DATA.getType()] = new DataBodyParser(headerParser, listener);
         bodyParsers[FrameType.HEADERS.getType()] = new HeadersBodyParser(headerParser, listener, headerBlockParser);
@@ -71,6 +73,11 @@ public class Parser
         bodyParsers[FrameType.CONTINUATION.getType()] = new ContinuationBodyParser(headerParser, listener, headerBlockParser);
     }
 
+    public HpackDecoder getHpackDecoder()
+    {
+        return hpackDecoder;
+    }
+
     private void reset()
     {
         headerParser.reset();
@@ -0,0 +1,220 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.http2;
+
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThan;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jetty.http.HostPortHttpField;
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpScheme;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.http.MetaData;
+import org.eclipse.jetty.http2.api.Session;
+import org.eclipse.jetty.http2.api.Stream;
+import org.eclipse.jetty.http2.frames.HeadersFrame;
+import org.eclipse.jetty.http2.frames.PingFrame;
+import org.eclipse.jetty.http2.frames.PushPromiseFrame;
+import org.eclipse.jetty.http2.frames.WindowUpdateFrame;
+import org.eclipse.jetty.http2.generator.Generator;
+import org.eclipse.jetty.http2.parser.Parser;
+import org.eclipse.jetty.io.ByteArrayEndPoint;
+import org.eclipse.jetty.io.MappedByteBufferPool;
+import org.eclipse.jetty.util.FuturePromise;
+import org.eclipse.jetty.util.thread.ScheduledExecutorScheduler;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BandwidthDelayFlowControlStrategyTest
+{
+    private final MappedByteBufferPool byteBufferPool = new MappedByteBufferPool();
+    private final List<PingFrame> pings = new ArrayList<>();
+    private final List<WindowUpdateFrame> windowUpdates = new ArrayList<>();
+    private final AtomicInteger applicationPings = new AtomicInteger();
+    private ScheduledExecutorScheduler scheduler;
+    private ByteArrayEndPoint endPoint;
+    private BandwidthDelayFlowControlStrategy flowControl;
+    private HTTP2Session session;
+    private IStream stream;
+
+    @Before
+    public void prepare() throws Exception
+    {
+        scheduler = new ScheduledExecutorScheduler();
+        scheduler.start();
+        endPoint = new ByteArrayEndPoint();
+        endPoint.setGrowOutput(true);
+        flowControl = new BandwidthDelayFlowControlStrategy();
+        flowControl.setProbeInterval(0);
+        Session.Listener listener = new Session.Listener.Adapter()
+        {
+            @Override
+            public void onPing(Session session, PingFrame frame)
+            {
+                applicationPings.incrementAndGet();
+            }
+        };
+        session = new HTTP2Session(scheduler, endPoint, new Generator(byteBufferPool), listener, flowControl, 1)
+        {
+            @Override
+            public void onHeaders(HeadersFrame frame)
+            {
+            }
+
+            @Override
+            public void onPushPromise(PushPromiseFrame frame)
+            {
+            }
+        };
+
+        MetaData.Request request = new MetaData.Request("POST", HttpScheme.HTTP, new HostPortHttpField("localhost"), "/", HttpVersion.HTTP_2, new HttpFields());
+        FuturePromise<Stream> promise = new FuturePromise<>();
+        session.newStream(new HeadersFrame(0, request, null, false), promise, new Stream.Listener.Adapter());
+        stream = (IStream)promise.get(5, TimeUnit.SECONDS);
+        endPoint.takeOutput();
+    }
+
+    @After
+    public void dispose() throws Exception
+    {
+        scheduler.stop();
+    }
+
+    @Test
+    public void testWindowGrowsWhenSenderIsWindowLimited() throws Exception
+    {
+        // The sender fills most of the window within a round trip.
+        receive(1000);
+        PingFrame probe = takePing();
+        receive(59000);
+        Thread.sleep(20);
+        session.onPing(new PingFrame(probe.getPayload(), true));
+
+        Assert.assertEquals(0, applicationPings.get());
+        Assert.assertThat(flowControl.getRoundTripTime(), greaterThanOrEqualTo(20L));
+        Assert.assertEquals(2 * 59000, flowControl.getSessionRecvWindowTarget());
+        Assert.assertEquals(2 * 59000, flowControl.getStreamRecvWindowTarget());
+
+        // The grown window is advertised when data is consumed.
+        consume(40000);
+        takeOutput();
+        Assert.assertEquals(2, windowUpdates.size());
+        for (WindowUpdateFrame frame : windowUpdates)
+            Assert.assertEquals(40000 + 2 * 59000 - FlowControlStrategy.DEFAULT_WINDOW_SIZE, frame.getWindowDelta());
+        Assert.assertEquals(2 * 59000 - 20000, session.getRecvWindow());
+        Assert.assertEquals(2 * 59000 - 20000, stream.updateRecvWindow(0));
+    }
+
+    @Test
+    public void testWindowShrinksWhenLargerThanNeeded() throws Exception
+    {
+        testWindowGrowsWhenSenderIsWindowLimited();
+        consume(20000);
+        windowUpdates.clear();
+
+        // Little data is received within a round trip.
+        receive(1000);
+        PingFrame probe = takePing();
+        session.onPing(new PingFrame(probe.getPayload(), true));
+        int target = flowControl.getSessionRecvWindowTarget();
+        Assert.assertThat(target, lessThan(2 * 59000));
+        Assert.assertThat(target, greaterThanOrEqualTo(FlowControlStrategy.DEFAULT_WINDOW_SIZE));
+
+        // Window updates are withheld until the window is down to the target.
+        consume(1000);
+        receive(100000);
+        consume(100000);
+        takeOutput();
+        int delta = 0;
+        for (WindowUpdateFrame frame : windowUpdates)
+        {
+            if (frame.getStreamId() == 0)
+                delta += frame.getWindowDelta();
+        }
+        Assert.assertThat(delta, lessThan(101000));
+        Assert.assertEquals(target, session.getRecvWindow());
+    }
+
+    @Test
+    public void testWindowIsCapped() throws Exception
+    {
+        flowControl.setMaxSessionRecvWindow(80000);
+        flowControl.setMaxStreamRecvWindow(70000);
+        receive(1000);
+        PingFrame probe = takePing();
+        receive(59000);
+        session.onPing(new PingFrame(probe.getPayload(), true));
+
+        Assert.assertEquals(80000, flowControl.getSessionRecvWindowTarget());
+        Assert.assertEquals(70000, flowControl.getStreamRecvWindowTarget());
+    }
+
+    @Test
+    public void testApplicationPingIsNotConsumed() throws Exception
+    {
+        receive(1000);
+        takePing();
+        session.onPing(new PingFrame(new byte[8], true));
+        Assert.assertEquals(1, applicationPings.get());
+        Assert.assertEquals(-1, flowControl.getRoundTripTime());
+    }
+
+    private void receive(int length)
+    {
+        flowControl.onDataReceived(session, stream, length);
+    }
+
+    private void consume(int length)
+    {
+        flowControl.onDataConsumed(session, stream, length);
+    }
+
+    private PingFrame takePing()
+    {
+        takeOutput();
+        Assert.assertEquals(1, pings.size());
+        return pings.remove(0);
+    }
+
+    private void takeOutput()
+    {
+        Parser parser = new Parser(byteBufferPool, new Parser.Listener.Adapter()
+        {
+            @Override
+            public void onPing(PingFrame frame)
+            {
+                pings.add(frame);
+            }
+
+            @Override
+            public void onWindowUpdate(WindowUpdateFrame frame)
+            {
+                windowUpdates.add(frame);
+            }
+        }, 4096, 8192);
+        parser.parse(endPoint.takeOutput());
+    }
+}
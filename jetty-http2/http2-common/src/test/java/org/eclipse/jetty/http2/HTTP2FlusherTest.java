@@ -0,0 +1,185 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.http2;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.http.HostPortHttpField;
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpScheme;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.http.MetaData;
+import org.eclipse.jetty.http2.api.Session;
+import org.eclipse.jetty.http2.api.Stream;
+import org.eclipse.jetty.http2.frames.DataFrame;
+import org.eclipse.jetty.http2.frames.HeadersFrame;
+import org.eclipse.jetty.http2.frames.PushPromiseFrame;
+import org.eclipse.jetty.http2.generator.Generator;
+import org.eclipse.jetty.http2.parser.Parser;
+import org.eclipse.jetty.io.ByteArrayEndPoint;
+import org.eclipse.jetty.io.MappedByteBufferPool;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.FuturePromise;
+import org.eclipse.jetty.util.thread.ScheduledExecutorScheduler;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class HTTP2FlusherTest
+{
+    private final MappedByteBufferPool byteBufferPool = new MappedByteBufferPool();
+    private ScheduledExecutorScheduler scheduler;
+    private ByteArrayEndPoint endPoint;
+    private HTTP2Session session;
+
+    @Before
+    public void prepare() throws Exception
+    {
+        scheduler = new ScheduledExecutorScheduler();
+        scheduler.start();
+        endPoint = new ByteArrayEndPoint();
+        endPoint.setGrowOutput(true);
+        session = new HTTP2Session(scheduler, endPoint, new Generator(byteBufferPool), new Session.Listener.Adapter(), new SimpleFlowControlStrategy(), 1)
+        {
+            @Override
+            public void onHeaders(HeadersFrame frame)
+            {
+            }
+
+            @Override
+            public void onPushPromise(PushPromiseFrame frame)
+            {
+            }
+        };
+    }
+
+    @After
+    public void dispose() throws Exception
+    {
+        scheduler.stop();
+    }
+
+    @Test
+    public void testConcurrentWritersKeepStreamOrder() throws Exception
+    {
+        final int writers = 8;
+        final int frames = 500;
+        final CyclicBarrier barrier = new CyclicBarrier(writers);
+        final CountDownLatch latch = new CountDownLatch(writers * frames);
+        final List<Stream> streams = new ArrayList<>();
+        for (int i = 0; i < writers; ++i)
+            streams.add(newStream());
+
+        List<Thread> threads = new ArrayList<>();
+        for (final Stream stream : streams)
+        {
+            Thread thread = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        barrier.await();
+                        for (int i = 0; i < frames; ++i)
+                        {
+                            ByteBuffer data = ByteBuffer.allocate(4);
+                            data.putInt(0, i);
+                            stream.data(new DataFrame(stream.getId(), data, i == frames - 1), new Callback.Adapter()
+                            {
+                                @Override
+                                public void succeeded()
+                                {
+                                    latch.countDown();
+                                }
+                            });
+                        }
+                    }
+                    catch (Exception x)
+                    {
+                        x.printStackTrace();
+                    }
+                }
+            };
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+
+        final Map<Integer, Integer> expected = new HashMap<>();
+        Parser parser = new Parser(byteBufferPool, new Parser.Listener.Adapter()
+        {
+            @Override
+            public void onData(DataFrame frame)
+            {
+                Integer next = expected.get(frame.getStreamId());
+                int sequence = frame.getData().getInt(frame.getData().position());
+                Assert.assertEquals(next == null ? 0 : next, sequence);
+                expected.put(frame.getStreamId(), sequence + 1);
+            }
+        }, 4096, 8192);
+        parser.parse(endPoint.takeOutput());
+
+        Assert.assertEquals(writers, expected.size());
+        for (Integer count : expected.values())
+            Assert.assertEquals(frames, (int)count);
+
+        HTTP2Flusher flusher = session.getFlusher();
+        Assert.assertEquals(0, flusher.getQueueSize());
+        Assert.assertEquals(writers * (frames + 1), flusher.getDrained());
+        Assert.assertTrue(flusher.getBatches() <= flusher.getDrained());
+        Assert.assertTrue(flusher.getMaxBatchSize() >= 1);
+    }
+
+    @Test
+    public void testQueueAfterCloseFails() throws Exception
+    {
+        Stream stream = newStream();
+        session.getFlusher().close();
+
+        final CountDownLatch latch = new CountDownLatch(1);
+        stream.data(new DataFrame(stream.getId(), ByteBuffer.allocate(4), true), new Callback.Adapter()
+        {
+            @Override
+            public void failed(Throwable x)
+            {
+                latch.countDown();
+            }
+        });
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+    }
+
+    private Stream newStream() throws Exception
+    {
+        MetaData.Request request = new MetaData.Request("GET", HttpScheme.HTTP, new HostPortHttpField("localhost"), "/", HttpVersion.HTTP_2, new HttpFields());
+        FuturePromise<Stream> promise = new FuturePromise<>();
+        session.newStream(new HeadersFrame(0, request, null, false), promise, new Stream.Listener.Adapter());
+        return promise.get(5, TimeUnit.SECONDS);
+    }
+}
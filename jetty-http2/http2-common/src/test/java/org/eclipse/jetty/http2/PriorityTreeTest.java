@@ -0,0 +1,302 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.http2;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jetty.http.HostPortHttpField;
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpScheme;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.http.MetaData;
+import org.eclipse.jetty.http2.api.Session;
+import org.eclipse.jetty.http2.api.Stream;
+import org.eclipse.jetty.http2.frames.DataFrame;
+import org.eclipse.jetty.http2.frames.HeadersFrame;
+import org.eclipse.jetty.http2.frames.PriorityFrame;
+import org.eclipse.jetty.http2.frames.PushPromiseFrame;
+import org.eclipse.jetty.http2.frames.WindowUpdateFrame;
+import org.eclipse.jetty.http2.generator.Generator;
+import org.eclipse.jetty.http2.parser.Parser;
+import org.eclipse.jetty.io.ByteArrayEndPoint;
+import org.eclipse.jetty.io.MappedByteBufferPool;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.FuturePromise;
+import org.eclipse.jetty.util.thread.ScheduledExecutorScheduler;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PriorityTreeTest
+{
+    @Test
+    public void testDefaultPriority()
+    {
+        PriorityTree tree = new PriorityTree();
+        tree.activate(1);
+        Assert.assertEquals(0, tree.getParent(1));
+        Assert.assertEquals(PriorityTree.DEFAULT_WEIGHT, tree.getWeight(1));
+        Assert.assertEquals(1, tree.next());
+        tree.deactivate(1);
+        Assert.assertEquals(0, tree.next());
+    }
+
+    @Test
+    public void testExclusiveDependency()
+    {
+        PriorityTree tree = new PriorityTree();
+        tree.prioritize(1, 0, 16, false);
+        tree.prioritize(3, 0, 16, false);
+        tree.prioritize(5, 0, 32, true);
+
+        Assert.assertEquals(0, tree.getParent(5));
+        Assert.assertEquals(5, tree.getParent(1));
+        Assert.assertEquals(5, tree.getParent(3));
+    }
+
+    @Test
+    public void testDependencyOnDescendant()
+    {
+        PriorityTree tree = new PriorityTree();
+        tree.open(1);
+        tree.open(3);
+        tree.open(5);
+        tree.prioritize(3, 1, 16, false);
+        tree.prioritize(5, 3, 16, false);
+
+        // Stream 1 now depends on its own descendant 5,
+        // which is first moved to depend on the former parent of 1.
+        tree.prioritize(1, 5, 16, false);
+
+        Assert.assertEquals(0, tree.getParent(5));
+        Assert.assertEquals(5, tree.getParent(1));
+        Assert.assertEquals(1, tree.getParent(3));
+    }
+
+    @Test
+    public void testRemoveRedistributesWeight()
+    {
+        PriorityTree tree = new PriorityTree();
+        tree.prioritize(1, 0, 64, false);
+        tree.prioritize(3, 1, 16, false);
+        tree.prioritize(5, 1, 48, false);
+
+        tree.remove(1);
+
+        Assert.assertEquals(-1, tree.getParent(1));
+        Assert.assertEquals(0, tree.getParent(3));
+        Assert.assertEquals(0, tree.getParent(5));
+        Assert.assertEquals(16, tree.getWeight(3));
+        Assert.assertEquals(48, tree.getWeight(5));
+    }
+
+    @Test
+    public void testParentServedBeforeDependents()
+    {
+        PriorityTree tree = new PriorityTree();
+        tree.open(1);
+        tree.prioritize(3, 1, 256, false);
+        tree.activate(1);
+        tree.activate(3);
+
+        Assert.assertEquals(1, tree.next());
+        tree.charge(1, 1024);
+        Assert.assertEquals(1, tree.next());
+
+        tree.deactivate(1);
+        Assert.assertEquals(3, tree.next());
+    }
+
+    @Test
+    public void testWeightedShares()
+    {
+        PriorityTree tree = new PriorityTree();
+        tree.prioritize(1, 0, 1, false);
+        tree.prioritize(3, 0, 3, false);
+        tree.activate(1);
+        tree.activate(3);
+
+        int[] sent = new int[4];
+        for (int i = 0; i < 400; ++i)
+        {
+            int streamId = tree.next();
+            sent[streamId] += 1024;
+            tree.charge(streamId, 1024);
+        }
+
+        Assert.assertEquals(3.0, (double)sent[3] / sent[1], 0.1);
+    }
+
+    @Test
+    public void testDependencyOnUnknownStream()
+    {
+        PriorityTree tree = new PriorityTree();
+        tree.prioritize(3, 1, 256, true);
+
+        // SPEC: the dependency on a stream not in the tree gets the default priority.
+        Assert.assertEquals(-1, tree.getParent(1));
+        Assert.assertEquals(0, tree.getParent(3));
+        Assert.assertEquals(PriorityTree.DEFAULT_WEIGHT, tree.getWeight(3));
+    }
+
+    @Test
+    public void testIdleStreamsAreEvictedOldestFirst()
+    {
+        PriorityTree tree = new PriorityTree(4);
+        tree.open(1);
+        tree.prioritize(3, 0, 32, false);
+        for (int streamId = 5; streamId <= 15; streamId += 2)
+            tree.prioritize(streamId, 1, 32, false);
+
+        Assert.assertEquals(4, tree.getSize());
+        // The open stream is retained.
+        Assert.assertEquals(0, tree.getParent(1));
+        // The oldest idle streams are evicted.
+        for (int streamId = 3; streamId <= 9; streamId += 2)
+            Assert.assertEquals(-1, tree.getParent(streamId));
+        for (int streamId = 11; streamId <= 15; streamId += 2)
+            Assert.assertEquals(1, tree.getParent(streamId));
+    }
+
+    @Test
+    public void testSequentialStreamsDependingOnClosedStreamsAreScheduled()
+    {
+        PriorityTree tree = new PriorityTree();
+        int streams = 3 * 1024;
+        int previous = 0;
+        for (int i = 0; i < streams; ++i)
+        {
+            int streamId = 2 * i + 1;
+            tree.open(streamId);
+            // A chain of dependencies on the previous stream, already closed,
+            // that is also reprioritized after its closing.
+            tree.prioritize(streamId, previous, 32, false);
+            if (previous > 0)
+                tree.prioritize(previous, previous - 2 > 0 ? previous - 2 : 0, 32, false);
+
+            tree.activate(streamId);
+            Assert.assertEquals(streamId, tree.next());
+            tree.charge(streamId, 5003);
+            tree.deactivate(streamId);
+            Assert.assertEquals(0, tree.next());
+            tree.remove(streamId);
+
+            Assert.assertThat(tree.getSize(), lessThanOrEqualTo(1024));
+            previous = streamId;
+        }
+    }
+
+    @Test
+    public void testCriticalStreamsFinishFirstUnderContention() throws Exception
+    {
+        ScheduledExecutorScheduler scheduler = new ScheduledExecutorScheduler();
+        scheduler.start();
+        try
+        {
+            ByteArrayEndPoint endPoint = new ByteArrayEndPoint();
+            endPoint.setGrowOutput(true);
+            MappedByteBufferPool byteBufferPool = new MappedByteBufferPool();
+            HTTP2Session session = new HTTP2Session(scheduler, endPoint, new Generator(byteBufferPool), new Session.Listener.Adapter(), new SimpleFlowControlStrategy(), 1)
+            {
+                @Override
+                public void onHeaders(HeadersFrame frame)
+                {
+                }
+
+                @Override
+                public void onPushPromise(PushPromiseFrame frame)
+                {
+                }
+            };
+
+            // A large download and two page critical resources.
+            Stream download = newStream(session);
+            Stream css = newStream(session);
+            Stream js = newStream(session);
+            session.onPriority(new PriorityFrame(0, download.getId(), 0, false));
+            session.onPriority(new PriorityFrame(0, css.getId(), 255, false));
+            session.onPriority(new PriorityFrame(0, js.getId(), 255, false));
+            Assert.assertThat(session.dump(), containsString("#" + css.getId() + "{weight=256"));
+
+            // Queue all the data while the session window is exhausted.
+            int downloadLength = 1024 * 1024;
+            ((IStream)download).updateSendWindow(downloadLength);
+            session.updateSendWindow(-session.getSendWindow());
+            download.data(new DataFrame(download.getId(), ByteBuffer.allocate(downloadLength), true), Callback.Adapter.INSTANCE);
+            css.data(new DataFrame(css.getId(), ByteBuffer.allocate(48 * 1024), true), Callback.Adapter.INSTANCE);
+            js.data(new DataFrame(js.getId(), ByteBuffer.allocate(48 * 1024), true), Callback.Adapter.INSTANCE);
+            Assert.assertThat(session.toString(), containsString("queueSize=3"));
+
+            // Open the session window.
+            session.onWindowUpdate(new WindowUpdateFrame(0, 2 * downloadLength));
+
+            final List<DataFrame> frames = new ArrayList<>();
+            Parser parser = new Parser(byteBufferPool, new Parser.Listener.Adapter()
+            {
+                @Override
+                public void onData(DataFrame frame)
+                {
+                    frames.add(frame);
+                }
+            }, 4096, 8192);
+            parser.parse(endPoint.takeOutput());
+
+            int downloadEnd = lastFrame(frames, download.getId());
+            int cssEnd = lastFrame(frames, css.getId());
+            int jsEnd = lastFrame(frames, js.getId());
+            Assert.assertTrue(frames.get(downloadEnd).isEndStream());
+            Assert.assertTrue(cssEnd < downloadEnd);
+            Assert.assertTrue(jsEnd < downloadEnd);
+            // The download only had a small share while the critical streams were sending.
+            int downloadFrames = 0;
+            for (int i = 0; i < Math.max(cssEnd, jsEnd); ++i)
+            {
+                if (frames.get(i).getStreamId() == download.getId())
+                    ++downloadFrames;
+            }
+            Assert.assertThat(downloadFrames, lessThanOrEqualTo(2));
+        }
+        finally
+        {
+            scheduler.stop();
+        }
+    }
+
+    private Stream newStream(HTTP2Session session) throws Exception
+    {
+        MetaData.Request request = new MetaData.Request("GET", HttpScheme.HTTP, new HostPortHttpField("localhost"), "/", HttpVersion.HTTP_2, new HttpFields());
+        FuturePromise<Stream> promise = new FuturePromise<>();
+        session.newStream(new HeadersFrame(0, request, null, false), promise, new Stream.Listener.Adapter());
+        return promise.get();
+    }
+
+    private int lastFrame(List<DataFrame> frames, int streamId)
+    {
+        for (int i = frames.size(); i-- > 0;)
+        {
+            if (frames.get(i).getStreamId() == streamId)
+                return i;
+        }
+        return -1;
+    }
+}
@@ -31,6 +31,7 @@ import org.eclipse.jetty.http.MetaData;
 import org.eclipse.jetty.http2.generator.HeaderGenerator;
 import org.eclipse.jetty.http2.generator.HeadersGenerator;
 import org.eclipse.jetty.http2.hpack.HpackEncoder;
+import org.eclipse.jetty.http2.hpack.MetaDataBuilder;
 import org.eclipse.jetty.http2.parser.Parser;
 import org.eclipse.jetty.io.ByteBufferPool;
 import org.eclipse.jetty.io.MappedByteBufferPool;
@@ -137,4 +138,54 @@ public class HeadersGenerateParseTest
             Assert.assertTrue(request.getFields().contains(field));
         }
     }
+
+    @Test
+    public void testGenerateParsePooled() throws Exception
+    {
+        HeadersGenerator generator = new HeadersGenerator(new HeaderGenerator(), new HpackEncoder());
+
+        final List<HeadersFrame> frames = new ArrayList<>();
+        Parser parser = new Parser(byteBufferPool, new Parser.Listener.Adapter()
+        {
+            @Override
+            public void onHeaders(HeadersFrame frame)
+            {
+                frames.add(frame);
+            }
+        }, 4096, 8192);
+        parser.getHpackDecoder().setPooled(true);
+
+        HttpFields fields = new HttpFields();
+        fields.put("Accept", "text/html");
+        fields.put("If-None-Match", "\"1234\"");
+        MetaData.Request metaData = new MetaData.Request("GET", HttpScheme.HTTP, new HostPortHttpField("localhost:8080"), "/path", HttpVersion.HTTP_2, fields);
+
+        MetaData.Request previous = null;
+        for (int i = 0; i < 3; ++i)
+        {
+            ByteBufferPool.Lease lease = new ByteBufferPool.Lease(byteBufferPool);
+            generator.generateHeaders(lease, 2 * i + 1, metaData, true);
+
+            frames.clear();
+            for (ByteBuffer buffer : lease.getByteBuffers())
+            {
+                while (buffer.hasRemaining())
+                {
+                    parser.parse(buffer);
+                }
+            }
+
+            Assert.assertEquals(1, frames.size());
+            MetaData.Request request = (MetaData.Request)frames.get(0).getMetaData();
+            Assert.assertEquals(metaData.getMethod(), request.getMethod());
+            Assert.assertEquals(metaData.getURI(), request.getURI());
+            Assert.assertEquals(fields, request.getFields());
+            if (previous != null)
+                Assert.assertSame(previous, request);
+
+            // Once released, the request is reused by the next header block.
+            ((MetaDataBuilder.PooledRequest)request).release();
+            previous = request;
+        }
+    }
 }
@@ -20,6 +20,7 @@
 package org.eclipse.jetty.http2.hpack;
 
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 
 import org.eclipse.jetty.http.BadMessageException;
 import org.eclipse.jetty.http.HttpField;
@@ -43,9 +44,15 @@ public class HpackDecoder
     public final static HttpField.LongValueHttpField CONTENT_LENGTH_0 = 
             new HttpField.LongValueHttpField(HttpHeader.CONTENT_LENGTH,0L);
     
+    /** The max length of the strings interned by a pooled decoder */
+    public final static int MAX_INTERNED_LENGTH = 64;
+
     private final HpackContext _context;
     private final MetaDataBuilder _builder;
     private int _localMaxDynamicTableSize;
+    private int _internCapacity=256;
+    private HpackStringCache _interned;
+    private byte[] _decoded;
 
     /* ------------------------------------------------------------ */
     /**
@@ -69,6 +76,54 @@ public class HpackDecoder
         _localMaxDynamicTableSize=localMaxdynamciTableSize; 
     }
     
+    /* ------------------------------------------------------------ */
+    /**
+     * @return whether this decoder is pooled
+     * @see #setPooled(boolean)
+     */
+    public boolean isPooled()
+    {
+        return _builder.isPooled();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * <p>Sets whether this decoder reuses its objects across header blocks.</p>
+     * <p>A pooled decoder Huffman decodes literals into a buffer that it reuses,
+     * and interns the literals of up to {@link #MAX_INTERNED_LENGTH} characters in a
+     * cache of {@link #getInternCapacity()} strings, so that names and values that are
+     * repeated, but not indexed, do not create new strings. Requests are decoded
+     * into {@link MetaDataBuilder.PooledRequest}s, that may be released
+     * once handled to be reused by this decoder.</p>
+     * <p>This must be set before the first header block is decoded.</p>
+     * @param pooled whether this decoder is pooled
+     */
+    public void setPooled(boolean pooled)
+    {
+        _builder.setPooled(pooled);
+        _interned=pooled&&_internCapacity>0?new HpackStringCache(_internCapacity):null;
+        _decoded=pooled?new byte[256]:null;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return the max number of interned strings
+     */
+    public int getInternCapacity()
+    {
+        return _internCapacity;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param internCapacity the max number of interned strings, rounded up to a power of 2,
+     * or 0 to not intern strings; must be set before {@link #setPooled(boolean)}
+     */
+    public void setInternCapacity(int internCapacity)
+    {
+        _internCapacity=internCapacity;
+    }
+
     public MetaData decode(ByteBuffer buffer)
     {       
         if (LOG.isDebugEnabled())
@@ -174,10 +229,7 @@ public class HpackDecoder
                     huffmanName = (buffer.get()&0x80)==0x80;
                     int length = NBitInteger.decode(buffer,7);
                     _builder.checkSize(length,huffmanName);
-                    if (huffmanName)
-                        name=Huffman.decode(buffer,length);
-                    else
-                        name=toASCIIString(buffer,length);
+                    name=decodeString(buffer,length,huffmanName);
                     for (int i=0;i<name.length();i++)
                     {
                         char c=name.charAt(i);
@@ -193,10 +245,7 @@ public class HpackDecoder
                 boolean huffmanValue = (buffer.get()&0x80)==0x80;
                 int length = NBitInteger.decode(buffer,7);
                 _builder.checkSize(length,huffmanValue);
-                if (huffmanValue)
-                    value=Huffman.decode(buffer,length);
-                else
-                    value=toASCIIString(buffer,length);
+                value=decodeString(buffer,length,huffmanValue);
 
                 // Make the new field
                 HttpField field;
@@ -254,6 +303,41 @@ public class HpackDecoder
         return _builder.build();
     }
 
+    private String decodeString(ByteBuffer buffer, int length, boolean huffman)
+    {
+        if (_decoded==null)
+            return huffman?Huffman.decode(buffer,length):toASCIIString(buffer,length);
+
+        if (!huffman)
+        {
+            String string=intern(buffer.array(),buffer.arrayOffset()+buffer.position(),length);
+            buffer.position(buffer.position()+length);
+            return string;
+        }
+
+        int needed=Huffman.octetsDecoded(length);
+        if (_decoded.length<needed)
+            _decoded=new byte[Math.max(needed,_decoded.length*2)];
+        int decoded=Huffman.decode(buffer,length,_decoded);
+
+        // Only ASCII strings are interned.
+        for (int i=0;i<decoded;i++)
+        {
+            if (_decoded[i]<0)
+                return new String(_decoded,0,decoded,StandardCharsets.ISO_8859_1);
+        }
+        return intern(_decoded,0,decoded);
+    }
+
+    private String intern(byte[] array, int offset, int length)
+    {
+        if (length==0)
+            return "";
+        if (_interned!=null&&length<=MAX_INTERNED_LENGTH)
+            return _interned.get(array,offset,length);
+        return toASCIIString(array,offset,length);
+    }
+
     public static String toASCIIString(ByteBuffer buffer,int length)
     {
         StringBuilder builder = new StringBuilder(length);
@@ -265,6 +349,14 @@ public class HpackDecoder
             builder.append((char)(0x7f&array[i]));
         return builder.toString();
     }
+
+    private static String toASCIIString(byte[] array, int offset, int length)
+    {
+        char[] chars = new char[length];
+        for (int i=0;i<length;i++)
+            chars[i]=(char)(0x7f&array[offset+i]);
+        return new String(chars);
+    }
     
     @Override
     public String toString()
@@ -31,6 +31,7 @@ import org.eclipse.jetty.http.MetaData;
 import org.eclipse.jetty.http.PreEncodedHttpField;
 import org.eclipse.jetty.http2.hpack.HpackContext.Entry;
 import org.eclipse.jetty.http2.hpack.HpackContext.StaticEntry;
+import org.eclipse.jetty.http2.hpack.HpackIndexingPolicy.Indexing;
 import org.eclipse.jetty.io.ByteBufferPool.Lease;
 import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.TypeUtil;
@@ -51,34 +52,11 @@ public class HpackEncoder
                     HttpHeader.PROXY_AUTHENTICATE,
                     HttpHeader.PROXY_AUTHORIZATION);
     
-    final static EnumSet<HttpHeader> __DO_NOT_INDEX = 
-            EnumSet.of(
-                    // HttpHeader.C_PATH,  // TODO more data needed 
-                    // HttpHeader.DATE,    // TODO more data needed 
-                    HttpHeader.AUTHORIZATION,
-                    HttpHeader.CONTENT_MD5,
-                    HttpHeader.CONTENT_RANGE,
-                    HttpHeader.ETAG,
-                    HttpHeader.IF_MODIFIED_SINCE,
-                    HttpHeader.IF_UNMODIFIED_SINCE,
-                    HttpHeader.IF_NONE_MATCH,
-                    HttpHeader.IF_RANGE,
-                    HttpHeader.IF_MATCH,
-                    HttpHeader.LOCATION,
-                    HttpHeader.RANGE,
-                    HttpHeader.RETRY_AFTER,
-                    // HttpHeader.EXPIRES,
-                    HttpHeader.LAST_MODIFIED,
-                    HttpHeader.SET_COOKIE,
-                    HttpHeader.SET_COOKIE2);
-    
+    /** The values shared by the encoders of all connections */
+    final static HpackValueCache __values = new HpackValueCache(
+            Integer.getInteger("org.eclipse.jetty.http2.hpack.HpackEncoder.valueCacheSize",1024),
+            Integer.getInteger("org.eclipse.jetty.http2.hpack.HpackEncoder.valueCacheMaxLength",256));
 
-    final static EnumSet<HttpHeader> __NEVER_INDEX = 
-            EnumSet.of(
-                    HttpHeader.AUTHORIZATION,
-                    HttpHeader.SET_COOKIE,
-                    HttpHeader.SET_COOKIE2);
-        
     static
     {
         for (HttpStatus.Code code : HttpStatus.Code.values())
@@ -87,6 +65,7 @@ public class HpackEncoder
     
     private final HpackContext _context;
     private final boolean _debug;
+    private HpackIndexingPolicy _indexingPolicy=HpackIndexingPolicy.DEFAULT;
     private int _remoteMaxDynamicTableSize;
     private int _localMaxDynamicTableSize;
     
@@ -113,6 +92,23 @@ public class HpackEncoder
         return _context;
     }
     
+    /**
+     * @return the indexing policy, which is unmodifiable if it is the default policy
+     */
+    public HpackIndexingPolicy getIndexingPolicy()
+    {
+        return _indexingPolicy;
+    }
+
+    /**
+     * @param indexingPolicy the policy deciding which fields are added to the dynamic table,
+     * or null for the default policy
+     */
+    public void setIndexingPolicy(HpackIndexingPolicy indexingPolicy)
+    {
+        _indexingPolicy=indexingPolicy==null?HpackIndexingPolicy.DEFAULT:indexingPolicy;
+    }
+
     public void setRemoteMaxDynamicTableSize(int remoteMaxDynamicTableSize)
     {
         _remoteMaxDynamicTableSize=remoteMaxDynamicTableSize;
@@ -215,98 +211,57 @@ public class HpackEncoder
         {
             // Unknown field entry, so we will have to send literally.
             final boolean indexed;
-           
-            // But do we know it's name?
-            HttpHeader header = field.getHeader();
-            
-            // Select encoding strategy
-            if (header==null)
+
+            if (field instanceof PreEncodedHttpField)
             {
-                // Select encoding strategy for unknown header names
-                Entry name = _context.get(field.getName());
-                     
-                if (field instanceof PreEncodedHttpField)
-                {        
-                    int i=buffer.position();
-                    ((PreEncodedHttpField)field).putTo(buffer,HttpVersion.HTTP_2);
-                    byte b=buffer.get(i);
-                    indexed=b<0||b>=0x40;
-                    if (_debug)
-                        encoding=indexed?"PreEncodedIdx":"PreEncoded";
-                }
-                // has the custom header name been seen before?
-                else if (name==null)
-                {
-                    // unknown name and value, so let's index this just in case it is 
-                    // the first time we have seen a custom name or a custom field.
-                    // unless the name is changing, this is worthwhile
-                    indexed=true;
-                    encodeName(buffer,(byte)0x40,6,field.getName(),null);
-                    encodeValue(buffer,true,field.getValue());
-                    if (_debug)
-                        encoding="LitHuffNHuffVIdx";
-                }
-                else
-                {
-                    // known custom name, but unknown value.
-                    // This is probably a custom field with changing value, so don't index.
-                    indexed=false;
-                    encodeName(buffer,(byte)0x00,4,field.getName(),null);
-                    encodeValue(buffer,true,field.getValue());
-                    if (_debug)
-                        encoding="LitHuffNHuffV!Idx";
-                }
+                int i=buffer.position();
+                ((PreEncodedHttpField)field).putTo(buffer,HttpVersion.HTTP_2);
+                byte b=buffer.get(i);
+                indexed=b<0||b>=0x40;
+                if (_debug)
+                    encoding=indexed?"PreEncodedIdx":"PreEncoded";
             }
-            else 
+            else
             {
-                // Select encoding strategy for known header names
-                Entry name = _context.get(header);
+                // But do we know it's name?
+                HttpHeader header = field.getHeader();
+                Entry name = header==null?_context.get(field.getName()):_context.get(header);
 
-                if (field instanceof PreEncodedHttpField)
-                {                   
-                    // Preencoded field
-                    int i=buffer.position();
-                    ((PreEncodedHttpField)field).putTo(buffer,HttpVersion.HTTP_2);
-                    byte b=buffer.get(i);
-                    indexed=b<0||b>=0x40;
-                    if (_debug)
-                        encoding=indexed?"PreEncodedIdx":"PreEncoded";
-                }
-                else if (__DO_NOT_INDEX.contains(header))
+                // Select encoding strategy
+                Indexing indexing=_indexingPolicy.getIndexing(header,field.getName());
+                if (indexing==null)
                 {
-                    // Non indexed field
-                    indexed=false;
-                    boolean never_index=__NEVER_INDEX.contains(header);
-                    boolean huffman=!__DO_NOT_HUFFMAN.contains(header);
-                    encodeName(buffer,never_index?(byte)0x10:(byte)0x00,4,header.asString(),name);
-                    encodeValue(buffer,huffman,field.getValue());
-
-                    if (_debug)
-                        encoding="Lit"+
-                                ((name==null)?"HuffN":("IdxN"+(name.isStatic()?"S":"")+(1+NBitInteger.octectsNeeded(4,_context.index(name)))))+
-                                (huffman?"HuffV":"LitV")+
-                                (indexed?"Idx":(never_index?"!!Idx":"!Idx"));
-                }
-                else if (header==HttpHeader.CONTENT_LENGTH && field.getValue().length()>1)
-                {
-                    // Non indexed content length for 2 digits or more
-                    indexed=false;
-                    encodeName(buffer,(byte)0x00,4,header.asString(),name);
-                    encodeValue(buffer,true,field.getValue());
-                    if (_debug)
-                        encoding="LitIdxNS"+(1+NBitInteger.octectsNeeded(4,_context.index(name)))+"HuffV!Idx";
+                    if (header==null)
+                        // An unknown name is indexed just in case it is the first time we have
+                        // seen a custom field, but a known custom name with an unknown value is
+                        // probably a custom field with a changing value, so don't index.
+                        indexing=name==null?Indexing.INDEX:Indexing.DO_NOT_INDEX;
+                    else if (header==HttpHeader.CONTENT_LENGTH && field.getValue().length()>1)
+                        // Non indexed content length for 2 digits or more
+                        indexing=Indexing.DO_NOT_INDEX;
+                    else
+                        indexing=Indexing.INDEX;
                 }
+                indexed=indexing==Indexing.INDEX;
+                boolean huffman=header==null||!__DO_NOT_HUFFMAN.contains(header);
+
+                if (indexed)
+                    encodeName(buffer,(byte)0x40,6,field.getName(),name);
+                else
+                    encodeName(buffer,indexing==Indexing.NEVER_INDEX?(byte)0x10:(byte)0x00,4,field.getName(),name);
+
+                // Values that are indexed repeat across connections, so their encoding is shared.
+                byte[] value=huffman&&indexed?__values.getEncodedValue(field):null;
+                if (value!=null)
+                    buffer.put(value);
                 else
-                {
-                    // indexed
-                    indexed=true;
-                    boolean huffman=!__DO_NOT_HUFFMAN.contains(header);
-                    encodeName(buffer,(byte)0x40,6,header.asString(),name);
                     encodeValue(buffer,huffman,field.getValue());
-                    if (_debug)
-                        encoding=((name==null)?"LitHuffN":("LitIdxN"+(name.isStatic()?"S":"")+(1+NBitInteger.octectsNeeded(6,_context.index(name)))))+
-                                (huffman?"HuffVIdx":"LitVIdx");
-                }
+
+                if (_debug)
+                    encoding="Lit"+
+                            ((name==null)?"HuffN":("IdxN"+(name.isStatic()?"S":"")+(1+NBitInteger.octectsNeeded(indexed?6:4,_context.index(name)))))+
+                            (value!=null?"CachedV":huffman?"HuffV":"LitV")+
+                            (indexed?"Idx":(indexing==Indexing.NEVER_INDEX?"!!Idx":"!Idx"));
             }
 
             // If we want the field referenced, then we add it to our
@@ -24,6 +24,7 @@ import java.nio.ByteBuffer;
 import org.eclipse.jetty.http.HttpFieldPreEncoder;
 import org.eclipse.jetty.http.HttpHeader;
 import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.http2.hpack.HpackIndexingPolicy.Indexing;
 import org.eclipse.jetty.util.BufferUtil;
 
 
@@ -49,35 +50,27 @@ public class HpackFieldPreEncoder implements HttpFieldPreEncoder
     @Override
     public byte[] getEncodedField(HttpHeader header, String name, String value)
     {
-        boolean not_indexed=HpackEncoder.__DO_NOT_INDEX.contains(header);
-        
+        Indexing indexing=HpackIndexingPolicy.DEFAULT.getIndexing(header,name);
+        if (indexing==null)
+            indexing=header==HttpHeader.CONTENT_LENGTH && value.length()>1?Indexing.DO_NOT_INDEX:Indexing.INDEX;
+
         ByteBuffer buffer = BufferUtil.allocate(name.length()+value.length()+10);
         BufferUtil.clearToFill(buffer);
-        boolean huffman;
+        boolean huffman=header==null||!HpackEncoder.__DO_NOT_HUFFMAN.contains(header);
         int bits;
-        
-        if (not_indexed)
-        {
-            // Non indexed field
-            boolean never_index=HpackEncoder.__NEVER_INDEX.contains(header);
-            huffman=!HpackEncoder.__DO_NOT_HUFFMAN.contains(header);
-            buffer.put(never_index?(byte)0x10:(byte)0x00);
-            bits=4;
-        }
-        else if (header==HttpHeader.CONTENT_LENGTH && value.length()>1)
-        {
-            // Non indexed content length for 2 digits or more
-            buffer.put((byte)0x00);
-            huffman=true;
-            bits=4;
-        }
-        else
+
+        if (indexing==Indexing.INDEX)
         {
             // indexed
             buffer.put((byte)0x40);
-            huffman=!HpackEncoder.__DO_NOT_HUFFMAN.contains(header);
             bits=6;
         }
+        else
+        {
+            // Non indexed field
+            buffer.put(indexing==Indexing.NEVER_INDEX?(byte)0x10:(byte)0x00);
+            bits=4;
+        }
         
         int name_idx=HpackContext.staticIndex(header);
         if (name_idx>0)
@@ -0,0 +1,219 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+
+package org.eclipse.jetty.http2.hpack;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.eclipse.jetty.http.HttpField;
+import org.eclipse.jetty.http.HttpHeader;
+
+/* ------------------------------------------------------------ */
+/**
+ * <p>The indexing policy of a {@link HpackEncoder}.</p>
+ * <p>The policy decides, by header name, whether a field not already found in the
+ * HPACK context is sent as a literal that is added to the dynamic table, as a literal
+ * that is not, or as a literal that must never be indexed by any intermediary.
+ * Headers whose values rarely repeat (dates, validators, cookies) should not be
+ * indexed, as they only evict useful entries from the dynamic table; headers whose
+ * values repeat (content types, cache policies, server identity) should always be.</p>
+ * <p>Names without a rule are encoded with the encoder heuristics: a known header is
+ * indexed, except for multi-digit {@code content-length} values; a custom header
+ * is indexed only the first time its name is seen.</p>
+ * <p>A policy must be configured before it is given to an encoder, as it is then read
+ * without synchronization by every connection that uses it. The default policy, used by
+ * encoders that are not given one, cannot be modified; use a
+ * {@link #HpackIndexingPolicy(HpackIndexingPolicy) copy} of it instead.</p>
+ */
+public class HpackIndexingPolicy
+{
+    public enum Indexing
+    {
+        /** Send a literal field and add it to the dynamic table */
+        INDEX,
+        /** Send a literal field without adding it to the dynamic table */
+        DO_NOT_INDEX,
+        /** Send a literal field that must never be indexed, for sensitive values */
+        NEVER_INDEX
+    }
+
+    /** The default policy, shared by encoders that are not given one and by {@link HpackFieldPreEncoder} */
+    static final HpackIndexingPolicy DEFAULT = new Unmodifiable(new HpackIndexingPolicy());
+
+    private final Indexing[] _headers = new Indexing[HttpHeader.values().length];
+    private final Map<String,Indexing> _names = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Creates a policy with the default rules.
+     */
+    public HpackIndexingPolicy()
+    {
+        setIndexing(Indexing.NEVER_INDEX,
+                HttpHeader.AUTHORIZATION,
+                HttpHeader.PROXY_AUTHORIZATION,
+                HttpHeader.SET_COOKIE,
+                HttpHeader.SET_COOKIE2);
+
+        setIndexing(Indexing.DO_NOT_INDEX,
+                // HttpHeader.C_PATH,  // TODO more data needed
+                // HttpHeader.DATE,    // TODO more data needed
+                HttpHeader.CONTENT_MD5,
+                HttpHeader.CONTENT_RANGE,
+                HttpHeader.ETAG,
+                HttpHeader.IF_MODIFIED_SINCE,
+                HttpHeader.IF_UNMODIFIED_SINCE,
+                HttpHeader.IF_NONE_MATCH,
+                HttpHeader.IF_RANGE,
+                HttpHeader.IF_MATCH,
+                HttpHeader.LOCATION,
+                HttpHeader.RANGE,
+                HttpHeader.RETRY_AFTER,
+                // HttpHeader.EXPIRES,
+                HttpHeader.LAST_MODIFIED);
+
+        setIndexing(Indexing.INDEX,
+                HttpHeader.ACCEPT,
+                HttpHeader.ACCEPT_ENCODING,
+                HttpHeader.ACCEPT_LANGUAGE,
+                HttpHeader.ACCEPT_RANGES,
+                HttpHeader.CACHE_CONTROL,
+                HttpHeader.CONTENT_ENCODING,
+                HttpHeader.CONTENT_LANGUAGE,
+                HttpHeader.CONTENT_TYPE,
+                HttpHeader.SERVER,
+                HttpHeader.USER_AGENT,
+                HttpHeader.VARY,
+                HttpHeader.X_POWERED_BY);
+
+        setIndexing(Indexing.INDEX,
+                "access-control-allow-origin",
+                "strict-transport-security",
+                "x-content-type-options",
+                "x-frame-options",
+                "x-xss-protection");
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Creates a copy of the given policy.
+     * @param policy the policy to copy
+     */
+    public HpackIndexingPolicy(HpackIndexingPolicy policy)
+    {
+        System.arraycopy(policy._headers,0,_headers,0,_headers.length);
+        _names.putAll(policy._names);
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param indexing the indexing for the headers, or null to use the encoder heuristics
+     * @param headers the headers
+     */
+    public void setIndexing(Indexing indexing, HttpHeader... headers)
+    {
+        for (HttpHeader header : headers)
+            _headers[header.ordinal()]=indexing;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param indexing the indexing for the header names, or null to use the encoder heuristics
+     * @param names the header names, case insensitive
+     */
+    public void setIndexing(Indexing indexing, String... names)
+    {
+        for (String name : names)
+        {
+            HttpHeader header = HttpHeader.CACHE.get(name);
+            if (header!=null)
+                setIndexing(indexing,header);
+            else if (indexing==null)
+                _names.remove(name);
+            else
+                _names.put(name,indexing);
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param header the header of the field, or null if it is not a known header
+     * @param name the name of the field
+     * @return the indexing for the field, or null if the encoder heuristics apply
+     */
+    public Indexing getIndexing(HttpHeader header, String name)
+    {
+        if (header!=null)
+            return _headers[header.ordinal()];
+        if (_names.isEmpty())
+            return null;
+        return _names.get(name);
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param field the field
+     * @return the indexing for the field, or null if the encoder heuristics apply
+     */
+    public Indexing getIndexing(HttpField field)
+    {
+        return getIndexing(field.getHeader(),field.getName());
+    }
+
+    /* ------------------------------------------------------------ */
+    @Override
+    public String toString()
+    {
+        StringBuilder b = new StringBuilder();
+        b.append(getClass().getSimpleName()).append('{');
+        for (HttpHeader header : HttpHeader.values())
+        {
+            Indexing indexing=_headers[header.ordinal()];
+            if (indexing!=null)
+                b.append(header.asString()).append('=').append(indexing).append(',');
+        }
+        for (Map.Entry<String,Indexing> entry : _names.entrySet())
+            b.append(entry.getKey()).append('=').append(entry.getValue()).append(',');
+        if (b.charAt(b.length()-1)==',')
+            b.setLength(b.length()-1);
+        return b.append('}').toString();
+    }
+
+    /* ------------------------------------------------------------ */
+    private static class Unmodifiable extends HpackIndexingPolicy
+    {
+        private Unmodifiable(HpackIndexingPolicy policy)
+        {
+            super(policy);
+        }
+
+        @Override
+        public void setIndexing(Indexing indexing, HttpHeader... headers)
+        {
+            throw new UnsupportedOperationException("Unmodifiable default policy");
+        }
+
+        @Override
+        public void setIndexing(Indexing indexing, String... names)
+        {
+            throw new UnsupportedOperationException("Unmodifiable default policy");
+        }
+    }
+}
@@ -0,0 +1,83 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+
+package org.eclipse.jetty.http2.hpack;
+
+/* ------------------------------------------------------------ */
+/**
+ * <p>A bounded cache of the ASCII strings decoded by a {@link HpackDecoder}.</p>
+ * <p>The cache is direct mapped: a string is looked up by a hash of its octets
+ * and replaces the string in its slot if they differ, so that repeated strings
+ * are returned without creating new instances, in constant time and memory.</p>
+ * <p>This is not thread safe and may only be called by 1 thread at a time.</p>
+ */
+class HpackStringCache
+{
+    private final String[] _strings;
+    private final int _mask;
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param capacity the number of slots, rounded up to a power of 2
+     */
+    HpackStringCache(int capacity)
+    {
+        int size=Integer.highestOneBit(Math.max(1,capacity-1))<<1;
+        _strings=new String[size];
+        _mask=size-1;
+    }
+
+    /* ------------------------------------------------------------ */
+    int getCapacity()
+    {
+        return _strings.length;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param array the array of octets
+     * @param offset the offset of the string in the array
+     * @param length the length of the string
+     * @return the string of the octets, masked to 7 bits
+     */
+    String get(byte[] array, int offset, int length)
+    {
+        int hash=0;
+        for (int i=0;i<length;i++)
+            hash=31*hash+(0x7f&array[offset+i]);
+        int slot=(hash^(hash>>>16))&_mask;
+
+        String string=_strings[slot];
+        if (string!=null && string.length()==length)
+        {
+            int i=0;
+            while (i<length && string.charAt(i)==(0x7f&array[offset+i]))
+                i++;
+            if (i==length)
+                return string;
+        }
+
+        char[] chars=new char[length];
+        for (int i=0;i<length;i++)
+            chars[i]=(char)(0x7f&array[offset+i]);
+        string=new String(chars);
+        _strings[slot]=string;
+        return string;
+    }
+}
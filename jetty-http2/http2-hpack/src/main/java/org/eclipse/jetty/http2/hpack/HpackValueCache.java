@@ -0,0 +1,123 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+
+package org.eclipse.jetty.http2.hpack;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jetty.http.HttpField;
+
+/* ------------------------------------------------------------ */
+/**
+ * <p>A bounded cache of the HPACK encoded values of fields, shared by the
+ * encoders of all connections.</p>
+ * <p>Fields that are indexed are sent as literals the first time they are seen
+ * on every connection and again whenever they have been evicted from its dynamic
+ * table, so values such as content types or cache policies are Huffman encoded
+ * over and over across connections. This cache keeps the Huffman encoded bytes of
+ * such values, length prefix included, so that they can be copied with a single put.</p>
+ * <p>When more than {@link #getMaxEntries()} values have been added the cache is
+ * cleared, so that it is bounded and yet repopulated by the values that are
+ * actually repeating, without the cost of tracking their use.</p>
+ */
+class HpackValueCache
+{
+    private final ConcurrentMap<HttpField,byte[]> _cache = new ConcurrentHashMap<>();
+    private final AtomicInteger _size = new AtomicInteger();
+    private final int _maxEntries;
+    private final int _maxValueLength;
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param maxEntries the max number of values cached, or 0 to disable the cache
+     * @param maxValueLength the max length of the values cached
+     */
+    HpackValueCache(int maxEntries, int maxValueLength)
+    {
+        _maxEntries=maxEntries;
+        _maxValueLength=maxValueLength;
+    }
+
+    /* ------------------------------------------------------------ */
+    int getMaxEntries()
+    {
+        return _maxEntries;
+    }
+
+    /* ------------------------------------------------------------ */
+    int getMaxValueLength()
+    {
+        return _maxValueLength;
+    }
+
+    /* ------------------------------------------------------------ */
+    int getSize()
+    {
+        return _cache.size();
+    }
+
+    /* ------------------------------------------------------------ */
+    void clear()
+    {
+        _cache.clear();
+        _size.set(0);
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param field the field
+     * @return the Huffman encoded value of the field, with its length prefix,
+     * or null if the value is not cacheable
+     */
+    byte[] getEncodedValue(HttpField field)
+    {
+        if (_maxEntries<=0)
+            return null;
+
+        byte[] encoded = _cache.get(field);
+        if (encoded==null)
+        {
+            String value = field.getValue();
+            if (value==null || value.length()>_maxValueLength)
+                return null;
+
+            ByteBuffer buffer = ByteBuffer.allocate(Huffman.octetsNeeded(value)+5);
+            HpackEncoder.encodeValue(buffer,true,value);
+            encoded=Arrays.copyOf(buffer.array(),buffer.position());
+
+            byte[] existing = _cache.putIfAbsent(field,encoded);
+            if (existing!=null)
+                return existing;
+            if (_size.incrementAndGet()>_maxEntries)
+                clear();
+        }
+        return encoded;
+    }
+
+    /* ------------------------------------------------------------ */
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{size=%d,max=%d}",getClass().getSimpleName(),hashCode(),getSize(),_maxEntries);
+    }
+}
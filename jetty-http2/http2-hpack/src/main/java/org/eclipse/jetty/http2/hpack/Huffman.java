@@ -19,6 +19,7 @@
 package org.eclipse.jetty.http2.hpack;
 
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 
 public class Huffman
 {
@@ -351,7 +352,31 @@ public class Huffman
 
     public static String decode(ByteBuffer buffer,int length)
     {        
-        StringBuilder out = new StringBuilder(length*2);
+        byte[] out = new byte[octetsDecoded(length)];
+        int decoded = decode(buffer,length,out);
+        return new String(out,0,decoded,StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * @param length the length of a Huffman encoded string
+     * @return the max number of octets the string may decode to
+     */
+    public static int octetsDecoded(int length)
+    {
+        // The shortest code is 5 bits long
+        return length*8/5+1;
+    }
+
+    /**
+     * Decodes a Huffman encoded string into the given array.
+     * @param buffer the buffer positioned at the encoded string
+     * @param length the length of the encoded string
+     * @param out the array to decode into, of at least {@link #octetsDecoded(int)} octets
+     * @return the number of octets decoded
+     */
+    public static int decode(ByteBuffer buffer,int length,byte[] out)
+    {        
+        int decoded = 0;
         int node = 0;
         int current = 0;
         int bits = 0;
@@ -373,7 +398,7 @@ public class Huffman
                 if (rowbits[node]!=0) 
                 {
                     // terminal node
-                    out.append(rowsym[node]);
+                    out[decoded++]=(byte)rowsym[node];
                     bits -= rowbits[node];
                     node = 0;
                 } 
@@ -395,12 +420,12 @@ public class Huffman
             if (rowbits[node]==0)
                 throw new IllegalStateException();
             
-            out.append(rowsym[node]);
+            out[decoded++]=(byte)rowsym[node];
             bits -= rowbits[node];
             node = 0;
         }
 
-        return out.toString();
+        return decoded;
     }
 
     public static int octetsNeeded(String s)
@@ -19,15 +19,18 @@
 
 package org.eclipse.jetty.http2.hpack;
 
+import java.util.Queue;
 
 import org.eclipse.jetty.http.BadMessageException;
 import org.eclipse.jetty.http.HostPortHttpField;
 import org.eclipse.jetty.http.HttpField;
 import org.eclipse.jetty.http.HttpFields;
 import org.eclipse.jetty.http.HttpScheme;
+import org.eclipse.jetty.http.HttpURI;
 import org.eclipse.jetty.http.HttpStatus;
 import org.eclipse.jetty.http.HttpVersion;
 import org.eclipse.jetty.http.MetaData;
+import org.eclipse.jetty.util.ConcurrentArrayQueue;
 
 public class MetaDataBuilder
 { 
@@ -41,6 +44,8 @@ public class MetaDataBuilder
     private long _contentLength=Long.MIN_VALUE;
 
     private HttpFields _fields = new HttpFields(10);
+    private Queue<PooledRequest> _pool;
+    private PooledRequest _request;
     
     /* ------------------------------------------------------------ */
     /**
@@ -51,6 +56,43 @@ public class MetaDataBuilder
         _maxSize=maxHeadersSize;
     }
     
+    /* ------------------------------------------------------------ */
+    /**
+     * @param pooled whether requests are built from {@link PooledRequest}s that
+     * are reused once released; must be set between header blocks
+     */
+    void setPooled(boolean pooled)
+    {
+        if (pooled==isPooled())
+            return;
+        if (pooled)
+        {
+            _pool=new ConcurrentArrayQueue<>();
+            _fields=null;
+        }
+        else
+        {
+            _pool=null;
+            _request=null;
+            _fields=new HttpFields(10);
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    boolean isPooled()
+    {
+        return _pool!=null;
+    }
+
+    /* ------------------------------------------------------------ */
+    private void acquire()
+    {
+        _request=_pool.poll();
+        if (_request==null)
+            _request=new PooledRequest(_pool);
+        _fields=_request.getFields();
+    }
+
     /** Get the maxSize.
      * @return the maxSize
      */
@@ -69,6 +111,9 @@ public class MetaDataBuilder
 
     public void emit(HttpField field)
     {        
+        if (_fields==null)
+            acquire();
+
         int field_size = field.getName().length()+field.getValue().length();
         _size+=field_size;
         if (_size>_maxSize)
@@ -147,9 +192,34 @@ public class MetaDataBuilder
     {
         try
         {
+            if (_fields==null)
+                acquire();
             HttpFields fields = _fields;
-            _fields = new HttpFields(Math.max(10,fields.size()+5));
-            
+
+            if (_request!=null)
+            {
+                // The next block is decoded into a request taken from the pool when it starts,
+                // so that one released meanwhile is reused.
+                PooledRequest request = _request;
+                _request=null;
+                _fields=null;
+
+                if (_method!=null)
+                {
+                    request.setHttpVersion(HttpVersion.HTTP_2);
+                    request.setMethod(_method);
+                    HttpURI uri = request.getURI();
+                    uri.setScheme(_scheme==null?null:_scheme.asString());
+                    uri.setAuthority(_authority==null?null:_authority.getHost(),_authority==null?-1:_authority.getPort());
+                    uri.setPathQuery(_path);
+                    return request;
+                }
+            }
+            else
+            {
+                _fields = new HttpFields(Math.max(10,fields.size()+5));
+            }
+
             if (_method!=null)
                 return new MetaData.Request(_method,_scheme,_authority,_path,HttpVersion.HTTP_2,fields,_contentLength);
             if (_status!=0)
@@ -181,4 +251,34 @@ public class MetaDataBuilder
         if ((_size+length)>_maxSize)
             throw new BadMessageException(HttpStatus.REQUEST_ENTITY_TOO_LARGE_413,"Header size "+(_size+length)+">"+_maxSize);
     }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * <p>A request built by a pooled {@link MetaDataBuilder}.</p>
+     * <p>Once the request has been handled, {@link #release()} recycles its
+     * fields and URI and returns it to the builder, to be filled by the
+     * decoding of a following request of the same connection. The request
+     * and its fields must not be used after they have been released.</p>
+     */
+    public static class PooledRequest extends MetaData.Request
+    {
+        private final Queue<PooledRequest> _pool;
+
+        private PooledRequest(Queue<PooledRequest> pool)
+        {
+            super(null,new HttpURI(),null,new HttpFields(10));
+            _pool=pool;
+        }
+
+        /* ------------------------------------------------------------ */
+        /**
+         * Recycles this request and returns it to the pool it was taken from.
+         * This method may be called by any thread.
+         */
+        public void release()
+        {
+            recycle();
+            _pool.offer(this);
+        }
+    }
 }
@@ -26,6 +26,7 @@ import java.nio.ByteBuffer;
 
 import org.eclipse.jetty.http.HttpField;
 import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpHeader;
 import org.eclipse.jetty.http.HttpVersion;
 import org.eclipse.jetty.http.MetaData;
 import org.eclipse.jetty.util.BufferUtil;
@@ -183,8 +184,100 @@ public class HpackEncoderTest
         Assert.assertEquals(0,encoder.getHpackContext().size());
         
     }
-    
 
-    
+    @Test
+    public void testIndexingPolicy()
+    {
+        HpackIndexingPolicy policy = new HpackIndexingPolicy();
+        policy.setIndexing(HpackIndexingPolicy.Indexing.INDEX,"x-tenant");
+        policy.setIndexing(HpackIndexingPolicy.Indexing.DO_NOT_INDEX,"Date");
+        policy.setIndexing(HpackIndexingPolicy.Indexing.NEVER_INDEX,"x-token");
+
+        HpackEncoder encoder = new HpackEncoder(4096);
+        encoder.setIndexingPolicy(policy);
+        HpackDecoder decoder = new HpackDecoder(4096,8192);
+        ByteBuffer buffer = BufferUtil.allocate(4096);
+
+        for (int i=0;i<3;i++)
+        {
+            HttpFields fields = new HttpFields();
+            fields.put("x-tenant","tenant"+i);
+            fields.put("x-token","token"+i);
+            fields.put(HttpHeader.DATE,"Thu, 01 Jan 1970 00:00:0"+i+" GMT");
+
+            BufferUtil.clearToFill(buffer);
+            encoder.encode(buffer,new MetaData(HttpVersion.HTTP_2,fields));
+            BufferUtil.flipToFlush(buffer,0);
+
+            // Without a rule, a custom name is indexed only the first time
+            // it is seen; with the rule, every value of x-tenant is indexed.
+            Assert.assertEquals(i+1,encoder.getHpackContext().size());
+            Assert.assertEquals(fields,decoder.decode(buffer).getFields());
+        }
+
+        // The default policy is not modified.
+        Assert.assertNull(new HpackEncoder().getIndexingPolicy().getIndexing(HttpHeader.DATE,"date"));
+        Assert.assertEquals(HpackIndexingPolicy.Indexing.INDEX,new HpackIndexingPolicy(policy).getIndexing(null,"X-Tenant"));
+    }
+
+    @Test(expected=UnsupportedOperationException.class)
+    public void testDefaultIndexingPolicyIsUnmodifiable()
+    {
+        HpackIndexingPolicy policy = new HpackEncoder().getIndexingPolicy();
+
+        // A copy of the default policy can be modified
+        new HpackIndexingPolicy(policy).setIndexing(HpackIndexingPolicy.Indexing.INDEX,HttpHeader.DATE);
+
+        policy.setIndexing(HpackIndexingPolicy.Indexing.INDEX,HttpHeader.DATE);
+    }
 
+    @Test
+    public void testSharedValueCache()
+    {
+        HttpFields fields = new HttpFields();
+        fields.put(HttpHeader.CONTENT_TYPE,"application/x-shared-value-cache-test");
+        fields.put(HttpHeader.CACHE_CONTROL,"private, max-age=1234");
+        fields.put("x-shared-value-cache-test","shared");
+        HpackEncoder.__values.clear();
+
+        ByteBuffer first = null;
+        for (int i=0;i<2;i++)
+        {
+            // A new encoder for each connection.
+            HpackEncoder encoder = new HpackEncoder(4096);
+            ByteBuffer buffer = BufferUtil.allocate(4096);
+            BufferUtil.clearToFill(buffer);
+            encoder.encode(buffer,new MetaData(HttpVersion.HTTP_2,fields));
+            BufferUtil.flipToFlush(buffer,0);
+
+            Assert.assertEquals(3,HpackEncoder.__values.getSize());
+            Assert.assertEquals(3,encoder.getHpackContext().size());
+            Assert.assertEquals(fields,new HpackDecoder(4096,8192).decode(buffer.slice()).getFields());
+            if (first==null)
+                first=buffer;
+            else
+                Assert.assertEquals(first,buffer);
+        }
+    }
+
+    @Test
+    public void testValueCacheIsBounded()
+    {
+        HpackValueCache cache = new HpackValueCache(4,16);
+        for (int i=0;i<10;i++)
+            Assert.assertNotNull(cache.getEncodedValue(new HttpField("name","value"+i)));
+        Assert.assertThat(cache.getSize(),Matchers.lessThanOrEqualTo(4));
+        Assert.assertNull(cache.getEncodedValue(new HttpField("name","a value that is too long")));
+
+        HttpField field = new HttpField(HttpHeader.CONTENT_TYPE,"text/html");
+        byte[] encoded = cache.getEncodedValue(field);
+        Assert.assertNotNull(encoded);
+        Assert.assertSame(encoded,cache.getEncodedValue(new HttpField(HttpHeader.CONTENT_TYPE,"text/html")));
+
+        ByteBuffer buffer = BufferUtil.allocate(64);
+        BufferUtil.clearToFill(buffer);
+        HpackEncoder.encodeValue(buffer,true,field.getValue());
+        BufferUtil.flipToFlush(buffer,0);
+        Assert.assertArrayEquals(BufferUtil.toArray(buffer),encoded);
+    }
 }
@@ -19,6 +19,7 @@
 package org.eclipse.jetty.http2.hpack;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.lessThan;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThat;
 
@@ -34,6 +35,7 @@ import org.eclipse.jetty.http.HttpVersion;
 import org.eclipse.jetty.http.MetaData;
 import org.eclipse.jetty.http.MetaData.Response;
 import org.eclipse.jetty.http.PreEncodedHttpField;
+import org.eclipse.jetty.http.PreEncodedHttpFields;
 import org.eclipse.jetty.util.BufferUtil;
 import org.junit.Assert;
 import org.junit.Test;
@@ -44,6 +46,37 @@ public class HpackTest
     final static HttpField XPowerJetty = new PreEncodedHttpField(HttpHeader.X_POWERED_BY,"jetty");
     final static HttpField Date = new PreEncodedHttpField(HttpHeader.DATE,DateGenerator.formatDate(System.currentTimeMillis()));
     
+    @Test
+    public void encodeDecodePreEncodedFieldsTest()
+    {
+        PreEncodedHttpFields security = new PreEncodedHttpFields(
+            new HttpField(HttpHeader.CACHE_CONTROL,"no-store"),
+            new HttpField("x-frame-options","DENY"),
+            new HttpField("x-content-type-options","nosniff"));
+
+        HpackEncoder encoder = new HpackEncoder();
+        HpackDecoder decoder = new HpackDecoder(4096,8192);
+        ByteBuffer buffer = BufferUtil.allocate(16*1024);
+
+        HttpFields fields = new HttpFields();
+        fields.add(security);
+        fields.add("custom-key","custom-value");
+        Response original = new MetaData.Response(HttpVersion.HTTP_2,200,fields);
+
+        BufferUtil.clearToFill(buffer);
+        encoder.encode(buffer,original);
+        BufferUtil.flipToFlush(buffer,0);
+        int first=buffer.remaining();
+        assertMetadataSame(original,(Response)decoder.decode(buffer));
+
+        // The second time the block is referenced from the dynamic table
+        BufferUtil.clearToFill(buffer);
+        encoder.encode(buffer,original);
+        BufferUtil.flipToFlush(buffer,0);
+        assertThat(buffer.remaining(),lessThan(first));
+        assertMetadataSame(original,(Response)decoder.decode(buffer));
+    }
+
     @Test
     public void encodeDecodeResponseTest()
     {
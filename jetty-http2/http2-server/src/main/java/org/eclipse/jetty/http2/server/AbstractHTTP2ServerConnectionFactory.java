@@ -25,6 +25,7 @@ import org.eclipse.jetty.http2.FlowControlStrategy;
 import org.eclipse.jetty.http2.HTTP2Connection;
 import org.eclipse.jetty.http2.api.server.ServerSessionListener;
 import org.eclipse.jetty.http2.generator.Generator;
+import org.eclipse.jetty.http2.hpack.HpackIndexingPolicy;
 import org.eclipse.jetty.http2.parser.Parser;
 import org.eclipse.jetty.http2.parser.ServerParser;
 import org.eclipse.jetty.io.Connection;
@@ -39,6 +40,8 @@ public abstract class AbstractHTTP2ServerConnectionFactory extends AbstractConne
     private int maxDynamicTableSize = 4096;
     private int initialStreamSendWindow = FlowControlStrategy.DEFAULT_WINDOW_SIZE;
     private int maxConcurrentStreams = -1;
+    private HpackIndexingPolicy indexingPolicy;
+    private boolean pooledHeaders;
     private final HttpConfiguration httpConfiguration;
     
     public AbstractHTTP2ServerConnectionFactory(@Name("config") HttpConfiguration httpConfiguration)
@@ -82,6 +85,35 @@ public abstract class AbstractHTTP2ServerConnectionFactory extends AbstractConne
         this.maxConcurrentStreams = maxConcurrentStreams;
     }
 
+    public HpackIndexingPolicy getIndexingPolicy()
+    {
+        return indexingPolicy;
+    }
+
+    /**
+     * @param indexingPolicy the HPACK indexing policy shared by the connections,
+     * or null for the default policy
+     */
+    public void setIndexingPolicy(HpackIndexingPolicy indexingPolicy)
+    {
+        this.indexingPolicy = indexingPolicy;
+    }
+
+    public boolean isPooledHeaders()
+    {
+        return pooledHeaders;
+    }
+
+    /**
+     * @param pooledHeaders whether the HPACK decoders of the connections reuse their strings,
+     * buffers and request metadata, that are then recycled when the request completes
+     * @see org.eclipse.jetty.http2.hpack.HpackDecoder#setPooled(boolean)
+     */
+    public void setPooledHeaders(boolean pooledHeaders)
+    {
+        this.pooledHeaders = pooledHeaders;
+    }
+
     public HttpConfiguration getHttpConfiguration()
     {
         return httpConfiguration;
@@ -93,6 +125,7 @@ public abstract class AbstractHTTP2ServerConnectionFactory extends AbstractConne
         ServerSessionListener listener = newSessionListener(connector, endPoint);
 
         Generator generator = new Generator(connector.getByteBufferPool(), getMaxDynamicTableSize());
+        generator.setIndexingPolicy(getIndexingPolicy());
         FlowControlStrategy flowControl = newFlowControlStrategy();
         HTTP2ServerSession session = new HTTP2ServerSession(connector.getScheduler(), endPoint, generator, listener, flowControl);
         session.setMaxLocalStreams(getMaxConcurrentStreams());
@@ -104,6 +137,7 @@ public abstract class AbstractHTTP2ServerConnectionFactory extends AbstractConne
         session.setStreamIdleTimeout(endPoint.getIdleTimeout());
         
         Parser parser = newServerParser(connector, session);
+        parser.getHpackDecoder().setPooled(isPooledHeaders());
         HTTP2Connection connection = new HTTP2ServerConnection(connector.getByteBufferPool(), connector.getExecutor(),
                         endPoint, httpConfiguration, parser, session, getInputBufferSize(), listener);
 
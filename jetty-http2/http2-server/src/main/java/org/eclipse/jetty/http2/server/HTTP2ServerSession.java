@@ -74,6 +74,8 @@ public class HTTP2ServerSession extends HTTP2Session implements ServerParser.Lis
             IStream stream = createRemoteStream(frame.getStreamId());
             if (stream != null)
             {
+                if (frame.getPriority() != null)
+                    onPriority(frame.getPriority());
                 stream.process(frame, Callback.Adapter.INSTANCE);
                 Stream.Listener listener = notifyNewStream(stream, frame);
                 stream.setListener(listener);
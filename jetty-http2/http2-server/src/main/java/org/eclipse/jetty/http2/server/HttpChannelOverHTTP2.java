@@ -32,6 +32,7 @@ import org.eclipse.jetty.http2.IStream;
 import org.eclipse.jetty.http2.api.Stream;
 import org.eclipse.jetty.http2.frames.DataFrame;
 import org.eclipse.jetty.http2.frames.HeadersFrame;
+import org.eclipse.jetty.http2.hpack.MetaDataBuilder;
 import org.eclipse.jetty.io.ByteBufferPool;
 import org.eclipse.jetty.io.EndPoint;
 import org.eclipse.jetty.server.Connector;
@@ -51,6 +52,7 @@ public class HttpChannelOverHTTP2 extends HttpChannel
 
     private boolean _expect100Continue;
     private boolean _delayedUntilContent;
+    private MetaDataBuilder.PooledRequest _pooledRequest;
 
     public HttpChannelOverHTTP2(Connector connector, HttpConfiguration configuration, EndPoint endPoint, HttpTransportOverHTTP2 transport)
     {
@@ -72,6 +74,8 @@ public class HttpChannelOverHTTP2 extends HttpChannel
     {
         MetaData.Request request = (MetaData.Request)frame.getMetaData();
         HttpFields fields = request.getFields();
+        if (request instanceof MetaDataBuilder.PooledRequest)
+            _pooledRequest = (MetaDataBuilder.PooledRequest)request;
 
         _expect100Continue = fields.contains(HttpHeader.EXPECT, HttpHeaderValue.CONTINUE.asString());
 
@@ -134,6 +138,11 @@ public class HttpChannelOverHTTP2 extends HttpChannel
         _delayedUntilContent = false;
         super.recycle();
         getHttpTransport().recycle();
+        if (_pooledRequest != null)
+        {
+            _pooledRequest.release();
+            _pooledRequest = null;
+        }
     }
 
     @Override
@@ -149,6 +149,33 @@ public abstract class AbstractEndPoint extends IdleTimeout implements EndPoint
         return _writeFlusher;
     }
 
+    /**
+     * @return whether writes issued while a write is in progress are queued and flushed together
+     * @see WriteFlusher#isCoalescing()
+     */
+    public boolean isWriteCoalescing()
+    {
+        return getWriteFlusher().isCoalescing();
+    }
+
+    /**
+     * @param coalescing whether writes issued while a write is in progress are queued and flushed together
+     * @see WriteFlusher#setCoalescing(boolean)
+     */
+    public void setWriteCoalescing(boolean coalescing)
+    {
+        getWriteFlusher().setCoalescing(coalescing);
+    }
+
+    /**
+     * @param statistics the statistics to update when writing, or null
+     * @see WriteFlusher#setStatistics(WriteFlusher.Statistics)
+     */
+    public void setWriteStatistics(WriteFlusher.Statistics statistics)
+    {
+        getWriteFlusher().setStatistics(statistics);
+    }
+
     @Override
     protected void onIdleExpired(TimeoutException timeout)
     {
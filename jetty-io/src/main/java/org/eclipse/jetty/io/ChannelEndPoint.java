@@ -23,6 +23,7 @@ import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.nio.ByteBuffer;
 import java.nio.channels.ByteChannel;
+import java.nio.channels.FileChannel;
 import java.nio.channels.GatheringByteChannel;
 import java.nio.channels.SocketChannel;
 
@@ -210,6 +211,39 @@ public class ChannelEndPoint extends AbstractEndPoint
         return true;
     }
 
+    /**
+     * <p>Transfers bytes from a file directly to the channel of this endpoint,
+     * using {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}
+     * so that the content need not be copied through user space buffers.</p>
+     * <p>Like {@link #flush(ByteBuffer...)} this method does not block on a non blocking
+     * channel and may transfer fewer bytes than requested, or none at all if the
+     * channel is not writable.</p>
+     *
+     * @param file the file to transfer from
+     * @param position the position within the file of the first byte to transfer
+     * @param count the maximum number of bytes to transfer
+     * @return the number of bytes transferred, possibly zero
+     * @throws IOException if the transfer fails
+     */
+    public long transferFrom(FileChannel file, long position, long count) throws IOException
+    {
+        long transferred;
+        try
+        {
+            transferred=file.transferTo(position,count,_channel);
+            if (LOG.isDebugEnabled())
+                LOG.debug("transferred {} {}", transferred, this);
+        }
+        catch (IOException e)
+        {
+            throw new EofException(e);
+        }
+
+        if (transferred>0)
+            notIdle();
+        return transferred;
+    }
+
     public ByteChannel getChannel()
     {
         return _channel;
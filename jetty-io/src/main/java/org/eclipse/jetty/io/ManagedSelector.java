@@ -36,24 +36,35 @@ import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.eclipse.jetty.util.ConcurrentArrayQueue;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
 import org.eclipse.jetty.util.component.AbstractLifeCycle;
 import org.eclipse.jetty.util.component.ContainerLifeCycle;
 import org.eclipse.jetty.util.component.Dumpable;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
+import org.eclipse.jetty.util.statistic.SampleStatistic;
 import org.eclipse.jetty.util.thread.ExecutionStrategy;
 import org.eclipse.jetty.util.thread.Scheduler;
 import org.eclipse.jetty.util.thread.SpinLock;
+import org.eclipse.jetty.util.thread.VirtualThreadPool;
 
 /**
  * <p>{@link ManagedSelector} wraps a {@link Selector} simplifying non-blocking operations on channels.</p>
  * <p>{@link ManagedSelector} runs the select loop, which waits on {@link Selector#select()} until events
  * happen for registered channels. When events happen, it notifies the {@link EndPoint} associated
  * with the channel.</p>
+ * <p>{@link ManagedSelector} also collects statistics about the select loop, such as the number of
+ * selects, the number of keys selected per wake up and the time spent in {@link Selector#select()}
+ * versus the time spent processing the selected keys.</p>
  */
-public class ManagedSelector extends AbstractLifeCycle implements Runnable, Dumpable
+@ManagedObject("Manager of a NIO Selector")
+public class ManagedSelector extends AbstractLifeCycle implements VirtualThreadPool.PlatformJob, Dumpable
 {
     private static final Logger LOG = Log.getLogger(ManagedSelector.class);
 
@@ -63,6 +74,13 @@ public class ManagedSelector extends AbstractLifeCycle implements Runnable, Dump
     private final SelectorManager _selectorManager;
     private final int _id;
     private final ExecutionStrategy _strategy;
+    private final SampleStatistic _readyKeys = new SampleStatistic();
+    private final AtomicLong _selectNanos = new AtomicLong();
+    private final AtomicLong _processNanos = new AtomicLong();
+    private final AtomicInteger _recentlyChosen = new AtomicInteger();
+    private volatile long _statisticsStarted = System.nanoTime();
+    private volatile double _recentReadyKeys;
+    private long _selectEnded;
     private Selector _selector;
 
     public ManagedSelector(SelectorManager selectorManager, int id)
@@ -82,9 +100,10 @@ public class ManagedSelector extends AbstractLifeCycle implements Runnable, Dump
 
     protected Selector newSelector() throws IOException
     {
-        return Selector.open();
+        return _selectorManager.getSelectorProvider().openSelector();
     }
 
+    @ManagedAttribute("The number of keys registered to the selector")
     public int size()
     {
         Selector s = _selector;
@@ -93,6 +112,109 @@ public class ManagedSelector extends AbstractLifeCycle implements Runnable, Dump
         return s.keys().size();
     }
 
+    /**
+     * @return the number of times the selector woke up from select
+     */
+    @ManagedAttribute("The number of selects")
+    public long getSelects()
+    {
+        return _readyKeys.getCount();
+    }
+
+    /**
+     * @return the number of selects per second since the statistics were reset
+     */
+    @ManagedAttribute("The number of selects per second")
+    public double getSelectsPerSecond()
+    {
+        long elapsed = System.nanoTime() - _statisticsStarted;
+        return elapsed <= 0 ? 0.0 : getSelects() * (double)TimeUnit.SECONDS.toNanos(1) / elapsed;
+    }
+
+    /**
+     * @return the average number of keys selected per wake up
+     */
+    @ManagedAttribute("The average number of keys selected per wake up")
+    public double getAverageReadyKeys()
+    {
+        return getSelects() == 0 ? 0.0 : _readyKeys.getMean();
+    }
+
+    /**
+     * @return the maximum number of keys selected per wake up
+     */
+    @ManagedAttribute("The maximum number of keys selected per wake up")
+    public long getMaxReadyKeys()
+    {
+        return _readyKeys.getMax();
+    }
+
+    /**
+     * @return a moving average of the number of keys selected per wake up,
+     * that favours the most recent wake ups
+     */
+    @ManagedAttribute("The moving average of the number of keys selected per wake up")
+    public double getRecentReadyKeys()
+    {
+        return _recentReadyKeys;
+    }
+
+    /**
+     * @return the number of times this selector was chosen for a channel since it last woke up,
+     * which is not yet reflected by {@link #getRecentReadyKeys()}
+     */
+    @ManagedAttribute("The number of times the selector was chosen since it last woke up")
+    public int getRecentlyChosen()
+    {
+        return _recentlyChosen.get();
+    }
+
+    /**
+     * <p>Called by a {@link SelectorChooser} when it chooses this selector for a channel.</p>
+     */
+    void chosen()
+    {
+        _recentlyChosen.incrementAndGet();
+    }
+
+    /**
+     * @return the time in ms spent waiting in {@link Selector#select()}
+     */
+    @ManagedAttribute("The time in ms spent in select()")
+    public long getSelectTime()
+    {
+        return TimeUnit.NANOSECONDS.toMillis(_selectNanos.get());
+    }
+
+    /**
+     * @return the time in ms spent between selects, processing the selected keys and actions
+     */
+    @ManagedAttribute("The time in ms spent processing between selects")
+    public long getProcessTime()
+    {
+        return TimeUnit.NANOSECONDS.toMillis(_processNanos.get());
+    }
+
+    /**
+     * @return the fraction of time spent in {@link Selector#select()} rather than processing
+     */
+    @ManagedAttribute("The fraction of time spent in select() rather than processing")
+    public double getSelectRatio()
+    {
+        long select = _selectNanos.get();
+        long total = select + _processNanos.get();
+        return total == 0 ? 0.0 : (double)select / total;
+    }
+
+    @ManagedOperation(value = "Resets the statistics", impact = "ACTION")
+    public void resetStatistics()
+    {
+        _readyKeys.reset();
+        _selectNanos.set(0);
+        _processNanos.set(0);
+        _statisticsStarted = System.nanoTime();
+    }
+
     @Override
     protected void doStop() throws Exception
     {
@@ -228,7 +350,13 @@ public class ManagedSelector extends AbstractLifeCycle implements Runnable, Dump
                 {
                     if (LOG.isDebugEnabled())
                         LOG.debug("Selector loop waiting on select");
+                    long begin = System.nanoTime();
+                    if (_selectEnded != 0)
+                        _processNanos.addAndGet(begin - _selectEnded);
                     int selected = selector.select();
+                    long end = System.nanoTime();
+                    _selectEnded = end;
+                    _selectNanos.addAndGet(end - begin);
                     if (LOG.isDebugEnabled())
                         LOG.debug("Selector loop woken up from select, {}/{} selected", selected, selector.keys().size());
 
@@ -241,6 +369,11 @@ public class ManagedSelector extends AbstractLifeCycle implements Runnable, Dump
                     _keys = selector.selectedKeys();
                     _cursor = _keys.iterator();
 
+                    int ready = _keys.size();
+                    _readyKeys.set(ready);
+                    _recentReadyKeys = _recentReadyKeys * 0.875 + ready * 0.125;
+                    _recentlyChosen.set(0);
+
                     return true;
                 }
             }
@@ -0,0 +1,215 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+
+package org.eclipse.jetty.io;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+
+/**
+ * <p>Chooses the {@link ManagedSelector} a channel is registered to by {@link SelectorManager}.</p>
+ *
+ * @see SelectorManager#setSelectorChooser(SelectorChooser)
+ */
+public interface SelectorChooser
+{
+    /**
+     * @param selectors the selectors to choose from
+     * @param channel the channel to register, or null for a server channel
+     * @return the selector to register the channel to
+     */
+    public ManagedSelector choose(ManagedSelector[] selectors, SocketChannel channel);
+
+    /**
+     * <p>Chooses the selectors in turn.</p>
+     */
+    public static class RoundRobin implements SelectorChooser
+    {
+        private long _index;
+
+        @Override
+        public ManagedSelector choose(ManagedSelector[] selectors, SocketChannel channel)
+        {
+            // The ++ increment here is not atomic, but it does not matter,
+            // so long as the value changes sometimes, then connections will
+            // be distributed over the available selectors.
+            long s = _index++;
+            return selectors[(int)(s % selectors.length)];
+        }
+
+        @Override
+        public String toString()
+        {
+            return getClass().getSimpleName();
+        }
+    }
+
+    /**
+     * <p>Chooses the selector with the least registered keys.</p>
+     */
+    public static class LeastConnections implements SelectorChooser
+    {
+        @Override
+        public ManagedSelector choose(ManagedSelector[] selectors, SocketChannel channel)
+        {
+            ManagedSelector candidate = selectors[0];
+            int size = candidate.size();
+            for (int i = 1; i < selectors.length; ++i)
+            {
+                int s = selectors[i].size();
+                if (s < size)
+                {
+                    candidate = selectors[i];
+                    size = s;
+                }
+            }
+            return candidate;
+        }
+
+        @Override
+        public String toString()
+        {
+            return getClass().getSimpleName();
+        }
+    }
+
+    /**
+     * <p>Chooses the selector with the least keys recently selected per wake up,
+     * as given by {@link ManagedSelector#getRecentReadyKeys()}.</p>
+     * <p>This favours the selectors with the least I/O activity rather than the
+     * least connections, so that selectors with many busy long lived connections
+     * are avoided.</p>
+     * <p>The moving average is only updated when a selector wakes up, so the channels
+     * chosen since then, as given by {@link ManagedSelector#getRecentlyChosen()}, are
+     * counted as ready keys too. This spreads a burst of accepted channels over the
+     * selectors.</p>
+     */
+    public static class LeastRecentReadyKeys implements SelectorChooser
+    {
+        @Override
+        public ManagedSelector choose(ManagedSelector[] selectors, SocketChannel channel)
+        {
+            ManagedSelector candidate = selectors[0];
+            double ready = candidate.getRecentReadyKeys() + candidate.getRecentlyChosen();
+            for (int i = 1; i < selectors.length; ++i)
+            {
+                double r = selectors[i].getRecentReadyKeys() + selectors[i].getRecentlyChosen();
+                if (r < ready || r == ready && selectors[i].size() < candidate.size())
+                {
+                    candidate = selectors[i];
+                    ready = r;
+                }
+            }
+            candidate.chosen();
+            return candidate;
+        }
+
+        @Override
+        public String toString()
+        {
+            return getClass().getSimpleName();
+        }
+    }
+
+    /**
+     * <p>Chooses the selector by hashing the remote address of the channel, so that all
+     * the connections from the same client are registered to the same selector.</p>
+     * <p>Server channels, or channels without a remote address, are chosen in turn.</p>
+     */
+    public static class RemoteAddressHash extends RoundRobin
+    {
+        private static final Logger LOG = Log.getLogger(SelectorChooser.class);
+
+        @Override
+        public ManagedSelector choose(ManagedSelector[] selectors, SocketChannel channel)
+        {
+            int hash = hash(channel);
+            if (hash < 0)
+                return super.choose(selectors, channel);
+            return selectors[hash % selectors.length];
+        }
+
+        /**
+         * @param channel the channel
+         * @return a non negative hash of the remote address of the channel, or -1 if it is not known
+         */
+        protected static int hash(SocketChannel channel)
+        {
+            byte[] addr = getRemoteAddress(channel);
+            return addr == null ? -1 : Arrays.hashCode(addr) & Integer.MAX_VALUE;
+        }
+
+        /**
+         * @param channel the channel
+         * @return the remote IP address of the channel, or null if it is not known
+         */
+        protected static byte[] getRemoteAddress(SocketChannel channel)
+        {
+            if (channel != null)
+            {
+                try
+                {
+                    SocketAddress remote = channel.getRemoteAddress();
+                    if (remote instanceof InetSocketAddress)
+                        return ((InetSocketAddress)remote).getAddress().getAddress();
+                }
+                catch (IOException x)
+                {
+                    LOG.ignore(x);
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * <p>The default chooser, that registers channels from the same remote address to the
+     * same selector, unless that selector has twice as many keys as the selector that
+     * would be chosen in turn.</p>
+     * <p>Unlike {@link RemoteAddressHash}, the selector of a remote address is chosen by
+     * the last byte of the address only, as it always has been, so that upgrading does
+     * not change which selector the channels of a client are registered to.</p>
+     * <p>Ideally we would like to have all connections from the same client end
+     * up on the same selector (to try to avoid smearing the data from a single
+     * client over all cores), but because of proxies, the remote address may not
+     * really be the client - so we have to hedge our bets to ensure that all
+     * channels don't end up on the one selector for a proxy.</p>
+     */
+    public static class Default extends RemoteAddressHash
+    {
+        private final RoundRobin _roundRobin = new RoundRobin();
+
+        @Override
+        public ManagedSelector choose(ManagedSelector[] selectors, SocketChannel channel)
+        {
+            byte[] addr = getRemoteAddress(channel);
+            ManagedSelector candidate1 = addr == null ? null : selectors[(addr[addr.length - 1] & 0xFF) % selectors.length];
+            ManagedSelector candidate2 = _roundRobin.choose(selectors, channel);
+            if (candidate1 == null || candidate1.size() >= candidate2.size() * 2)
+                return candidate2;
+            return candidate1;
+        }
+    }
+}
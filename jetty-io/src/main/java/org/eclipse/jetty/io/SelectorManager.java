@@ -19,15 +19,19 @@
 package org.eclipse.jetty.io;
 
 import java.io.IOException;
-import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.net.SocketAddress;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
+import java.nio.channels.spi.SelectorProvider;
 import java.util.concurrent.Executor;
 
+import org.eclipse.jetty.util.Loader;
 import org.eclipse.jetty.util.TypeUtil;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
 import org.eclipse.jetty.util.component.AbstractLifeCycle;
 import org.eclipse.jetty.util.component.ContainerLifeCycle;
 import org.eclipse.jetty.util.component.Dumpable;
@@ -41,6 +45,7 @@ import org.eclipse.jetty.util.thread.Scheduler;
  * <p>{@link SelectorManager} subclasses implement methods to return protocol-specific
  * {@link EndPoint}s and {@link Connection}s.</p>
  */
+@ManagedObject("Manager of the NIO Selectors")
 public abstract class SelectorManager extends AbstractLifeCycle implements Dumpable
 {
     public static final int DEFAULT_CONNECT_TIMEOUT = 15000;
@@ -50,7 +55,8 @@ public abstract class SelectorManager extends AbstractLifeCycle implements Dumpa
     private final Scheduler scheduler;
     private final ManagedSelector[] _selectors;
     private long _connectTimeout = DEFAULT_CONNECT_TIMEOUT;
-    private long _selectorIndex;
+    private SelectorChooser _selectorChooser = new SelectorChooser.Default();
+    private SelectorProvider _selectorProvider = SelectorProvider.provider();
 
     protected SelectorManager(Executor executor, Scheduler scheduler)
     {
@@ -128,50 +134,151 @@ public abstract class SelectorManager extends AbstractLifeCycle implements Dumpa
     /**
      * @return the number of selectors in use
      */
+    @ManagedAttribute("The number of NIO Selectors")
     public int getSelectorCount()
     {
         return _selectors.length;
     }
 
+    /**
+     * @return the provider of the selectors, and of the channels registered to them
+     */
+    public SelectorProvider getSelectorProvider()
+    {
+        return _selectorProvider;
+    }
+
+    /**
+     * <p>Sets the provider of the selectors.</p>
+     * <p>Channels registered to this {@link SelectorManager} must be opened with the same
+     * provider, for example with {@link SelectorProvider#openSocketChannel()}.</p>
+     *
+     * @param selectorProvider the provider of the selectors
+     */
+    public void setSelectorProvider(SelectorProvider selectorProvider)
+    {
+        if (isRunning())
+            throw new IllegalStateException(getState());
+        if (selectorProvider == null)
+            throw new IllegalArgumentException("Null SelectorProvider");
+        _selectorProvider = selectorProvider;
+    }
+
+    /**
+     * @return the class name of the provider of the selectors
+     */
+    @ManagedAttribute("The class name of the provider of the selectors")
+    public String getSelectorProviderClassName()
+    {
+        return _selectorProvider.getClass().getName();
+    }
+
+    /**
+     * <p>Sets the provider of the selectors by class name, typically a provider
+     * backed by a native transport.</p>
+     * <p>If the class cannot be loaded or instantiated, for example because its native
+     * library is not available on this platform, the JVM default provider is used.</p>
+     *
+     * @param className the class name of a {@link SelectorProvider} with a no-arguments constructor
+     */
+    public void setSelectorProviderClassName(String className)
+    {
+        try
+        {
+            setSelectorProvider((SelectorProvider)Loader.loadClass(SelectorManager.class, className).newInstance());
+        }
+        catch (IllegalStateException x)
+        {
+            throw x;
+        }
+        catch (Throwable x)
+        {
+            LOG.warn("Could not use SelectorProvider {}, falling back to {}", className, SelectorProvider.provider().getClass().getName());
+            LOG.debug(x);
+            setSelectorProvider(SelectorProvider.provider());
+        }
+    }
+
+    /**
+     * @return the strategy that chooses the selector a channel is registered to
+     */
+    @ManagedAttribute("The strategy that chooses the selector of new channels")
+    public SelectorChooser getSelectorChooser()
+    {
+        return _selectorChooser;
+    }
+
+    /**
+     * @param selectorChooser the strategy that chooses the selector a channel is registered to
+     */
+    public void setSelectorChooser(SelectorChooser selectorChooser)
+    {
+        if (selectorChooser == null)
+            throw new IllegalArgumentException("Null SelectorChooser");
+        _selectorChooser = selectorChooser;
+    }
+
     private ManagedSelector chooseSelector(SocketChannel channel)
     {
-        // Ideally we would like to have all connections from the same client end
-        // up on the same selector (to try to avoid smearing the data from a single 
-        // client over all cores), but because of proxies, the remote address may not
-        // really be the client - so we have to hedge our bets to ensure that all
-        // channels don't end up on the one selector for a proxy.
-        ManagedSelector candidate1 = null;
-        if (channel != null)
+        return _selectorChooser.choose(_selectors, channel);
+    }
+
+    @ManagedAttribute("The number of keys registered to each selector")
+    public int[] getSelectorKeys()
+    {
+        int[] result = new int[_selectors.length];
+        for (int i = 0; i < result.length; ++i)
         {
-            try
-            {
-                SocketAddress remote = channel.getRemoteAddress();
-                if (remote instanceof InetSocketAddress)
-                {
-                    byte[] addr = ((InetSocketAddress)remote).getAddress().getAddress();
-                    if (addr != null)
-                    {
-                        int s = addr[addr.length - 1] & 0xFF;
-                        candidate1 = _selectors[s % getSelectorCount()];
-                    }
-                }
-            }
-            catch (IOException x)
-            {
-                LOG.ignore(x);
-            }
+            ManagedSelector selector = _selectors[i];
+            result[i] = selector == null ? 0 : selector.size();
         }
+        return result;
+    }
 
-        // The ++ increment here is not atomic, but it does not matter,
-        // so long as the value changes sometimes, then connections will
-        // be distributed over the available selectors.
-        long s = _selectorIndex++;
-        int index = (int)(s % getSelectorCount());
-        ManagedSelector candidate2 = _selectors[index];
+    @ManagedAttribute("The number of selects per second of each selector")
+    public double[] getSelectorSelectsPerSecond()
+    {
+        double[] result = new double[_selectors.length];
+        for (int i = 0; i < result.length; ++i)
+        {
+            ManagedSelector selector = _selectors[i];
+            result[i] = selector == null ? 0 : selector.getSelectsPerSecond();
+        }
+        return result;
+    }
+
+    @ManagedAttribute("The average number of keys selected per wake up of each selector")
+    public double[] getSelectorAverageReadyKeys()
+    {
+        double[] result = new double[_selectors.length];
+        for (int i = 0; i < result.length; ++i)
+        {
+            ManagedSelector selector = _selectors[i];
+            result[i] = selector == null ? 0 : selector.getAverageReadyKeys();
+        }
+        return result;
+    }
 
-        if (candidate1 == null || candidate1.size() >= candidate2.size() * 2)
-            return candidate2;
-        return candidate1;
+    @ManagedAttribute("The fraction of time spent in select() rather than processing, for each selector")
+    public double[] getSelectorSelectRatio()
+    {
+        double[] result = new double[_selectors.length];
+        for (int i = 0; i < result.length; ++i)
+        {
+            ManagedSelector selector = _selectors[i];
+            result[i] = selector == null ? 0 : selector.getSelectRatio();
+        }
+        return result;
+    }
+
+    @ManagedOperation(value = "Resets the selector statistics", impact = "ACTION")
+    public void resetSelectorStatistics()
+    {
+        for (ManagedSelector selector : _selectors)
+        {
+            if (selector != null)
+                selector.resetStatistics();
+        }
     }
 
     /**
@@ -0,0 +1,487 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+
+package org.eclipse.jetty.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.component.ContainerLifeCycle;
+import org.eclipse.jetty.util.component.Dumpable;
+
+/**
+ * <p>A {@link ByteBufferPool} that keeps a small per-thread cache of buffers in front of
+ * bounded, lock-free shared buckets.</p>
+ * <p>Buffers are grouped in size classes that are multiples of {@code increment}, as in
+ * {@link ArrayByteBufferPool}. Every thread has a "magazine" of at most {@code magazineSize}
+ * buffers for each size class it uses, so that a thread that acquires and releases buffers
+ * does not touch any shared state. When a magazine is empty it is refilled with half of its
+ * capacity from the shared bucket; when it is full, half of it is returned to the shared bucket.</p>
+ * <p>Each shared bucket retains at most {@code maxBucketMemory} bytes; buffers released to a
+ * full bucket are dropped and left to the garbage collector. Buffers held in magazines are not
+ * counted against this limit, so the worst case memory retained by the pool also includes
+ * {@code magazineSize} buffers per size class per thread.</p>
+ * <p>Acquire, release and miss counters are accumulated per thread and published to the
+ * shared counters periodically and whenever a magazine is exchanged with its bucket,
+ * so they may lag slightly behind the actual values.</p>
+ */
+@ManagedObject("A ByteBufferPool with per-thread caches and bounded buckets")
+public class ThreadLocalByteBufferPool implements ByteBufferPool, Dumpable
+{
+    private static final int PUBLISH_PERIOD = 64;
+
+    private final ThreadLocal<Magazines> _magazines = new ThreadLocal<>();
+    private final AtomicInteger _generation = new AtomicInteger();
+    private final int _min;
+    private final int _inc;
+    private final int _magazineSize;
+    private final long _maxBucketMemory;
+    private final Bucket[] _direct;
+    private final Bucket[] _indirect;
+
+    public ThreadLocalByteBufferPool()
+    {
+        this(0,1024,64*1024,16,4*1024*1024);
+    }
+
+    /**
+     * @param minSize the size at or below which buffers are not pooled
+     * @param increment the size increment between size classes
+     * @param maxSize the size above which buffers are not pooled
+     * @param magazineSize the max number of buffers cached per thread for each size class
+     * @param maxBucketMemory the max number of bytes retained by the shared bucket of each size class, or -1 for no limit
+     */
+    public ThreadLocalByteBufferPool(int minSize, int increment, int maxSize, int magazineSize, long maxBucketMemory)
+    {
+        if (minSize>=increment)
+            throw new IllegalArgumentException("minSize >= increment");
+        if ((maxSize%increment)!=0 || increment>=maxSize)
+            throw new IllegalArgumentException("increment must be a divisor of maxSize");
+        if (magazineSize<2)
+            throw new IllegalArgumentException("magazineSize < 2");
+        _min=minSize;
+        _inc=increment;
+        _magazineSize=magazineSize;
+        _maxBucketMemory=maxBucketMemory;
+
+        _direct=new Bucket[maxSize/increment];
+        _indirect=new Bucket[maxSize/increment];
+
+        int size=0;
+        for (int i=0;i<_direct.length;i++)
+        {
+            size+=_inc;
+            _direct[i]=new Bucket(i,size,true,maxBucketMemory);
+            _indirect[i]=new Bucket(i,size,false,maxBucketMemory);
+        }
+    }
+
+    @Override
+    public ByteBuffer acquire(int size, boolean direct)
+    {
+        Bucket bucket = bucketFor(size,direct);
+        if (bucket==null)
+            return newByteBuffer(size,direct);
+
+        ByteBuffer buffer = magazineFor(bucket).acquire();
+        if (buffer==null)
+            buffer=newByteBuffer(bucket._size,direct);
+        return buffer;
+    }
+
+    protected ByteBuffer newByteBuffer(int capacity, boolean direct)
+    {
+        return direct ? BufferUtil.allocateDirect(capacity) : BufferUtil.allocate(capacity);
+    }
+
+    @Override
+    public void release(ByteBuffer buffer)
+    {
+        if (buffer!=null)
+        {
+            Bucket bucket = bucketFor(buffer.capacity(),buffer.isDirect());
+            if (bucket!=null && bucket._size==buffer.capacity())
+            {
+                BufferUtil.clear(buffer);
+                magazineFor(bucket).release(buffer);
+            }
+        }
+    }
+
+    /**
+     * <p>Discards all the buffers retained by the shared buckets.</p>
+     * <p>Buffers cached by threads are discarded lazily, the next time each
+     * thread acquires or releases a buffer.</p>
+     */
+    @ManagedOperation(value="Discards all pooled buffers", impact="ACTION")
+    public void clear()
+    {
+        _generation.incrementAndGet();
+        for (int i=0;i<_direct.length;i++)
+        {
+            _direct[i].clear();
+            _indirect[i].clear();
+        }
+    }
+
+    @ManagedOperation(value="Resets the statistics", impact="ACTION")
+    public void resetStatistics()
+    {
+        for (int i=0;i<_direct.length;i++)
+        {
+            _direct[i].resetStatistics();
+            _indirect[i].resetStatistics();
+        }
+    }
+
+    @ManagedAttribute("The size at or below which buffers are not pooled")
+    public int getMinSize()
+    {
+        return _min;
+    }
+
+    @ManagedAttribute("The size increment between size classes")
+    public int getIncrement()
+    {
+        return _inc;
+    }
+
+    @ManagedAttribute("The size above which buffers are not pooled")
+    public int getMaxSize()
+    {
+        return _inc*_direct.length;
+    }
+
+    @ManagedAttribute("The max number of buffers cached per thread for each size class")
+    public int getMagazineSize()
+    {
+        return _magazineSize;
+    }
+
+    @ManagedAttribute("The max number of bytes retained by each size class, or -1 for no limit")
+    public long getMaxBucketMemory()
+    {
+        return _maxBucketMemory;
+    }
+
+    @ManagedAttribute("The bytes retained in direct buffers by the shared buckets")
+    public long getDirectMemory()
+    {
+        return getMemory(_direct);
+    }
+
+    @ManagedAttribute("The bytes retained in heap buffers by the shared buckets")
+    public long getHeapMemory()
+    {
+        return getMemory(_indirect);
+    }
+
+    @ManagedAttribute("The number of buffers acquired")
+    public long getAcquires()
+    {
+        long result=0;
+        for (int i=0;i<_direct.length;i++)
+            result+=_direct[i]._acquires.get()+_indirect[i]._acquires.get();
+        return result;
+    }
+
+    @ManagedAttribute("The number of buffers released")
+    public long getReleases()
+    {
+        long result=0;
+        for (int i=0;i<_direct.length;i++)
+            result+=_direct[i]._releases.get()+_indirect[i]._releases.get();
+        return result;
+    }
+
+    @ManagedAttribute("The number of acquires that had to allocate a new buffer")
+    public long getMisses()
+    {
+        long result=0;
+        for (int i=0;i<_direct.length;i++)
+            result+=_direct[i]._misses.get()+_indirect[i]._misses.get();
+        return result;
+    }
+
+    @ManagedAttribute("The number of released buffers dropped because their size class was full")
+    public long getDrops()
+    {
+        long result=0;
+        for (int i=0;i<_direct.length;i++)
+            result+=_direct[i]._drops.get()+_indirect[i]._drops.get();
+        return result;
+    }
+
+    private long getMemory(Bucket[] buckets)
+    {
+        long result=0;
+        for (Bucket bucket : buckets)
+            result+=bucket._memory.get();
+        return result;
+    }
+
+    @Override
+    public String dump()
+    {
+        return ContainerLifeCycle.dump(this);
+    }
+
+    @Override
+    public void dump(Appendable out, String indent) throws IOException
+    {
+        ContainerLifeCycle.dumpObject(out,this);
+        ContainerLifeCycle.dump(out,indent,Arrays.asList(_direct),Arrays.asList(_indirect));
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{magazine=%d,direct=%d,heap=%d}",getClass().getSimpleName(),hashCode(),_magazineSize,getDirectMemory(),getHeapMemory());
+    }
+
+    private Bucket bucketFor(int size,boolean direct)
+    {
+        if (size<=_min)
+            return null;
+        int b=(size-1)/_inc;
+        if (b>=_direct.length)
+            return null;
+        return direct?_direct[b]:_indirect[b];
+    }
+
+    private Magazine magazineFor(Bucket bucket)
+    {
+        int generation=_generation.get();
+        Magazines magazines=_magazines.get();
+        if (magazines==null || magazines._generation!=generation)
+        {
+            magazines=new Magazines(generation,_direct.length);
+            _magazines.set(magazines);
+        }
+
+        Magazine[] array=bucket._direct?magazines._direct:magazines._indirect;
+        Magazine magazine=array[bucket._index];
+        if (magazine==null)
+        {
+            magazine=new Magazine(bucket,_magazineSize);
+            array[bucket._index]=magazine;
+        }
+        return magazine;
+    }
+
+    // Package local for testing
+    Bucket[] bucketsFor(boolean direct)
+    {
+        return direct ? _direct : _indirect;
+    }
+
+    /**
+     * <p>The shared, bounded pool of buffers of a size class.</p>
+     */
+    public static class Bucket
+    {
+        private final Queue<ByteBuffer> _queue = new ConcurrentLinkedQueue<>();
+        private final AtomicLong _memory = new AtomicLong();
+        private final AtomicLong _acquires = new AtomicLong();
+        private final AtomicLong _releases = new AtomicLong();
+        private final AtomicLong _misses = new AtomicLong();
+        private final AtomicLong _drops = new AtomicLong();
+        private final int _index;
+        private final int _size;
+        private final boolean _direct;
+        private final long _maxMemory;
+
+        Bucket(int index, int size, boolean direct, long maxMemory)
+        {
+            _index=index;
+            _size=size;
+            _direct=direct;
+            _maxMemory=maxMemory;
+        }
+
+        public int getSize()
+        {
+            return _size;
+        }
+
+        public int getCount()
+        {
+            return (int)(_memory.get()/_size);
+        }
+
+        public long getMemory()
+        {
+            return _memory.get();
+        }
+
+        private int take(ByteBuffer[] buffers, int max)
+        {
+            int count=0;
+            while (count<max)
+            {
+                ByteBuffer buffer=_queue.poll();
+                if (buffer==null)
+                    break;
+                _memory.addAndGet(-_size);
+                buffers[count++]=buffer;
+            }
+            return count;
+        }
+
+        private void give(ByteBuffer[] buffers, int from, int to)
+        {
+            for (int i=from;i<to;i++)
+            {
+                ByteBuffer buffer=buffers[i];
+                buffers[i]=null;
+                long memory=_memory.addAndGet(_size);
+                if (_maxMemory>=0 && memory>_maxMemory)
+                {
+                    _memory.addAndGet(-_size);
+                    _drops.incrementAndGet();
+                }
+                else
+                {
+                    _queue.offer(buffer);
+                }
+            }
+        }
+
+        private void clear()
+        {
+            ByteBuffer buffer=_queue.poll();
+            while (buffer!=null)
+            {
+                _memory.addAndGet(-_size);
+                buffer=_queue.poll();
+            }
+        }
+
+        private void resetStatistics()
+        {
+            _acquires.set(0);
+            _releases.set(0);
+            _misses.set(0);
+            _drops.set(0);
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("Bucket@%x{%s,%d,%d/%d,a=%d,r=%d,m=%d,d=%d}",
+                    hashCode(),_direct?"direct":"heap",_size,getCount(),_maxMemory<0?-1:_maxMemory/_size,
+                    _acquires.get(),_releases.get(),_misses.get(),_drops.get());
+        }
+    }
+
+    /**
+     * <p>The per-thread cache of buffers of a size class.</p>
+     * <p>Only ever accessed by the thread that owns it.</p>
+     */
+    private static class Magazine
+    {
+        private final Bucket _bucket;
+        private final ByteBuffer[] _buffers;
+        private int _count;
+        private int _acquires;
+        private int _releases;
+        private int _misses;
+
+        private Magazine(Bucket bucket, int size)
+        {
+            _bucket=bucket;
+            _buffers=new ByteBuffer[size];
+        }
+
+        private ByteBuffer acquire()
+        {
+            ++_acquires;
+            if (_count==0)
+            {
+                _count=_bucket.take(_buffers,_buffers.length/2);
+                if (_count==0)
+                    ++_misses;
+                publish();
+                if (_count==0)
+                    return null;
+            }
+            else if (_acquires+_releases>=PUBLISH_PERIOD)
+            {
+                publish();
+            }
+
+            ByteBuffer buffer=_buffers[--_count];
+            _buffers[_count]=null;
+            return buffer;
+        }
+
+        private void release(ByteBuffer buffer)
+        {
+            ++_releases;
+            if (_count==_buffers.length)
+            {
+                int half=_buffers.length/2;
+                _bucket.give(_buffers,half,_count);
+                _count=half;
+                publish();
+            }
+            else if (_acquires+_releases>=PUBLISH_PERIOD)
+            {
+                publish();
+            }
+            _buffers[_count++]=buffer;
+        }
+
+        private void publish()
+        {
+            if (_acquires>0)
+                _bucket._acquires.addAndGet(_acquires);
+            if (_releases>0)
+                _bucket._releases.addAndGet(_releases);
+            if (_misses>0)
+                _bucket._misses.addAndGet(_misses);
+            _acquires=0;
+            _releases=0;
+            _misses=0;
+        }
+    }
+
+    private static class Magazines
+    {
+        private final int _generation;
+        private final Magazine[] _direct;
+        private final Magazine[] _indirect;
+
+        private Magazines(int generation, int size)
+        {
+            _generation=generation;
+            _direct=new Magazine[size];
+            _indirect=new Magazine[size];
+        }
+    }
+}
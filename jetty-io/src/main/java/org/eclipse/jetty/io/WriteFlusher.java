@@ -22,10 +22,15 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.WritePendingException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.EnumMap;
 import java.util.EnumSet;
+import java.util.List;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.eclipse.jetty.util.BufferUtil;
@@ -40,6 +45,10 @@ import org.eclipse.jetty.util.log.Logger;
  * The abstract method {@link #onIncompleteFlush()} is called when not all content has been written after a call to
  * flush and should organize for the {@link #completeWrite()} method to be called when a subsequent call to flush
  * should  be able to make more progress.
+ * <p>In {@link #setCoalescing(boolean) coalescing mode}, a write issued while another write is in progress
+ * does not throw {@link WritePendingException}, but is queued. When the write in progress completes,
+ * all the queued writes are flushed together with a single call to {@link EndPoint#flush(ByteBuffer...)}, and
+ * their callbacks are completed in the order the writes were issued.</p>
  */
 abstract public class WriteFlusher
 {
@@ -52,6 +61,9 @@ abstract public class WriteFlusher
     private static final State __COMPLETING = new CompletingState();
     private final EndPoint _endPoint;
     private final AtomicReference<State> _state = new AtomicReference<>();
+    private final Queue<Batch> _queue = new ConcurrentLinkedQueue<>();
+    private volatile boolean _coalescing;
+    private volatile Statistics _statistics;
 
     static
     {
@@ -294,9 +306,27 @@ abstract public class WriteFlusher
         if (DEBUG)
             LOG.debug("write: {} {}", this, BufferUtil.toDetailString(buffers));
 
+        if (_coalescing)
+        {
+            _queue.offer(new Batch(callback, buffers));
+            flushQueued();
+            return;
+        }
+
         if (!updateState(__IDLE,__WRITING))
             throw new WritePendingException();
 
+        writing(callback, buffers);
+    }
+
+    /**
+     * Writes the given buffers, with the state already switched to WRITING.
+     * @param callback the callback to call on either failed or complete
+     * @param buffers the buffers to flush to the endpoint
+     * @return true if the write is complete, false if it is pending
+     */
+    private boolean writing(Callback callback, ByteBuffer[] buffers)
+    {
         try
         {
             buffers=flush(buffers);
@@ -308,10 +338,12 @@ abstract public class WriteFlusher
                     LOG.debug("flushed incomplete");
                 PendingState pending=new PendingState(buffers, callback);
                 if (updateState(__WRITING,pending))
+                {
                     onIncompleteFlush();
-                else
-                    fail(pending);
-                return;
+                    return false;
+                }
+                fail(pending);
+                return true;
             }
 
             // If updateState didn't succeed, we don't care as our buffers have been written
@@ -319,6 +351,7 @@ abstract public class WriteFlusher
                 ignoreFail();
             if (callback!=null)
                 callback.succeeded();
+            return true;
         }
         catch (IOException e)
         {
@@ -331,6 +364,55 @@ abstract public class WriteFlusher
             }
             else
                 fail(new PendingState(buffers, callback));
+            return true;
+        }
+    }
+
+    /**
+     * Flushes the queued writes together, unless another write is in progress,
+     * in which case the queued writes are flushed when that write completes.
+     */
+    private void flushQueued()
+    {
+        while (!_queue.isEmpty())
+        {
+            if (!updateState(__IDLE,__WRITING))
+                return;
+
+            Batch batch = _queue.poll();
+            if (batch == null)
+            {
+                if (!updateState(__WRITING,__IDLE))
+                    ignoreFail();
+                continue;
+            }
+
+            Batch next = _queue.poll();
+            if (next != null)
+            {
+                List<Batch> batches = new ArrayList<>();
+                batches.add(batch);
+                while (next != null)
+                {
+                    batches.add(next);
+                    next = _queue.poll();
+                }
+                batch = new Batch(batches);
+            }
+
+            Statistics statistics = _statistics;
+            if (statistics != null)
+            {
+                statistics._batches.incrementAndGet();
+                statistics._batchedWrites.addAndGet(batch._batches == null ? 1 : batch._batches.size());
+            }
+
+            if (DEBUG)
+                LOG.debug("write batch: {} {}", this, batch);
+
+            // If pending, the queue is flushed again by completeWrite()
+            if (!writing(batch, batch._buffers))
+                return;
         }
     }
 
@@ -391,6 +473,9 @@ abstract public class WriteFlusher
             else
                 fail(pending);
         }
+
+        if (_coalescing)
+            flushQueued();
     }
 
     /* ------------------------------------------------------------ */
@@ -401,6 +486,8 @@ abstract public class WriteFlusher
      */
     protected ByteBuffer[] flush(ByteBuffer[] buffers) throws IOException
     {
+        Statistics statistics = _statistics;
+        long remaining = statistics == null ? 0 : remaining(buffers);
         boolean progress=true;
         while(progress && buffers!=null)
         {
@@ -410,6 +497,14 @@ abstract public class WriteFlusher
             
             if (LOG.isDebugEnabled())
                 LOG.debug("Flushed={} {}/{}+{} {}",flushed,before-r,before,buffers.length-1,this);
+
+            if (statistics != null)
+            {
+                long left = remaining(buffers);
+                statistics._flushes.incrementAndGet();
+                statistics._flushedBytes.addAndGet(remaining - left);
+                remaining = left;
+            }
             
             if (flushed)
                 return null;
@@ -442,12 +537,34 @@ abstract public class WriteFlusher
         return buffers==null?EMPTY_BUFFERS:buffers;
     }
     
+    private static long remaining(ByteBuffer[] buffers)
+    {
+        long remaining = 0;
+        for (ByteBuffer buffer : buffers)
+            remaining += buffer.remaining();
+        return remaining;
+    }
+
     /* ------------------------------------------------------------ */
     /** Notify the flusher of a failure
      * @param cause The cause of the failure
      * @return true if the flusher passed the failure to a {@link Callback} instance
      */
     public boolean onFail(Throwable cause)
+    {
+        // The queued writes will never be flushed
+        boolean failed = false;
+        Batch batch = _queue.poll();
+        while (batch != null)
+        {
+            batch.failed(cause);
+            failed = true;
+            batch = _queue.poll();
+        }
+        return onFailInProgress(cause) || failed;
+    }
+
+    private boolean onFailInProgress(Throwable cause)
     {
         // Keep trying to handle the failure until we get to IDLE or FAILED state
         while(true)
@@ -483,7 +600,7 @@ abstract public class WriteFlusher
 
     public void onClose()
     {
-        if (_state.get()==__IDLE)
+        if (_state.get()==__IDLE && _queue.isEmpty())
             return;
         onFail(new ClosedChannelException());
     }
@@ -506,9 +623,195 @@ abstract public class WriteFlusher
         }
     }
 
+    /**
+     * @return whether writes issued while a write is in progress are queued and flushed together
+     */
+    public boolean isCoalescing()
+    {
+        return _coalescing;
+    }
+
+    /**
+     * @param coalescing whether writes issued while a write is in progress are queued
+     * and flushed together, rather than failing with {@link WritePendingException}
+     */
+    public void setCoalescing(boolean coalescing)
+    {
+        _coalescing = coalescing;
+    }
+
+    /**
+     * @return the statistics updated by this flusher, or null
+     */
+    public Statistics getStatistics()
+    {
+        return _statistics;
+    }
+
+    /**
+     * @param statistics the statistics to update, possibly shared by many flushers, or null
+     */
+    public void setStatistics(Statistics statistics)
+    {
+        _statistics = statistics;
+    }
+
     @Override
     public String toString()
     {
         return String.format("WriteFlusher@%x{%s}", hashCode(), _state.get());
     }
+
+    /**
+     * <p>A write, or a batch of coalesced writes, with a callback that completes
+     * the callbacks of the coalesced writes in order.</p>
+     */
+    private static class Batch implements Callback
+    {
+        private final Callback _callback;
+        private final ByteBuffer[] _buffers;
+        private final List<Batch> _batches;
+
+        private Batch(Callback callback, ByteBuffer[] buffers)
+        {
+            _callback = callback;
+            _buffers = buffers;
+            _batches = null;
+        }
+
+        private Batch(List<Batch> batches)
+        {
+            int length = 0;
+            for (Batch batch : batches)
+                length += batch._buffers.length;
+            ByteBuffer[] buffers = new ByteBuffer[length];
+            int i = 0;
+            for (Batch batch : batches)
+            {
+                System.arraycopy(batch._buffers, 0, buffers, i, batch._buffers.length);
+                i += batch._buffers.length;
+            }
+            _callback = null;
+            _buffers = buffers;
+            _batches = batches;
+        }
+
+        @Override
+        public void succeeded()
+        {
+            if (_batches == null)
+            {
+                if (_callback != null)
+                    _callback.succeeded();
+            }
+            else
+            {
+                for (Batch batch : _batches)
+                    batch.succeeded();
+            }
+        }
+
+        @Override
+        public void failed(Throwable x)
+        {
+            if (_batches == null)
+            {
+                if (_callback != null)
+                    _callback.failed(x);
+            }
+            else
+            {
+                // The writes that have been completely flushed succeed
+                for (Batch batch : _batches)
+                {
+                    if (remaining(batch._buffers) > 0)
+                        batch.failed(x);
+                    else
+                        batch.succeeded();
+                }
+            }
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("Batch@%x{writes=%d,%s}", hashCode(), _batches == null ? 1 : _batches.size(), BufferUtil.toDetailString(_buffers));
+        }
+    }
+
+    /**
+     * <p>Statistics of the flushes and of the coalesced writes, that may be shared by many flushers.</p>
+     */
+    public static class Statistics
+    {
+        private final AtomicLong _batches = new AtomicLong();
+        private final AtomicLong _batchedWrites = new AtomicLong();
+        private final AtomicLong _flushes = new AtomicLong();
+        private final AtomicLong _flushedBytes = new AtomicLong();
+
+        /**
+         * @return the number of batches of queued writes flushed together in coalescing mode
+         */
+        public long getBatches()
+        {
+            return _batches.get();
+        }
+
+        /**
+         * @return the number of writes flushed in batches in coalescing mode
+         */
+        public long getBatchedWrites()
+        {
+            return _batchedWrites.get();
+        }
+
+        /**
+         * @return the average number of writes per batch in coalescing mode
+         */
+        public double getAverageBatchSize()
+        {
+            long batches = _batches.get();
+            return batches == 0 ? 0.0 : (double)_batchedWrites.get() / batches;
+        }
+
+        /**
+         * @return the number of calls to {@link EndPoint#flush(ByteBuffer...)}
+         */
+        public long getFlushes()
+        {
+            return _flushes.get();
+        }
+
+        /**
+         * @return the number of bytes flushed
+         */
+        public long getFlushedBytes()
+        {
+            return _flushedBytes.get();
+        }
+
+        /**
+         * @return the average number of bytes flushed per call to {@link EndPoint#flush(ByteBuffer...)}
+         */
+        public double getAverageBytesPerFlush()
+        {
+            long flushes = _flushes.get();
+            return flushes == 0 ? 0.0 : (double)_flushedBytes.get() / flushes;
+        }
+
+        public void reset()
+        {
+            _batches.set(0);
+            _batchedWrites.set(0);
+            _flushes.set(0);
+            _flushedBytes.set(0);
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s@%x{batches=%d,writes/batch=%.2f,flushes=%d,bytes/flush=%.1f}",
+                    getClass().getSimpleName(), hashCode(), getBatches(), getAverageBatchSize(), getFlushes(), getAverageBytesPerFlush());
+        }
+    }
 }
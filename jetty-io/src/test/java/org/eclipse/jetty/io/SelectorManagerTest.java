@@ -24,6 +24,7 @@ import java.net.SocketAddress;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
+import java.nio.channels.spi.SelectorProvider;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
@@ -158,4 +159,147 @@ public class SelectorManagerTest
             selectorManager.stop();
         }
     }
+
+    @Test
+    public void testSelectorChoosers() throws Exception
+    {
+        SelectorManager selectorManager = new SelectorManager(executor, scheduler, 3)
+        {
+            @Override
+            protected EndPoint newEndPoint(SocketChannel channel, ManagedSelector selector, SelectionKey selectionKey) throws IOException
+            {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public Connection newConnection(SocketChannel channel, EndPoint endpoint, Object attachment) throws IOException
+            {
+                throw new UnsupportedOperationException();
+            }
+        };
+
+        final int[] sizes = {5, 2, 7};
+        ManagedSelector[] selectors = new ManagedSelector[sizes.length];
+        for (int i = 0; i < selectors.length; ++i)
+        {
+            final int id = i;
+            selectors[i] = new ManagedSelector(selectorManager, i)
+            {
+                @Override
+                public int size()
+                {
+                    return sizes[id];
+                }
+            };
+        }
+
+        SelectorChooser roundRobin = new SelectorChooser.RoundRobin();
+        Assert.assertSame(selectors[0], roundRobin.choose(selectors, null));
+        Assert.assertSame(selectors[1], roundRobin.choose(selectors, null));
+        Assert.assertSame(selectors[2], roundRobin.choose(selectors, null));
+        Assert.assertSame(selectors[0], roundRobin.choose(selectors, null));
+
+        SelectorChooser leastConnections = new SelectorChooser.LeastConnections();
+        Assert.assertSame(selectors[1], leastConnections.choose(selectors, null));
+        sizes[1] = 9;
+        Assert.assertSame(selectors[0], leastConnections.choose(selectors, null));
+
+        // No select yet, so the ready keys are equal and the least connections wins.
+        SelectorChooser leastReadyKeys = new SelectorChooser.LeastRecentReadyKeys();
+        Assert.assertSame(selectors[0], leastReadyKeys.choose(selectors, null));
+
+        try (ServerSocketChannel server = ServerSocketChannel.open())
+        {
+            server.bind(new InetSocketAddress("localhost", 0));
+            try (SocketChannel client1 = SocketChannel.open(server.getLocalAddress());
+                 SocketChannel client2 = SocketChannel.open(server.getLocalAddress()))
+            {
+                SelectorChooser hash = new SelectorChooser.RemoteAddressHash();
+                Assert.assertSame(hash.choose(selectors, client1), hash.choose(selectors, client2));
+
+                // The default chooser hashes the last byte of the address, which is
+                // not busier than twice the selector chosen in turn.
+                byte[] addr = ((InetSocketAddress)client1.getRemoteAddress()).getAddress().getAddress();
+                ManagedSelector expected = selectors[(addr[addr.length - 1] & 0xFF) % selectors.length];
+                sizes[0] = sizes[1] = sizes[2] = 1;
+                SelectorChooser defaultChooser = new SelectorChooser.Default();
+                Assert.assertSame(expected, defaultChooser.choose(selectors, client1));
+                Assert.assertSame(expected, defaultChooser.choose(selectors, client2));
+            }
+        }
+    }
+
+    @Test
+    public void testLeastRecentReadyKeysSpreadsBurst() throws Exception
+    {
+        SelectorManager selectorManager = new SelectorManager(executor, scheduler, 3)
+        {
+            @Override
+            protected EndPoint newEndPoint(SocketChannel channel, ManagedSelector selector, SelectionKey selectionKey) throws IOException
+            {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public Connection newConnection(SocketChannel channel, EndPoint endpoint, Object attachment) throws IOException
+            {
+                throw new UnsupportedOperationException();
+            }
+        };
+
+        ManagedSelector[] selectors = new ManagedSelector[3];
+        for (int i = 0; i < selectors.length; ++i)
+            selectors[i] = new ManagedSelector(selectorManager, i);
+
+        // A burst of accepts before any selector wakes up to update its ready keys.
+        SelectorChooser leastReadyKeys = new SelectorChooser.LeastRecentReadyKeys();
+        int[] chosen = new int[selectors.length];
+        for (int i = 0; i < 30; ++i)
+        {
+            ManagedSelector selector = leastReadyKeys.choose(selectors, null);
+            for (int j = 0; j < selectors.length; ++j)
+            {
+                if (selectors[j] == selector)
+                    ++chosen[j];
+            }
+        }
+
+        for (int i = 0; i < selectors.length; ++i)
+        {
+            Assert.assertEquals(10, chosen[i]);
+            Assert.assertEquals(10, selectors[i].getRecentlyChosen());
+        }
+    }
+
+    @Test
+    public void testSelectorProviderFallback() throws Exception
+    {
+        SelectorManager selectorManager = new SelectorManager(executor, scheduler, 1)
+        {
+            @Override
+            protected EndPoint newEndPoint(SocketChannel channel, ManagedSelector selector, SelectionKey selectionKey) throws IOException
+            {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public Connection newConnection(SocketChannel channel, EndPoint endpoint, Object attachment) throws IOException
+            {
+                throw new UnsupportedOperationException();
+            }
+        };
+
+        selectorManager.setSelectorProviderClassName("org.example.NoSuchSelectorProvider");
+        Assert.assertSame(SelectorProvider.provider(), selectorManager.getSelectorProvider());
+
+        selectorManager.start();
+        try
+        {
+            Assert.assertSame(SelectorProvider.provider(), selectorManager.getSelectorProvider());
+        }
+        finally
+        {
+            selectorManager.stop();
+        }
+    }
 }
@@ -0,0 +1,156 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+
+package org.eclipse.jetty.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+public class ThreadLocalByteBufferPoolTest
+{
+    @Test
+    public void testUnpooledSizes() throws Exception
+    {
+        ThreadLocalByteBufferPool bufferPool = new ThreadLocalByteBufferPool(10,100,1000,4,-1);
+
+        ByteBuffer small = bufferPool.acquire(9,true);
+        assertEquals(9,small.capacity());
+        ByteBuffer large = bufferPool.acquire(1001,true);
+        assertEquals(1001,large.capacity());
+
+        bufferPool.release(small);
+        bufferPool.release(large);
+
+        assertEquals(0,bufferPool.getDirectMemory());
+        assertNotSame(small,bufferPool.acquire(9,true));
+        assertNotSame(large,bufferPool.acquire(1001,true));
+    }
+
+    @Test
+    public void testAcquireReleaseAcquire() throws Exception
+    {
+        ThreadLocalByteBufferPool bufferPool = new ThreadLocalByteBufferPool(10,100,1000,4,-1);
+
+        for (int size=390;size<=510;size++)
+        {
+            bufferPool.clear();
+            ByteBuffer buffer1 = bufferPool.acquire(size,true);
+            assertTrue(buffer1.isDirect());
+            assertTrue(buffer1.capacity()>=size);
+            assertTrue(buffer1.capacity()<size+100);
+            bufferPool.release(buffer1);
+            ByteBuffer buffer2 = bufferPool.acquire(size,true);
+            bufferPool.release(buffer2);
+            ByteBuffer buffer3 = bufferPool.acquire(size,false);
+            bufferPool.release(buffer3);
+
+            assertSame(buffer1,buffer2);
+            assertNotSame(buffer1,buffer3);
+            assertTrue(!buffer3.isDirect());
+        }
+    }
+
+    @Test
+    public void testMagazineOverflowsToBucket() throws Exception
+    {
+        ThreadLocalByteBufferPool bufferPool = new ThreadLocalByteBufferPool(0,100,1000,4,-1);
+        ThreadLocalByteBufferPool.Bucket bucket = bufferPool.bucketsFor(true)[0];
+
+        List<ByteBuffer> buffers = new ArrayList<>();
+        for (int i=0;i<5;i++)
+            buffers.add(bufferPool.acquire(100,true));
+        for (ByteBuffer buffer : buffers)
+            bufferPool.release(buffer);
+
+        // The magazine holds 4 buffers, the 5th release moves half of them to the bucket.
+        assertEquals(2,bucket.getCount());
+        assertEquals(200,bufferPool.getDirectMemory());
+        assertEquals(5,bufferPool.getAcquires());
+        assertEquals(5,bufferPool.getMisses());
+    }
+
+    @Test
+    public void testBucketMemoryIsBounded() throws Exception
+    {
+        ThreadLocalByteBufferPool bufferPool = new ThreadLocalByteBufferPool(0,100,1000,2,100);
+        ThreadLocalByteBufferPool.Bucket bucket = bufferPool.bucketsFor(false)[0];
+
+        List<ByteBuffer> buffers = new ArrayList<>();
+        for (int i=0;i<10;i++)
+            buffers.add(bufferPool.acquire(100,false));
+        for (ByteBuffer buffer : buffers)
+            bufferPool.release(buffer);
+
+        assertEquals(1,bucket.getCount());
+        assertEquals(100,bufferPool.getHeapMemory());
+        assertTrue(bufferPool.getDrops()>0);
+    }
+
+    @Test
+    public void testBuffersReleasedByOtherThreadAreShared() throws Exception
+    {
+        final ThreadLocalByteBufferPool bufferPool = new ThreadLocalByteBufferPool(0,100,1000,2,-1);
+        final AtomicReference<ByteBuffer> released = new AtomicReference<>();
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        Thread thread = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                ByteBuffer[] buffers = new ByteBuffer[3];
+                for (int i=0;i<buffers.length;i++)
+                    buffers[i]=bufferPool.acquire(100,true);
+                for (ByteBuffer buffer : buffers)
+                    bufferPool.release(buffer);
+                released.set(buffers[1]);
+                latch.countDown();
+            }
+        };
+        thread.start();
+        assertTrue(latch.await(5,TimeUnit.SECONDS));
+
+        // The other thread overflowed its magazine into the shared bucket.
+        assertSame(released.get(),bufferPool.acquire(100,true));
+    }
+
+    @Test
+    public void testClear() throws Exception
+    {
+        ThreadLocalByteBufferPool bufferPool = new ThreadLocalByteBufferPool(0,100,1000,4,-1);
+
+        ByteBuffer buffer = bufferPool.acquire(100,true);
+        bufferPool.release(buffer);
+        bufferPool.clear();
+
+        assertEquals(0,bufferPool.getDirectMemory());
+        assertNotSame(buffer,bufferPool.acquire(100,true));
+    }
+}
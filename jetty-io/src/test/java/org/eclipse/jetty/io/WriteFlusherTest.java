@@ -178,6 +178,70 @@ public class WriteFlusherTest
         assertTrue(_flusher.isIdle());
     }
 
+    @Test
+    public void testCoalescedWritesWhileBlocking() throws Exception
+    {
+        WriteFlusher.Statistics statistics = new WriteFlusher.Statistics();
+        _flusher.setCoalescing(true);
+        _flusher.setStatistics(statistics);
+
+        FutureCallback callback1 = new FutureCallback();
+        _flusher.write(callback1, BufferUtil.toBuffer("How "), BufferUtil.toBuffer("now "), BufferUtil.toBuffer("brown "));
+        assertFalse(callback1.isDone());
+        assertTrue(_flushIncomplete.get());
+        _flushIncomplete.set(false);
+
+        // Writes while pending are queued rather than throwing WritePendingException.
+        FutureCallback callback2 = new FutureCallback();
+        _flusher.write(callback2, BufferUtil.toBuffer("cow"));
+        FutureCallback callback3 = new FutureCallback();
+        _flusher.write(callback3, BufferUtil.toBuffer("!"));
+        assertFalse(callback2.isDone());
+        assertFalse(callback3.isDone());
+        assertEquals("How now br", _endp.takeOutputString());
+
+        // Completes the first write, then flushes the queued writes together.
+        _endp.setGrowOutput(true);
+        _flusher.completeWrite();
+        assertCallbackIsDone(callback1);
+        assertCallbackIsDone(callback2);
+        assertCallbackIsDone(callback3);
+        assertEquals("own cow!", _endp.takeOutputString());
+        assertFlushIsComplete();
+        assertTrue(_flusher.isIdle());
+
+        assertEquals(2, statistics.getBatches());
+        assertEquals(3, statistics.getBatchedWrites());
+        assertEquals(18, statistics.getFlushedBytes());
+        assertEquals(4, statistics.getFlushes());
+    }
+
+    @Test
+    public void testCoalescedWritesFailedOnClose() throws Exception
+    {
+        _flusher.setCoalescing(true);
+
+        FutureCallback callback1 = new FutureCallback();
+        _flusher.write(callback1, BufferUtil.toBuffer("How now brown cow!"));
+        FutureCallback callback2 = new FutureCallback();
+        _flusher.write(callback2, BufferUtil.toBuffer("Queued"));
+        assertTrue(_flushIncomplete.get());
+
+        _flusher.onClose();
+        assertCallbackIsDone(callback1);
+        assertCallbackIsDone(callback2);
+        try
+        {
+            callback2.get();
+            Assert.fail();
+        }
+        catch (ExecutionException e)
+        {
+            Assert.assertTrue(e.getCause() instanceof IOException);
+        }
+        assertTrue(_flusher.isIdle());
+    }
+
     @Test
     public void testCloseWhileBlocking() throws Exception
     {
@@ -0,0 +1,116 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+
+package org.eclipse.jetty.http.jmh;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.http.HttpGenerator;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.http.MetaData;
+import org.eclipse.jetty.util.BufferUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * <p>Measures {@link HttpGenerator#generateResponse(MetaData.Response, boolean, ByteBuffer, ByteBuffer, ByteBuffer, boolean)}
+ * generating whole responses with a generator reused across responses.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations=10, time=1, timeUnit=TimeUnit.SECONDS)
+@Measurement(iterations=10, time=1, timeUnit=TimeUnit.SECONDS)
+@Fork(1)
+public class HttpGeneratorBenchmark
+{
+    @Param({"STATIC_ASSET","API_JSON","REDIRECT_WITH_COOKIES"})
+    public String response;
+
+    private MetaData.Response _info;
+    private ByteBuffer _content;
+    private ByteBuffer _header;
+    private ByteBuffer _chunk;
+    private HttpGenerator _generator;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        HttpMessages.Response message = HttpMessages.Response.valueOf(response);
+        _info=message.toMetaData(HttpVersion.HTTP_1_1);
+        _content=ByteBuffer.wrap(message.getContent());
+        _header=BufferUtil.allocate(8192);
+        _chunk=BufferUtil.allocate(HttpGenerator.CHUNK_SIZE);
+        _generator=new HttpGenerator();
+    }
+
+    @Benchmark
+    public void generate(Blackhole blackhole) throws IOException
+    {
+        _generator.reset();
+        _content.clear();
+        while (true)
+        {
+            HttpGenerator.Result result=_generator.generateResponse(_info,false,_header,_chunk,_content,true);
+            switch (result)
+            {
+                case FLUSH:
+                    blackhole.consume(_header);
+                    BufferUtil.clear(_header);
+                    BufferUtil.clear(_chunk);
+                    _content.position(_content.limit());
+                    break;
+                case CONTINUE:
+                    break;
+                case DONE:
+                case SHUTDOWN_OUT:
+                    return;
+                default:
+                    throw new IllegalStateException(result.toString());
+            }
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options options = new OptionsBuilder()
+                .include(HttpGeneratorBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,149 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+
+package org.eclipse.jetty.http.jmh;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.http.HttpField;
+import org.eclipse.jetty.http.HttpParser;
+import org.eclipse.jetty.http.HttpVersion;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * <p>Measures {@link HttpParser#parseNext(ByteBuffer)} parsing whole requests
+ * with a parser reused across requests, as done for a persistent connection.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations=10, time=1, timeUnit=TimeUnit.SECONDS)
+@Measurement(iterations=10, time=1, timeUnit=TimeUnit.SECONDS)
+@Fork(1)
+public class HttpParserBenchmark
+{
+    @Param({"BROWSER_GET","API_POST","LARGE_COOKIE"})
+    public String request;
+
+    private ByteBuffer _buffer;
+    private Handler _handler;
+    private HttpParser _parser;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        _buffer=ByteBuffer.wrap(HttpMessages.Request.valueOf(request).toHttp11());
+        _handler=new Handler();
+        _parser=new HttpParser(_handler);
+    }
+
+    @Benchmark
+    public boolean parse(Blackhole blackhole)
+    {
+        _handler._blackhole=blackhole;
+        _buffer.clear();
+        _parser.reset();
+        while (_buffer.hasRemaining() && !_parser.isState(HttpParser.State.END))
+            _parser.parseNext(_buffer);
+        return _parser.isState(HttpParser.State.END);
+    }
+
+    private static class Handler implements HttpParser.RequestHandler
+    {
+        private Blackhole _blackhole;
+
+        @Override
+        public boolean startRequest(String method, String uri, HttpVersion version)
+        {
+            _blackhole.consume(method);
+            _blackhole.consume(uri);
+            return false;
+        }
+
+        @Override
+        public void parsedHeader(HttpField field)
+        {
+            _blackhole.consume(field);
+        }
+
+        @Override
+        public boolean headerComplete()
+        {
+            return false;
+        }
+
+        @Override
+        public boolean content(ByteBuffer item)
+        {
+            _blackhole.consume(item);
+            return false;
+        }
+
+        @Override
+        public boolean messageComplete()
+        {
+            return true;
+        }
+
+        @Override
+        public void earlyEOF()
+        {
+            throw new IllegalStateException();
+        }
+
+        @Override
+        public void badMessage(int status, String reason)
+        {
+            throw new IllegalStateException(reason);
+        }
+
+        @Override
+        public int getHeaderCacheSize()
+        {
+            return 512;
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options options = new OptionsBuilder()
+                .include(HttpParserBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,140 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+
+package org.eclipse.jetty.http2.hpack.jmh;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.http.MetaData;
+import org.eclipse.jetty.http.jmh.HttpMessages;
+import org.eclipse.jetty.http2.hpack.HpackDecoder;
+import org.eclipse.jetty.http2.hpack.HpackEncoder;
+import org.eclipse.jetty.http2.hpack.MetaDataBuilder;
+import org.eclipse.jetty.util.BufferUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * <p>Measures {@link HpackEncoder} and {@link HpackDecoder} on request headers.</p>
+ * <p>The {@code *FirstRequest} benchmarks use a new context for every header block, as for
+ * the first request on a connection, where most fields are sent as literals; the
+ * {@code encodeRepeatedRequest} benchmark reuses the encoder, as for the following
+ * requests on a connection, where most fields are found in the dynamic table.
+ * The {@code decodeRequest*} benchmarks decode the first request block over and over
+ * with the same decoder, either allocating or pooled.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations=10, time=1, timeUnit=TimeUnit.SECONDS)
+@Measurement(iterations=10, time=1, timeUnit=TimeUnit.SECONDS)
+@Fork(1)
+public class HpackBenchmark
+{
+    private static final int MAX_DYNAMIC_TABLE_SIZE = 4096;
+    private static final int MAX_HEADER_SIZE = 8192;
+
+    @Param({"BROWSER_GET","API_POST","LARGE_COOKIE"})
+    public String request;
+
+    private MetaData.Request _metaData;
+    private ByteBuffer _buffer;
+    private ByteBuffer _encoded;
+    private HpackEncoder _encoder;
+    private HpackDecoder _decoder;
+    private HpackDecoder _pooledDecoder;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        _metaData=HttpMessages.Request.valueOf(request).toHttp2MetaData();
+        _buffer=BufferUtil.allocate(MAX_HEADER_SIZE);
+        _encoder=new HpackEncoder(MAX_DYNAMIC_TABLE_SIZE);
+
+        _encoded=BufferUtil.allocate(MAX_HEADER_SIZE);
+        BufferUtil.clearToFill(_encoded);
+        new HpackEncoder(MAX_DYNAMIC_TABLE_SIZE).encode(_encoded,_metaData);
+        BufferUtil.flipToFlush(_encoded,0);
+
+        _decoder=new HpackDecoder(MAX_DYNAMIC_TABLE_SIZE,MAX_HEADER_SIZE);
+        _pooledDecoder=new HpackDecoder(MAX_DYNAMIC_TABLE_SIZE,MAX_HEADER_SIZE);
+        _pooledDecoder.setPooled(true);
+    }
+
+    @Benchmark
+    public ByteBuffer encodeFirstRequest()
+    {
+        BufferUtil.clearToFill(_buffer);
+        new HpackEncoder(MAX_DYNAMIC_TABLE_SIZE).encode(_buffer,_metaData);
+        return _buffer;
+    }
+
+    @Benchmark
+    public ByteBuffer encodeRepeatedRequest()
+    {
+        BufferUtil.clearToFill(_buffer);
+        _encoder.encode(_buffer,_metaData);
+        return _buffer;
+    }
+
+    @Benchmark
+    public MetaData decodeFirstRequest()
+    {
+        return new HpackDecoder(MAX_DYNAMIC_TABLE_SIZE,MAX_HEADER_SIZE).decode(_encoded.slice());
+    }
+
+    @Benchmark
+    public MetaData decodeRequest()
+    {
+        return _decoder.decode(_encoded.slice());
+    }
+
+    @Benchmark
+    public MetaData decodeRequestPooled()
+    {
+        MetaData metaData=_pooledDecoder.decode(_encoded.slice());
+        ((MetaDataBuilder.PooledRequest)metaData).release();
+        return metaData;
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options options = new OptionsBuilder()
+                .include(HpackBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,101 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+
+package org.eclipse.jetty.http2.hpack.jmh;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.http.MetaData;
+import org.eclipse.jetty.http.jmh.HttpMessages;
+import org.eclipse.jetty.http2.hpack.HpackEncoder;
+import org.eclipse.jetty.util.BufferUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * <p>Measures {@link HpackEncoder} on the first response of a connection, where the
+ * indexed fields are sent as literals, with and without the value cache shared by
+ * the encoders of all connections.</p>
+ * <p>The {@code *Uncached} benchmark forks a JVM with the value cache disabled.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations=10, time=1, timeUnit=TimeUnit.SECONDS)
+@Measurement(iterations=10, time=1, timeUnit=TimeUnit.SECONDS)
+@Fork(1)
+public class HpackResponseBenchmark
+{
+    private static final int MAX_DYNAMIC_TABLE_SIZE = 4096;
+    private static final int MAX_HEADER_SIZE = 8192;
+
+    @Param({"STATIC_ASSET","API_JSON","REDIRECT_WITH_COOKIES"})
+    public String response;
+
+    private MetaData.Response _metaData;
+    private ByteBuffer _buffer;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        _metaData=HttpMessages.Response.valueOf(response).toMetaData(HttpVersion.HTTP_2);
+        _buffer=BufferUtil.allocate(MAX_HEADER_SIZE);
+    }
+
+    @Benchmark
+    public ByteBuffer encodeFirstResponse()
+    {
+        BufferUtil.clearToFill(_buffer);
+        new HpackEncoder(MAX_DYNAMIC_TABLE_SIZE).encode(_buffer,_metaData);
+        return _buffer;
+    }
+
+    @Benchmark
+    @Fork(value=1, jvmArgsAppend="-Dorg.eclipse.jetty.http2.hpack.HpackEncoder.valueCacheSize=0")
+    public ByteBuffer encodeFirstResponseUncached()
+    {
+        return encodeFirstResponse();
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options options = new OptionsBuilder()
+                .include(HpackResponseBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
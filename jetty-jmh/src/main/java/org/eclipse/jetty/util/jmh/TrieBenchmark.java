@@ -0,0 +1,127 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+
+package org.eclipse.jetty.util.jmh;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.http.HttpField;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpParser;
+import org.eclipse.jetty.util.ArrayTernaryTrie;
+import org.eclipse.jetty.util.ArrayTrie;
+import org.eclipse.jetty.util.Trie;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * <p>Measures {@link ArrayTrie} and {@link ArrayTernaryTrie} lookups done by
+ * {@link HttpParser}: exact lookups of header names and best match lookups
+ * of whole header lines in a cache of well known fields.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations=10, time=1, timeUnit=TimeUnit.SECONDS)
+@Measurement(iterations=10, time=1, timeUnit=TimeUnit.SECONDS)
+@Fork(1)
+public class TrieBenchmark
+{
+    private static final String[] LINES = new String[]
+    {
+        "Host: www.example.com\r\n",
+        "Connection: keep-alive\r\n",
+        "Accept-Encoding: gzip, deflate, sdch\r\n",
+        "Accept-Language: en-US,en;q=0.8\r\n",
+        "Cache-Control: max-age=0\r\n",
+        "X-Forwarded-For: 192.168.0.1\r\n",
+        "Upgrade-Insecure-Requests: 1\r\n",
+        "Content-Type: application/json; charset=UTF-8\r\n"
+    };
+
+    @Param({"ArrayTrie","ArrayTernaryTrie"})
+    public String trie;
+
+    private Trie<HttpHeader> _names;
+    private Trie<HttpField> _fields;
+    private ByteBuffer[] _lines;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        boolean ternary = "ArrayTernaryTrie".equals(trie);
+        _names=ternary?new ArrayTernaryTrie<HttpHeader>(2048):new ArrayTrie<HttpHeader>(2048);
+        for (HttpHeader header : HttpHeader.values())
+            _names.put(header.asString(),header);
+
+        _fields=ternary?new ArrayTernaryTrie<HttpField>(8192):new ArrayTrie<HttpField>(8192);
+        for (String key : HttpParser.CACHE.keySet())
+            _fields.put(key,HttpParser.CACHE.get(key));
+
+        _lines=new ByteBuffer[LINES.length];
+        for (int i=0;i<LINES.length;i++)
+            _lines[i]=ByteBuffer.wrap(LINES[i].getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    @Benchmark
+    public void getHeaderName(Blackhole blackhole)
+    {
+        for (ByteBuffer line : _lines)
+        {
+            int colon=0;
+            while (line.get(colon)!=':')
+                colon++;
+            blackhole.consume(_names.get(line,0,colon));
+        }
+    }
+
+    @Benchmark
+    public void getBestField(Blackhole blackhole)
+    {
+        for (ByteBuffer line : _lines)
+            blackhole.consume(_fields.getBest(line,0,line.remaining()));
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options options = new OptionsBuilder()
+                .include(TrieBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,152 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+
+package org.eclipse.jetty.websocket.common.jmh;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.io.MappedByteBufferPool;
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.websocket.api.WebSocketPolicy;
+import org.eclipse.jetty.websocket.api.extensions.Frame;
+import org.eclipse.jetty.websocket.api.extensions.IncomingFrames;
+import org.eclipse.jetty.websocket.common.Generator;
+import org.eclipse.jetty.websocket.common.Parser;
+import org.eclipse.jetty.websocket.common.WebSocketFrame;
+import org.eclipse.jetty.websocket.common.frames.BinaryFrame;
+import org.eclipse.jetty.websocket.common.frames.TextFrame;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * <p>Measures the server side {@link Parser} parsing a buffer of masked client frames.</p>
+ * <p>Every invocation copies the frames into the read buffer, as the endpoint
+ * fill would do, because the parser unmasks the payload in place.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations=10, time=1, timeUnit=TimeUnit.SECONDS)
+@Measurement(iterations=10, time=1, timeUnit=TimeUnit.SECONDS)
+@Fork(1)
+public class ParserBenchmark
+{
+    /** The payload size of the frames in the buffer. */
+    @Param({"16","1024","65536"})
+    public int size;
+
+    /** Whether the frames are TEXT or BINARY. */
+    @Param({"true","false"})
+    public boolean text;
+
+    private byte[] _frames;
+    private ByteBuffer _buffer;
+    private Handler _handler;
+    private Parser _parser;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        MappedByteBufferPool bufferPool = new MappedByteBufferPool();
+        Generator generator = new Generator(WebSocketPolicy.newClientPolicy(),bufferPool);
+
+        // Fill a read buffer with as many frames as fit.
+        int capacity = Math.max(4096,size+14);
+        ByteBuffer frames = BufferUtil.allocate(capacity);
+        BufferUtil.clearToFill(frames);
+        byte[] mask = new byte[]{0x11,0x22,0x33,0x44};
+        while (frames.remaining()>=size+14)
+        {
+            WebSocketFrame frame = text?new TextFrame().setPayload(payload((byte)'x')):new BinaryFrame().setPayload(payload((byte)0xA5));
+            frame.setMask(mask);
+            generator.generateWholeFrame(frame,frames);
+        }
+        BufferUtil.flipToFlush(frames,0);
+        _frames=BufferUtil.toArray(frames);
+        _buffer=BufferUtil.allocate(_frames.length);
+
+        WebSocketPolicy policy = WebSocketPolicy.newServerPolicy();
+        policy.setMaxTextMessageSize(Math.max(policy.getMaxTextMessageSize(),size));
+        policy.setMaxBinaryMessageSize(Math.max(policy.getMaxBinaryMessageSize(),size));
+        _handler=new Handler();
+        _parser=new Parser(policy,bufferPool);
+        _parser.setIncomingFramesHandler(_handler);
+    }
+
+    private ByteBuffer payload(byte b)
+    {
+        byte[] payload = new byte[size];
+        Arrays.fill(payload,b);
+        return ByteBuffer.wrap(payload);
+    }
+
+    @Benchmark
+    public void parse(Blackhole blackhole)
+    {
+        _handler._blackhole=blackhole;
+        BufferUtil.clearToFill(_buffer);
+        _buffer.put(_frames);
+        BufferUtil.flipToFlush(_buffer,0);
+        _parser.parse(_buffer);
+    }
+
+    private static class Handler implements IncomingFrames
+    {
+        private Blackhole _blackhole;
+
+        @Override
+        public void incomingError(Throwable t)
+        {
+            throw new IllegalStateException(t);
+        }
+
+        @Override
+        public void incomingFrame(Frame frame)
+        {
+            _blackhole.consume(frame.getPayload());
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options options = new OptionsBuilder()
+                .include(ParserBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -249,7 +249,7 @@ public class ConnectHandler extends HandlerWrapper
                 return;
             }
 
-            SocketChannel channel = SocketChannel.open();
+            SocketChannel channel = selector.getSelectorProvider().openSocketChannel();
             channel.socket().setTcpNoDelay(true);
             channel.configureBlocking(false);
 
@@ -58,6 +58,9 @@ etc/jetty.xml
 ## Max per-connection header cache size (in nodes)
 # jetty.httpConfig.headerCacheSize=512
 
+## Whether request header values are converted to Strings only when read
+# jetty.httpConfig.lazyHeaderValues=false
+
 ## Whether, for requests with content, delay dispatch until some content has arrived
 # jetty.httpConfig.delayDispatchUntilContent=true
 
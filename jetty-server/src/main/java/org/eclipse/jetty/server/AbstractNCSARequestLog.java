@@ -104,7 +104,7 @@ public abstract class AbstractNCSARequestLog extends AbstractLifeCycle implement
             int status = response.getCommittedMetaData().getStatus();
             long written = response.getHttpChannel().getBytesWritten();
             
-            if (_ignorePathMap != null && _ignorePathMap.getMatch(request.getRequestURI()) != null)
+            if (isIgnored(request))
                 return;
 
             if (!isEnabled())
@@ -224,6 +224,17 @@ public abstract class AbstractNCSARequestLog extends AbstractLifeCycle implement
     
     /* ------------------------------------------------------------ */
 
+    /**
+     * @param request the request
+     * @return true if the request matches one of the {@link #setIgnorePaths(String[]) ignored paths}
+     */
+    protected boolean isIgnored(Request request)
+    {
+        return _ignorePathMap != null && _ignorePathMap.getMatch(request.getRequestURI()) != null;
+    }
+
+    /* ------------------------------------------------------------ */
+
     /**
      * Writes extended request and response information to the output stream.
      *
@@ -115,6 +115,16 @@ public class HttpChannel implements Runnable, HttpOutput.Interceptor
     {
         return _written;
     }
+
+    /**
+     * Accounts for content that is written directly to the {@link EndPoint}
+     * rather than via {@link #write(ByteBuffer, boolean, Callback)}.
+     * @param bytes the number of content bytes
+     */
+    void onBytesTransferred(long bytes)
+    {
+        _written+=bytes;
+    }
     
     /**
      * @return the number of requests handled by this connection
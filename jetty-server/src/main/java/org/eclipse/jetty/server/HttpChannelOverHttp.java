@@ -113,7 +113,6 @@ class HttpChannelOverHttp extends HttpChannel implements HttpParser.RequestHandl
     public void parsedHeader(HttpField field)
     {
         HttpHeader header=field.getHeader();
-        String value=field.getValue();
         if (header!=null)
         {
             switch(header)
@@ -134,7 +133,7 @@ class HttpChannelOverHttp extends HttpChannel implements HttpParser.RequestHandl
                 {
                     if (_metadata.getVersion()==HttpVersion.HTTP_1_1)
                     {
-                        HttpHeaderValue expect = HttpHeaderValue.CACHE.get(value);
+                        HttpHeaderValue expect = HttpHeaderValue.CACHE.get(field.getValue());
                         switch (expect == null ? HttpHeaderValue.UNKNOWN : expect)
                         {
                             case CONTINUE:
@@ -56,6 +56,8 @@ public class HttpConfiguration
     private boolean _sendDateHeader = true;
     private boolean _delayDispatchUntilContent = true;
     private boolean _persistentConnectionsEnabled = true;
+    private boolean _lazyHeaderValues = false;
+    private boolean _fileTransferEnabled = true;
 
     /* ------------------------------------------------------------ */
     /** 
@@ -103,6 +105,8 @@ public class HttpConfiguration
         _sendDateHeader=config._sendDateHeader;
         _sendServerVersion=config._sendServerVersion;
         _headerCacheSize=config._headerCacheSize;
+        _lazyHeaderValues=config._lazyHeaderValues;
+        _fileTransferEnabled=config._fileTransferEnabled;
     }
     
     /* ------------------------------------------------------------ */
@@ -168,6 +172,13 @@ public class HttpConfiguration
         return _headerCacheSize;
     }
 
+    /* ------------------------------------------------------------ */
+    @ManagedAttribute("True if request header values are only converted to Strings when read")
+    public boolean isLazyHeaderValues()
+    {
+        return _lazyHeaderValues;
+    }
+
     /* ------------------------------------------------------------ */
     @ManagedAttribute("The port to which Integral or Confidential security constraints are redirected")
     public int getSecurePort()
@@ -195,6 +206,29 @@ public class HttpConfiguration
         _persistentConnectionsEnabled = persistentConnectionsEnabled;
     }
 
+    /* ------------------------------------------------------------ */
+    /**
+     * @return true if static file content may be sent with {@link java.nio.channels.FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}
+     * directly to the socket of a cleartext HTTP/1 connection
+     */
+    @ManagedAttribute("True if file content may be transferred directly to cleartext HTTP/1 connections")
+    public boolean isFileTransferEnabled()
+    {
+        return _fileTransferEnabled;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param fileTransferEnabled if true (the default), file content sent with
+     * {@link HttpOutput#sendContent(org.eclipse.jetty.http.HttpContent, org.eclipse.jetty.util.Callback)}
+     * is transferred by the kernel directly to the socket when the connection is
+     * cleartext HTTP/1 and the content is not transformed by an {@link HttpOutput.Interceptor}.
+     */
+    public void setFileTransferEnabled(boolean fileTransferEnabled)
+    {
+        _fileTransferEnabled = fileTransferEnabled;
+    }
+
     /* ------------------------------------------------------------ */
     public void setSendServerVersion (boolean sendServerVersion)
     {
@@ -324,6 +358,18 @@ public class HttpConfiguration
         _headerCacheSize = headerCacheSize;
     }
 
+    /* ------------------------------------------------------------ */
+    /** Set whether request header values are only converted to Strings when read.
+     * <p>Header values are kept as bytes in a buffer owned by the connection and
+     * reused for the next request, so applications must not retain {@link org.eclipse.jetty.http.HttpField}
+     * instances obtained from a request after the request is completed.</p>
+     * @param lazyHeaderValues true to convert request header values to Strings only when read.
+     */
+    public void setLazyHeaderValues(boolean lazyHeaderValues)
+    {
+        _lazyHeaderValues = lazyHeaderValues;
+    }
+
     /* ------------------------------------------------------------ */
     /** Set the TCP/IP port used for CONFIDENTIAL and INTEGRAL redirections.
      * @param securePort the secure port to redirect to.
@@ -121,7 +121,9 @@ public class HttpConnection extends AbstractConnection implements Runnable, Http
     
     protected HttpParser newHttpParser()
     {
-        return new HttpParser(newRequestHandler(), getHttpConfiguration().getRequestHeaderSize());
+        HttpParser parser = new HttpParser(newRequestHandler(), getHttpConfiguration().getRequestHeaderSize());
+        parser.setLazyHeaderValues(getHttpConfiguration().isLazyHeaderValues());
+        return parser;
     }
 
     protected HttpParser.RequestHandler newRequestHandler()
@@ -18,19 +18,33 @@
 
 package org.eclipse.jetty.server;
 
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jetty.http.HttpFieldCache;
 import org.eclipse.jetty.http.HttpVersion;
 import org.eclipse.jetty.io.Connection;
 import org.eclipse.jetty.io.EndPoint;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
 import org.eclipse.jetty.util.annotation.Name;
 
 /** A Connection Factory for HTTP Connections.
  * <p>Accepts connections either directly or via SSL and/or ALPN chained connection factories.  The accepted
  * {@link HttpConnection}s are configured by a {@link HttpConfiguration} instance that is either created by
  * default or passed in to the constructor.
+ * <p>The statistics of the {@link HttpFieldCache}s of the open and closed connections are aggregated
+ * and exposed as managed attributes. The statistics of open connections are read without
+ * synchronization, so they are only approximate.</p>
  */
+@ManagedObject("HTTP/1.1 connection factory")
 public class HttpConnectionFactory extends AbstractConnectionFactory implements HttpConfiguration.ConnectionFactory
 {
     private final HttpConfiguration _config;
+    private final FieldCacheStatistics _fieldCacheStatistics = new FieldCacheStatistics();
 
     public HttpConnectionFactory()
     {
@@ -55,6 +69,112 @@ public class HttpConnectionFactory extends AbstractConnectionFactory implements
     @Override
     public Connection newConnection(Connector connector, EndPoint endPoint)
     {
-        return configure(new HttpConnection(_config, connector, endPoint), connector, endPoint);
+        HttpConnection connection = new HttpConnection(_config, connector, endPoint);
+        connection.addListener(_fieldCacheStatistics);
+        return configure(connection, connector, endPoint);
+    }
+
+    @ManagedAttribute("The number of header fields found in the connection header caches")
+    public long getHeaderCacheHits()
+    {
+        return _fieldCacheStatistics.getHits();
+    }
+
+    @ManagedAttribute("The number of header fields not found in the connection header caches")
+    public long getHeaderCacheMisses()
+    {
+        return _fieldCacheStatistics.getMisses();
+    }
+
+    @ManagedAttribute("The number of header fields evicted from the connection header caches")
+    public long getHeaderCacheEvictions()
+    {
+        return _fieldCacheStatistics.getEvictions();
+    }
+
+    @ManagedAttribute("The ratio of header cache hits to header cache lookups")
+    public double getHeaderCacheHitRatio()
+    {
+        long hits = getHeaderCacheHits();
+        long lookups = hits + getHeaderCacheMisses();
+        return lookups == 0 ? 0.0 : (double)hits / lookups;
+    }
+
+    @ManagedOperation(value = "Resets the statistics of closed connections", impact = "ACTION")
+    public void resetHeaderCacheStatistics()
+    {
+        _fieldCacheStatistics.reset();
+    }
+
+    private static class FieldCacheStatistics implements Connection.Listener
+    {
+        private final Set<HttpConnection> _connections = Collections.newSetFromMap(new ConcurrentHashMap<HttpConnection, Boolean>());
+        private final AtomicLong _hits = new AtomicLong();
+        private final AtomicLong _misses = new AtomicLong();
+        private final AtomicLong _evictions = new AtomicLong();
+
+        @Override
+        public void onOpened(Connection connection)
+        {
+            _connections.add((HttpConnection)connection);
+        }
+
+        @Override
+        public void onClosed(Connection connection)
+        {
+            if (_connections.remove(connection))
+            {
+                HttpFieldCache cache = ((HttpConnection)connection).getParser().getHttpFieldCache();
+                if (cache != null)
+                {
+                    _hits.addAndGet(cache.getHits());
+                    _misses.addAndGet(cache.getMisses());
+                    _evictions.addAndGet(cache.getEvictions());
+                }
+            }
+        }
+
+        private long getHits()
+        {
+            long hits = _hits.get();
+            for (HttpConnection connection : _connections)
+            {
+                HttpFieldCache cache = connection.getParser().getHttpFieldCache();
+                if (cache != null)
+                    hits += cache.getHits();
+            }
+            return hits;
+        }
+
+        private long getMisses()
+        {
+            long misses = _misses.get();
+            for (HttpConnection connection : _connections)
+            {
+                HttpFieldCache cache = connection.getParser().getHttpFieldCache();
+                if (cache != null)
+                    misses += cache.getMisses();
+            }
+            return misses;
+        }
+
+        private long getEvictions()
+        {
+            long evictions = _evictions.get();
+            for (HttpConnection connection : _connections)
+            {
+                HttpFieldCache cache = connection.getParser().getHttpFieldCache();
+                if (cache != null)
+                    evictions += cache.getEvictions();
+            }
+            return evictions;
+        }
+
+        private void reset()
+        {
+            _hits.set(0);
+            _misses.set(0);
+            _evictions.set(0);
+        }
     }
 }
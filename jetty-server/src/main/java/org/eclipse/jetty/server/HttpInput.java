@@ -31,6 +31,7 @@ import org.eclipse.jetty.io.RuntimeIOException;
 import org.eclipse.jetty.util.ArrayQueue;
 import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.UrlEncodedDecoder;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
 
@@ -151,6 +152,40 @@ public class HttpInput extends ServletInputStream implements Runnable
         }
     }
 
+    /**
+     * Reads content directly into a form decoder, without first copying it
+     * into an intermediate array.
+     *
+     * @param decoder the decoder to pass the content to
+     * @return the number of bytes decoded, 0 if no content is available
+     * in async mode, or -1 if the end of the content has been reached
+     * @throws IOException if reading the content fails
+     * @throws IllegalStateException if the form is too large or has too many keys
+     */
+    public int read(UrlEncodedDecoder decoder) throws IOException
+    {
+        synchronized (_inputQ)
+        {
+            while(true)
+            {
+                Content item = nextContent();
+                if (item!=null)
+                {
+                    if (LOG.isDebugEnabled())
+                        LOG.debug("{} decode from {}",this,item);
+                    int l = decode(item, decoder);
+                    
+                    consumeNonContent();
+                    
+                    return l;
+                }
+                
+                if (!_state.blockForContent(this))
+                    return _state.noContent();
+            }
+        }
+    }
+
     /**
      * Called when derived implementations should attempt to 
      * produce more Content and add it via {@link #addContent(Content)}.
@@ -310,6 +345,21 @@ public class HttpInput extends ServletInputStream implements Runnable
         return l;
     }
 
+    /**
+     * Passes all the given content to the given form decoder.
+     *
+     * @param content the content to decode
+     * @param decoder the decoder to pass the content to
+     * @return the number of bytes decoded
+     */
+    protected int decode(Content content, UrlEncodedDecoder decoder)
+    {
+        int l = content.remaining();
+        decoder.decode(content.getContent());
+        _contentConsumed+=l;
+        return l;
+    }
+
     /**
      * Consumes the given content.
      * Calls the content succeeded if all content consumed.
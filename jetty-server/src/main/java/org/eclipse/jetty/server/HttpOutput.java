@@ -19,11 +19,17 @@
 package org.eclipse.jetty.server;
 
 import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
 import java.nio.channels.WritePendingException;
+import java.nio.file.StandardOpenOption;
 import java.util.concurrent.atomic.AtomicReference;
 
 import javax.servlet.RequestDispatcher;
@@ -33,6 +39,7 @@ import javax.servlet.ServletResponse;
 import javax.servlet.WriteListener;
 
 import org.eclipse.jetty.http.HttpContent;
+import org.eclipse.jetty.io.ChannelEndPoint;
 import org.eclipse.jetty.io.EofException;
 import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.Callback;
@@ -42,6 +49,7 @@ import org.eclipse.jetty.util.SharedBlockingCallback;
 import org.eclipse.jetty.util.SharedBlockingCallback.Blocker;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
+import org.eclipse.jetty.util.resource.Resource;
 
 /**
  * <p>{@link HttpOutput} implements {@link ServletOutputStream}
@@ -284,7 +292,14 @@ public class HttpOutput extends ServletOutputStream implements Runnable
             switch(_state.get())
             {
                 case OPEN:
-                    write(BufferUtil.hasContent(_aggregate)?_aggregate:BufferUtil.EMPTY_BUFFER, false);
+                    if (BufferUtil.hasContent(_aggregate))
+                    {
+                        write(_aggregate, false);
+                        // Interceptors that buffer (eg gzip) are flushed by a write without content
+                        if (_interceptor==_channel)
+                            return;
+                    }
+                    write(BufferUtil.EMPTY_BUFFER, false);
                     return;
 
                 case ASYNC:
@@ -649,6 +664,30 @@ public class HttpOutput extends ServletOutputStream implements Runnable
         }
     }
 
+    /**
+     * Blocking send of a byte range of HTTP content.
+     *
+     * @param content The HTTP content to send
+     * @param offset The offset within the content of the first byte to send
+     * @param length The number of bytes to send
+     * @throws IOException if the send fails
+     */
+    public void sendContent(HttpContent content, long offset, long length) throws IOException
+    {
+        try(Blocker blocker = _writeBlock.acquire())
+        {
+            sendContent(content, offset, length, blocker);
+            blocker.block();
+        }
+        catch (Throwable failure)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug(failure);
+            abort(failure);
+            throw failure;
+        }
+    }
+
     /**
      * Asynchronous send of whole content.
      * @param content The whole content to send
@@ -706,39 +745,8 @@ public class HttpOutput extends ServletOutputStream implements Runnable
      */
     public void sendContent(HttpContent httpContent, Callback callback)
     {
-        if (BufferUtil.hasContent(_aggregate))
-        {
-            callback.failed(new IOException("cannot sendContent() after write()"));
-            return;
-        }
-        if (_channel.isCommitted())
-        {
-            callback.failed(new IOException("committed"));
+        if (!prepareSendContent(callback))
             return;
-        }
-
-        while (true)
-        {
-            switch(_state.get())
-            {
-                case OPEN:
-                    if (!_state.compareAndSet(OutputState.OPEN, OutputState.PENDING))
-                        continue;
-                    break;
-
-                case ERROR:
-                    callback.failed(new EofException(_onError));
-                    return;
-                    
-                case CLOSED:
-                    callback.failed(new EofException("Closed"));
-                    return;
-
-                default:
-                    throw new IllegalStateException();
-            }
-            break;
-        }
 
         ByteBuffer buffer = _channel.useDirectBuffers() ? httpContent.getDirectBuffer() : null;
         if (buffer == null)
@@ -755,6 +763,16 @@ public class HttpOutput extends ServletOutputStream implements Runnable
 
         try
         {
+            FileChannel file=newFileTransferChannel(httpContent,httpContent.getContentLengthValue());
+            if (file!=null)
+            {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("sendContent({}=={},{},transfer)",httpContent,file,callback);
+                // Close of the file is done by the transfer callback
+                new FileTransferCB(file,0,httpContent.getContentLengthValue(),callback).iterate();
+                return;
+            }
+
             ReadableByteChannel rbc=httpContent.getReadableByteChannel();
             if (rbc!=null)
             {
@@ -783,6 +801,146 @@ public class HttpOutput extends ServletOutputStream implements Runnable
         }
     }
 
+    /**
+     * Asynchronous send of a byte range of HTTP content, as selected by
+     * an {@link InclusiveByteRange}.
+     *
+     * @param httpContent The HTTP content to send
+     * @param offset The offset within the content of the first byte to send
+     * @param length The number of bytes to send
+     * @param callback The callback to use to notify success or failure
+     */
+    public void sendContent(HttpContent httpContent, long offset, long length, Callback callback)
+    {
+        if (!prepareSendContent(callback))
+            return;
+
+        try
+        {
+            FileChannel file=newFileTransferChannel(httpContent,length);
+            if (file!=null)
+            {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("sendContent({}=={},{},{},{},transfer)",httpContent,file,offset,length,callback);
+                new FileTransferCB(file,offset,length,callback).iterate();
+                return;
+            }
+
+            ByteBuffer buffer = _channel.useDirectBuffers() ? httpContent.getDirectBuffer() : null;
+            if (buffer == null)
+                buffer = httpContent.getIndirectBuffer();
+            if (buffer!=null)
+            {
+                ByteBuffer range=buffer.slice();
+                range.limit((int)(offset+length));
+                range.position((int)offset);
+                if (LOG.isDebugEnabled())
+                    LOG.debug("sendContent({}=={},{},direct={})",httpContent,BufferUtil.toDetailString(range),callback,_channel.useDirectBuffers());
+                sendContent(range,callback);
+                return;
+            }
+
+            ReadableByteChannel rbc=httpContent.getReadableByteChannel();
+            if (rbc instanceof SeekableByteChannel)
+            {
+                ((SeekableByteChannel)rbc).position(offset);
+            }
+            else
+            {
+                if (rbc!=null)
+                    close(rbc);
+                InputStream in = httpContent.getInputStream();
+                if (in==null)
+                    throw new IllegalArgumentException("unknown content for "+httpContent);
+                long skip=offset;
+                while (skip>0)
+                {
+                    long skipped=in.skip(skip);
+                    if (skipped<=0)
+                    {
+                        close(in);
+                        throw new EOFException("Range beyond content "+httpContent);
+                    }
+                    skip-=skipped;
+                }
+                rbc=Channels.newChannel(in);
+            }
+
+            if (LOG.isDebugEnabled())
+                LOG.debug("sendContent({}=={},{},{},{},direct={})",httpContent,rbc,offset,length,callback,_channel.useDirectBuffers());
+            // Close of the rbc is done by the async sendContent
+            new ReadableByteChannelWritingCB(rbc,length,callback).iterate();
+        }
+        catch(Throwable th)
+        {
+            abort(th);
+            callback.failed(th);
+        }
+    }
+
+    private boolean prepareSendContent(Callback callback)
+    {
+        if (BufferUtil.hasContent(_aggregate))
+        {
+            callback.failed(new IOException("cannot sendContent() after write()"));
+            return false;
+        }
+        if (_channel.isCommitted())
+        {
+            callback.failed(new IOException("committed"));
+            return false;
+        }
+
+        while (true)
+        {
+            switch(_state.get())
+            {
+                case OPEN:
+                    if (!_state.compareAndSet(OutputState.OPEN, OutputState.PENDING))
+                        continue;
+                    return true;
+
+                case ERROR:
+                    callback.failed(new EofException(_onError));
+                    return false;
+                    
+                case CLOSED:
+                    callback.failed(new EofException("Closed"));
+                    return false;
+
+                default:
+                    throw new IllegalStateException();
+            }
+        }
+    }
+
+    /**
+     * Opens a file channel for the content if it can be transferred directly
+     * to the network. This is only possible if the content is backed by a file,
+     * the response has the matching content length, no {@link Interceptor}
+     * transforms the content and the connection is a cleartext HTTP/1 connection.
+     *
+     * @param httpContent the content to send
+     * @param length the number of bytes to send
+     * @return a file channel for the content, or null if the content cannot be transferred
+     * @throws IOException if the file cannot be opened
+     */
+    private FileChannel newFileTransferChannel(HttpContent httpContent, long length) throws IOException
+    {
+        if (length<=0 || !_channel.getHttpConfiguration().isFileTransferEnabled())
+            return null;
+        if (_interceptor!=_channel || !(_channel.getHttpTransport() instanceof HttpConnection) || !(_channel.getEndPoint() instanceof ChannelEndPoint))
+            return null;
+        if (_channel.getRequest().isHead() || _channel.getResponse().getLongContentLength()!=length)
+            return null;
+        // The content must be the unmodified bytes of the resource file
+        Resource resource=httpContent.getResource();
+        File file=resource==null?null:resource.getFile();
+        if (file==null || resource.length()!=httpContent.getContentLengthValue())
+            return null;
+        return FileChannel.open(file.toPath(),StandardOpenOption.READ);
+    }
+
     public int getBufferSize()
     {
         return _bufferSize;
@@ -996,7 +1154,8 @@ public class HttpOutput extends ServletOutputStream implements Runnable
         {
             if (BufferUtil.hasContent(_aggregate))
             {
-                _flushed=true;
+                // Interceptors that buffer (eg gzip) are flushed by a write without content
+                _flushed=_interceptor==_channel;
                 write(_aggregate, false, this);
                 return Action.SCHEDULED;
             }
@@ -1184,12 +1343,19 @@ public class HttpOutput extends ServletOutputStream implements Runnable
     {
         private final ReadableByteChannel _in;
         private final ByteBuffer _buffer;
+        private long _remaining;
         private boolean _eof;
 
         public ReadableByteChannelWritingCB(ReadableByteChannel in, Callback callback)
+        {
+            this(in, Long.MAX_VALUE, callback);
+        }
+
+        public ReadableByteChannelWritingCB(ReadableByteChannel in, long length, Callback callback)
         {
             super(callback);
             _in=in;
+            _remaining=length;
             _buffer = _channel.getByteBufferPool().acquire(getBufferSize(), _channel.useDirectBuffers());
         }
 
@@ -1206,10 +1372,15 @@ public class HttpOutput extends ServletOutputStream implements Runnable
                 return Action.SUCCEEDED;
             }
             
-            // Read from stream until buffer full or EOF
+            // Read from stream until buffer full, length read or EOF
             _buffer.clear();
+            if (_remaining<_buffer.capacity())
+                _buffer.limit((int)_remaining);
             while (_buffer.hasRemaining() && !_eof)
               _eof = (_in.read(_buffer)) <  0;
+            _remaining-=_buffer.position();
+            if (_remaining==0)
+                _eof=true;
 
             // write what we have
             _buffer.flip();
@@ -1227,4 +1398,101 @@ public class HttpOutput extends ServletOutputStream implements Runnable
             super.onCompleteFailure(x);
         }
     }
+
+    /* ------------------------------------------------------------ */
+    /** An iterating callback that transfers a range of a file directly to the
+     * {@link ChannelEndPoint} of a cleartext HTTP/1 connection.
+     * The response is first committed with an empty write to the {@link HttpChannel},
+     * so the headers are generated as normal, then the content is sent with
+     * {@link ChannelEndPoint#transferFrom(FileChannel, long, long)} without being copied
+     * through user space. If the network is congested, a single buffer of content is
+     * written to the endpoint so that this callback is notified when it is writable again.
+     * Finally an empty last write completes the response.
+     */
+    private class FileTransferCB extends IteratingNestedCallback
+    {
+        private final FileChannel _file;
+        private final ChannelEndPoint _endPoint;
+        private long _position;
+        private long _remaining;
+        private ByteBuffer _buffer;
+        private boolean _committed;
+        private boolean _completed;
+
+        public FileTransferCB(FileChannel file, long position, long length, Callback callback)
+        {
+            super(callback);
+            _file=file;
+            _endPoint=(ChannelEndPoint)_channel.getEndPoint();
+            _position=position;
+            _remaining=length;
+            _channel.onBytesTransferred(length);
+        }
+
+        @Override
+        protected Action process() throws Exception
+        {
+            // Commit the response headers
+            if (!_committed)
+            {
+                _committed=true;
+                write(BufferUtil.EMPTY_BUFFER,false,this);
+                return Action.SCHEDULED;
+            }
+
+            while (_remaining>0)
+            {
+                long transferred=_endPoint.transferFrom(_file,_position,_remaining);
+                if (transferred>0)
+                {
+                    _position+=transferred;
+                    _remaining-=transferred;
+                    continue;
+                }
+
+                // The network is congested, so write a buffer to wait until it is writable
+                if (_buffer==null)
+                    _buffer=_channel.getByteBufferPool().acquire(getBufferSize(),true);
+                _buffer.clear();
+                if (_remaining<_buffer.capacity())
+                    _buffer.limit((int)_remaining);
+                int read=_file.read(_buffer,_position);
+                if (read<0)
+                    throw new EOFException("File truncated at "+_position);
+                _buffer.flip();
+                _position+=read;
+                _remaining-=read;
+                _endPoint.write(this,_buffer);
+                return Action.SCHEDULED;
+            }
+
+            if (!_completed)
+            {
+                _completed=true;
+                write(BufferUtil.EMPTY_BUFFER,true,this);
+                return Action.SCHEDULED;
+            }
+
+            _file.close();
+            closed();
+            release();
+            return Action.SUCCEEDED;
+        }
+
+        private void release()
+        {
+            if (_buffer!=null)
+                _channel.getByteBufferPool().release(_buffer);
+            _buffer=null;
+        }
+
+        @Override
+        public void onCompleteFailure(Throwable x)
+        {
+            abort(x);
+            release();
+            HttpOutput.this.close(_file);
+            super.onCompleteFailure(x);
+        }
+    }
 }
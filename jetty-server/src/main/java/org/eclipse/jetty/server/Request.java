@@ -45,6 +45,7 @@ import javax.servlet.AsyncContext;
 import javax.servlet.AsyncListener;
 import javax.servlet.DispatcherType;
 import javax.servlet.MultipartConfigElement;
+import javax.servlet.ReadListener;
 import javax.servlet.RequestDispatcher;
 import javax.servlet.ServletContext;
 import javax.servlet.ServletException;
@@ -82,9 +83,11 @@ import org.eclipse.jetty.util.AttributesMap;
 import org.eclipse.jetty.util.IO;
 import org.eclipse.jetty.util.MultiMap;
 import org.eclipse.jetty.util.MultiPartInputStreamParser;
+import org.eclipse.jetty.util.Promise;
 import org.eclipse.jetty.util.StringUtil;
 import org.eclipse.jetty.util.URIUtil;
 import org.eclipse.jetty.util.UrlEncoded;
+import org.eclipse.jetty.util.UrlEncodedDecoder;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
 
@@ -426,65 +429,154 @@ public class Request implements HttpServletRequest
     {
         try
         {
-            int maxFormContentSize = -1;
-            int maxFormKeys = -1;
+            UrlEncodedDecoder decoder = newFormDecoder(params);
+            getInputStream();
+            if (_input.isAsync())
+                throw new IllegalStateException("Cannot extract parameters with async IO");
 
-            if (_context != null)
+            // Decode the content buffers as they arrive, rather than the stream a byte at a time
+            while (_input.read(decoder)>=0)
             {
-                maxFormContentSize = _context.getContextHandler().getMaxFormContentSize();
-                maxFormKeys = _context.getContextHandler().getMaxFormKeys();
             }
+            decoder.complete();
+        }
+        catch (IOException e)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.warn(e);
+            else
+                LOG.warn(e.toString());
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Extracts the form parameters from the content without blocking.
+     * <p>
+     * The content is read with async IO, so this method must be called from within an
+     * asynchronous request cycle started with {@link #startAsync()} and before the
+     * input stream is otherwise used.  Each buffer of content is decoded as it
+     * arrives, with the maximum form size and number of keys enforced as for
+     * {@link #extractFormParameters(MultiMap)}.  Once all the content has been decoded,
+     * the parameters are available from {@link #getParameterMap()} and the other
+     * parameter methods, and are passed to the promise.
+     * </p>
+     * <p>
+     * If the request does not have form encoded content, the promise is succeeded
+     * immediately with the parameters extracted so far, if any.
+     * </p>
+     *
+     * @param promise the promise to notify with the form parameters or a failure
+     */
+    public void extractFormParameters(final Promise<MultiMap<String>> promise)
+    {
+        if (_contentParameters != null)
+        {
+            promise.succeeded(_contentParameters);
+            return;
+        }
+
+        String contentType = getContentType();
+        if (contentType == null || getContentLength() == 0 ||
+                !MimeTypes.Type.FORM_ENCODED.is(HttpFields.valueParameters(contentType, null)))
+        {
+            promise.succeeded(new MultiMap<String>());
+            return;
+        }
 
-            if (maxFormContentSize < 0)
+        final UrlEncodedDecoder decoder;
+        try
+        {
+            decoder = newFormDecoder(new MultiMap<String>());
+            getInputStream();
+        }
+        catch (Throwable x)
+        {
+            promise.failed(x);
+            return;
+        }
+
+        _input.setReadListener(new ReadListener()
+        {
+            @Override
+            public void onDataAvailable() throws IOException
             {
-                Object obj = _channel.getServer().getAttribute("org.eclipse.jetty.server.Request.maxFormContentSize");
-                if (obj == null)
-                    maxFormContentSize = 200000;
-                else if (obj instanceof Number)
+                while (_input.isReady())
                 {
-                    Number size = (Number)obj;
-                    maxFormContentSize = size.intValue();
-                }
-                else if (obj instanceof String)
-                {
-                    maxFormContentSize = Integer.valueOf((String)obj);
+                    if (_input.read(decoder) < 0)
+                        break;
                 }
             }
 
-            if (maxFormKeys < 0)
+            @Override
+            public void onAllDataRead() throws IOException
             {
-                Object obj = _channel.getServer().getAttribute("org.eclipse.jetty.server.Request.maxFormKeys");
-                if (obj == null)
-                    maxFormKeys = 1000;
-                else if (obj instanceof Number)
-                {
-                    Number keys = (Number)obj;
-                    maxFormKeys = keys.intValue();
-                }
-                else if (obj instanceof String)
-                {
-                    maxFormKeys = Integer.valueOf((String)obj);
-                }
+                decoder.complete();
+                _contentParameters = decoder.getMap();
+                if (_paramsExtracted)
+                    restoreParameters();
+                promise.succeeded(_contentParameters);
             }
 
-            int contentLength = getContentLength();
-            if (contentLength > maxFormContentSize && maxFormContentSize > 0)
+            @Override
+            public void onError(Throwable x)
             {
-                throw new IllegalStateException("Form too large: " + contentLength + " > " + maxFormContentSize);
+                promise.failed(x);
             }
-            InputStream in = getInputStream();
-            if (_input.isAsync())
-                throw new IllegalStateException("Cannot extract parameters with async IO");
+        });
+    }
 
-            UrlEncoded.decodeTo(in,params,getCharacterEncoding(),contentLength<0?maxFormContentSize:-1,maxFormKeys);
+    /* ------------------------------------------------------------ */
+    private UrlEncodedDecoder newFormDecoder(MultiMap<String> params)
+    {
+        int maxFormContentSize = -1;
+        int maxFormKeys = -1;
+
+        if (_context != null)
+        {
+            maxFormContentSize = _context.getContextHandler().getMaxFormContentSize();
+            maxFormKeys = _context.getContextHandler().getMaxFormKeys();
         }
-        catch (IOException e)
+
+        if (maxFormContentSize < 0)
         {
-            if (LOG.isDebugEnabled())
-                LOG.warn(e);
-            else
-                LOG.warn(e.toString());
+            Object obj = _channel.getServer().getAttribute("org.eclipse.jetty.server.Request.maxFormContentSize");
+            if (obj == null)
+                maxFormContentSize = 200000;
+            else if (obj instanceof Number)
+            {
+                Number size = (Number)obj;
+                maxFormContentSize = size.intValue();
+            }
+            else if (obj instanceof String)
+            {
+                maxFormContentSize = Integer.valueOf((String)obj);
+            }
         }
+
+        if (maxFormKeys < 0)
+        {
+            Object obj = _channel.getServer().getAttribute("org.eclipse.jetty.server.Request.maxFormKeys");
+            if (obj == null)
+                maxFormKeys = 1000;
+            else if (obj instanceof Number)
+            {
+                Number keys = (Number)obj;
+                maxFormKeys = keys.intValue();
+            }
+            else if (obj instanceof String)
+            {
+                maxFormKeys = Integer.valueOf((String)obj);
+            }
+        }
+
+        int contentLength = getContentLength();
+        if (contentLength > maxFormContentSize && maxFormContentSize > 0)
+        {
+            throw new IllegalStateException("Form too large: " + contentLength + " > " + maxFormContentSize);
+        }
+
+        return new UrlEncodedDecoder(params,getCharacterEncoding(),contentLength<0?maxFormContentSize:-1,maxFormKeys);
     }
 
     /* ------------------------------------------------------------ */
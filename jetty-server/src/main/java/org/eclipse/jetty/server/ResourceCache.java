@@ -19,17 +19,22 @@
 package org.eclipse.jetty.server;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
 import java.nio.channels.ReadableByteChannel;
-import java.util.Comparator;
-import java.util.SortedSet;
-import java.util.TreeSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPOutputStream;
 
 import org.eclipse.jetty.http.DateGenerator;
 import org.eclipse.jetty.http.HttpContent;
@@ -40,15 +45,22 @@ import org.eclipse.jetty.http.MimeTypes.Type;
 import org.eclipse.jetty.http.PreEncodedHttpField;
 import org.eclipse.jetty.http.ResourceHttpContent;
 import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
 import org.eclipse.jetty.util.resource.Resource;
 import org.eclipse.jetty.util.resource.ResourceFactory;
 
 
+@ManagedObject("Cache of static resources")
 public class ResourceCache
 {
     private static final Logger LOG = Log.getLogger(ResourceCache.class);
+    private static final Object GZIP_PENDING = new Object();
+    private static final Object GZIP_NONE = new Object();
+    private static final int MIN_GZIP_LENGTH = 256;
 
     private final ConcurrentMap<String,CachedHttpContent> _cache;
     private final AtomicInteger _cachedSize;
@@ -58,6 +70,12 @@ public class ResourceCache
     private final MimeTypes _mimeTypes;
     private final boolean _etagSupported;
     private final boolean  _useFileMappedBuffer;
+    private final AtomicLong _hits=new AtomicLong();
+    private final AtomicLong _misses=new AtomicLong();
+    private final AtomicLong _evictions=new AtomicLong();
+    private volatile EvictionPolicy _evictionPolicy=new SegmentedLeastRecentlyUsed();
+    private boolean _gzipVariants;
+    private Executor _executor;
     
     private int _maxCachedFileSize =128*1024*1024;
     private int _maxCachedFiles=2048;
@@ -84,18 +102,76 @@ public class ResourceCache
     }
 
     /* ------------------------------------------------------------ */
+    @ManagedAttribute("The total size in bytes of the cached content")
     public int getCachedSize()
     {
         return _cachedSize.get();
     }
     
     /* ------------------------------------------------------------ */
+    @ManagedAttribute("The number of cached files")
     public int getCachedFiles()
     {
         return _cachedFiles.get();
     }
+
+    /* ------------------------------------------------------------ */
+    @ManagedAttribute("The number of lookups served from the cache")
+    public long getHits()
+    {
+        return _hits.get();
+    }
+
+    /* ------------------------------------------------------------ */
+    @ManagedAttribute("The number of lookups not served from the cache")
+    public long getMisses()
+    {
+        return _misses.get();
+    }
+
+    /* ------------------------------------------------------------ */
+    @ManagedAttribute("The number of contents evicted from the cache")
+    public long getEvictions()
+    {
+        return _evictions.get();
+    }
+
+    /* ------------------------------------------------------------ */
+    @ManagedOperation(value="Resets the cache statistics", impact="ACTION")
+    public void resetStatistics()
+    {
+        _hits.set(0);
+        _misses.set(0);
+        _evictions.set(0);
+    }
+
+    /* ------------------------------------------------------------ */
+    public EvictionPolicy getEvictionPolicy()
+    {
+        return _evictionPolicy;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param evictionPolicy the policy that selects which content is evicted
+     * when the cache is too large. Any content already cached is added to the policy.
+     */
+    public void setEvictionPolicy(EvictionPolicy evictionPolicy)
+    {
+        for (CachedHttpContent content : _cache.values())
+            evictionPolicy.onAdded(content);
+        _evictionPolicy = evictionPolicy;
+    }
+
+    /* ------------------------------------------------------------ */
+    @ManagedAttribute("The eviction policy")
+    public String getEvictionPolicyName()
+    {
+        return _evictionPolicy.getClass().getSimpleName();
+    }
     
     /* ------------------------------------------------------------ */
+    @ManagedAttribute("The maximum size in bytes of a cached file")
     public int getMaxCachedFileSize()
     {
         return _maxCachedFileSize;
@@ -109,6 +185,7 @@ public class ResourceCache
     }
 
     /* ------------------------------------------------------------ */
+    @ManagedAttribute("The maximum total size in bytes of the cached content")
     public int getMaxCacheSize()
     {
         return _maxCacheSize;
@@ -125,6 +202,7 @@ public class ResourceCache
     /**
      * @return Returns the maxCachedFiles.
      */
+    @ManagedAttribute("The maximum number of cached files")
     public int getMaxCachedFiles()
     {
         return _maxCachedFiles;
@@ -140,6 +218,41 @@ public class ResourceCache
         shrinkCache();
     }
 
+    /* ------------------------------------------------------------ */
+    @ManagedAttribute("True if gzip variants of compressible content are cached")
+    public boolean isGzipVariants()
+    {
+        return _gzipVariants;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param gzipVariants If true, compressible text content is gzipped once and
+     * the compressed bytes are cached as a variant available from
+     * {@link CachedHttpContent#getGzipVariant()}. The variants count against the
+     * maximum cache size.
+     */
+    public void setGzipVariants(boolean gzipVariants)
+    {
+        _gzipVariants = gzipVariants;
+    }
+
+    /* ------------------------------------------------------------ */
+    public Executor getExecutor()
+    {
+        return _executor;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param executor The executor used to compress gzip variants in the background,
+     * or null to compress them on the thread that first requests the variant.
+     */
+    public void setExecutor(Executor executor)
+    {
+        _executor = executor;
+    }
+
     /* ------------------------------------------------------------ */
     public boolean isUseFileMappedBuffer()
     {
@@ -180,7 +293,12 @@ public class ResourceCache
         // Is the content in this cache?
         CachedHttpContent content =_cache.get(pathInContext);
         if (content!=null && (content).isValid())
+        {
+            _hits.incrementAndGet();
+            _evictionPolicy.onAccessed(content);
             return content;
+        }
+        _misses.incrementAndGet();
        
         // try loading the content from our factory.
         Resource resource=_factory.getResource(pathInContext);
@@ -237,6 +355,8 @@ public class ResourceCache
                 content.invalidate();
                 content=added;
             }
+            else
+                _evictionPolicy.onAdded(content);
 
             return content;
         }
@@ -251,35 +371,17 @@ public class ResourceCache
         // While we need to shrink
         while (_cache.size()>0 && (_cachedFiles.get()>_maxCachedFiles || _cachedSize.get()>_maxCacheSize))
         {
-            // Scan the entire cache and generate an ordered list by last accessed time.
-            SortedSet<CachedHttpContent> sorted= new TreeSet<CachedHttpContent>(
-                    new Comparator<CachedHttpContent>()
-                    {
-                        public int compare(CachedHttpContent c1, CachedHttpContent c2)
-                        {
-                            if (c1._lastAccessed<c2._lastAccessed)
-                                return -1;
-                            
-                            if (c1._lastAccessed>c2._lastAccessed)
-                                return 1;
-
-                            if (c1._contentLengthValue<c2._contentLengthValue)
-                                return -1;
-                            
-                            return c1._key.compareTo(c2._key);
-                        }
-                    });
-            for (CachedHttpContent content : _cache.values())
-                sorted.add(content);
-            
-            // Invalidate least recently used first
-            for (CachedHttpContent content : sorted)
+            // Ask the policy which content to invalidate
+            CachedHttpContent content=_evictionPolicy.getVictim();
+            if (content==null)
+                break;
+            if (_cache.remove(content.getKey(),content))
             {
-                if (_cachedFiles.get()<=_maxCachedFiles && _cachedSize.get()<=_maxCacheSize)
-                    break;
-                if (content==_cache.remove(content.getKey()))
-                    content.invalidate();
+                _evictions.incrementAndGet();
+                content.invalidate();
             }
+            else
+                _evictionPolicy.onRemoved(content);
         }
     }
     
@@ -321,6 +423,222 @@ public class ResourceCache
         return "ResourceCache["+_parent+","+_factory+"]@"+hashCode();
     }
     
+    /* ------------------------------------------------------------ */
+    /* ------------------------------------------------------------ */
+    /** A policy that selects the content to evict when the cache exceeds its
+     * maximum size or number of files.
+     * <p>Implementations are notified as content is added to, accessed in and
+     * removed from the cache, possibly by concurrent threads, and should do
+     * so in constant time. Accesses are notified on every cache hit, so they
+     * should be recorded without locking, for example by {@link ResourceCache#markAccessed(CachedHttpContent)},
+     * and only be taken into account when a victim is selected.</p>
+     */
+    public interface EvictionPolicy
+    {
+        /**
+         * @param content content that has been added to the cache
+         */
+        void onAdded(CachedHttpContent content);
+
+        /**
+         * @param content cached content that has been looked up. This is called
+         * by the request thread on every cache hit, so it must not block.
+         */
+        void onAccessed(CachedHttpContent content);
+
+        /**
+         * @param content content that has been removed from the cache. This may
+         * be called more than once or for content that was never added.
+         */
+        void onRemoved(CachedHttpContent content);
+
+        /**
+         * @return the content that should be evicted next, or null if no content is known
+         */
+        CachedHttpContent getVictim();
+    }
+
+    /* ------------------------------------------------------------ */
+    /** Marks content as accessed since a policy last cleared its mark.
+     * <p>The mark is a volatile flag that is only written if not already set,
+     * so that concurrent hits on the same content do not contend.</p>
+     * @param content the content accessed
+     */
+    protected static void markAccessed(CachedHttpContent content)
+    {
+        if (!content._accessed)
+            content._accessed=true;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param content the content
+     * @return true if the content was accessed since the last call, which clears the mark
+     */
+    protected static boolean clearAccessed(CachedHttpContent content)
+    {
+        if (!content._accessed)
+            return false;
+        content._accessed=false;
+        return true;
+    }
+
+    /* ------------------------------------------------------------ */
+    /* ------------------------------------------------------------ */
+    /** Evicts the least recently used content first.
+     * <p>Recency is approximated with a second chance: hits only mark the content, and
+     * when selecting a victim, marked content is moved to the most recently used end
+     * instead of being evicted.</p>
+     */
+    public static class LeastRecentlyUsed implements EvictionPolicy
+    {
+        private final LinkedHashSet<CachedHttpContent> _contents=new LinkedHashSet<>();
+
+        @Override
+        public synchronized void onAdded(CachedHttpContent content)
+        {
+            _contents.add(content);
+        }
+
+        @Override
+        public void onAccessed(CachedHttpContent content)
+        {
+            markAccessed(content);
+        }
+
+        @Override
+        public synchronized void onRemoved(CachedHttpContent content)
+        {
+            _contents.remove(content);
+        }
+
+        @Override
+        public synchronized CachedHttpContent getVictim()
+        {
+            // Bound the second chances, as content may be accessed again concurrently
+            for (int chances=_contents.size();!_contents.isEmpty();chances--)
+            {
+                Iterator<CachedHttpContent> eldest=_contents.iterator();
+                CachedHttpContent content=eldest.next();
+                if (chances<=0 || !clearAccessed(content))
+                    return content;
+                eldest.remove();
+                _contents.add(content);
+            }
+            return null;
+        }
+
+        @Override
+        public synchronized String toString()
+        {
+            return String.format("%s@%x{%d}",getClass().getSimpleName(),hashCode(),_contents.size());
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    /* ------------------------------------------------------------ */
+    /** A scan resistant segmented LRU policy.
+     * <p>New content is added to a probationary segment and is only promoted
+     * to the protected segment if it is accessed again while cached. Content
+     * is evicted from the probationary segment first, so a single pass over many
+     * resources (eg by a crawler) cannot flush frequently used content. When the
+     * protected segment holds more than its ratio of all contents (and more than one), its least
+     * recently used content is demoted back to the probationary segment.</p>
+     * <p>As with {@link LeastRecentlyUsed}, hits only mark the content, and the
+     * promotions are made when selecting a victim.</p>
+     */
+    public static class SegmentedLeastRecentlyUsed implements EvictionPolicy
+    {
+        private final LinkedHashSet<CachedHttpContent> _probation=new LinkedHashSet<>();
+        private final LinkedHashSet<CachedHttpContent> _protected=new LinkedHashSet<>();
+        private final double _protectedRatio;
+
+        public SegmentedLeastRecentlyUsed()
+        {
+            this(0.8);
+        }
+
+        /**
+         * @param protectedRatio the maximum fraction of the cached contents held in the protected segment
+         */
+        public SegmentedLeastRecentlyUsed(double protectedRatio)
+        {
+            if (protectedRatio<0 || protectedRatio>1)
+                throw new IllegalArgumentException("protectedRatio "+protectedRatio);
+            _protectedRatio=protectedRatio;
+        }
+
+        public synchronized int getProbationSize()
+        {
+            return _probation.size();
+        }
+
+        public synchronized int getProtectedSize()
+        {
+            return _protected.size();
+        }
+
+        @Override
+        public synchronized void onAdded(CachedHttpContent content)
+        {
+            if (!_protected.contains(content))
+                _probation.add(content);
+        }
+
+        @Override
+        public void onAccessed(CachedHttpContent content)
+        {
+            markAccessed(content);
+        }
+
+        private void promote(CachedHttpContent content)
+        {
+            _protected.add(content);
+
+            // Demote the least recently used protected content if the segment is too large
+            int max=Math.max(1,(int)(_protectedRatio*(_probation.size()+_protected.size())));
+            Iterator<CachedHttpContent> eldest=_protected.iterator();
+            while (_protected.size()>max)
+            {
+                CachedHttpContent demoted=eldest.next();
+                eldest.remove();
+                _probation.add(demoted);
+            }
+        }
+
+        @Override
+        public synchronized void onRemoved(CachedHttpContent content)
+        {
+            if (!_probation.remove(content))
+                _protected.remove(content);
+        }
+
+        @Override
+        public synchronized CachedHttpContent getVictim()
+        {
+            // Bound the second chances, as content may be accessed again concurrently
+            for (int chances=2*(_probation.size()+_protected.size());chances>=0;chances--)
+            {
+                LinkedHashSet<CachedHttpContent> segment=_probation.isEmpty()?_protected:_probation;
+                if (segment.isEmpty())
+                    return null;
+                Iterator<CachedHttpContent> eldest=segment.iterator();
+                CachedHttpContent content=eldest.next();
+                if (chances==0 || !clearAccessed(content))
+                    return content;
+                eldest.remove();
+                promote(content);
+            }
+            return null;
+        }
+
+        @Override
+        public synchronized String toString()
+        {
+            return String.format("%s@%x{probation=%d,protected=%d}",getClass().getSimpleName(),hashCode(),_probation.size(),_protected.size());
+        }
+    }
+    
     /* ------------------------------------------------------------ */
     /* ------------------------------------------------------------ */
     /** MetaData associated with a context Resource.
@@ -338,7 +656,8 @@ public class ResourceCache
         final long _lastModifiedValue;
         final HttpField _etag;
         
-        volatile long _lastAccessed;
+        volatile boolean _accessed;
+        AtomicReference<Object> _gzipped=new AtomicReference<Object>();
         AtomicReference<ByteBuffer> _indirectBuffer=new AtomicReference<ByteBuffer>();
         AtomicReference<ByteBuffer> _directBuffer=new AtomicReference<ByteBuffer>();
 
@@ -363,7 +682,6 @@ public class ResourceCache
             
             _cachedSize.addAndGet(_contentLengthValue);
             _cachedFiles.incrementAndGet();
-            _lastAccessed=System.currentTimeMillis();
             
             _etag=ResourceCache.this._etagSupported?new PreEncodedHttpField(HttpHeader.ETAG,resource.getWeakETag()):null;
         }
@@ -412,10 +730,7 @@ public class ResourceCache
         boolean isValid()
         {
             if (_lastModifiedValue==_resource.lastModified() && _contentLengthValue==_resource.length())
-            {
-                _lastAccessed=System.currentTimeMillis();
                 return true;
-            }
 
             if (this==_cache.remove(_key))
                 invalidate();
@@ -428,9 +743,108 @@ public class ResourceCache
             // Invalidate it
             _cachedSize.addAndGet(-_contentLengthValue);
             _cachedFiles.decrementAndGet();
+            _evictionPolicy.onRemoved(this);
+            Object gzipped=_gzipped.getAndSet(GZIP_NONE);
+            if (gzipped instanceof CachedGzipHttpContent)
+                _cachedSize.addAndGet(-((CachedGzipHttpContent)gzipped)._contentLengthValue);
             _resource.close(); 
         }
 
+        /* ------------------------------------------------------------ */
+        /**
+         * @return true if gzip variants are enabled and this content is text
+         * that is large enough to be worth compressing
+         */
+        public boolean isGzipCompressible()
+        {
+            if (!_gzipVariants || _contentLengthValue<MIN_GZIP_LENGTH || _contentType==null)
+                return false;
+            String type=MimeTypes.getContentTypeWithoutCharset(_contentType.getValue());
+            return type.startsWith("text/") || type.endsWith("javascript") || type.endsWith("json") || type.endsWith("xml");
+        }
+
+        /* ------------------------------------------------------------ */
+        /**
+         * Get the cached gzip variant of this content.
+         * <p>The first call for compressible content starts compressing it with
+         * the cache {@link Executor} and returns null, so that the request is served
+         * with the identity content rather than waiting.</p>
+         * @return the gzip variant, or null if it is not (yet) available
+         */
+        public HttpContent getGzipVariant()
+        {
+            Object gzipped=_gzipped.get();
+            if (gzipped==null && isGzipCompressible() && _gzipped.compareAndSet(null,GZIP_PENDING))
+            {
+                Runnable compress=new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        compress();
+                    }
+                };
+
+                Executor executor=_executor;
+                if (executor==null)
+                    compress.run();
+                else
+                {
+                    try
+                    {
+                        executor.execute(compress);
+                    }
+                    catch(RejectedExecutionException e)
+                    {
+                        LOG.ignore(e);
+                        _gzipped.compareAndSet(GZIP_PENDING,null);
+                    }
+                }
+                gzipped=_gzipped.get();
+            }
+            return gzipped instanceof CachedGzipHttpContent?(CachedGzipHttpContent)gzipped:null;
+        }
+
+        /* ------------------------------------------------------------ */
+        private void compress()
+        {
+            try
+            {
+                ByteBuffer buffer=getIndirectBuffer();
+                if (buffer==null)
+                {
+                    _gzipped.compareAndSet(GZIP_PENDING,GZIP_NONE);
+                    return;
+                }
+
+                ByteArrayOutputStream bout=new ByteArrayOutputStream(_contentLengthValue/2);
+                try (GZIPOutputStream gzip=new GZIPOutputStream(bout))
+                {
+                    BufferUtil.writeTo(buffer,gzip);
+                }
+
+                // Don't cache a variant that is not smaller
+                if (bout.size()>=_contentLengthValue)
+                {
+                    _gzipped.compareAndSet(GZIP_PENDING,GZIP_NONE);
+                    return;
+                }
+
+                CachedGzipHttpContent variant=new CachedGzipHttpContent(this,bout.toByteArray());
+                _cachedSize.addAndGet(variant._contentLengthValue);
+                if (_gzipped.compareAndSet(GZIP_PENDING,variant))
+                    shrinkCache();
+                else
+                    // invalidated while compressing
+                    _cachedSize.addAndGet(-variant._contentLengthValue);
+            }
+            catch(Throwable x)
+            {
+                LOG.warn("Could not gzip "+this,x);
+                _gzipped.compareAndSet(GZIP_PENDING,GZIP_NONE);
+            }
+        }
+
         /* ------------------------------------------------------------ */
         @Override
         public HttpField getLastModified()
@@ -565,4 +979,163 @@ public class ResourceCache
             return String.format("CachedContent@%x{r=%s,e=%b,lm=%s,ct=%s}",hashCode(),_resource,_resource.exists(),_lastModified,_contentType);
         }   
     }
+    /* ------------------------------------------------------------ */
+    /* ------------------------------------------------------------ */
+    /** A gzip compressed variant of a {@link CachedHttpContent}.
+     * <p>The variant has the content type and last modified time of the identity
+     * content, but its own content length and ETag.</p>
+     */
+    public class CachedGzipHttpContent implements HttpContent
+    {
+        private final CachedHttpContent _content;
+        private final byte[] _bytes;
+        private final int _contentLengthValue;
+        private final HttpField _contentLength;
+        private final HttpField _etag;
+
+        /* ------------------------------------------------------------ */
+        CachedGzipHttpContent(CachedHttpContent content, byte[] bytes)
+        {
+            _content=content;
+            _bytes=bytes;
+            _contentLengthValue=bytes.length;
+            _contentLength=new PreEncodedHttpField(HttpHeader.CONTENT_LENGTH,Long.toString(_contentLengthValue));
+
+            // The variant must have a different ETag to the identity content
+            String etag=content.getETag()==null?null:content.getETagValue();
+            if (etag==null)
+                _etag=null;
+            else if (etag.endsWith("\""))
+                _etag=new PreEncodedHttpField(HttpHeader.ETAG,etag.substring(0,etag.length()-1)+"--gzip\"");
+            else
+                _etag=new PreEncodedHttpField(HttpHeader.ETAG,etag+"--gzip");
+        }
+
+        /* ------------------------------------------------------------ */
+        public CachedHttpContent getIdentityContent()
+        {
+            return _content;
+        }
+
+        /* ------------------------------------------------------------ */
+        @Override
+        public HttpField getContentType()
+        {
+            return _content.getContentType();
+        }
+
+        /* ------------------------------------------------------------ */
+        @Override
+        public String getContentTypeValue()
+        {
+            return _content.getContentTypeValue();
+        }
+
+        /* ------------------------------------------------------------ */
+        @Override
+        public String getCharacterEncoding()
+        {
+            return _content.getCharacterEncoding();
+        }
+
+        /* ------------------------------------------------------------ */
+        @Override
+        public Type getMimeType()
+        {
+            return _content.getMimeType();
+        }
+
+        /* ------------------------------------------------------------ */
+        @Override
+        public HttpField getContentLength()
+        {
+            return _contentLength;
+        }
+
+        /* ------------------------------------------------------------ */
+        @Override
+        public long getContentLengthValue()
+        {
+            return _contentLengthValue;
+        }
+
+        /* ------------------------------------------------------------ */
+        @Override
+        public HttpField getLastModified()
+        {
+            return _content.getLastModified();
+        }
+
+        /* ------------------------------------------------------------ */
+        @Override
+        public String getLastModifiedValue()
+        {
+            return _content.getLastModifiedValue();
+        }
+
+        /* ------------------------------------------------------------ */
+        @Override
+        public HttpField getETag()
+        {
+            return _etag;
+        }
+
+        /* ------------------------------------------------------------ */
+        @Override
+        public String getETagValue()
+        {
+            return _etag==null?null:_etag.getValue();
+        }
+
+        /* ------------------------------------------------------------ */
+        @Override
+        public ByteBuffer getIndirectBuffer()
+        {
+            return ByteBuffer.wrap(_bytes).asReadOnlyBuffer();
+        }
+
+        /* ------------------------------------------------------------ */
+        @Override
+        public ByteBuffer getDirectBuffer()
+        {
+            return null;
+        }
+
+        /* ------------------------------------------------------------ */
+        /**
+         * @return the resource of the identity content
+         */
+        @Override
+        public Resource getResource()
+        {
+            return _content.getResource();
+        }
+
+        /* ------------------------------------------------------------ */
+        @Override
+        public InputStream getInputStream() throws IOException
+        {
+            return new ByteArrayInputStream(_bytes);
+        }
+
+        /* ------------------------------------------------------------ */
+        @Override
+        public ReadableByteChannel getReadableByteChannel() throws IOException
+        {
+            return Channels.newChannel(getInputStream());
+        }
+
+        /* ------------------------------------------------------------ */
+        @Override
+        public void release()
+        {
+        }
+
+        /* ------------------------------------------------------------ */
+        @Override
+        public String toString()
+        {
+            return String.format("CachedGzipContent@%x{l=%d,%s}",hashCode(),_contentLengthValue,_content);
+        }
+    }
 }
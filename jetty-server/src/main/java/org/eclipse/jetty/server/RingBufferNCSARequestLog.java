@@ -0,0 +1,613 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.servlet.http.Cookie;
+
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.util.DateCache;
+import org.eclipse.jetty.util.StringUtil;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+
+/* ------------------------------------------------------------ */
+/**
+ * An NCSA Request Log that formats and writes entries on a background thread.
+ * <p>
+ * The request thread only copies the fields needed for the log line into a
+ * preallocated slot of a ring buffer. A single writer thread formats the
+ * entries and writes them in batches to a {@link FileChannel} (or to
+ * {@link System#err} if no filename is set). The lines are in the same format as
+ * {@link NCSARequestLog}, but the file is not rolled over.
+ * <p>
+ * When the ring buffer is full, the {@link OverflowPolicy} decides whether
+ * the entry is dropped, the request thread waits for space, or only a sample of
+ * entries is kept. Entries that are not logged are counted by {@link #getDroppedCount()}.
+ */
+@ManagedObject("NCSA format request log written from a ring buffer")
+public class RingBufferNCSARequestLog extends AbstractNCSARequestLog
+{
+    public enum OverflowPolicy
+    {
+        /** Drop entries while the buffer is full */
+        DROP,
+        /** Block the request thread until the buffer has space */
+        BLOCK,
+        /** Keep only one in {@link RingBufferNCSARequestLog#getSampleRate()} entries once the buffer is 3/4 full */
+        SAMPLE
+    }
+
+    private static final int BATCH_SIZE = 64 * 1024;
+
+    private final AtomicLong _claimed = new AtomicLong();
+    private final AtomicLong _dropped = new AtomicLong();
+    private final AtomicLong _sampled = new AtomicLong();
+    private volatile long _consumed;
+    private String _filename;
+    private boolean _append = true;
+    private int _capacity = 1024;
+    private OverflowPolicy _overflowPolicy = OverflowPolicy.DROP;
+    private int _sampleRate = 10;
+    private long _flushIntervalMs = 100;
+    private transient Entry[] _entries;
+    private transient int _mask;
+    private transient WritableByteChannel _channel;
+    private transient WriterThread _thread;
+
+    public RingBufferNCSARequestLog()
+    {
+        this(null);
+    }
+
+    public RingBufferNCSARequestLog(String filename)
+    {
+        setExtended(true);
+        setFilename(filename);
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param filename the file to append to, or null to log to {@link System#err}
+     */
+    public void setFilename(String filename)
+    {
+        if (filename != null)
+        {
+            filename = filename.trim();
+            if (filename.length() == 0)
+                filename = null;
+        }
+        _filename = filename;
+    }
+
+    @ManagedAttribute("file of log")
+    public String getFilename()
+    {
+        return _filename;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param append true to append to an existing file, false to truncate it
+     */
+    public void setAppend(boolean append)
+    {
+        _append = append;
+    }
+
+    @ManagedAttribute("existing log files are appends to the new one")
+    public boolean isAppend()
+    {
+        return _append;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param capacity the number of entries in the ring buffer, rounded up to a power of 2 when started
+     */
+    public void setCapacity(int capacity)
+    {
+        if (isRunning())
+            throw new IllegalStateException(getState());
+        if (capacity <= 0)
+            throw new IllegalArgumentException("capacity " + capacity);
+        _capacity = capacity;
+    }
+
+    @ManagedAttribute("number of entries in the ring buffer")
+    public int getCapacity()
+    {
+        return _capacity;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param policy what to do with entries logged while the ring buffer is full
+     */
+    public void setOverflowPolicy(OverflowPolicy policy)
+    {
+        _overflowPolicy = policy;
+    }
+
+    @ManagedAttribute("what to do with entries when the ring buffer is full")
+    public OverflowPolicy getOverflowPolicy()
+    {
+        return _overflowPolicy;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param sampleRate one in this many entries is kept by {@link OverflowPolicy#SAMPLE} when the buffer is nearly full
+     */
+    public void setSampleRate(int sampleRate)
+    {
+        if (sampleRate <= 0)
+            throw new IllegalArgumentException("sampleRate " + sampleRate);
+        _sampleRate = sampleRate;
+    }
+
+    @ManagedAttribute("one in this many entries is kept when sampling")
+    public int getSampleRate()
+    {
+        return _sampleRate;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param flushIntervalMs the maximum time in ms that the writer thread waits before writing entries
+     */
+    public void setFlushIntervalMs(long flushIntervalMs)
+    {
+        _flushIntervalMs = flushIntervalMs;
+    }
+
+    @ManagedAttribute("max time in ms entries wait to be written")
+    public long getFlushIntervalMs()
+    {
+        return _flushIntervalMs;
+    }
+
+    /* ------------------------------------------------------------ */
+    @ManagedAttribute("number of entries not logged because the buffer was full")
+    public long getDroppedCount()
+    {
+        return _dropped.get();
+    }
+
+    @ManagedAttribute("number of entries waiting to be written")
+    public int getPendingCount()
+    {
+        return (int)(_claimed.get() - _consumed);
+    }
+
+    @ManagedOperation(value="resets the dropped count", impact="ACTION")
+    public void resetDroppedCount()
+    {
+        _dropped.set(0);
+    }
+
+    /* ------------------------------------------------------------ */
+    @Override
+    protected boolean isEnabled()
+    {
+        return _channel != null;
+    }
+
+    /* ------------------------------------------------------------ */
+    @Override
+    public void log(Request request, Response response)
+    {
+        if (isIgnored(request) || !isEnabled())
+            return;
+
+        long sequence = claim();
+        if (sequence < 0)
+        {
+            _dropped.incrementAndGet();
+            return;
+        }
+
+        Entry entry = _entries[(int)(sequence & _mask)];
+        try
+        {
+            entry.capture(request, response);
+        }
+        catch (Throwable x)
+        {
+            // The slot is claimed, so it must still be published or the writer stalls on it.
+            entry._skipped = true;
+            _dropped.incrementAndGet();
+            LOG.warn(x);
+        }
+        finally
+        {
+            entry._sequence = sequence;
+        }
+
+        // Only wake the writer if the buffer is filling up, otherwise it wakes up on its own.
+        if (sequence - _consumed > _mask >> 1)
+            LockSupport.unpark(_thread);
+    }
+
+    /* ------------------------------------------------------------ */
+    private long claim()
+    {
+        int capacity = _entries.length;
+        while (true)
+        {
+            long sequence = _claimed.get();
+            long used = sequence - _consumed;
+            if (used >= capacity)
+            {
+                if (_overflowPolicy != OverflowPolicy.BLOCK || !isRunning())
+                    return -1;
+                LockSupport.unpark(_thread);
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+                continue;
+            }
+
+            if (_overflowPolicy == OverflowPolicy.SAMPLE && used >= capacity - (capacity >> 2) && _sampled.incrementAndGet() % _sampleRate != 0)
+                return -1;
+
+            if (_claimed.compareAndSet(sequence, sequence + 1))
+                return sequence;
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Writes the entry immediately, bypassing the ring buffer.
+     */
+    @Override
+    public void write(String requestEntry) throws IOException
+    {
+        synchronized (this)
+        {
+            if (_channel == null)
+                return;
+            writeFully(ByteBuffer.wrap((requestEntry + StringUtil.__LINE_SEPARATOR).getBytes(Charset.defaultCharset())));
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    private void writeFully(ByteBuffer buffer) throws IOException
+    {
+        while (buffer.hasRemaining())
+            _channel.write(buffer);
+    }
+
+    /* ------------------------------------------------------------ */
+    @Override
+    protected synchronized void doStart() throws Exception
+    {
+        int capacity = Integer.highestOneBit(_capacity);
+        if (capacity < _capacity)
+            capacity <<= 1;
+        _entries = new Entry[capacity];
+        for (int i = 0; i < capacity; i++)
+            _entries[i] = new Entry(i);
+        _mask = capacity - 1;
+        _claimed.set(0);
+        _consumed = 0;
+
+        if (_filename != null)
+        {
+            if (_append)
+                _channel = FileChannel.open(Paths.get(_filename), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            else
+                _channel = FileChannel.open(Paths.get(_filename), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            LOG.info("Opened " + _filename);
+        }
+        else
+            _channel = Channels.newChannel(System.err);
+
+        super.doStart();
+
+        _thread = new WriterThread();
+        _thread.start();
+    }
+
+    /* ------------------------------------------------------------ */
+    @Override
+    protected void doStop() throws Exception
+    {
+        // The writer drains the buffer once this log is no longer running
+        LockSupport.unpark(_thread);
+        _thread.join();
+        _thread = null;
+
+        synchronized (this)
+        {
+            if (_channel instanceof FileChannel)
+            {
+                try
+                {
+                    _channel.close();
+                }
+                catch (IOException e)
+                {
+                    LOG.ignore(e);
+                }
+            }
+            _channel = null;
+        }
+        super.doStop();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * A preallocated slot of the ring buffer holding the fields of one log line.
+     */
+    private class Entry
+    {
+        private volatile long _sequence;
+        private boolean _skipped;
+        private String _serverName;
+        private String _address;
+        private String _user;
+        private long _timeStamp;
+        private String _method;
+        private String _uri;
+        private String _protocol;
+        private int _status;
+        private long _written;
+        private String _referer;
+        private String _agent;
+        private Cookie[] _cookies;
+        private long _latency;
+
+        private Entry(long sequence)
+        {
+            // Not yet published for this slot's first sequence
+            _sequence = sequence - 1;
+        }
+
+        private void capture(Request request, Response response)
+        {
+            _status = response.getCommittedMetaData().getStatus();
+            _written = response.getHttpChannel().getBytesWritten();
+            _serverName = getLogServer() ? request.getServerName() : null;
+
+            String address = null;
+            if (getPreferProxiedForAddress())
+                address = request.getHeader(HttpHeader.X_FORWARDED_FOR.toString());
+            _address = address == null ? request.getRemoteAddr() : address;
+
+            Authentication authentication = request.getAuthentication();
+            _user = (authentication instanceof Authentication.User) ? ((Authentication.User)authentication).getUserIdentity().getUserPrincipal().getName() : null;
+
+            _timeStamp = request.getTimeStamp();
+            _method = request.getMethod();
+            _uri = request.getHttpURI().toString();
+            _protocol = request.getProtocol();
+
+            if (isExtended())
+            {
+                _referer = request.getHeader(HttpHeader.REFERER.toString());
+                _agent = request.getHeader(HttpHeader.USER_AGENT.toString());
+            }
+            _cookies = getLogCookies() ? request.getCookies() : null;
+            _latency = getLogLatency() ? System.currentTimeMillis() - _timeStamp : -1;
+        }
+
+        private void format(StringBuilder buf, DateCache dateCache)
+        {
+            if (getLogServer())
+            {
+                append(buf, _serverName);
+                buf.append(' ');
+            }
+
+            buf.append(_address);
+            buf.append(" - ");
+            append(buf, _user);
+
+            buf.append(" [");
+            if (dateCache != null)
+                buf.append(dateCache.format(_timeStamp));
+            else
+                buf.append(_timeStamp);
+
+            buf.append("] \"");
+            append(buf, _method);
+            buf.append(' ');
+            append(buf, _uri);
+            buf.append(' ');
+            append(buf, _protocol);
+            buf.append("\" ");
+
+            if (_status >= 0)
+            {
+                buf.append((char)('0' + ((_status / 100) % 10)));
+                buf.append((char)('0' + ((_status / 10) % 10)));
+                buf.append((char)('0' + (_status % 10)));
+            }
+            else
+                buf.append(_status);
+
+            if (_written >= 0)
+            {
+                buf.append(' ');
+                buf.append(_written);
+                buf.append(' ');
+            }
+            else
+                buf.append(" - ");
+
+            if (isExtended())
+            {
+                if (_referer == null)
+                    buf.append("\"-\" ");
+                else
+                    buf.append('"').append(_referer).append("\" ");
+
+                if (_agent == null)
+                    buf.append("\"-\" ");
+                else
+                    buf.append('"').append(_agent).append('"');
+            }
+
+            if (getLogCookies())
+            {
+                if (_cookies == null || _cookies.length == 0)
+                    buf.append(" -");
+                else
+                {
+                    buf.append(" \"");
+                    for (int i = 0; i < _cookies.length; i++)
+                    {
+                        if (i != 0)
+                            buf.append(';');
+                        buf.append(_cookies[i].getName());
+                        buf.append('=');
+                        buf.append(_cookies[i].getValue());
+                    }
+                    buf.append('"');
+                }
+            }
+
+            if (_latency >= 0)
+            {
+                buf.append(' ');
+                buf.append(_latency);
+            }
+
+            buf.append(StringUtil.__LINE_SEPARATOR);
+        }
+
+        private void clear()
+        {
+            _skipped = false;
+            _serverName = null;
+            _address = null;
+            _user = null;
+            _method = null;
+            _uri = null;
+            _protocol = null;
+            _referer = null;
+            _agent = null;
+            _cookies = null;
+        }
+
+        private void append(StringBuilder buf, String s)
+        {
+            if (s == null || s.length() == 0)
+                buf.append('-');
+            else
+                buf.append(s);
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    private class WriterThread extends Thread
+    {
+        private final StringBuilder _buf = new StringBuilder(BATCH_SIZE);
+        private final ByteBuffer _bytes = ByteBuffer.allocate(BATCH_SIZE);
+        private final CharsetEncoder _encoder = Charset.defaultCharset().newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private final DateCache _dateCache;
+
+        WriterThread()
+        {
+            setName("RingBufferNCSARequestLog@" + Integer.toString(RingBufferNCSARequestLog.this.hashCode(), 16));
+            setDaemon(true);
+            String format = getLogDateFormat();
+            _dateCache = format == null ? null : new DateCache(format, getLogLocale(), getLogTimeZone());
+        }
+
+        @Override
+        public void run()
+        {
+            long next = _consumed;
+            while (true)
+            {
+                Entry entry = _entries[(int)(next & _mask)];
+                if (entry._sequence == next)
+                {
+                    if (!entry._skipped)
+                        entry.format(_buf, _dateCache);
+                    entry.clear();
+                    _consumed = ++next;
+                    if (_buf.length() >= BATCH_SIZE)
+                        flush();
+                    continue;
+                }
+
+                // Nothing more is published, so write the batch.
+                flush();
+
+                if (!isRunning() && _claimed.get() == next)
+                    break;
+                LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(_flushIntervalMs));
+            }
+        }
+
+        private void flush()
+        {
+            if (_buf.length() == 0)
+                return;
+            try
+            {
+                CharBuffer chars = CharBuffer.wrap(_buf);
+                _encoder.reset();
+                synchronized (RingBufferNCSARequestLog.this)
+                {
+                    CoderResult result;
+                    do
+                    {
+                        result = _encoder.encode(chars, _bytes, true);
+                        if (result.isUnderflow())
+                            _encoder.flush(_bytes);
+                        _bytes.flip();
+                        if (_channel != null)
+                            writeFully(_bytes);
+                        _bytes.clear();
+                    }
+                    while (result.isOverflow());
+                }
+            }
+            catch (IOException e)
+            {
+                LOG.warn(e);
+            }
+            finally
+            {
+                _buf.setLength(0);
+            }
+        }
+    }
+}
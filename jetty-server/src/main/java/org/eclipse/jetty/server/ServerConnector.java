@@ -37,9 +37,11 @@ import org.eclipse.jetty.io.EndPoint;
 import org.eclipse.jetty.io.ManagedSelector;
 import org.eclipse.jetty.io.SelectChannelEndPoint;
 import org.eclipse.jetty.io.SelectorManager;
+import org.eclipse.jetty.io.WriteFlusher;
 import org.eclipse.jetty.util.Callback;
 import org.eclipse.jetty.util.annotation.ManagedAttribute;
 import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
 import org.eclipse.jetty.util.annotation.Name;
 import org.eclipse.jetty.util.ssl.SslContextFactory;
 import org.eclipse.jetty.util.thread.Scheduler;
@@ -84,6 +86,8 @@ public class ServerConnector extends AbstractNetworkConnector
     private volatile int _acceptQueueSize = 0;
     private volatile boolean _reuseAddress = true;
     private volatile int _lingerTime = -1;
+    private volatile boolean _writeCoalescing = false;
+    private final WriteFlusher.Statistics _writeStatistics = new WriteFlusher.Statistics();
 
 
     /* ------------------------------------------------------------ */
@@ -319,7 +323,7 @@ public class ServerConnector extends AbstractNetworkConnector
 
             if (serverChannel == null)
             {
-                serverChannel = ServerSocketChannel.open();
+                serverChannel = _manager.getSelectorProvider().openServerSocketChannel();
 
                 InetSocketAddress bindAddress = getHost() == null ? new InetSocketAddress(getPort()) : new InetSocketAddress(getHost(), getPort());
                 serverChannel.socket().setReuseAddress(getReuseAddress());
@@ -485,6 +489,53 @@ public class ServerConnector extends AbstractNetworkConnector
         _reuseAddress = reuseAddress;
     }
 
+    /**
+     * @return whether the writes to an endpoint issued while a write is in progress
+     * are queued and flushed together
+     */
+    @ManagedAttribute("Whether writes issued while a write is in progress are flushed together")
+    public boolean isWriteCoalescing()
+    {
+        return _writeCoalescing;
+    }
+
+    /**
+     * <p>Sets whether the writes to an endpoint issued while a write is in progress are queued
+     * and flushed together with a single gathering write.</p>
+     * <p>This only applies to endpoints accepted after this setting is changed.</p>
+     *
+     * @param writeCoalescing whether writes are coalesced
+     * @see WriteFlusher#setCoalescing(boolean)
+     */
+    public void setWriteCoalescing(boolean writeCoalescing)
+    {
+        _writeCoalescing = writeCoalescing;
+    }
+
+    @ManagedAttribute("The average number of coalesced writes per flushed batch")
+    public double getWriteAverageBatchSize()
+    {
+        return _writeStatistics.getAverageBatchSize();
+    }
+
+    @ManagedAttribute("The average number of bytes flushed per flush of coalesced writes")
+    public double getWriteAverageBytesPerFlush()
+    {
+        return _writeStatistics.getAverageBytesPerFlush();
+    }
+
+    @ManagedAttribute("The number of flushes of coalesced writes")
+    public long getWriteFlushes()
+    {
+        return _writeStatistics.getFlushes();
+    }
+
+    @ManagedOperation(value = "Resets the write coalescing statistics", impact = "ACTION")
+    public void resetWriteStatistics()
+    {
+        _writeStatistics.reset();
+    }
+
     protected class ServerConnectorManager extends SelectorManager
     {
         public ServerConnectorManager(Executor executor, Scheduler scheduler, int selectors)
@@ -501,7 +552,13 @@ public class ServerConnector extends AbstractNetworkConnector
         @Override
         protected SelectChannelEndPoint newEndPoint(SocketChannel channel, ManagedSelector selectSet, SelectionKey selectionKey) throws IOException
         {
-            return ServerConnector.this.newEndPoint(channel, selectSet, selectionKey);
+            SelectChannelEndPoint endPoint = ServerConnector.this.newEndPoint(channel, selectSet, selectionKey);
+            if (_writeCoalescing)
+            {
+                endPoint.setWriteCoalescing(true);
+                endPoint.setWriteStatistics(_writeStatistics);
+            }
+            return endPoint;
         }
 
         @Override
@@ -295,6 +295,7 @@ public class ContextHandler extends ScopedHandler implements Attributes, Gracefu
             for (int i = 0; i < vhosts.length; i++)
                 _vhosts[i] = normalizeHostname(vhosts[i]);
         }
+        mapContexts();
     }
 
     /* ------------------------------------------------------------ */
@@ -333,6 +334,7 @@ public class ContextHandler extends ScopedHandler implements Attributes, Gracefu
             }
             _vhosts = currentVirtualHosts.toArray(new String[0]);
         }
+        mapContexts();
     }
 
     /* ------------------------------------------------------------ */
@@ -375,6 +377,7 @@ public class ContextHandler extends ScopedHandler implements Attributes, Gracefu
                 _vhosts = existingVirtualHosts.toArray(new String[0]);
             }
         }
+        mapContexts();
     }
 
     /* ------------------------------------------------------------ */
@@ -1348,6 +1351,16 @@ public class ContextHandler extends ScopedHandler implements Attributes, Gracefu
 
         _contextPath = contextPath;
 
+        mapContexts();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Remap the contexts of any {@link ContextHandlerCollection}s of a running server,
+     * after a change to the context path or virtual hosts.
+     */
+    private void mapContexts()
+    {
         if (getServer() != null && (getServer().isStarting() || getServer().isStarted()))
         {
             Handler[] contextCollections = getServer().getChildHandlersByClass(ContextHandlerCollection.class);
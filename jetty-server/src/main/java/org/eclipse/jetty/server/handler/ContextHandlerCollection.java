@@ -21,11 +21,11 @@ package org.eclipse.jetty.server.handler;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
@@ -36,7 +36,6 @@ import org.eclipse.jetty.server.HandlerContainer;
 import org.eclipse.jetty.server.HttpChannelState;
 import org.eclipse.jetty.server.Request;
 import org.eclipse.jetty.util.ArrayTernaryTrie;
-import org.eclipse.jetty.util.ArrayUtil;
 import org.eclipse.jetty.util.Trie;
 import org.eclipse.jetty.util.annotation.ManagedObject;
 import org.eclipse.jetty.util.annotation.ManagedOperation;
@@ -59,8 +58,7 @@ public class ContextHandlerCollection extends HandlerCollection
 {
     private static final Logger LOG = Log.getLogger(ContextHandlerCollection.class);
 
-    private final ConcurrentMap<ContextHandler,Handler> _contextBranches = new ConcurrentHashMap<>();
-    private volatile Trie<Map.Entry<String,Branch[]>> _pathBranches;
+    private volatile Mapping _mapping = new Mapping(null);
     private Class<? extends ContextHandler> _contextClass = ContextHandler.class;
 
     /* ------------------------------------------------------------ */
@@ -73,72 +71,19 @@ public class ContextHandlerCollection extends HandlerCollection
     /* ------------------------------------------------------------ */
     /**
      * Remap the context paths.
+     * <p>
+     * A new immutable mapping is built from the current handlers and then published with
+     * a single volatile write, so requests being handled concurrently see either the old
+     * or the new mapping, never a partial one, and never need to lock.
      */
     @ManagedOperation("update the mapping of context path to context")
     public void mapContexts()
     {
-        _contextBranches.clear();
-        
-        if (getHandlers()==null)
-        {
-            _pathBranches=new ArrayTernaryTrie<>(false,16);
-            return;
-        }
-        
-        // Create map of contextPath to handler Branch
-        Map<String,Branch[]> map = new HashMap<>();
-        for (Handler handler:getHandlers())
-        {
-            Branch branch=new Branch(handler);
-            for (String contextPath : branch.getContextPaths())
-            {
-                Branch[] branches=map.get(contextPath);
-                map.put(contextPath, ArrayUtil.addToArray(branches, branch, Branch.class));
-            }
-            
-            for (ContextHandler context : branch.getContextHandlers())
-                _contextBranches.putIfAbsent(context, branch.getHandler());
-        }
-        
-        // Sort the branches so those with virtual hosts are considered before those without
-        for (Map.Entry<String,Branch[]> entry: map.entrySet())
-        {
-            Branch[] branches=entry.getValue();
-            Branch[] sorted=new Branch[branches.length];
-            int i=0;
-            for (Branch branch:branches)
-                if (branch.hasVirtualHost())
-                    sorted[i++]=branch;
-            for (Branch branch:branches)
-                if (!branch.hasVirtualHost())
-                    sorted[i++]=branch;
-            entry.setValue(sorted);
-        }
-        
-        // Loop until we have a big enough trie to hold all the context paths
-        int capacity=512;
-        Trie<Map.Entry<String,Branch[]>> trie;
-        loop: while(true)
-        {
-            trie=new ArrayTernaryTrie<>(false,capacity);
-            for (Map.Entry<String,Branch[]> entry: map.entrySet())
-            {
-                if (!trie.put(entry.getKey().substring(1),entry))
-                {
-                    capacity+=512;
-                    continue loop;
-                }
-            }
-            break loop;
-        }
-            
-        
+        Mapping mapping = new Mapping(getHandlers());
+
         if (LOG.isDebugEnabled())
-        {
-            for (String ctx : trie.keySet())
-                LOG.debug("{}->{}",ctx,Arrays.asList(trie.get(ctx).getValue()));
-        }
-        _pathBranches=trie;
+            LOG.debug("{} mapped {}",this,mapping);
+        _mapping=mapping;
     }
 
     /* ------------------------------------------------------------ */
@@ -173,13 +118,15 @@ public class ContextHandlerCollection extends HandlerCollection
         if (handlers==null || handlers.length==0)
             return;
 
+        Mapping mapping = _mapping;
+
         HttpChannelState async = baseRequest.getHttpChannelState();
         if (async.isAsync())
         {
             ContextHandler context=async.getContextHandler();
             if (context!=null)
             {
-                Handler branch = _contextBranches.get(context);
+                Handler branch = mapping.getBranch(context);
                 
                 if (branch==null)
                     context.handle(target,baseRequest,request, response);
@@ -194,12 +141,13 @@ public class ContextHandlerCollection extends HandlerCollection
         // }
         if (target.startsWith("/"))
         {
+            Trie<Map.Entry<String,Branch[]>> pathBranches = mapping.getPathBranches(baseRequest.getServerName());
             int limit = target.length()-1;
 
             while (limit>=0)
             {
                 // Get best match
-                Map.Entry<String,Branch[]> branches = _pathBranches.getBest(target,1,limit);
+                Map.Entry<String,Branch[]> branches = pathBranches.getBest(target,1,limit);
                 
                 
                 if (branches==null)
@@ -303,14 +251,6 @@ public class ContextHandlerCollection extends HandlerCollection
                 _contexts = new ContextHandler[0];
         }
         
-        Set<String> getContextPaths()
-        {
-            Set<String> set = new HashSet<String>();
-            for (ContextHandler context:_contexts)
-                set.add(context.getContextPath());
-            return set;
-        }
-        
         boolean hasVirtualHost()
         {
             for (ContextHandler context:_contexts)
@@ -336,5 +276,214 @@ public class ContextHandlerCollection extends HandlerCollection
         }
     }
 
+    /* ------------------------------------------------------------ */
+    /* ------------------------------------------------------------ */
+    /* ------------------------------------------------------------ */
+    /**
+     * An immutable routing index of the branches, keyed first by the host of the request
+     * and then by context path.
+     * <p>
+     * Each host with a context that names it as a virtual host has its own trie of context
+     * paths, which holds the branches for that host, for its wildcard <code>*.domain</code>
+     * and for any host.  Hosts that are only matched by a wildcard share the trie of their
+     * domain, and all other hosts share the trie of branches for any host.  So a request
+     * only considers the branches that can accept its host, without scanning virtual hosts.
+     * Contexts that are selected by connector name are considered for any host, and
+     * {@link ContextHandler#checkVirtualHost(Request)} remains the final check.
+     */
+    private final static class Mapping
+    {
+        private final Map<ContextHandler,Handler> _contextBranches = new HashMap<>();
+        private final Map<String,Trie<Map.Entry<String,Branch[]>>> _hosts = new HashMap<>();
+        private final Map<String,Trie<Map.Entry<String,Branch[]>>> _domains = new HashMap<>();
+        private final Trie<Map.Entry<String,Branch[]>> _any;
+
+        Mapping(Handler[] handlers)
+        {
+            // Collect the branches for each host, domain and context path, in handler order
+            Map<String,Map<String,Set<Branch>>> hosts = new HashMap<>();
+            Map<String,Map<String,Set<Branch>>> domains = new HashMap<>();
+            Map<String,Set<Branch>> any = new HashMap<>();
+
+            if (handlers!=null)
+            {
+                for (Handler handler:handlers)
+                {
+                    Branch branch=new Branch(handler);
+                    for (ContextHandler context : branch.getContextHandlers())
+                    {
+                        _contextBranches.put(context, branch.getHandler());
+
+                        String contextPath=context.getContextPath();
+                        String[] vhosts=context.getVirtualHosts();
+                        if (vhosts==null || vhosts.length==0)
+                        {
+                            add(any,contextPath,branch);
+                            continue;
+                        }
+
+                        boolean connector=false;
+                        for (String vhost : vhosts)
+                            connector|=vhost!=null && vhost.startsWith("@");
+                        if (connector)
+                        {
+                            add(any,contextPath,branch);
+                            continue;
+                        }
+
+                        for (String vhost : vhosts)
+                        {
+                            if (vhost==null || vhost.length()==0)
+                                continue;
+                            if (vhost.startsWith("*."))
+                                add(domains,vhost.substring(2),contextPath,branch);
+                            else if (vhost.charAt(0)!='*')
+                                add(hosts,vhost,contextPath,branch);
+                        }
+                    }
+                }
+            }
+
+            _any=newTrie(any,null,null);
+            for (Map.Entry<String,Map<String,Set<Branch>>> entry : domains.entrySet())
+                _domains.put(entry.getKey(),newTrie(entry.getValue(),null,any));
+            for (Map.Entry<String,Map<String,Set<Branch>>> entry : hosts.entrySet())
+            {
+                String host=entry.getKey();
+                int dot=host.indexOf('.');
+                Map<String,Set<Branch>> domain=dot<0?null:domains.get(host.substring(dot+1));
+                _hosts.put(host,newTrie(entry.getValue(),domain,any));
+            }
+        }
+
+        Handler getBranch(ContextHandler context)
+        {
+            return _contextBranches.get(context);
+        }
+
+        Trie<Map.Entry<String,Branch[]>> getPathBranches(String host)
+        {
+            if (host==null || _hosts.isEmpty() && _domains.isEmpty())
+                return _any;
+
+            host=normalize(host);
+            Trie<Map.Entry<String,Branch[]>> trie=_hosts.get(host);
+            if (trie!=null)
+                return trie;
+
+            if (!_domains.isEmpty())
+            {
+                int dot=host.indexOf('.');
+                if (dot>=0)
+                {
+                    trie=_domains.get(host.substring(dot+1));
+                    if (trie!=null)
+                        return trie;
+                }
+            }
+            return _any;
+        }
+
+        private static String normalize(String host)
+        {
+            if (host.endsWith("."))
+                host=host.substring(0,host.length()-1);
+            return host.toLowerCase(Locale.ENGLISH);
+        }
+
+        private static void add(Map<String,Map<String,Set<Branch>>> map, String host, String contextPath, Branch branch)
+        {
+            host=normalize(host);
+            Map<String,Set<Branch>> paths=map.get(host);
+            if (paths==null)
+            {
+                paths=new HashMap<>();
+                map.put(host,paths);
+            }
+            add(paths,contextPath,branch);
+        }
+
+        private static void add(Map<String,Set<Branch>> paths, String contextPath, Branch branch)
+        {
+            Set<Branch> branches=paths.get(contextPath);
+            if (branches==null)
+            {
+                branches=new LinkedHashSet<>();
+                paths.put(contextPath,branches);
+            }
+            branches.add(branch);
+        }
+
+        private static Trie<Map.Entry<String,Branch[]>> newTrie(Map<String,Set<Branch>> host, Map<String,Set<Branch>> domain, Map<String,Set<Branch>> any)
+        {
+            // Merge the branches by context path, the most specific first
+            Map<String,Set<Branch>> merged=new HashMap<>();
+            for (Map<String,Set<Branch>> paths : Arrays.asList(host,domain,any))
+            {
+                if (paths==null)
+                    continue;
+                for (Map.Entry<String,Set<Branch>> entry : paths.entrySet())
+                {
+                    for (Branch branch : entry.getValue())
+                        add(merged,entry.getKey(),branch);
+                }
+            }
+
+            // Sort the branches so those with virtual hosts are considered before those without
+            Map<String,Branch[]> map=new HashMap<>();
+            for (Map.Entry<String,Set<Branch>> entry: merged.entrySet())
+            {
+                Set<Branch> branches=entry.getValue();
+                Branch[] sorted=new Branch[branches.size()];
+                int i=0;
+                for (Branch branch:branches)
+                    if (branch.hasVirtualHost())
+                        sorted[i++]=branch;
+                for (Branch branch:branches)
+                    if (!branch.hasVirtualHost())
+                        sorted[i++]=branch;
+                map.put(entry.getKey(),sorted);
+            }
+
+            // Loop until we have a big enough trie to hold all the context paths
+            int capacity=512;
+            Trie<Map.Entry<String,Branch[]>> trie;
+            loop: while(true)
+            {
+                trie=new ArrayTernaryTrie<>(false,capacity);
+                for (Map.Entry<String,Branch[]> entry: map.entrySet())
+                {
+                    if (!trie.put(entry.getKey().substring(1),entry))
+                    {
+                        capacity+=512;
+                        continue loop;
+                    }
+                }
+                break loop;
+            }
+            return trie;
+        }
+
+        @Override
+        public String toString()
+        {
+            StringBuilder b=new StringBuilder();
+            b.append("{*=").append(toString(_any));
+            for (Map.Entry<String,Trie<Map.Entry<String,Branch[]>>> entry : _domains.entrySet())
+                b.append(",*.").append(entry.getKey()).append('=').append(toString(entry.getValue()));
+            for (Map.Entry<String,Trie<Map.Entry<String,Branch[]>>> entry : _hosts.entrySet())
+                b.append(',').append(entry.getKey()).append('=').append(toString(entry.getValue()));
+            return b.append('}').toString();
+        }
+
+        private static String toString(Trie<Map.Entry<String,Branch[]>> trie)
+        {
+            Map<String,List<Branch>> map=new HashMap<>();
+            for (String ctx : trie.keySet())
+                map.put(ctx,Arrays.asList(trie.get(ctx).getValue()));
+            return map.toString();
+        }
+    }
+
 
 }
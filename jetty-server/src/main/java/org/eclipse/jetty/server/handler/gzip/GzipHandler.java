@@ -42,6 +42,7 @@ import org.eclipse.jetty.server.Request;
 import org.eclipse.jetty.server.handler.HandlerWrapper;
 import org.eclipse.jetty.util.ConcurrentHashSet;
 import org.eclipse.jetty.util.URIUtil;
+import org.eclipse.jetty.util.compression.CompressionPools;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
 
@@ -69,9 +70,9 @@ public class GzipHandler extends HandlerWrapper implements GzipFactory
     private int _minGzipSize=DEFAULT_MIN_GZIP_SIZE;
     private int _compressionLevel=Deflater.DEFAULT_COMPRESSION;
     private boolean _checkGzExists = true;
+    private boolean _syncFlush = false;
     
-    // non-static, as other GzipHandler instances may have different configurations
-    private final ThreadLocal<Deflater> _deflater = new ThreadLocal<Deflater>();
+    private CompressionPools _compressionPools = CompressionPools.getDefault();
 
     private final Set<String> _includedMethods=new HashSet<>();
     private final Set<Pattern> _excludedAgentPatterns=new HashSet<>();
@@ -110,6 +111,7 @@ public class GzipHandler extends HandlerWrapper implements GzipFactory
         LOG.debug("{} excluding mimes {}",this,_excludedMimeTypes);
         
         _excludedAgentPatterns.add(Pattern.compile(".*MSIE 6.0.*"));
+        addBean(_compressionPools,false);
     }
 
     /* ------------------------------------------------------------ */
@@ -190,6 +192,16 @@ public class GzipHandler extends HandlerWrapper implements GzipFactory
         return _compressionLevel;
     }
 
+    /* ------------------------------------------------------------ */
+    /**
+     * @return true if every write of compressed content is flushed with {@link Deflater#SYNC_FLUSH}
+     * @see #setSyncFlush(boolean)
+     */
+    public boolean isSyncFlush()
+    {
+        return _syncFlush;
+    }
+
     /* ------------------------------------------------------------ */
     @Override
     public Deflater getDeflater(Request request, long content_length)
@@ -226,13 +238,7 @@ public class GzipHandler extends HandlerWrapper implements GzipFactory
             }
         }
         
-        Deflater df = _deflater.get();
-        if (df==null)
-            df=new Deflater(_compressionLevel,true);        
-        else
-            _deflater.set(null);
-        
-        return df;
+        return _compressionPools.getDeflaterPool(_compressionLevel,true).acquire();
     }
     
     /* ------------------------------------------------------------ */
@@ -379,7 +385,7 @@ public class GzipHandler extends HandlerWrapper implements GzipFactory
         }
 
         // install interceptor and handle
-        out.setInterceptor(new GzipHttpOutputInterceptor(this,_vary,baseRequest.getHttpChannel(),out.getInterceptor()));
+        out.setInterceptor(new GzipHttpOutputInterceptor(this,_vary,baseRequest.getHttpChannel(),out.getInterceptor(),_syncFlush));
         _handler.handle(target,baseRequest, request, response);
         
     }
@@ -452,10 +458,24 @@ public class GzipHandler extends HandlerWrapper implements GzipFactory
     @Override
     public void recycle(Deflater deflater)
     {
-        deflater.reset();
-        if (_deflater.get()==null)
-            _deflater.set(deflater);
-        
+        _compressionPools.getDeflaterPool(_compressionLevel,true).release(deflater);
+    }
+
+    /* ------------------------------------------------------------ */
+    public CompressionPools getCompressionPools()
+    {
+        return _compressionPools;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param compressionPools The pools from which {@link Deflater}s are acquired,
+     * by default the {@link CompressionPools#getDefault() shared pools}.
+     */
+    public void setCompressionPools(CompressionPools compressionPools)
+    {
+        updateBean(_compressionPools,compressionPools);
+        _compressionPools = compressionPools;
     }
 
     /* ------------------------------------------------------------ */
@@ -555,6 +575,20 @@ public class GzipHandler extends HandlerWrapper implements GzipFactory
     {
         _minGzipSize = minGzipSize;
     }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Set whether every write of compressed content is flushed.
+     * <p>An explicit {@link javax.servlet.ServletOutputStream#flush()} is always sent with
+     * {@link Deflater#SYNC_FLUSH}, which sends all the content written so far without resetting
+     * the compression state. If true, every write is also flushed in this way, which suits
+     * applications that stream events without calling flush, at the cost of compression ratio.
+     * @param syncFlush true if every write should be flushed
+     */
+    public void setSyncFlush(boolean syncFlush)
+    {
+        _syncFlush = syncFlush;
+    }
     
 
 }
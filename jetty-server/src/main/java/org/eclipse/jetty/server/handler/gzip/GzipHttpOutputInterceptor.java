@@ -43,6 +43,11 @@ public class GzipHttpOutputInterceptor implements HttpOutput.Interceptor
     public static Logger LOG = Log.getLogger(GzipHttpOutputInterceptor.class);
     private final static PreEncodedHttpField CONTENT_ENCODING_GZIP=new PreEncodedHttpField(HttpHeader.CONTENT_ENCODING,"gzip");
     private final static byte[] GZIP_HEADER = new byte[] { (byte)0x1f, (byte)0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0 };
+    private final static int GZIP_TRAILER_LENGTH = 8;
+    /** Slack for a response of known length whose content does not compress */
+    private final static int DEFLATE_OVERHEAD = 64;
+    /** Initial buffer size for responses of unknown length, grown up to the configured buffer size */
+    private final static int INITIAL_BUFFER_SIZE = 2048;
 
     public final static HttpField VARY_ACCEPT_ENCODING_USER_AGENT=new PreEncodedHttpField(HttpHeader.VARY,HttpHeader.ACCEPT_ENCODING+", "+HttpHeader.USER_AGENT);
     public final static HttpField VARY_ACCEPT_ENCODING=new PreEncodedHttpField(HttpHeader.VARY,HttpHeader.ACCEPT_ENCODING.asString());
@@ -56,6 +61,7 @@ public class GzipHttpOutputInterceptor implements HttpOutput.Interceptor
     private final HttpChannel _channel;
     private final HttpField _vary;
     private final int _bufferSize;
+    private final boolean _syncFlush;
     
     private Deflater _deflater;
     private ByteBuffer _buffer;
@@ -67,16 +73,36 @@ public class GzipHttpOutputInterceptor implements HttpOutput.Interceptor
     
     public GzipHttpOutputInterceptor(GzipFactory factory, HttpField vary, HttpChannel channel, HttpOutput.Interceptor next)
     {
-        this(factory,vary,channel.getHttpConfiguration().getOutputBufferSize(),channel,next);
+        this(factory,vary,channel.getHttpConfiguration().getOutputBufferSize(),channel,next,false);
+    }
+    
+    public GzipHttpOutputInterceptor(GzipFactory factory, HttpField vary, HttpChannel channel, HttpOutput.Interceptor next, boolean syncFlush)
+    {
+        this(factory,vary,channel.getHttpConfiguration().getOutputBufferSize(),channel,next,syncFlush);
     }
     
     public GzipHttpOutputInterceptor(GzipFactory factory, HttpField vary, int bufferSize, HttpChannel channel, HttpOutput.Interceptor next)
+    {
+        this(factory,vary,bufferSize,channel,next,false);
+    }
+    
+    /**
+     * @param factory the factory of deflaters
+     * @param vary the Vary field to add to compressed responses
+     * @param bufferSize the maximum size of the buffer of compressed content
+     * @param channel the channel of the response
+     * @param next the next interceptor
+     * @param syncFlush true if every write is flushed with {@link Deflater#SYNC_FLUSH}, rather than
+     * only those that carry no content (an explicit flush).
+     */
+    public GzipHttpOutputInterceptor(GzipFactory factory, HttpField vary, int bufferSize, HttpChannel channel, HttpOutput.Interceptor next, boolean syncFlush)
     {
         _factory=factory;
         _channel=channel;
         _interceptor=next;
         _vary=vary;
         _bufferSize=bufferSize;
+        _syncFlush=syncFlush;
     }
 
     public HttpOutput.Interceptor getNextInterceptor()
@@ -139,10 +165,21 @@ public class GzipHttpOutputInterceptor implements HttpOutput.Interceptor
     
     private void gzip(ByteBuffer content, boolean complete, final Callback callback)
     {
-        if (content.hasRemaining() || complete)
-            new GzipBufferCB(content,complete,callback).iterate();
-        else
-            callback.succeeded();
+        // A write without content is a flush, so it is deflated too.
+        new GzipBufferCB(content,complete,callback).iterate();
+    }
+
+    /**
+     * Size the compressed buffer for the response: a response of known length gets
+     * a buffer that can hold it in one write, otherwise a small buffer is used that
+     * grows when it fills, so that short streamed responses do not hold large buffers.
+     */
+    private int initialBufferSize(long contentLength)
+    {
+        int overhead=GZIP_HEADER.length+GZIP_TRAILER_LENGTH+DEFLATE_OVERHEAD;
+        if (contentLength>=0)
+            return (int)Math.min(_bufferSize,contentLength+overhead);
+        return Math.min(_bufferSize,Math.max(INITIAL_BUFFER_SIZE,overhead));
     }
 
     protected void commit(ByteBuffer content, boolean complete, Callback callback)
@@ -204,7 +241,7 @@ public class GzipHttpOutputInterceptor implements HttpOutput.Interceptor
 
             fields.put(CONTENT_ENCODING_GZIP);
             _crc.reset();
-            _buffer=_channel.getByteBufferPool().acquire(_bufferSize,false);
+            _buffer=_channel.getByteBufferPool().acquire(initialBufferSize(content_length),false);
             BufferUtil.fill(_buffer,GZIP_HEADER,0,GZIP_HEADER.length);
 
             // Adjust headers
@@ -277,87 +314,147 @@ public class GzipHttpOutputInterceptor implements HttpOutput.Interceptor
         private ByteBuffer _copy;
         private final ByteBuffer _content;
         private final boolean _last;
+        private boolean _flush;
+        private boolean _grow;
+
         public GzipBufferCB(ByteBuffer content, boolean complete, Callback callback)
         {
             super(callback);
             _content=content;
             _last=complete;
+            _flush=!complete && (_syncFlush || BufferUtil.isEmpty(content));
         }
 
         @Override
         protected Action process() throws Exception
         {
-            if (_deflater.needsInput())
-            {                
-                if (BufferUtil.isEmpty(_content))
-                {                    
-                    if (_deflater.finished())
-                    {
-                        _factory.recycle(_deflater);
-                        _deflater=null;
-                        _channel.getByteBufferPool().release(_buffer);
-                        _buffer=null;
-                        if (_copy!=null)
-                        {
-                            _channel.getByteBufferPool().release(_copy);
-                            _copy=null;
-                        }
-                        return Action.SUCCEEDED;
-                    }
-                    
-                    if (!_last)
+            if (_deflater.finished())
+            {
+                _factory.recycle(_deflater);
+                _deflater=null;
+                _channel.getByteBufferPool().release(_buffer);
+                _buffer=null;
+                releaseCopy();
+                return Action.SUCCEEDED;
+            }
+
+            while (true)
+            {
+                if (_deflater.needsInput())
+                {
+                    if (BufferUtil.hasContent(_content))
+                        setInput();
+                    else if (_last)
+                        _deflater.finish();
+                    else if (!_flush)
                     {
+                        // All the content is in the deflater, which keeps it until more content,
+                        // a flush or the end of the response, so no write is needed.
+                        releaseCopy();
                         return Action.SUCCEEDED;
                     }
-                    
-                    _deflater.finish();
                 }
-                else if (_content.hasArray())
+
+                // After a write the buffer is empty, so it can be swapped for a larger one.
+                BufferUtil.compact(_buffer);
+                if (_grow && BufferUtil.isEmpty(_buffer))
+                {
+                    _grow=false;
+                    ByteBuffer larger=_channel.getByteBufferPool().acquire(Math.min(_bufferSize,_buffer.capacity()*2),false);
+                    _channel.getByteBufferPool().release(_buffer);
+                    _buffer=larger;
+                    BufferUtil.clear(_buffer);
+                }
+
+                int off=_buffer.arrayOffset()+_buffer.limit();
+                int len=_buffer.capacity()-_buffer.limit()-(_last?GZIP_TRAILER_LENGTH:0);
+                if (len<=0)
                 {
-                    byte[] array=_content.array();
-                    int off=_content.arrayOffset()+_content.position();
-                    int len=_content.remaining();
-                    BufferUtil.clear(_content);
-                    
-                    _crc.update(array,off,len);
-                    _deflater.setInput(array,off,len);                
-                    if (_last)
-                        _deflater.finish();
+                    // No room left for the trailer, so write what has been kept from previous writes.
+                    _interceptor.write(_buffer,false,this);
+                    return Action.SCHEDULED;
                 }
-                else
+                boolean syncFlush=_flush && _deflater.needsInput();
+                int produced=_deflater.deflate(_buffer.array(),off,len,syncFlush?Deflater.SYNC_FLUSH:Deflater.NO_FLUSH);
+                _buffer.limit(_buffer.limit()+produced);
+
+                boolean finished=_deflater.finished();
+                if (finished)
                 {
-                    if (_copy==null)
-                        _copy=_channel.getByteBufferPool().acquire(_bufferSize,false);
-                    BufferUtil.clearToFill(_copy);
-                    int took=BufferUtil.put(_content,_copy);
-                    BufferUtil.flipToFlush(_copy,0);
-                    if (took==0)
-                        throw new IllegalStateException();
-                   
-                    byte[] array=_copy.array();
-                    int off=_copy.arrayOffset()+_copy.position();
-                    int len=_copy.remaining();
-
-                    _crc.update(array,off,len);
-                    _deflater.setInput(array,off,len);                
-                    if (_last && BufferUtil.isEmpty(_content))
-                        _deflater.finish();
+                    addTrailer();
+                    _interceptor.write(_buffer,true,this);
+                    return Action.SCHEDULED;
+                }
+
+                if (produced==len)
+                {
+                    // The buffer is full, write it and grow the buffer if this response is streaming.
+                    _grow=_buffer.capacity()<_bufferSize;
+                    _interceptor.write(_buffer,false,this);
+                    return Action.SCHEDULED;
+                }
+
+                if (syncFlush)
+                {
+                    // The deflater has flushed all its content into the buffer.
+                    _flush=false;
+                    _interceptor.write(_buffer,false,this);
+                    return Action.SCHEDULED;
                 }
             }
+        }
 
-            BufferUtil.compact(_buffer);
-            int off=_buffer.arrayOffset()+_buffer.limit();
-            int len=_buffer.capacity()-_buffer.limit() - (_last?8:0);
-            int produced=_deflater.deflate(_buffer.array(),off,len,Deflater.NO_FLUSH);
-            
-            _buffer.limit(_buffer.limit()+produced);
-            boolean finished=_deflater.finished();
-            
-            if (finished)
-                addTrailer();
-                
-            _interceptor.write(_buffer,finished,this);
-            return Action.SCHEDULED;
+        private void setInput()
+        {
+            if (_content.hasArray())
+            {
+                byte[] array=_content.array();
+                int off=_content.arrayOffset()+_content.position();
+                int len=_content.remaining();
+                BufferUtil.clear(_content);
+
+                _crc.update(array,off,len);
+                _deflater.setInput(array,off,len);
+            }
+            else
+            {
+                if (_copy==null)
+                    _copy=_channel.getByteBufferPool().acquire(_bufferSize,false);
+                BufferUtil.clearToFill(_copy);
+                int took=BufferUtil.put(_content,_copy);
+                BufferUtil.flipToFlush(_copy,0);
+                if (took==0)
+                    throw new IllegalStateException();
+
+                byte[] array=_copy.array();
+                int off=_copy.arrayOffset()+_copy.position();
+                int len=_copy.remaining();
+
+                _crc.update(array,off,len);
+                _deflater.setInput(array,off,len);
+            }
+        }
+
+        private void releaseCopy()
+        {
+            if (_copy!=null)
+            {
+                _channel.getByteBufferPool().release(_copy);
+                _copy=null;
+            }
+        }
+
+        @Override
+        protected void onCompleteFailure(Throwable x)
+        {
+            // return the deflater to the pool rather than leaking its native memory
+            if (_deflater!=null)
+            {
+                _factory.recycle(_deflater);
+                _deflater=null;
+            }
+            releaseCopy();
+            super.onCompleteFailure(x);
         }
     }
 }
@@ -25,6 +25,8 @@ import static org.junit.Assert.assertThat;
 import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
 import java.nio.ByteBuffer;
 import java.nio.channels.ReadableByteChannel;
 import java.util.Arrays;
@@ -36,8 +38,11 @@ import javax.servlet.WriteListener;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.eclipse.jetty.http.HttpContent;
+import org.eclipse.jetty.http.ResourceHttpContent;
 import org.eclipse.jetty.server.handler.AbstractHandler;
 import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.IO;
 import org.eclipse.jetty.util.resource.Resource;
 import org.hamcrest.Matchers;
 import org.junit.After;
@@ -181,6 +186,50 @@ public class HttpOutputTest
         assertThat(response,containsString("400\tThis is a big file"));
     }
     
+    @Test
+    public void testSendHttpContentTransferred() throws Exception
+    {
+        ServerConnector connector = new ServerConnector(_server);
+        _server.addConnector(connector);
+        connector.start();
+
+        Resource big = Resource.newClassPathResource("simple/big.txt");
+        String expected = IO.toString(big.getInputStream());
+
+        _handler._httpContent=new ResourceHttpContent(big,"text/plain");
+        String response=getResponse(connector,"GET / HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n");
+        assertThat(response,containsString("HTTP/1.1 200 OK"));
+        assertThat(response,containsString("Content-Length: "+big.length()));
+        assertThat(response,Matchers.endsWith("\r\n\r\n"+expected));
+
+        _handler._httpContent=new ResourceHttpContent(big,"text/plain");
+        _handler._rangeOffset=1000;
+        _handler._rangeLength=2000;
+        response=getResponse(connector,"GET / HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n");
+        assertThat(response,containsString("HTTP/1.1 200 OK"));
+        assertThat(response,containsString("Content-Length: 2000"));
+        assertThat(response,Matchers.endsWith("\r\n\r\n"+expected.substring(1000,3000)));
+
+        _handler._httpContent=new ResourceHttpContent(big,"text/plain");
+        _handler._rangeOffset=1000;
+        _handler._rangeLength=2000;
+        response=_connector.getResponses("GET / HTTP/1.0\nHost: localhost:80\n\n");
+        assertThat(response,containsString("HTTP/1.1 200 OK"));
+        assertThat(response,containsString("Content-Length: 2000"));
+        assertThat(response,Matchers.endsWith("\r\n\r\n"+expected.substring(1000,3000)));
+    }
+
+    private String getResponse(ServerConnector connector, String request) throws IOException
+    {
+        try (Socket socket = new Socket("localhost",connector.getLocalPort()))
+        {
+            OutputStream out = socket.getOutputStream();
+            out.write(request.getBytes("ISO-8859-1"));
+            out.flush();
+            return IO.toString(socket.getInputStream(),"ISO-8859-1");
+        }
+    }
+
     @Test
     public void testSendBigDirect() throws Exception
     {
@@ -607,6 +656,9 @@ public class HttpOutputTest
         byte[] _arrayBuffer;
         InputStream _contentInputStream;
         ReadableByteChannel _contentChannel;
+        HttpContent _httpContent;
+        long _rangeOffset=-1;
+        long _rangeLength;
         ByteBuffer _content;
         
         @Override
@@ -631,6 +683,23 @@ public class HttpOutputTest
                 _contentChannel=null;
                 return;
             }
+
+            if (_httpContent!=null)
+            {
+                if (_rangeOffset>=0)
+                {
+                    response.setContentLengthLong(_rangeLength);
+                    out.sendContent(_httpContent,_rangeOffset,_rangeLength);
+                }
+                else
+                {
+                    response.setContentLengthLong(_httpContent.getContentLengthValue());
+                    out.sendContent(_httpContent);
+                }
+                _httpContent=null;
+                _rangeOffset=-1;
+                return;
+            }
             
             if (_content!=null && _writeLengthIfKnown)
                 response.setContentLength(_content.remaining());
@@ -43,6 +43,7 @@ import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import javax.servlet.AsyncContext;
 import javax.servlet.MultipartConfigElement;
 import javax.servlet.ServletException;
 import javax.servlet.ServletInputStream;
@@ -56,7 +57,9 @@ import org.eclipse.jetty.http.MimeTypes;
 import org.eclipse.jetty.server.handler.AbstractHandler;
 import org.eclipse.jetty.server.handler.ContextHandler;
 import org.eclipse.jetty.util.IO;
+import org.eclipse.jetty.util.MultiMap;
 import org.eclipse.jetty.util.MultiPartInputStreamParser;
+import org.eclipse.jetty.util.Promise;
 import org.eclipse.jetty.util.Utf8Appendable;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
@@ -701,6 +704,59 @@ public class RequestTest
     }
     
     
+    @Test
+    public void testAsyncForm() throws Exception
+    {
+        Handler handler = new AbstractHandler()
+        {
+            @Override
+            public void handle(String target, final Request baseRequest, HttpServletRequest request, final HttpServletResponse response) throws IOException,
+                    ServletException
+            {
+                baseRequest.setHandled(true);
+                final AsyncContext async = request.startAsync();
+                baseRequest.extractFormParameters(new Promise<MultiMap<String>>()
+                {
+                    @Override
+                    public void succeeded(MultiMap<String> result)
+                    {
+                        try
+                        {
+                            response.getWriter().print("name2="+baseRequest.getParameter("name2")+" size="+result.size());
+                        }
+                        catch (IOException e)
+                        {
+                            response.setStatus(500);
+                        }
+                        async.complete();
+                    }
+
+                    @Override
+                    public void failed(Throwable x)
+                    {
+                        response.setStatus(500);
+                        async.complete();
+                    }
+                });
+            }
+        };
+        _server.stop();
+        _server.setHandler(handler);
+        _server.start();
+
+        String content="name1=test&name2=test%C3%A4&name3=&name4=test";
+        String request="POST / HTTP/1.1\r\n"+
+            "Host: whatever\r\n"+
+            "Content-Type: "+MimeTypes.Type.FORM_ENCODED.asString()+"; charset=utf-8\r\n" +
+            "Content-Length: "+content.length()+"\r\n"+
+            "Connection: close\r\n"+
+            "\r\n"+
+            content;
+        String response = _connector.getResponses(request);
+        assertThat(response,Matchers.containsString(" 200 OK"));
+        assertThat(response,Matchers.containsString("name2=test\u00e4 size=4"));
+    }
+
     @Test
     public void testPartialRead() throws Exception
     {
@@ -24,13 +24,19 @@ import static org.junit.Assert.assertTrue;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
 
 import org.eclipse.jetty.http.HttpContent;
 import org.eclipse.jetty.http.MimeTypes;
 import org.eclipse.jetty.http.ResourceHttpContent;
 import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.IO;
 import org.eclipse.jetty.util.resource.Resource;
 import org.eclipse.jetty.util.resource.ResourceCollection;
 import org.junit.Test;
@@ -233,6 +239,149 @@ public class ResourceCacheTest
         cache.flushCache();
     }
 
+    @Test
+    public void testEvictionPolicy() throws Exception
+    {
+        File[] files=new File[10];
+        String[] names=new String[files.length];
+        for (int i=0;i<files.length;i++)
+        {
+            files[i]=File.createTempFile("E-"+i+"-",".txt");
+            files[i].deleteOnExit();
+            names[i]=files[i].getName();
+            try (OutputStream out = new FileOutputStream(files[i]))
+            {
+                out.write('x');
+            }
+        }
+        Resource directory=Resource.newResource(files[0].getParentFile().getAbsolutePath());
+
+        // A scan of other resources does not evict content that has been used twice
+        ResourceCache cache=new ResourceCache(null,directory,new MimeTypes(),false,false);
+        cache.setMaxCachedFiles(4);
+        HttpContent hot=cache.lookup(names[0]);
+        assertTrue(hot==cache.lookup(names[0]));
+        for (int i=1;i<files.length;i++)
+            cache.lookup(names[i]);
+        assertEquals(4,cache.getCachedFiles());
+        assertEquals(6,cache.getEvictions());
+        assertTrue(hot==cache.lookup(names[0]));
+        assertEquals(2,cache.getHits());
+        assertEquals(10,cache.getMisses());
+
+        // but it does with a plain LRU policy
+        cache=new ResourceCache(null,directory,new MimeTypes(),false,false);
+        cache.setEvictionPolicy(new ResourceCache.LeastRecentlyUsed());
+        cache.setMaxCachedFiles(4);
+        hot=cache.lookup(names[0]);
+        assertTrue(hot==cache.lookup(names[0]));
+        for (int i=1;i<files.length;i++)
+            cache.lookup(names[i]);
+        assertEquals(4,cache.getCachedFiles());
+        assertTrue(hot!=cache.lookup(names[0]));
+
+        cache.resetStatistics();
+        assertEquals(0,cache.getHits());
+        assertEquals(0,cache.getMisses());
+        assertEquals(0,cache.getEvictions());
+    }
+
+    @Test
+    public void testConcurrentHitsDoNotLockPolicy() throws Exception
+    {
+        File file=File.createTempFile("Hit-",".txt");
+        file.deleteOnExit();
+        try (OutputStream out = new FileOutputStream(file))
+        {
+            out.write('x');
+        }
+        Resource directory=Resource.newResource(file.getParentFile().getAbsolutePath());
+        final String name=file.getName();
+
+        for (ResourceCache.EvictionPolicy policy : new ResourceCache.EvictionPolicy[]{new ResourceCache.SegmentedLeastRecentlyUsed(),new ResourceCache.LeastRecentlyUsed()})
+        {
+            final ResourceCache cache=new ResourceCache(null,directory,new MimeTypes(),false,false);
+            cache.setEvictionPolicy(policy);
+            final HttpContent content=cache.lookup(name);
+
+            final int threads=8;
+            final int hits=10000;
+            final CountDownLatch done=new CountDownLatch(threads);
+            final AtomicInteger misses=new AtomicInteger();
+
+            // Hold the policy lock, so hits would block if they needed it.
+            synchronized (policy)
+            {
+                for (int t=0;t<threads;t++)
+                {
+                    new Thread()
+                    {
+                        @Override
+                        public void run()
+                        {
+                            try
+                            {
+                                for (int i=0;i<hits;i++)
+                                    if (cache.lookup(name)!=content)
+                                        misses.incrementAndGet();
+                            }
+                            catch (Exception x)
+                            {
+                                misses.incrementAndGet();
+                            }
+                            finally
+                            {
+                                done.countDown();
+                            }
+                        }
+                    }.start();
+                }
+                assertTrue(done.await(10,TimeUnit.SECONDS));
+            }
+
+            assertEquals(0,misses.get());
+            assertEquals((long)threads*hits,cache.getHits());
+        }
+    }
+
+    @Test
+    public void testGzipVariant() throws Exception
+    {
+        File file=File.createTempFile("GZ-",".txt");
+        file.deleteOnExit();
+        try (OutputStream out = new FileOutputStream(file))
+        {
+            for (int i=0;i<100;i++)
+                out.write("Some compressible text content\n".getBytes("UTF-8"));
+        }
+        Resource directory=Resource.newResource(file.getParentFile().getAbsolutePath());
+
+        ResourceCache cache=new ResourceCache(null,directory,new MimeTypes(),false,true);
+        cache.setGzipVariants(true);
+
+        ResourceCache.CachedHttpContent content=(ResourceCache.CachedHttpContent)cache.lookup(file.getName());
+        assertTrue(content.isGzipCompressible());
+        assertEquals(3100,cache.getCachedSize());
+
+        // Without an executor the variant is compressed when first requested
+        HttpContent gzipped=content.getGzipVariant();
+        assertTrue(gzipped!=null);
+        assertTrue(gzipped==content.getGzipVariant());
+        assertTrue(gzipped.getContentLengthValue()<content.getContentLengthValue());
+        assertEquals(Long.toString(gzipped.getContentLengthValue()),gzipped.getContentLength().getValue());
+        assertTrue(gzipped.getETagValue().endsWith("--gzip\""));
+        assertEquals(content.getContentTypeValue(),gzipped.getContentTypeValue());
+        assertEquals(3100+gzipped.getContentLengthValue(),cache.getCachedSize());
+
+        try (InputStream in = new GZIPInputStream(gzipped.getInputStream()))
+        {
+            assertEquals(BufferUtil.toString(content.getIndirectBuffer()),IO.toString(in,"UTF-8"));
+        }
+
+        cache.flushCache();
+        assertEquals(0,cache.getCachedSize());
+    }
+
     @Test
     public void testNoextension() throws Exception
     {
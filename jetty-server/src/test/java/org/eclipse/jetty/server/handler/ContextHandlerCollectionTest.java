@@ -234,6 +234,58 @@ public class ContextHandlerCollectionTest
     }
 
 
+    @Test
+    public void testManyVirtualHosts() throws Exception
+    {
+        Server server = new Server();
+        LocalConnector connector = new LocalConnector(server);
+        server.setConnectors(new Connector[] { connector });
+
+        ContextHandlerCollection c = new ContextHandlerCollection();
+        IsHandledHandler[] handlers = new IsHandledHandler[200];
+        for (int i=0;i<handlers.length;i++)
+        {
+            ContextHandler context = new ContextHandler("/");
+            context.setVirtualHosts(new String[] {"host"+i+".example.com"});
+            handlers[i] = new IsHandledHandler("H"+i);
+            context.setHandler(handlers[i]);
+            c.addHandler(context);
+        }
+
+        ContextHandler wild = new ContextHandler("/");
+        wild.setVirtualHosts(new String[] {"*.wild.com"});
+        IsHandledHandler wildHandler = new IsHandledHandler("W");
+        wild.setHandler(wildHandler);
+        c.addHandler(wild);
+
+        ContextHandler other = new ContextHandler("/");
+        IsHandledHandler otherHandler = new IsHandledHandler("O");
+        other.setHandler(otherHandler);
+        c.addHandler(other);
+
+        server.setHandler(c);
+
+        try
+        {
+            server.start();
+
+            assertThat(connector.getResponses("GET / HTTP/1.0\nHost: host0.example.com\n\n"),endsWith("H0"));
+            assertThat(connector.getResponses("GET /x HTTP/1.0\nHost: HOST123.Example.com.\n\n"),endsWith("H123"));
+            assertThat(connector.getResponses("GET / HTTP/1.0\nHost: any.wild.com\n\n"),endsWith("W"));
+            assertThat(connector.getResponses("GET / HTTP/1.0\nHost: any.sub.wild.com\n\n"),endsWith("O"));
+            assertThat(connector.getResponses("GET / HTTP/1.0\nHost: host999.example.com\n\n"),endsWith("O"));
+
+            // Changing the virtual hosts of a running context remaps the collection
+            ((ContextHandler)c.getHandlers()[7]).setVirtualHosts(new String[] {"renamed.example.com"});
+            assertThat(connector.getResponses("GET / HTTP/1.0\nHost: renamed.example.com\n\n"),endsWith("H7"));
+            assertThat(connector.getResponses("GET / HTTP/1.0\nHost: host7.example.com\n\n"),endsWith("O"));
+        }
+        finally
+        {
+            server.stop();
+        }
+    }
+
     @Test
     public void testFindContainer() throws Exception
     {
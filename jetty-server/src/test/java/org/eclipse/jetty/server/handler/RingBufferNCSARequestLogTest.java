@@ -0,0 +1,177 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.server.handler;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.server.Authentication;
+import org.eclipse.jetty.server.LocalConnector;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.RingBufferNCSARequestLog;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.UserIdentity;
+import org.eclipse.jetty.toolchain.test.MavenTestingUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RingBufferNCSARequestLogTest
+{
+    private Server _server;
+    private LocalConnector _connector;
+    private RingBufferNCSARequestLog _log;
+    private File _file;
+
+    @Before
+    public void before() throws Exception
+    {
+        _file = new File(MavenTestingUtils.getTargetTestingDir(RingBufferNCSARequestLogTest.class.getSimpleName()),"request.log");
+        _file.getParentFile().mkdirs();
+        _server = new Server();
+        _connector = new LocalConnector(_server);
+        _server.addConnector(_connector);
+        _log = new RingBufferNCSARequestLog(_file.getAbsolutePath());
+        _log.setAppend(false);
+        _log.setCapacity(8);
+        _server.setRequestLog(_log);
+        _server.setHandler(new AbstractHandler()
+        {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException
+            {
+                baseRequest.setHandled(true);
+                if (target.startsWith("/broken"))
+                    baseRequest.setAuthentication(new BrokenUser());
+                response.setStatus(201);
+                response.getOutputStream().write(new byte[42]);
+            }
+        });
+    }
+
+    @After
+    public void after() throws Exception
+    {
+        _server.stop();
+    }
+
+    private List<String> readLog() throws Exception
+    {
+        return Files.readAllLines(_file.toPath(),StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testFormat() throws Exception
+    {
+        _server.start();
+        _connector.getResponses("GET /foo?bar HTTP/1.0\nReferer: http://referer\nUser-Agent: agent\n\n");
+        _server.stop();
+
+        List<String> lines = readLog();
+        assertThat(lines.size(),is(1));
+        assertThat(lines.get(0),containsString(" - - ["));
+        assertThat(lines.get(0),containsString("\"GET /foo?bar HTTP/1.0\" 201 42 \"http://referer\" \"agent\""));
+    }
+
+    @Test
+    public void testBlockWhenFull() throws Exception
+    {
+        _log.setOverflowPolicy(RingBufferNCSARequestLog.OverflowPolicy.BLOCK);
+        _server.start();
+        for (int i=0;i<100;i++)
+            _connector.getResponses("GET /"+i+" HTTP/1.0\n\n");
+        _server.stop();
+
+        List<String> lines = readLog();
+        assertThat(lines.size(),is(100));
+        for (int i=0;i<100;i++)
+            assertThat(lines.get(i),containsString("\"GET /"+i+" HTTP/1.0\""));
+        assertThat(_log.getDroppedCount(),is(0L));
+    }
+
+    @Test
+    public void testDropWhenFull() throws Exception
+    {
+        _log.setOverflowPolicy(RingBufferNCSARequestLog.OverflowPolicy.DROP);
+        _log.setFlushIntervalMs(60000);
+        _server.start();
+        for (int i=0;i<100;i++)
+            _connector.getResponses("GET /"+i+" HTTP/1.0\n\n");
+        _server.stop();
+
+        List<String> lines = readLog();
+        assertThat((long)lines.size()+_log.getDroppedCount(),is(100L));
+    }
+
+    @Test
+    public void testCaptureFailureDoesNotStallWriter() throws Exception
+    {
+        _log.setOverflowPolicy(RingBufferNCSARequestLog.OverflowPolicy.BLOCK);
+        _server.start();
+        for (int i=0;i<20;i++)
+            _connector.getResponses("GET /"+(i%3==0?"broken":"ok")+i+" HTTP/1.0\n\n");
+        _server.stop();
+
+        List<String> lines = readLog();
+        assertThat(lines.size(),is(13));
+        for (String line : lines)
+            assertThat(line,containsString("\"GET /ok"));
+        assertThat(_log.getDroppedCount(),is(7L));
+    }
+
+    /**
+     * A user without an identity, so that capturing the log entry fails.
+     */
+    private static class BrokenUser implements Authentication.User
+    {
+        @Override
+        public String getAuthMethod()
+        {
+            return "BROKEN";
+        }
+
+        @Override
+        public UserIdentity getUserIdentity()
+        {
+            return null;
+        }
+
+        @Override
+        public boolean isUserInRole(UserIdentity.Scope scope, String role)
+        {
+            return false;
+        }
+
+        @Override
+        public void logout()
+        {
+        }
+    }
+}
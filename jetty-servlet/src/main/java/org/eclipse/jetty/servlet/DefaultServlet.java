@@ -121,6 +121,12 @@ import org.eclipse.jetty.util.resource.ResourceFactory;
  *  maxCacheSize      The maximum total size of the cache or 0 for no cache.
  *  maxCachedFileSize The maximum size of a file to cache
  *  maxCachedFiles    The maximum number of files to cache
+ *  cacheGzip         If set to true, compressible text content in the cache is gzipped once
+ *                    in the background and the cached variant is served to clients that
+ *                    accept gzip content encoding.
+ *  cacheEvictionPolicy
+ *                    Either "slru" (the default) for a scan resistant segmented LRU
+ *                    eviction policy or "lru" to evict the least recently used file.
  *
  *  useFileMappedBuffer
  *                    If set to true, it will use mapped file buffer to serve static content
@@ -274,6 +280,17 @@ public class DefaultServlet extends HttpServlet implements ResourceFactory
                     _cache.setMaxCachedFileSize(max_cached_file_size);
                 if (max_cached_files>=-1)
                     _cache.setMaxCachedFiles(max_cached_files);
+                if (getInitBoolean("cacheGzip",false))
+                {
+                    _cache.setGzipVariants(true);
+                    if (_contextHandler.getServer()!=null)
+                        _cache.setExecutor(_contextHandler.getServer().getThreadPool());
+                }
+                if ("lru".equalsIgnoreCase(getInitParameter("cacheEvictionPolicy")))
+                    _cache.setEvictionPolicy(new ResourceCache.LeastRecentlyUsed());
+
+                // expose the cache statistics with the context
+                _contextHandler.addBean(_cache);
             }
         }
         catch (Exception e)
@@ -491,6 +508,30 @@ public class DefaultServlet extends HttpServlet implements ResourceFactory
                 {
                     content=_cache.lookup(pathInContext);
                     resource=content==null?null:content.getResource();
+
+                    // Is there a cached gzip variant of the content?
+                    if (content instanceof ResourceCache.CachedHttpContent && !included.booleanValue() && reqRanges==null && !endsWithSlash)
+                    {
+                        ResourceCache.CachedHttpContent cached=(ResourceCache.CachedHttpContent)content;
+                        if (cached.isGzipCompressible())
+                        {
+                            // Tell caches that response may vary by accept-encoding
+                            if (!response.containsHeader(HttpHeader.VARY.asString()))
+                                response.addHeader(HttpHeader.VARY.asString(),HttpHeader.ACCEPT_ENCODING.asString());
+
+                            // Does the client accept gzip?
+                            String accept=request.getHeader(HttpHeader.ACCEPT_ENCODING.asString());
+                            if (accept!=null && accept.indexOf("gzip")>=0)
+                            {
+                                HttpContent gzipped=cached.getGzipVariant();
+                                if (gzipped!=null)
+                                {
+                                    content=gzipped;
+                                    gzip=true;
+                                }
+                            }
+                        }
+                    }
                 }
             }
 
@@ -1009,7 +1050,12 @@ public class DefaultServlet extends HttpServlet implements ResourceFactory
                     response.addDateHeader(HttpHeader.DATE.asString(),System.currentTimeMillis());
                 response.setHeader(HttpHeader.CONTENT_RANGE.asString(),
                         singleSatisfiableRange.toHeaderRangeString(content_length));
-                resource.writeTo(out,singleSatisfiableRange.getFirst(content_length),singleLength);
+                long first=singleSatisfiableRange.getFirst(content_length);
+                // do a bypass write if the content is not wrapped
+                if (content!=null && !written && out instanceof HttpOutput)
+                    ((HttpOutput)out).sendContent(content,first,singleLength);
+                else
+                    resource.writeTo(out,first,singleLength);
                 return;
             }
 
@@ -1126,7 +1172,10 @@ public class DefaultServlet extends HttpServlet implements ResourceFactory
     public void destroy()
     {
         if (_cache!=null)
+        {
             _cache.flushCache();
+            _contextHandler.removeBean(_cache);
+        }
         super.destroy();
     }
 
@@ -0,0 +1,400 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.servlet;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+
+/* ------------------------------------------------------------ */
+/**
+ * A compiled index of the filter path mappings of a {@link ServletHandler}.
+ * <p>
+ * The path specs of the mappings are compiled into an exact match hash, a trie of
+ * the prefix specs walked forwards from the start of the path, and a trie of the suffix
+ * specs walked backwards from the end of the path.  The filters that apply to a path
+ * are fully determined by the deepest prefix and suffix nodes it reaches, or by its exact
+ * spec, so every path resolves, without allocation, to one of a bounded number of
+ * {@link Match}es.  Each match holds the immutable {@link FilterChain}s built for it,
+ * by servlet and dispatch type, so chains are built once per distinct combination of
+ * mappings rather than once per path.
+ * </p>
+ */
+class FilterPathIndex
+{
+    /**
+     * The chain cached for a servlet when no filters apply to it.
+     */
+    static final FilterChain NO_CHAIN = new FilterChain()
+    {
+        @Override
+        public void doFilter(ServletRequest request, ServletResponse response) throws IOException, ServletException
+        {
+            throw new IllegalStateException();
+        }
+
+        @Override
+        public String toString()
+        {
+            return "NO_CHAIN";
+        }
+    };
+
+    private static final int MAX_MATCHES = 1<<20;
+
+    private final FilterMapping[] _mappings;
+    private final Node _prefixes = new Node();
+    private final Node _suffixes = new Node();
+    private final Map<String,Match> _exact = new HashMap<>();
+    private final Map<List<FilterMapping>,Match> _interned = new HashMap<>();
+    private final Match _empty;
+    private final int _prefixCount;
+    private final int _suffixCount;
+    private final AtomicReferenceArray<Match> _matches;
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param mappings the filter mappings with path specs, in the order they apply
+     */
+    FilterPathIndex(List<FilterMapping> mappings)
+    {
+        _mappings = mappings==null?new FilterMapping[0]:mappings.toArray(new FilterMapping[mappings.size()]);
+        _empty = intern(new BitSet());
+
+        List<String> exact = new ArrayList<>();
+        for (int m=0;m<_mappings.length;m++)
+        {
+            String[] specs=_mappings[m].getPathSpecs();
+            if (specs==null)
+                continue;
+            for (String spec : specs)
+            {
+                if (spec==null)
+                    continue;
+                if (spec.length()==0)
+                    exact.add("/");
+                else if (spec.charAt(0)=='*')
+                    _suffixes.insert(spec,spec.length()-1,spec.length()-1,-1).add(m);
+                else if (spec.charAt(0)=='/')
+                {
+                    if (spec.endsWith("/*"))
+                        _prefixes.insert(spec,0,spec.length()-2,1).add(m);
+                    else
+                        exact.add(spec);
+                }
+            }
+        }
+
+        // A node matches all the mappings of the nodes that are its ancestors, which
+        // for prefixes must be at a segment boundary.  Id 0 is no match, so combinations of prefix and suffix can be indexed.
+        _prefixCount=_prefixes.compile(new BitSet(),0,'/')+1;
+        _suffixCount=_suffixes.compile(new BitSet(),0,(char)0)+1;
+        _matches=new AtomicReferenceArray<>((int)Math.min(MAX_MATCHES,(long)_prefixCount*_suffixCount));
+
+        // The mappings of an exact path are known, so its match is precomputed
+        for (String path : exact)
+        {
+            BitSet set = new BitSet();
+            for (int m=0;m<_mappings.length;m++)
+            {
+                String[] specs=_mappings[m].getPathSpecs();
+                if (specs==null)
+                    continue;
+                for (String spec : specs)
+                {
+                    if (spec!=null && (spec.equals(path) || spec.length()==0 && "/".equals(path)))
+                        set.set(m);
+                }
+            }
+            set.or(prefix(path)._set);
+            set.or(suffix(path)._set);
+            _exact.put(path,intern(set));
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return the match for requests dispatched by servlet name rather than by path
+     */
+    Match getNamedMatch()
+    {
+        return _empty;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param path the path in context
+     * @return the match for the path, never null
+     */
+    Match getMatch(String path)
+    {
+        if (_mappings.length==0)
+            return _empty;
+
+        Match match=_exact.get(path);
+        if (match!=null)
+            return match;
+
+        Node prefix=prefix(path);
+        Node suffix=suffix(path);
+        if (prefix._id==0 && suffix._id==0)
+            return _empty;
+
+        int index=prefix._id*_suffixCount+suffix._id;
+        if (index<0 || index>=_matches.length())
+        {
+            BitSet set=(BitSet)prefix._set.clone();
+            set.or(suffix._set);
+            return intern(set);
+        }
+
+        match=_matches.get(index);
+        if (match==null)
+        {
+            BitSet set=(BitSet)prefix._set.clone();
+            set.or(suffix._set);
+            match=intern(set);
+            _matches.set(index,match);
+        }
+        return match;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Discards all the cached filter chains.
+     */
+    void clear()
+    {
+        synchronized (_interned)
+        {
+            for (Match match : _interned.values())
+                match.clear();
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    private Node prefix(String path)
+    {
+        // Walk forwards to the deepest prefix that ends on a segment boundary
+        int length=path.length();
+        Node node=_prefixes;
+        Node best=node._terminal?node:null;
+        for (int i=0;i<length && node!=null;)
+        {
+            node=node.child(path.charAt(i++));
+            if (node!=null && node._terminal && (i==length || path.charAt(i)=='/'))
+                best=node;
+        }
+        return best==null?_prefixes:best;
+    }
+
+    /* ------------------------------------------------------------ */
+    private Node suffix(String path)
+    {
+        // Walk backwards to the longest suffix
+        Node node=_suffixes;
+        Node best=node._terminal?node:null;
+        for (int i=path.length();i-->0 && node!=null;)
+        {
+            node=node.child(path.charAt(i));
+            if (node!=null && node._terminal)
+                best=node;
+        }
+        return best==null?_suffixes:best;
+    }
+
+    /* ------------------------------------------------------------ */
+    private Match intern(BitSet set)
+    {
+        List<FilterMapping> mappings=new ArrayList<>(set.cardinality());
+        for (int m=set.nextSetBit(0);m>=0;m=set.nextSetBit(m+1))
+            mappings.add(_mappings[m]);
+
+        synchronized (_interned)
+        {
+            Match match=_interned.get(mappings);
+            if (match==null)
+            {
+                match=new Match(mappings.toArray(new FilterMapping[mappings.size()]));
+                _interned.put(mappings,match);
+            }
+            return match;
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{m=%d,p=%d,s=%d,e=%d}",getClass().getSimpleName(),hashCode(),_mappings.length,_prefixCount,_suffixCount,_exact.size());
+    }
+
+    /* ------------------------------------------------------------ */
+    /* ------------------------------------------------------------ */
+    /**
+     * A distinct set of filter mappings that apply to some paths, with the
+     * filter chains that have been built for them.
+     */
+    static class Match
+    {
+        private final FilterMapping[] _mappings;
+        @SuppressWarnings("unchecked")
+        private final ConcurrentMap<ServletHolder,FilterChain>[] _chains = new ConcurrentMap[FilterMapping.ALL+1];
+
+        private Match(FilterMapping[] mappings)
+        {
+            _mappings=mappings;
+            _chains[FilterMapping.REQUEST]=new ConcurrentHashMap<>();
+            _chains[FilterMapping.FORWARD]=new ConcurrentHashMap<>();
+            _chains[FilterMapping.INCLUDE]=new ConcurrentHashMap<>();
+            _chains[FilterMapping.ERROR]=new ConcurrentHashMap<>();
+            _chains[FilterMapping.ASYNC]=new ConcurrentHashMap<>();
+        }
+
+        /**
+         * @return the path mappings that apply, in the order they apply
+         */
+        FilterMapping[] getMappings()
+        {
+            return _mappings;
+        }
+
+        /**
+         * @param dispatch the dispatch type constant
+         * @param servletHolder the servlet
+         * @return the cached chain, {@link FilterPathIndex#NO_CHAIN} or null if no chain has been cached
+         */
+        FilterChain getChain(int dispatch, ServletHolder servletHolder)
+        {
+            return _chains[dispatch].get(servletHolder);
+        }
+
+        /**
+         * @param dispatch the dispatch type constant
+         * @param servletHolder the servlet
+         * @param chain the chain to cache
+         * @return the chain cached, which may have been cached by another thread
+         */
+        FilterChain putChain(int dispatch, ServletHolder servletHolder, FilterChain chain)
+        {
+            FilterChain cached=_chains[dispatch].putIfAbsent(servletHolder,chain);
+            return cached==null?chain:cached;
+        }
+
+        private void clear()
+        {
+            for (ConcurrentMap<ServletHolder,FilterChain> chains : _chains)
+            {
+                if (chains!=null)
+                    chains.clear();
+            }
+        }
+
+        @Override
+        public String toString()
+        {
+            return Arrays.asList(_mappings).toString();
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    /* ------------------------------------------------------------ */
+    /**
+     * A character trie node.
+     */
+    private static class Node
+    {
+        private char[] _chars=new char[0];
+        private Node[] _children=new Node[0];
+        private boolean _terminal;
+        private BitSet _set=new BitSet();
+        private int _id;
+
+        private Node child(char c)
+        {
+            int i=Arrays.binarySearch(_chars,c);
+            return i<0?null:_children[i];
+        }
+
+        private Node insert(String key, int offset, int length, int step)
+        {
+            Node node=this;
+            for (int i=0;i<length;i++)
+            {
+                char c=key.charAt(offset+i*step);
+                int index=Arrays.binarySearch(node._chars,c);
+                if (index<0)
+                {
+                    index=-index-1;
+                    int n=node._chars.length;
+                    char[] chars=new char[n+1];
+                    Node[] children=new Node[n+1];
+                    System.arraycopy(node._chars,0,chars,0,index);
+                    System.arraycopy(node._children,0,children,0,index);
+                    System.arraycopy(node._chars,index,chars,index+1,n-index);
+                    System.arraycopy(node._children,index,children,index+1,n-index);
+                    chars[index]=c;
+                    children[index]=new Node();
+                    node._chars=chars;
+                    node._children=children;
+                }
+                node=node._children[index];
+            }
+            node._terminal=true;
+            return node;
+        }
+
+        private void add(int mapping)
+        {
+            _set.set(mapping);
+        }
+
+        /**
+         * Numbers the terminal nodes, giving each the mappings of its terminal ancestors.
+         * @param inherited the mappings of the terminal ancestors
+         * @param id the last id allocated
+         * @param separator the character that must follow an ancestor for its mappings to be
+         * inherited, or 0 if all ancestors are inherited
+         * @return the last id allocated
+         */
+        private int compile(BitSet inherited, int id, char separator)
+        {
+            BitSet own=_set;
+            _set=(BitSet)inherited.clone();
+            _set.or(own);
+            if (_terminal)
+                _id=++id;
+            for (int i=0;i<_children.length;i++)
+                id=_children[i].compile(separator==0 || _chars[i]==separator?_set:inherited,id,separator);
+            return id;
+        }
+    }
+}
@@ -28,11 +28,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
-import java.util.Queue;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.ConcurrentMap;
 
 import javax.servlet.DispatcherType;
 import javax.servlet.Filter;
@@ -114,6 +110,7 @@ public class ServletHandler extends ScopedHandler
     private ServletMapping[] _servletMappings;
     private final Map<String,FilterHolder> _filterNameMap= new HashMap<>();
     private List<FilterMapping> _filterPathMappings;
+    private FilterPathIndex _filterPathIndex;
     private MultiMap<FilterMapping> _filterNameMappings;
 
     private final Map<String,ServletHolder> _servletNameMap=new HashMap<>();
@@ -121,13 +118,6 @@ public class ServletHandler extends ScopedHandler
     
     private ListenerHolder[] _listeners=new ListenerHolder[0];
 
-    @SuppressWarnings("unchecked")
-    protected final ConcurrentMap<String, FilterChain> _chainCache[] = new ConcurrentMap[FilterMapping.ALL];
-
-    @SuppressWarnings("unchecked")
-    protected final Queue<String>[] _chainLRU = new Queue[FilterMapping.ALL];
-
-
 
     /* ------------------------------------------------------------ */
     /** Constructor.
@@ -164,21 +154,6 @@ public class ServletHandler extends ScopedHandler
             getServletMapping("/").setDefault(true);
         }
 
-        if(_filterChainsCached)
-        {
-            _chainCache[FilterMapping.REQUEST]=new ConcurrentHashMap<String,FilterChain>();
-            _chainCache[FilterMapping.FORWARD]=new ConcurrentHashMap<String,FilterChain>();
-            _chainCache[FilterMapping.INCLUDE]=new ConcurrentHashMap<String,FilterChain>();
-            _chainCache[FilterMapping.ERROR]=new ConcurrentHashMap<String,FilterChain>();
-            _chainCache[FilterMapping.ASYNC]=new ConcurrentHashMap<String,FilterChain>();
-
-            _chainLRU[FilterMapping.REQUEST]=new ConcurrentLinkedQueue<String>();
-            _chainLRU[FilterMapping.FORWARD]=new ConcurrentLinkedQueue<String>();
-            _chainLRU[FilterMapping.INCLUDE]=new ConcurrentLinkedQueue<String>();
-            _chainLRU[FilterMapping.ERROR]=new ConcurrentLinkedQueue<String>();
-            _chainLRU[FilterMapping.ASYNC]=new ConcurrentLinkedQueue<String>();
-        }
-
         if (_contextHandler==null)
             initialize();
         
@@ -335,6 +310,7 @@ public class ServletHandler extends ScopedHandler
 
         //will be regenerated on next start
         _filterPathMappings=null;
+        _filterPathIndex=null;
         _filterNameMappings=null;
         _servletPathMap=null;
     }
@@ -688,108 +664,74 @@ public class ServletHandler extends ScopedHandler
     /* ------------------------------------------------------------ */
     protected FilterChain getFilterChain(Request baseRequest, String pathInContext, ServletHolder servletHolder)
     {
-        String key=pathInContext==null?servletHolder.getName():pathInContext;
+        FilterPathIndex index=_filterPathIndex;
+        if (index==null)
+            return null;
+
         int dispatch = FilterMapping.dispatch(baseRequest.getDispatcherType());
+        FilterPathIndex.Match match = pathInContext==null?index.getNamedMatch():index.getMatch(pathInContext);
 
-        if (_filterChainsCached && _chainCache!=null)
+        if (_filterChainsCached && servletHolder!=null)
         {
-            FilterChain chain = (FilterChain)_chainCache[dispatch].get(key);
-            if (chain!=null)
-                return chain;
+            // Chains are cached by the mappings that apply, not by path, so the cache is bounded
+            FilterChain chain = match.getChain(dispatch,servletHolder);
+            if (chain==null)
+            {
+                List<FilterHolder> filters = getFilters(match,dispatch,servletHolder);
+                chain = match.putChain(dispatch,servletHolder,filters.isEmpty()?FilterPathIndex.NO_CHAIN:new CachedChain(filters,servletHolder));
+            }
+            return chain==FilterPathIndex.NO_CHAIN?null:chain;
         }
 
+        List<FilterHolder> filters = getFilters(match,dispatch,servletHolder);
+        if (filters.isEmpty())
+            return null;
+        return new Chain(baseRequest,filters,servletHolder);
+    }
+
+    /* ------------------------------------------------------------ */
+    private List<FilterHolder> getFilters(FilterPathIndex.Match match, int dispatch, ServletHolder servletHolder)
+    {
         // Build list of filters (list of FilterHolder objects)
         List<FilterHolder> filters = new ArrayList<>();
 
         // Path filters
-        if (pathInContext!=null && _filterPathMappings!=null)
+        for (FilterMapping filterPathMapping : match.getMappings())
         {
-            for (FilterMapping filterPathMapping : _filterPathMappings)
-            {
-                if (filterPathMapping.appliesTo(pathInContext, dispatch))
-                    filters.add(filterPathMapping.getFilterHolder());
-            }
+            if (filterPathMapping.appliesTo(dispatch))
+                filters.add(filterPathMapping.getFilterHolder());
         }
 
         // Servlet name filters
         if (servletHolder != null && _filterNameMappings!=null && _filterNameMappings.size() > 0)
         {
-            // Servlet name filters
-            if (_filterNameMappings.size() > 0)
-            {
-                Object o= _filterNameMappings.get(servletHolder.getName());
+            Object o= _filterNameMappings.get(servletHolder.getName());
 
-                for (int i=0; i<LazyList.size(o);i++)
-                {
-                    FilterMapping mapping = (FilterMapping)LazyList.get(o,i);
-                    if (mapping.appliesTo(dispatch))
-                        filters.add(mapping.getFilterHolder());
-                }
-
-                o= _filterNameMappings.get("*");
-                for (int i=0; i<LazyList.size(o);i++)
-                {
-                    FilterMapping mapping = (FilterMapping)LazyList.get(o,i);
-                    if (mapping.appliesTo(dispatch))
-                        filters.add(mapping.getFilterHolder());
-                }
+            for (int i=0; i<LazyList.size(o);i++)
+            {
+                FilterMapping mapping = (FilterMapping)LazyList.get(o,i);
+                if (mapping.appliesTo(dispatch))
+                    filters.add(mapping.getFilterHolder());
             }
-        }
-
-        if (filters.isEmpty())
-            return null;
-
-
-        FilterChain chain = null;
-        if (_filterChainsCached)
-        {
-            if (filters.size() > 0)
-                chain= new CachedChain(filters, servletHolder);
 
-            final Map<String,FilterChain> cache=_chainCache[dispatch];
-            final Queue<String> lru=_chainLRU[dispatch];
-
-                // Do we have too many cached chains?
-                while (_maxFilterChainsCacheSize>0 && cache.size()>=_maxFilterChainsCacheSize)
-                {
-                    // The LRU list is not atomic with the cache map, so be prepared to invalidate if
-                    // a key is not found to delete.
-                    // Delete by LRU (where U==created)
-                    String k=lru.poll();
-                    if (k==null)
-                    {
-                        cache.clear();
-                        break;
-                    }
-                    cache.remove(k);
-                }
-
-                cache.put(key,chain);
-                lru.add(key);
+            o= _filterNameMappings.get("*");
+            for (int i=0; i<LazyList.size(o);i++)
+            {
+                FilterMapping mapping = (FilterMapping)LazyList.get(o,i);
+                if (mapping.appliesTo(dispatch))
+                    filters.add(mapping.getFilterHolder());
+            }
         }
-        else if (filters.size() > 0)
-            chain = new Chain(baseRequest,filters, servletHolder);
 
-        return chain;
+        return filters;
     }
 
     /* ------------------------------------------------------------ */
     protected void invalidateChainsCache()
     {
-        if (_chainLRU[FilterMapping.REQUEST]!=null)
-        {
-            _chainLRU[FilterMapping.REQUEST].clear();
-            _chainLRU[FilterMapping.FORWARD].clear();
-            _chainLRU[FilterMapping.INCLUDE].clear();
-            _chainLRU[FilterMapping.ERROR].clear();
-            _chainLRU[FilterMapping.ASYNC].clear();
-
-            _chainCache[FilterMapping.REQUEST].clear();
-            _chainCache[FilterMapping.FORWARD].clear();
-            _chainCache[FilterMapping.INCLUDE].clear();
-            _chainCache[FilterMapping.ERROR].clear();
-            _chainCache[FilterMapping.ASYNC].clear();
-        }
+        FilterPathIndex index=_filterPathIndex;
+        if (index!=null)
+            index.clear();
     }
 
     /* ------------------------------------------------------------ */
@@ -1408,6 +1350,7 @@ public class ServletHandler extends ScopedHandler
         if (_filterMappings==null)
         {
             _filterPathMappings=null;
+            _filterPathIndex=null;
             _filterNameMappings=null;
         }
         else
@@ -1433,6 +1376,7 @@ public class ServletHandler extends ScopedHandler
                     }
                 }
             }
+            _filterPathIndex=new FilterPathIndex(_filterPathMappings);
         }
 
         // Map servlet paths to holders
@@ -1511,20 +1455,11 @@ public class ServletHandler extends ScopedHandler
             _servletPathMap=pm;
         }
 
-        // flush filter chain cache
-        if (_chainCache!=null)
-        {
-            for (int i=_chainCache.length;i-->0;)
-            {
-                if (_chainCache[i]!=null)
-                    _chainCache[i].clear();
-            }
-        }
-
         if (LOG.isDebugEnabled())
         {
             LOG.debug("filterNameMap="+_filterNameMap);
             LOG.debug("pathFilters="+_filterPathMappings);
+            LOG.debug("pathFilterIndex="+_filterPathIndex);
             LOG.debug("servletFilterMap="+_filterNameMappings);
             LOG.debug("servletPathMap="+_servletPathMap);
             LOG.debug("servletNameMap="+_servletNameMap);
@@ -1771,7 +1706,10 @@ public class ServletHandler extends ScopedHandler
     /* ------------------------------------------------------------ */
     /**
      * @return The maximum entries in a filter chain cache.
+     * @deprecated filter chains are cached by the mappings that apply to a path rather than by path,
+     * so the cache is bounded by the mappings and this value is not used.
      */
+    @Deprecated
     public int getMaxFilterChainsCacheSize()
     {
         return _maxFilterChainsCacheSize;
@@ -1779,11 +1717,12 @@ public class ServletHandler extends ScopedHandler
 
     /* ------------------------------------------------------------ */
     /** Set the maximum filter chain cache size.
-     * Filter chains are cached if {@link #isFilterChainsCached()} is true. If the max cache size
-     * is greater than zero, then the cache is flushed whenever it grows to be this size.
      *
      * @param maxFilterChainsCacheSize  the maximum number of entries in a filter chain cache.
+     * @deprecated filter chains are cached by the mappings that apply to a path rather than by path,
+     * so the cache is bounded by the mappings and this value is not used.
      */
+    @Deprecated
     public void setMaxFilterChainsCacheSize(int maxFilterChainsCacheSize)
     {
         _maxFilterChainsCacheSize = maxFilterChainsCacheSize;
@@ -0,0 +1,116 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.servlet;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.jetty.servlet.BaseHolder.Source;
+import org.junit.Test;
+
+public class FilterPathIndexTest
+{
+    private static final String[][] SPECS =
+    {
+        {"/*"},
+        {"/foo/*"},
+        {"/foo/bar/*","*.jsp"},
+        {"*.jsp"},
+        {"/exact"},
+        {"/"},
+        {""},
+        {"*.sp"},
+        {"/foo/bar/baz/*"},
+        {"/x/*","/foo/exact.jsp"},
+        {"*"},
+        {"/fo/*"},
+    };
+
+    private static final String[] PATHS =
+    {
+        "/", "/foo", "/foo/", "/foobar", "/foo/bar", "/foo/bar/x.jsp", "/a.jsp", "/a.sp", "/exact",
+        "/exact/", "/foo/bar/baz", "/foo/bar/baz/q", "/x", "/x/y.jsp", "/foo/exact.jsp", "/fo", "/fo/x",
+        "/f", "/foo/barbaz.jsp", "/b.jspx"
+    };
+
+    private List<FilterMapping> newMappings()
+    {
+        List<FilterMapping> mappings = new ArrayList<>();
+        for (int i=0;i<SPECS.length;i++)
+        {
+            FilterHolder holder = new FilterHolder(Source.EMBEDDED);
+            holder.setName("f"+i);
+            FilterMapping mapping = new FilterMapping();
+            mapping.setFilterHolder(holder);
+            mapping.setPathSpecs(SPECS[i]);
+            mappings.add(mapping);
+        }
+        return mappings;
+    }
+
+    @Test
+    public void testMatchesAppliesTo() throws Exception
+    {
+        List<FilterMapping> all = newMappings();
+
+        // Test every tail of the mappings, so that each spec is tested as the first
+        for (int first=0;first<all.size();first++)
+        {
+            List<FilterMapping> mappings = all.subList(first,all.size());
+            FilterPathIndex index = new FilterPathIndex(mappings);
+
+            for (String path : PATHS)
+            {
+                List<FilterMapping> expected = new ArrayList<>();
+                for (FilterMapping mapping : mappings)
+                {
+                    if (mapping.appliesTo(path,FilterMapping.REQUEST))
+                        expected.add(mapping);
+                }
+
+                FilterPathIndex.Match match = index.getMatch(path);
+                assertThat(path,Arrays.asList(match.getMappings()),is(expected));
+                assertThat(path,index.getMatch(path),sameInstance(match));
+            }
+        }
+    }
+
+    @Test
+    public void testChainsShared() throws Exception
+    {
+        FilterPathIndex index = new FilterPathIndex(newMappings().subList(1,2));
+        ServletHolder servlet = new ServletHolder(Source.EMBEDDED);
+
+        // Paths matching the same mappings share the same chains
+        FilterPathIndex.Match match = index.getMatch("/foo/a");
+        assertThat(index.getMatch("/foo/b/c"),sameInstance(match));
+        assertThat(index.getMatch("/other"),sameInstance(index.getNamedMatch()));
+
+        assertThat(match.putChain(FilterMapping.REQUEST,servlet,FilterPathIndex.NO_CHAIN),sameInstance(FilterPathIndex.NO_CHAIN));
+        assertThat(index.getMatch("/foo/d").getChain(FilterMapping.REQUEST,servlet),sameInstance(FilterPathIndex.NO_CHAIN));
+
+        index.clear();
+        assertThat(match.getChain(FilterMapping.REQUEST,servlet)==null,is(true));
+    }
+}
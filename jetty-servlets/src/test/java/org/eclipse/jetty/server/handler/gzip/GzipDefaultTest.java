@@ -115,6 +115,34 @@ public class GzipDefaultTest
 
     }
 
+    @SuppressWarnings("serial")
+    public static class HttpFlushedStreamServlet extends HttpServlet
+    {
+        public static final String CHUNK = "data: the quick brown fox jumped over the lazy dog\n\n";
+        public static final int CHUNKS = 200;
+
+        @Override
+        protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException
+        {
+            resp.setContentType("text/plain");
+            ServletOutputStream out = resp.getOutputStream();
+            for (int i = 0; i < CHUNKS; i++)
+            {
+                out.print(CHUNK);
+                if (i % 3 == 0)
+                    out.flush();
+            }
+        }
+
+        public static String expected()
+        {
+            StringBuilder builder = new StringBuilder();
+            for (int i = 0; i < CHUNKS; i++)
+                builder.append(CHUNK);
+            return builder.toString();
+        }
+    }
+
     @Rule
     public TestingDir testingdir = new TestingDir();
 
@@ -472,6 +500,41 @@ public class GzipDefaultTest
         }
     }
 
+    @Test
+    public void testGzipCompressedFlushedStream() throws Exception
+    {
+        GzipTester tester = new GzipTester(testingdir,compressionType);
+        tester.setContentServlet(HttpFlushedStreamServlet.class);
+        tester.getGzipHandler().addIncludedMimeTypes("text/plain");
+        try
+        {
+            tester.start();
+            tester.assertNonStaticContentIsResponseGzipCompressed("GET","stream",HttpFlushedStreamServlet.expected());
+        }
+        finally
+        {
+            tester.stop();
+        }
+    }
+
+    @Test
+    public void testGzipCompressedSyncFlushedStream() throws Exception
+    {
+        GzipTester tester = new GzipTester(testingdir,compressionType);
+        tester.setContentServlet(HttpFlushedStreamServlet.class);
+        tester.getGzipHandler().addIncludedMimeTypes("text/plain");
+        tester.getGzipHandler().setSyncFlush(true);
+        try
+        {
+            tester.start();
+            tester.assertNonStaticContentIsResponseGzipCompressed("GET","stream",HttpFlushedStreamServlet.expected());
+        }
+        finally
+        {
+            tester.stop();
+        }
+    }
+
     @Test
     public void testIsNotGzipCompressedByDeferredContentType() throws Exception
     {
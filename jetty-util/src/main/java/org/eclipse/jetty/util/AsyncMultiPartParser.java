@@ -0,0 +1,692 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.util;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import javax.servlet.MultipartConfigElement;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.Part;
+
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+
+
+/* ------------------------------------------------------------ */
+/**
+ * Reads and parses multipart/form-data content without blocking.
+ * <p>
+ * The content is read from a {@link ServletInputStream} in async mode, as a {@link ReadListener},
+ * and parsed by a {@link MultiPartParser}.  The content of a part is kept in memory until it exceeds
+ * the fileSizeThreshold of the {@link MultipartConfigElement}, after which it is written to a
+ * temporary file with an {@link AsynchronousFileChannel}.  No content is read while a write is in
+ * progress, so a large upload uses no more memory than the read buffer and never waits on disk I/O
+ * in a thread.
+ * </p>
+ * <p>
+ * The parts are {@link Part}s like those of {@link MultiPartInputStreamParser}, and are passed to the
+ * {@link Promise} once all of them are parsed and written.  Content-Transfer-Encoding, which is
+ * deprecated by RFC7578, is not supported.
+ * </p>
+ * <pre>
+ * AsyncContext async = request.startAsync();
+ * new AsyncMultiPartParser(request.getInputStream(),request.getContentType(),config,tmpDir,promise).start();
+ * </pre>
+ */
+public class AsyncMultiPartParser implements ReadListener, MultiPartParser.Handler
+{
+    private static final Logger LOG = Log.getLogger(AsyncMultiPartParser.class);
+    public static final int DEFAULT_BUFFER_SIZE = 16 * 1024;
+
+    private final ServletInputStream _in;
+    private final MultipartConfigElement _config;
+    private final Promise<Collection<Part>> _promise;
+    private final MultiPartParser _parser;
+    private final MultiMap<Part> _parts = new MultiMap<>();
+    private final byte[] _bytes;
+    private final File _tmpDir;
+    private ByteBuffer _buffer = BufferUtil.EMPTY_BUFFER;
+    private MultiMap<String> _headers;
+    private MultiPart _part;
+    private long _total;
+    private boolean _pending;
+    private boolean _processing;
+    private boolean _eof;
+    private boolean _complete;
+    private boolean _done;
+    private boolean _deleteOnExit;
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param in the request input stream
+     * @param contentType the Content-Type header, with the boundary
+     * @param config the multipart configuration, or null for the default
+     * @param contextTmpDir javax.servlet.context.tempdir
+     * @param promise the promise notified with the parts
+     */
+    public AsyncMultiPartParser(ServletInputStream in, String contentType, MultipartConfigElement config, File contextTmpDir, Promise<Collection<Part>> promise)
+    {
+        this(in,contentType,config,contextTmpDir,promise,DEFAULT_BUFFER_SIZE);
+    }
+
+    /* ------------------------------------------------------------ */
+    public AsyncMultiPartParser(ServletInputStream in, String contentType, MultipartConfigElement config, File contextTmpDir, Promise<Collection<Part>> promise, int bufferSize)
+    {
+        _in = in;
+        _promise = promise;
+        _bytes = new byte[bufferSize];
+
+        if (contextTmpDir == null)
+            contextTmpDir = new File(System.getProperty("java.io.tmpdir"));
+        if (config == null)
+            config = new MultipartConfigElement(contextTmpDir.getAbsolutePath());
+        _config = config;
+
+        if (_config.getLocation() == null || "".equals(_config.getLocation()))
+            _tmpDir = contextTmpDir;
+        else
+        {
+            File f = new File(_config.getLocation());
+            _tmpDir = f.isAbsolute() ? f : new File(contextTmpDir, _config.getLocation());
+        }
+
+        String boundary = "";
+        int bstart = contentType == null ? -1 : contentType.indexOf("boundary=");
+        if (bstart >= 0)
+        {
+            int bend = contentType.indexOf(";", bstart);
+            bend = (bend < 0 ? contentType.length() : bend);
+            boundary = QuotedStringTokenizer.unquote(MultiPartInputStreamParser.value(contentType.substring(bstart, bend)).trim());
+        }
+        _parser = new MultiPartParser(this, boundary);
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Start reading the content by setting this parser as the {@link ReadListener} of the input stream.
+     * The request must be in async mode.
+     */
+    public void start()
+    {
+        if (!_tmpDir.exists())
+            _tmpDir.mkdirs();
+        _in.setReadListener(this);
+    }
+
+    /* ------------------------------------------------------------ */
+    public void setDeleteOnExit(boolean deleteOnExit)
+    {
+        _deleteOnExit = deleteOnExit;
+    }
+
+    /* ------------------------------------------------------------ */
+    public boolean isDeleteOnExit()
+    {
+        return _deleteOnExit;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return the parts parsed so far, or all the parts once the promise has succeeded
+     */
+    public synchronized Collection<Part> getParts()
+    {
+        List<Part> parts = new ArrayList<>();
+        for (List<Part> values : _parts.values())
+            parts.addAll(values);
+        return parts;
+    }
+
+    /* ------------------------------------------------------------ */
+    public synchronized Part getPart(String name)
+    {
+        return _parts.getValue(name, 0);
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Delete any temporary files of the parts and clear the parts.
+     * @throws MultiException if unable to delete the parts
+     */
+    public void deleteParts() throws MultiException
+    {
+        MultiException err = new MultiException();
+        for (Part p : getParts())
+        {
+            try
+            {
+                ((MultiPart)p).cleanUp();
+            }
+            catch (Exception e)
+            {
+                err.add(e);
+            }
+        }
+        synchronized (this)
+        {
+            _parts.clear();
+        }
+        err.ifExceptionThrowMulti();
+    }
+
+    /* ------------------------------------------------------------ */
+    @Override
+    public void onDataAvailable() throws IOException
+    {
+        process();
+    }
+
+    /* ------------------------------------------------------------ */
+    @Override
+    public void onAllDataRead() throws IOException
+    {
+        process();
+    }
+
+    /* ------------------------------------------------------------ */
+    @Override
+    public void onError(Throwable t)
+    {
+        fail(t);
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Read and parse content until no more is available, a file write is in progress or
+     * all the parts are parsed.  Called by the container when content is available, and
+     * by the completion of a file write.
+     */
+    private synchronized void process()
+    {
+        // A write completed by the thread that started it resumes the loop below
+        if (_processing)
+            return;
+        _processing = true;
+        try
+        {
+            while (!_done && !_pending)
+            {
+                if (_complete)
+                {
+                    _done = true;
+                    _promise.succeeded(getParts());
+                    return;
+                }
+
+                if (_buffer.hasRemaining() || _eof)
+                {
+                    _parser.parse(_buffer, _eof);
+                    if (_eof && !_buffer.hasRemaining() && !_pending && !_complete)
+                        return;
+                    continue;
+                }
+
+                if (!_in.isReady())
+                    return;
+
+                int read = _in.read(_bytes);
+                if (read < 0)
+                {
+                    _eof = true;
+                    _buffer = BufferUtil.EMPTY_BUFFER;
+                }
+                else
+                    _buffer = ByteBuffer.wrap(_bytes, 0, read);
+            }
+        }
+        catch (Throwable x)
+        {
+            fail(x);
+        }
+        finally
+        {
+            _processing = false;
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    private void fail(Throwable x)
+    {
+        synchronized (this)
+        {
+            if (_done)
+            {
+                LOG.ignore(x);
+                return;
+            }
+            _done = true;
+        }
+
+        if (_part != null)
+            _part.close();
+        try
+        {
+            deleteParts();
+        }
+        catch (Exception e)
+        {
+            LOG.ignore(e);
+        }
+        _promise.failed(x);
+    }
+
+    /* ------------------------------------------------------------ */
+    @Override
+    public void startPart()
+    {
+        _headers = new MultiMap<>();
+        _part = null;
+    }
+
+    /* ------------------------------------------------------------ */
+    @Override
+    public void parsedField(String name, String value)
+    {
+        _total += name.length() + value.length();
+        checkRequestSize();
+        _headers.put(name.toLowerCase(Locale.ENGLISH), value);
+    }
+
+    /* ------------------------------------------------------------ */
+    @Override
+    public boolean headerComplete()
+    {
+        String contentDisposition = _headers.getValue("content-disposition", 0);
+        if (contentDisposition == null)
+            throw new IllegalStateException("Missing content-disposition");
+
+        QuotedStringTokenizer tok = new QuotedStringTokenizer(contentDisposition, ";", false, true);
+        boolean formData = false;
+        String name = null;
+        String filename = null;
+        while (tok.hasMoreTokens())
+        {
+            String t = tok.nextToken().trim();
+            String tl = t.toLowerCase(Locale.ENGLISH);
+            if (t.startsWith("form-data"))
+                formData = true;
+            else if (tl.startsWith("name="))
+                name = MultiPartInputStreamParser.value(t);
+            else if (tl.startsWith("filename="))
+                filename = MultiPartInputStreamParser.filenameValue(t);
+        }
+
+        // Parts that are not form-data or have no name are skipped
+        if (formData && name != null)
+        {
+            _part = new MultiPart(name, filename, _headers);
+            synchronized (this)
+            {
+                _parts.add(name, _part);
+            }
+        }
+        return false;
+    }
+
+    /* ------------------------------------------------------------ */
+    @Override
+    public boolean content(ByteBuffer item, boolean last)
+    {
+        _total += item.remaining();
+        checkRequestSize();
+        if (_part == null)
+            return false;
+        MultiPart part = _part;
+        if (last)
+            _part = null;
+        return part.content(item, last);
+    }
+
+    /* ------------------------------------------------------------ */
+    @Override
+    public boolean messageComplete()
+    {
+        _complete = true;
+        return true;
+    }
+
+    /* ------------------------------------------------------------ */
+    @Override
+    public void earlyEOF()
+    {
+        throw new IllegalStateException("Incomplete parts");
+    }
+
+    /* ------------------------------------------------------------ */
+    @Override
+    public void badMessage(String reason)
+    {
+        throw new IllegalStateException("Bad multipart content: " + reason);
+    }
+
+    /* ------------------------------------------------------------ */
+    private void checkRequestSize()
+    {
+        if (_config.getMaxRequestSize() > 0 && _total > _config.getMaxRequestSize())
+            throw new IllegalStateException("Request exceeds maxRequestSize (" + _config.getMaxRequestSize() + ")");
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Called when a file write completes, to resume reading and parsing.
+     */
+    private void written()
+    {
+        synchronized (this)
+        {
+            _pending = false;
+        }
+        process();
+    }
+
+    /* ------------------------------------------------------------ */
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{%s,pending=%b}", getClass().getSimpleName(), hashCode(), _parser, _pending);
+    }
+
+    /* ------------------------------------------------------------ */
+    /* ------------------------------------------------------------ */
+    public class MultiPart implements Part
+    {
+        private final String _name;
+        private final String _filename;
+        private final MultiMap<String> _headers;
+        private final String _contentType;
+        private ByteArrayOutputStream2 _bout = new ByteArrayOutputStream2();
+        private File _file;
+        private AsynchronousFileChannel _channel;
+        private long _position;
+        private long _size;
+        private boolean _temporary = true;
+
+        public MultiPart(String name, String filename, MultiMap<String> headers)
+        {
+            _name = name;
+            _filename = filename;
+            _headers = headers;
+            _contentType = headers.getValue("content-type", 0);
+        }
+
+        private boolean content(ByteBuffer item, boolean last)
+        {
+            int length = item.remaining();
+            if (_config.getMaxFileSize() > 0 && _size + length > _config.getMaxFileSize())
+                throw new IllegalStateException("Multipart Mime part " + _name + " exceeds max filesize");
+
+            if (_channel == null && _config.getFileSizeThreshold() > 0 && _size + length > _config.getFileSizeThreshold())
+                createFile();
+            _size += length;
+
+            if (_channel == null)
+            {
+                // Below the threshold the content is copied, so the buffer can be reused
+                if (item.hasArray())
+                {
+                    _bout.write(item.array(), item.arrayOffset() + item.position(), length);
+                    item.position(item.limit());
+                }
+                else
+                {
+                    while (item.hasRemaining())
+                        _bout.write(item.get());
+                }
+                return false;
+            }
+
+            if (length == 0 && _bout == null)
+            {
+                if (last)
+                    close();
+                return false;
+            }
+
+            ByteBuffer[] buffers;
+            if (_bout != null)
+            {
+                buffers = new ByteBuffer[]{ByteBuffer.wrap(_bout.getBuf(), 0, _bout.size()), item};
+                _bout = null;
+            }
+            else
+                buffers = new ByteBuffer[]{item};
+
+            // The item is a slice of the read buffer, so parsing waits for the write to complete
+            _pending = true;
+            new FileWrite(buffers, last).write();
+            return true;
+        }
+
+        private void createFile()
+        {
+            try
+            {
+                _file = File.createTempFile("MultiPart", "", _tmpDir);
+                if (_deleteOnExit)
+                    _file.deleteOnExit();
+                _channel = AsynchronousFileChannel.open(_file.toPath(), StandardOpenOption.WRITE);
+            }
+            catch (IOException e)
+            {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private void close()
+        {
+            if (_channel != null)
+            {
+                try
+                {
+                    _channel.close();
+                }
+                catch (IOException e)
+                {
+                    LOG.ignore(e);
+                }
+            }
+        }
+
+        @Override
+        public String getContentType()
+        {
+            return _contentType;
+        }
+
+        @Override
+        public String getHeader(String name)
+        {
+            if (name == null)
+                return null;
+            return _headers.getValue(name.toLowerCase(Locale.ENGLISH), 0);
+        }
+
+        @Override
+        public Collection<String> getHeaderNames()
+        {
+            return _headers.keySet();
+        }
+
+        @Override
+        public Collection<String> getHeaders(String name)
+        {
+            Collection<String> headers = _headers.getValues(name);
+            return headers == null ? Collections.<String>emptyList() : headers;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException
+        {
+            if (_file != null)
+                return new BufferedInputStream(new FileInputStream(_file));
+            return new ByteArrayInputStream(_bout.getBuf(), 0, _bout.size());
+        }
+
+        @Override
+        public String getSubmittedFileName()
+        {
+            return getContentDispositionFilename();
+        }
+
+        public byte[] getBytes()
+        {
+            if (_bout != null)
+                return _bout.toByteArray();
+            return null;
+        }
+
+        @Override
+        public String getName()
+        {
+            return _name;
+        }
+
+        @Override
+        public long getSize()
+        {
+            return _size;
+        }
+
+        @Override
+        public void write(String fileName) throws IOException
+        {
+            _temporary = false;
+            if (_file == null)
+            {
+                // The part content is only in memory
+                _file = new File(_tmpDir, fileName);
+                try (OutputStream out = new FileOutputStream(_file))
+                {
+                    _bout.writeTo(out);
+                }
+                _bout = null;
+            }
+            else
+            {
+                // The part content is already in a temporary file, so just rename it
+                File f = new File(_tmpDir, fileName);
+                if (_file.renameTo(f))
+                    _file = f;
+            }
+        }
+
+        @Override
+        public void delete() throws IOException
+        {
+            if (_file != null && _file.exists())
+                _file.delete();
+        }
+
+        /**
+         * Only remove temporary files.
+         * @throws IOException if unable to delete the file
+         */
+        public void cleanUp() throws IOException
+        {
+            close();
+            if (_temporary && _file != null && _file.exists())
+                _file.delete();
+        }
+
+        /**
+         * @return the file, if any, the data has been written to.
+         */
+        public File getFile()
+        {
+            return _file;
+        }
+
+        /**
+         * @return null or the filename from the content-disposition
+         */
+        public String getContentDispositionFilename()
+        {
+            return _filename;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("Part@%x{%s,%s,size=%d,file=%s}", hashCode(), _name, _filename, _size, _file);
+        }
+
+        /* ------------------------------------------------------------ */
+        /**
+         * Writes buffers to the file of the part, one write at a time.
+         */
+        private class FileWrite implements CompletionHandler<Integer, Void>
+        {
+            private final ByteBuffer[] _buffers;
+            private final boolean _last;
+            private int _index;
+
+            private FileWrite(ByteBuffer[] buffers, boolean last)
+            {
+                _buffers = buffers;
+                _last = last;
+            }
+
+            private void write()
+            {
+                while (_index < _buffers.length && !_buffers[_index].hasRemaining())
+                    _index++;
+
+                if (_index < _buffers.length)
+                {
+                    _channel.write(_buffers[_index], _position, null, this);
+                    return;
+                }
+
+                if (_last)
+                    close();
+                written();
+            }
+
+            @Override
+            public void completed(Integer result, Void attachment)
+            {
+                _position += result;
+                write();
+            }
+
+            @Override
+            public void failed(Throwable x, Void attachment)
+            {
+                fail(x);
+            }
+        }
+    }
+}
@@ -743,7 +743,7 @@ public class MultiPartInputStreamParser
 
 
     /* ------------------------------------------------------------ */
-    private String value(String nameEqualsValue)
+    static String value(String nameEqualsValue)
     {
         int idx = nameEqualsValue.indexOf('=');
         String value = nameEqualsValue.substring(idx+1).trim();
@@ -752,7 +752,7 @@ public class MultiPartInputStreamParser
     
     
     /* ------------------------------------------------------------ */
-    private String filenameValue(String nameEqualsValue)
+    static String filenameValue(String nameEqualsValue)
     {
         int idx = nameEqualsValue.indexOf('=');
         String value = nameEqualsValue.substring(idx+1).trim();
@@ -0,0 +1,447 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.util;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+
+
+/* ------------------------------------------------------------ */
+/** A non-blocking parser of multipart content as defined by RFC2046 and RFC7578.
+ * <p>
+ * Content is passed to the parser in buffers as it arrives with {@link #parse(ByteBuffer, boolean)}
+ * and the parsed elements are passed as event calls to the {@link Handler}.  The content of each
+ * part is passed as slices of the parsed buffer, so it is not copied by the parser.
+ * </p>
+ * <p>
+ * The delimiters between parts are found with a Boyer-Moore-Horspool search, so that most of the
+ * content of a part is skipped rather than examined byte by byte.  A delimiter that spans two
+ * buffers is detected by remembering how much of it matched at the end of the previous buffer.
+ * </p>
+ * <p>
+ * As for the HttpParser, if a {@link Handler} call returns true, then {@link #parse(ByteBuffer, boolean)}
+ * returns as soon as possible, leaving the unparsed content in the buffer.  This allows a handler to
+ * use a content slice asynchronously, as the buffer must not be reused until the slice is consumed.
+ * </p>
+ */
+public class MultiPartParser
+{
+    private static final Logger LOG = Log.getLogger(MultiPartParser.class);
+    private static final ByteBuffer EMPTY = BufferUtil.EMPTY_BUFFER;
+    public static final int DEFAULT_MAX_HEADER_SIZE = 8 * 1024;
+
+    public enum State
+    {
+        PREAMBLE,
+        DELIMITER,
+        DELIMITER_CLOSE,
+        HEADERS,
+        CONTENT,
+        EPILOGUE,
+        END
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * The events of a multipart message.  Methods that return a boolean may return true
+     * to make {@link MultiPartParser#parse(ByteBuffer, boolean)} return early.
+     */
+    public interface Handler
+    {
+        void startPart();
+
+        void parsedField(String name, String value);
+
+        boolean headerComplete();
+
+        /**
+         * @param item a slice of the parsed buffer, valid until the buffer is reused
+         * @param last true if this is the last content of the part
+         * @return true if the parser should return, for example because the item is being used asynchronously
+         */
+        boolean content(ByteBuffer item, boolean last);
+
+        boolean messageComplete();
+
+        void earlyEOF();
+
+        void badMessage(String reason);
+    }
+
+    private final Handler _handler;
+    private final byte[] _delimiter;
+    private final int[] _shift = new int[256];
+    private final int _maxHeaderSize;
+    private final ByteArrayOutputStream2 _line = new ByteArrayOutputStream2(256);
+    private State _state = State.PREAMBLE;
+    private int _partial;
+    private int _headerSize;
+    private String _fieldName;
+    private String _fieldValue;
+
+    /* ------------------------------------------------------------ */
+    public MultiPartParser(Handler handler, String boundary)
+    {
+        this(handler,boundary,DEFAULT_MAX_HEADER_SIZE);
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param handler the handler of parsed events
+     * @param boundary the boundary from the content type, without the leading "--"
+     * @param maxHeaderSize the maximum size of the headers of each part
+     */
+    public MultiPartParser(Handler handler, String boundary, int maxHeaderSize)
+    {
+        _handler = handler;
+        _maxHeaderSize = maxHeaderSize;
+        _delimiter = ("\r\n--" + boundary).getBytes(StandardCharsets.ISO_8859_1);
+
+        // Boyer-Moore-Horspool bad character shifts
+        int length = _delimiter.length;
+        for (int i = 0; i < _shift.length; i++)
+            _shift[i] = length;
+        for (int i = 0; i < length - 1; i++)
+            _shift[_delimiter[i] & 0xFF] = length - 1 - i;
+
+        // The first delimiter may be at the very start of the content, without a leading CRLF
+        _partial = 2;
+    }
+
+    /* ------------------------------------------------------------ */
+    public Handler getHandler()
+    {
+        return _handler;
+    }
+
+    /* ------------------------------------------------------------ */
+    public State getState()
+    {
+        return _state;
+    }
+
+    /* ------------------------------------------------------------ */
+    public boolean isState(State state)
+    {
+        return _state == state;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Parse content from the buffer.
+     * @param buffer the buffer to parse, whose position is advanced past the parsed content
+     * @param last true if no more content will follow
+     * @return true if a {@link Handler} call returned true and parsing should be resumed later
+     * with the remaining content of the buffer.
+     */
+    public boolean parse(ByteBuffer buffer, boolean last)
+    {
+        boolean handle = false;
+        while (!handle && buffer.hasRemaining())
+        {
+            switch (_state)
+            {
+                case PREAMBLE:
+                case CONTENT:
+                    handle = parseContent(buffer);
+                    break;
+
+                case DELIMITER:
+                    handle = parseDelimiter(buffer);
+                    break;
+
+                case DELIMITER_CLOSE:
+                    if (buffer.get() != '-')
+                    {
+                        badMessage("Bad close delimiter");
+                        return false;
+                    }
+                    setState(State.EPILOGUE);
+                    handle = _handler.messageComplete();
+                    break;
+
+                case HEADERS:
+                    handle = parseHeaders(buffer);
+                    break;
+
+                case EPILOGUE:
+                case END:
+                    BufferUtil.clear(buffer);
+                    break;
+
+                default:
+                    throw new IllegalStateException(_state.toString());
+            }
+        }
+
+        if (last && !handle && !buffer.hasRemaining())
+        {
+            switch (_state)
+            {
+                case EPILOGUE:
+                    setState(State.END);
+                    break;
+
+                case END:
+                    break;
+
+                default:
+                    setState(State.END);
+                    _handler.earlyEOF();
+            }
+        }
+        return handle;
+    }
+
+    /* ------------------------------------------------------------ */
+    private boolean parseContent(ByteBuffer buffer)
+    {
+        boolean preamble = _state == State.PREAMBLE;
+        int length = _delimiter.length;
+
+        // Complete any delimiter partially matched at the end of the previous buffer
+        if (_partial > 0)
+        {
+            int position = buffer.position();
+            int limit = buffer.limit();
+            int matched = _partial;
+            while (matched < length && position < limit && buffer.get(position) == _delimiter[matched])
+            {
+                matched++;
+                position++;
+            }
+
+            if (matched == length)
+            {
+                buffer.position(position);
+                _partial = 0;
+                return delimiterFound(EMPTY);
+            }
+
+            if (position == limit)
+            {
+                buffer.position(position);
+                _partial = matched;
+                return false;
+            }
+
+            // Not a delimiter, so the partially matched bytes were content.
+            int partial = _partial;
+            _partial = 0;
+            if (!preamble && _handler.content(ByteBuffer.wrap(_delimiter,0,partial),false))
+                return true;
+        }
+
+        int start = buffer.position();
+        int limit = buffer.limit();
+        int index = search(buffer, start, limit);
+        if (index >= 0)
+        {
+            buffer.position(index + length);
+            return delimiterFound(slice(buffer, start, index));
+        }
+
+        // Only a CR can start a delimiter, as boundary characters exclude CR and LF.
+        int tail = Math.max(start, limit - length + 1);
+        int end = limit;
+        for (int i = tail; i < limit; i++)
+        {
+            if (buffer.get(i) == '\r' && matchesPrefix(buffer, i, limit))
+            {
+                end = i;
+                _partial = limit - i;
+                break;
+            }
+        }
+
+        buffer.position(limit);
+        if (preamble || end == start)
+            return false;
+        return _handler.content(slice(buffer, start, end), false);
+    }
+
+    /* ------------------------------------------------------------ */
+    private boolean matchesPrefix(ByteBuffer buffer, int from, int limit)
+    {
+        for (int i = from; i < limit; i++)
+        {
+            if (buffer.get(i) != _delimiter[i - from])
+                return false;
+        }
+        return true;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Boyer-Moore-Horspool search for the delimiter.
+     * @return the index of the delimiter in the buffer or -1
+     */
+    private int search(ByteBuffer buffer, int start, int limit)
+    {
+        int length = _delimiter.length;
+        int last = length - 1;
+        int i = start;
+        while (i <= limit - length)
+        {
+            int j = last;
+            while (buffer.get(i + j) == _delimiter[j])
+            {
+                if (j == 0)
+                    return i;
+                j--;
+            }
+            i += _shift[buffer.get(i + last) & 0xFF];
+        }
+        return -1;
+    }
+
+    /* ------------------------------------------------------------ */
+    private ByteBuffer slice(ByteBuffer buffer, int start, int end)
+    {
+        ByteBuffer slice = buffer.duplicate();
+        slice.limit(end);
+        slice.position(start);
+        return slice;
+    }
+
+    /* ------------------------------------------------------------ */
+    private boolean delimiterFound(ByteBuffer content)
+    {
+        boolean preamble = _state == State.PREAMBLE;
+        setState(State.DELIMITER);
+        if (preamble)
+            return false;
+        return _handler.content(content, true);
+    }
+
+    /* ------------------------------------------------------------ */
+    private boolean parseDelimiter(ByteBuffer buffer)
+    {
+        while (buffer.hasRemaining())
+        {
+            byte b = buffer.get();
+            switch (b)
+            {
+                case '-':
+                    setState(State.DELIMITER_CLOSE);
+                    return false;
+
+                case ' ':
+                case '\t':
+                case '\r':
+                    // transport padding
+                    break;
+
+                case '\n':
+                    setState(State.HEADERS);
+                    _headerSize = 0;
+                    _handler.startPart();
+                    return false;
+
+                default:
+                    badMessage("Bad delimiter");
+                    return false;
+            }
+        }
+        return false;
+    }
+
+    /* ------------------------------------------------------------ */
+    private boolean parseHeaders(ByteBuffer buffer)
+    {
+        while (buffer.hasRemaining())
+        {
+            byte b = buffer.get();
+            if (++_headerSize > _maxHeaderSize)
+            {
+                badMessage("Part headers too large");
+                return false;
+            }
+
+            if (b != '\n')
+            {
+                if (b != '\r')
+                    _line.write(b);
+                continue;
+            }
+
+            if (_line.size() == 0)
+            {
+                // End of the headers
+                handleField();
+                setState(State.CONTENT);
+                return _handler.headerComplete();
+            }
+
+            String line = _line.toString(StandardCharsets.UTF_8);
+            _line.reset();
+
+            // A folded line continues the previous field
+            char first = line.charAt(0);
+            if ((first == ' ' || first == '\t') && _fieldName != null)
+            {
+                _fieldValue = _fieldValue + ' ' + line.trim();
+                continue;
+            }
+
+            handleField();
+            int colon = line.indexOf(':');
+            if (colon > 0)
+            {
+                _fieldName = line.substring(0, colon).trim();
+                _fieldValue = line.substring(colon + 1).trim();
+            }
+        }
+        return false;
+    }
+
+    /* ------------------------------------------------------------ */
+    private void handleField()
+    {
+        if (_fieldName != null)
+            _handler.parsedField(_fieldName, _fieldValue);
+        _fieldName = null;
+        _fieldValue = null;
+    }
+
+    /* ------------------------------------------------------------ */
+    private void badMessage(String reason)
+    {
+        setState(State.END);
+        _handler.badMessage(reason);
+    }
+
+    /* ------------------------------------------------------------ */
+    private void setState(State state)
+    {
+        if (LOG.isDebugEnabled())
+            LOG.debug("{} --> {}", _state, state);
+        _state = state;
+    }
+
+    /* ------------------------------------------------------------ */
+    @Override
+    public String toString()
+    {
+        return String.format("%s{s=%s}", getClass().getSimpleName(), _state);
+    }
+}
@@ -0,0 +1,344 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.util;
+
+import static org.eclipse.jetty.util.TypeUtil.convertHexDigit;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import org.eclipse.jetty.util.Utf8Appendable.NotUtf8Exception;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+
+/* ------------------------------------------------------------ */
+/**
+ * Incremental decoder of application/x-www-form-urlencoded content.
+ * <p>
+ * Unlike the {@link UrlEncoded#decodeTo(java.io.InputStream, MultiMap, Charset, int, int)} methods,
+ * which pull the content a byte at a time from a stream, this decoder is pushed the content
+ * as {@link ByteBuffer}s when they arrive, so that it can be used without blocking and without
+ * first aggregating the whole form.  The state of partially received keys, values and
+ * %-escapes is kept between calls to {@link #decode(ByteBuffer)}.
+ * </p>
+ * <p>
+ * The maximum form length and number of keys are enforced as the content is decoded,
+ * with an {@link IllegalStateException} thrown as soon as either is exceeded.
+ * </p>
+ * <p>
+ * This class is not thread safe.
+ * </p>
+ */
+public class UrlEncodedDecoder
+{
+    private static final Logger LOG = Log.getLogger(UrlEncodedDecoder.class);
+
+    private final MultiMap<String> _map;
+    private final Charset _charset;
+    private final int _maxLength;
+    private final int _maxKeys;
+    private final Utf8StringBuilder _utf8;
+    private final ByteArrayOutputStream2 _bytes;
+    private final boolean _raw;
+    private String _key;
+    private int _length;
+    private int _escape=-1;
+    private boolean _unicode;
+    private int _code;
+    private boolean _complete;
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param map the MultiMap to decode into
+     * @param charset the name of the charset of the content or null for the {@link UrlEncoded#ENCODING default}
+     * @param maxLength the maximum length of the form to decode or -1 for no limit
+     * @param maxKeys the maximum number of keys to decode or -1 for no limit
+     */
+    public UrlEncodedDecoder(MultiMap<String> map, String charset, int maxLength, int maxKeys)
+    {
+        this(map,charset==null?null:Charset.forName(charset),maxLength,maxKeys);
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param map the MultiMap to decode into
+     * @param charset the charset of the content or null for the {@link UrlEncoded#ENCODING default}
+     * @param maxLength the maximum length of the form to decode or -1 for no limit
+     * @param maxKeys the maximum number of keys to decode or -1 for no limit
+     */
+    public UrlEncodedDecoder(MultiMap<String> map, Charset charset, int maxLength, int maxKeys)
+    {
+        _map=map;
+        _charset=charset==null?UrlEncoded.ENCODING:charset;
+        _maxLength=maxLength;
+        _maxKeys=maxKeys;
+        _utf8=StandardCharsets.UTF_8.equals(_charset)?new Utf8StringBuilder():null;
+        _bytes=_utf8==null?new ByteArrayOutputStream2():null;
+        // In a 2 byte encoding the delimiters cannot be found byte by byte,
+        // so the content is aggregated and decoded when complete.
+        _raw=StandardCharsets.UTF_16.equals(_charset);
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return the MultiMap the form is decoded into
+     */
+    public MultiMap<String> getMap()
+    {
+        return _map;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return the number of bytes of content decoded so far
+     */
+    public int getLength()
+    {
+        return _length;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return true if {@link #complete()} has been called
+     */
+    public boolean isComplete()
+    {
+        return _complete;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Decodes all the remaining content of a buffer.
+     * @param buffer the content to decode, which is fully consumed
+     * @throws IllegalStateException if the form is too large or has too many keys
+     */
+    public void decode(ByteBuffer buffer)
+    {
+        int remaining=buffer.remaining();
+        if (remaining==0)
+            return;
+        if (buffer.hasArray())
+        {
+            decode(buffer.array(),buffer.arrayOffset()+buffer.position(),remaining);
+            buffer.position(buffer.limit());
+        }
+        else
+        {
+            // Copy the content so that it is decoded as from an array,
+            // aggregated when the charset is a 2 byte encoding.
+            byte[] bytes=new byte[remaining];
+            buffer.get(bytes);
+            decode(bytes,0,remaining);
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Decodes content from a byte array.
+     * @param b the content to decode
+     * @param offset the offset of the content within the array
+     * @param length the length of the content
+     * @throws IllegalStateException if the form is too large or has too many keys
+     */
+    public void decode(byte[] b, int offset, int length)
+    {
+        checkLength(length);
+        if (_raw)
+        {
+            _bytes.write(b,offset,length);
+            return;
+        }
+        int end=offset+length;
+        for (int i=offset;i<end;i++)
+            decode(b[i]);
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Completes the decoding once all the content has been decoded, adding
+     * the last parameter to the map.
+     * @throws IllegalStateException if the form has too many keys
+     */
+    public void complete()
+    {
+        if (_complete)
+            return;
+        _complete=true;
+
+        if (_raw)
+        {
+            String content=_bytes.size()==0?"":_bytes.toString(_charset);
+            _bytes.setCount(0);
+            UrlEncoded.decodeTo(content,_map,_charset);
+            checkKeys();
+            return;
+        }
+
+        if (_escape>=0)
+        {
+            // An incomplete %-escape
+            _escape=-1;
+            if (_utf8!=null)
+                _utf8.getStringBuilder().append(Utf8Appendable.REPLACEMENT);
+        }
+
+        String value=take();
+        if (_key!=null)
+            _map.add(_key,value);
+        else if (value.length()>0)
+            _map.add(value,"");
+        _key=null;
+        checkKeys();
+    }
+
+    /* ------------------------------------------------------------ */
+    private void checkLength(int length)
+    {
+        _length+=length;
+        if (_maxLength>=0 && _length>_maxLength)
+            throw new IllegalStateException("Form too large: "+_length+" > "+_maxLength);
+    }
+
+    /* ------------------------------------------------------------ */
+    private void checkKeys()
+    {
+        if (_maxKeys>0 && _map.size()>_maxKeys)
+            throw new IllegalStateException("Form too many keys");
+    }
+
+    /* ------------------------------------------------------------ */
+    private void decode(byte b)
+    {
+        try
+        {
+            if (_escape>=0)
+            {
+                escape(b);
+                return;
+            }
+
+            switch (b)
+            {
+                case '&':
+                    String value=take();
+                    if (_key!=null)
+                        _map.add(_key,value);
+                    else if (value.length()>0)
+                        _map.add(value,"");
+                    _key=null;
+                    checkKeys();
+                    break;
+
+                case '=':
+                    if (_key!=null)
+                        append(b);
+                    else
+                        _key=take();
+                    break;
+
+                case '+':
+                    append((byte)' ');
+                    break;
+
+                case '%':
+                    _escape=0;
+                    _unicode=false;
+                    _code=0;
+                    break;
+
+                default:
+                    append(b);
+                    break;
+            }
+        }
+        catch(NotUtf8Exception e)
+        {
+            LOG.warn(e.toString());
+            LOG.debug(e);
+        }
+        catch(NumberFormatException e)
+        {
+            _escape=-1;
+            if (_utf8==null)
+                throw e;
+            _utf8.append(Utf8Appendable.REPLACEMENT_UTF8,0,3);
+            LOG.warn(e.toString());
+            LOG.debug(e);
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    private void escape(byte b)
+    {
+        if (_escape==0 && !_unicode && b=='u')
+        {
+            _unicode=true;
+            return;
+        }
+
+        _code=(_code<<4)+convertHexDigit(b);
+        if (++_escape<(_unicode?4:2))
+            return;
+
+        _escape=-1;
+        if (!_unicode)
+            append((byte)_code);
+        else if (_utf8!=null)
+            _utf8.getStringBuilder().append(Character.toChars(_code));
+        else
+        {
+            byte[] bytes=new String(Character.toChars(_code)).getBytes(_charset);
+            _bytes.write(bytes,0,bytes.length);
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    private void append(byte b)
+    {
+        if (_utf8!=null)
+            _utf8.append(b);
+        else
+            _bytes.write(b);
+    }
+
+    /* ------------------------------------------------------------ */
+    private String take()
+    {
+        String s;
+        if (_utf8!=null)
+        {
+            s=_utf8.toReplacedString();
+            _utf8.reset();
+        }
+        else
+        {
+            s=_bytes.size()==0?"":_bytes.toString(_charset);
+            _bytes.setCount(0);
+        }
+        return s;
+    }
+
+    /* ------------------------------------------------------------ */
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{%s,l=%d,k=%d}",getClass().getSimpleName(),hashCode(),_charset,_length,_map.size());
+    }
+}
@@ -0,0 +1,203 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.util.compression;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.component.ContainerLifeCycle;
+import org.eclipse.jetty.util.component.Dumpable;
+
+/**
+ * <p>A bounded pool of zlib compression objects.</p>
+ * <p>{@link java.util.zip.Deflater}s and {@link java.util.zip.Inflater}s hold native
+ * zlib memory until they are ended, so rather than creating one per use (or
+ * holding one per idle connection), users {@link #acquire()} an object from the
+ * pool and {@link #release(Object)} it as soon as its state is no longer needed.
+ * At most {@link #getMaxIdle()} released objects are kept for reuse, others are ended.</p>
+ *
+ * @param <T> the type of the pooled object
+ */
+@ManagedObject("Pool of zlib compression objects")
+public abstract class CompressionPool<T> implements Dumpable
+{
+    private final ConcurrentLinkedQueue<T> _idle = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger _idleCount = new AtomicInteger();
+    private final AtomicInteger _inUseCount = new AtomicInteger();
+    private final AtomicLong _created = new AtomicLong();
+    private final AtomicLong _ended = new AtomicLong();
+    private volatile int _maxIdle;
+
+    /**
+     * @param maxIdle the maximum number of released objects kept for reuse
+     */
+    protected CompressionPool(int maxIdle)
+    {
+        _maxIdle = maxIdle;
+    }
+
+    /**
+     * @return an idle object from the pool, or a new object if none is idle
+     */
+    public T acquire()
+    {
+        T object = _idle.poll();
+        if (object == null)
+        {
+            object = newObject();
+            _created.incrementAndGet();
+        }
+        else
+        {
+            _idleCount.decrementAndGet();
+        }
+        _inUseCount.incrementAndGet();
+        return object;
+    }
+
+    /**
+     * Returns an object to the pool. The object is reset if it is kept
+     * for reuse or ended if the pool already holds {@link #getMaxIdle()} objects.
+     * @param object the object acquired from this pool, or null
+     */
+    public void release(T object)
+    {
+        if (object == null)
+            return;
+        _inUseCount.decrementAndGet();
+
+        if (_idleCount.incrementAndGet() > _maxIdle)
+        {
+            _idleCount.decrementAndGet();
+            end(object);
+            _ended.incrementAndGet();
+        }
+        else
+        {
+            reset(object);
+            _idle.offer(object);
+        }
+    }
+
+    /**
+     * Ends all idle objects.
+     */
+    @ManagedOperation(value = "Ends all idle objects", impact = "ACTION")
+    public void clear()
+    {
+        T object;
+        while ((object = _idle.poll()) != null)
+        {
+            _idleCount.decrementAndGet();
+            end(object);
+            _ended.incrementAndGet();
+        }
+    }
+
+    protected abstract T newObject();
+
+    protected abstract void reset(T object);
+
+    protected abstract void end(T object);
+
+    /**
+     * @return the estimated number of bytes of native memory held by each object
+     */
+    @ManagedAttribute("The estimated native memory in bytes held by each object")
+    public abstract int getNativeMemoryPerObject();
+
+    @ManagedAttribute("The maximum number of idle objects")
+    public int getMaxIdle()
+    {
+        return _maxIdle;
+    }
+
+    public void setMaxIdle(int maxIdle)
+    {
+        _maxIdle = maxIdle;
+        while (_idleCount.get() > maxIdle)
+        {
+            T object = _idle.poll();
+            if (object == null)
+                break;
+            _idleCount.decrementAndGet();
+            end(object);
+            _ended.incrementAndGet();
+        }
+    }
+
+    @ManagedAttribute("The number of idle objects")
+    public int getIdleCount()
+    {
+        return _idleCount.get();
+    }
+
+    @ManagedAttribute("The number of acquired objects not yet released")
+    public int getInUseCount()
+    {
+        return _inUseCount.get();
+    }
+
+    @ManagedAttribute("The number of objects created")
+    public long getCreatedCount()
+    {
+        return _created.get();
+    }
+
+    @ManagedAttribute("The number of objects ended")
+    public long getEndedCount()
+    {
+        return _ended.get();
+    }
+
+    @ManagedAttribute("The estimated native memory in bytes held by idle objects")
+    public long getIdleNativeMemory()
+    {
+        return (long)getIdleCount() * getNativeMemoryPerObject();
+    }
+
+    @ManagedAttribute("The estimated native memory in bytes held by idle and acquired objects")
+    public long getNativeMemory()
+    {
+        return (long)(getIdleCount() + getInUseCount()) * getNativeMemoryPerObject();
+    }
+
+    @Override
+    public String dump()
+    {
+        return ContainerLifeCycle.dump(this);
+    }
+
+    @Override
+    public void dump(Appendable out, String indent) throws IOException
+    {
+        ContainerLifeCycle.dumpObject(out, this);
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{idle=%d/%d,inUse=%d}", getClass().getSimpleName(), hashCode(), getIdleCount(), getMaxIdle(), getInUseCount());
+    }
+}
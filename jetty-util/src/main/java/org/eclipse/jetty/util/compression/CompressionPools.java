@@ -0,0 +1,194 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.util.compression;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.component.ContainerLifeCycle;
+import org.eclipse.jetty.util.component.Dumpable;
+
+/**
+ * <p>A set of {@link DeflaterPool}s, one per compression level and wrapping,
+ * and {@link InflaterPool}s, one per wrapping.</p>
+ * <p>The {@link #getDefault() default} instance is shared by the components that
+ * compress or decompress content (eg GzipHandler, the HttpClient gzip decoder and
+ * the WebSocket compression extensions), so that their zlib native memory is
+ * bounded and accounted in one place.</p>
+ * <p>Each idle {@link java.util.zip.Deflater} holds about 256KiB of native memory, so by default
+ * a pool only keeps as many idle objects as there are processors, which is about the number of
+ * objects in concurrent use by CPU bound compression. The default can be changed with the
+ * {@code org.eclipse.jetty.util.compression.CompressionPools.maxIdle} system property.</p>
+ */
+@ManagedObject("Pools of Deflaters and Inflaters")
+public class CompressionPools implements Dumpable
+{
+    public static final int DEFAULT_MAX_IDLE = Integer.getInteger("org.eclipse.jetty.util.compression.CompressionPools.maxIdle", Runtime.getRuntime().availableProcessors());
+    private static final CompressionPools DEFAULT = new CompressionPools();
+
+    private final ConcurrentMap<Integer, DeflaterPool> _deflaterPools = new ConcurrentHashMap<>();
+    private final InflaterPool _inflaterPool;
+    private final InflaterPool _nowrapInflaterPool;
+    private volatile int _maxIdle;
+
+    /**
+     * @return the shared instance
+     */
+    public static CompressionPools getDefault()
+    {
+        return DEFAULT;
+    }
+
+    public CompressionPools()
+    {
+        this(DEFAULT_MAX_IDLE);
+    }
+
+    /**
+     * @param maxIdle the maximum number of idle objects in each pool
+     */
+    public CompressionPools(int maxIdle)
+    {
+        _maxIdle = maxIdle;
+        _inflaterPool = new InflaterPool(false, maxIdle);
+        _nowrapInflaterPool = new InflaterPool(true, maxIdle);
+    }
+
+    /**
+     * @param level the compression level
+     * @param nowrap true for GZIP compatible compression without a zlib header
+     * @return the pool of {@link java.util.zip.Deflater}s for the level and wrapping
+     */
+    public DeflaterPool getDeflaterPool(int level, boolean nowrap)
+    {
+        Integer key = (level + 1) * 2 + (nowrap ? 1 : 0);
+        DeflaterPool pool = _deflaterPools.get(key);
+        if (pool == null)
+        {
+            pool = new DeflaterPool(level, nowrap, _maxIdle);
+            DeflaterPool existing = _deflaterPools.putIfAbsent(key, pool);
+            if (existing != null)
+                pool = existing;
+        }
+        return pool;
+    }
+
+    /**
+     * @param nowrap true for GZIP compatible compression without a zlib header
+     * @return the pool of {@link java.util.zip.Inflater}s for the wrapping
+     */
+    public InflaterPool getInflaterPool(boolean nowrap)
+    {
+        return nowrap ? _nowrapInflaterPool : _inflaterPool;
+    }
+
+    @ManagedAttribute("The maximum number of idle objects in each pool")
+    public int getMaxIdle()
+    {
+        return _maxIdle;
+    }
+
+    /**
+     * @param maxIdle the maximum number of idle objects in each pool, applied to existing pools
+     */
+    public void setMaxIdle(int maxIdle)
+    {
+        _maxIdle = maxIdle;
+        for (CompressionPool<?> pool : getPools())
+            pool.setMaxIdle(maxIdle);
+    }
+
+    @ManagedAttribute("The pools")
+    public List<CompressionPool<?>> getPools()
+    {
+        List<CompressionPool<?>> pools = new ArrayList<>();
+        pools.add(_inflaterPool);
+        pools.add(_nowrapInflaterPool);
+        pools.addAll(_deflaterPools.values());
+        return pools;
+    }
+
+    @ManagedAttribute("The number of idle objects in all pools")
+    public int getIdleCount()
+    {
+        int idle = 0;
+        for (CompressionPool<?> pool : getPools())
+            idle += pool.getIdleCount();
+        return idle;
+    }
+
+    @ManagedAttribute("The number of acquired objects not yet released in all pools")
+    public int getInUseCount()
+    {
+        int inUse = 0;
+        for (CompressionPool<?> pool : getPools())
+            inUse += pool.getInUseCount();
+        return inUse;
+    }
+
+    @ManagedAttribute("The estimated native memory in bytes held by idle objects in all pools")
+    public long getIdleNativeMemory()
+    {
+        long memory = 0;
+        for (CompressionPool<?> pool : getPools())
+            memory += pool.getIdleNativeMemory();
+        return memory;
+    }
+
+    @ManagedAttribute("The estimated native memory in bytes held by idle and acquired objects in all pools")
+    public long getNativeMemory()
+    {
+        long memory = 0;
+        for (CompressionPool<?> pool : getPools())
+            memory += pool.getNativeMemory();
+        return memory;
+    }
+
+    @ManagedOperation(value = "Ends all idle objects in all pools", impact = "ACTION")
+    public void clear()
+    {
+        for (CompressionPool<?> pool : getPools())
+            pool.clear();
+    }
+
+    @Override
+    public String dump()
+    {
+        return ContainerLifeCycle.dump(this);
+    }
+
+    @Override
+    public void dump(Appendable out, String indent) throws IOException
+    {
+        ContainerLifeCycle.dumpObject(out, this);
+        ContainerLifeCycle.dump(out, indent, getPools());
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{idle=%d,inUse=%d,memory=%d}", getClass().getSimpleName(), hashCode(), getIdleCount(), getInUseCount(), getNativeMemory());
+    }
+}
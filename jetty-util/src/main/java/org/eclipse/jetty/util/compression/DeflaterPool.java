@@ -0,0 +1,97 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.util.compression;
+
+import java.util.zip.Deflater;
+
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+
+/**
+ * A {@link CompressionPool} of {@link Deflater}s with the same compression level and wrapping.
+ */
+@ManagedObject("Pool of Deflaters")
+public class DeflaterPool extends CompressionPool<Deflater>
+{
+    /**
+     * The zlib deflate state needs (1 &lt;&lt; (windowBits + 2)) + (1 &lt;&lt; (memLevel + 9))
+     * bytes plus about 6KB, for the default window of 15 bits and memory level of 8.
+     */
+    private static final int NATIVE_MEMORY = (1 << 17) + (1 << 17) + 6 * 1024;
+
+    private final int _level;
+    private final boolean _nowrap;
+
+    /**
+     * @param level the compression level of the {@link Deflater}s
+     * @param nowrap true to use GZIP compatible compression without a zlib header
+     * @param maxIdle the maximum number of released {@link Deflater}s kept for reuse
+     */
+    public DeflaterPool(int level, boolean nowrap, int maxIdle)
+    {
+        super(maxIdle);
+        if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION)
+            throw new IllegalArgumentException("Invalid compression level " + level);
+        _level = level;
+        _nowrap = nowrap;
+    }
+
+    @ManagedAttribute("The compression level")
+    public int getLevel()
+    {
+        return _level;
+    }
+
+    @ManagedAttribute("True if the Deflaters do not use a zlib header")
+    public boolean isNowrap()
+    {
+        return _nowrap;
+    }
+
+    @Override
+    protected Deflater newObject()
+    {
+        return new Deflater(_level, _nowrap);
+    }
+
+    @Override
+    protected void reset(Deflater deflater)
+    {
+        deflater.reset();
+        deflater.setLevel(_level);
+    }
+
+    @Override
+    protected void end(Deflater deflater)
+    {
+        deflater.end();
+    }
+
+    @Override
+    public int getNativeMemoryPerObject()
+    {
+        return NATIVE_MEMORY;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{level=%d,nowrap=%b,idle=%d/%d,inUse=%d}", getClass().getSimpleName(), hashCode(), _level, _nowrap, getIdleCount(), getMaxIdle(), getInUseCount());
+    }
+}
@@ -0,0 +1,85 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.util.compression;
+
+import java.util.zip.Inflater;
+
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+
+/**
+ * A {@link CompressionPool} of {@link Inflater}s with the same wrapping.
+ */
+@ManagedObject("Pool of Inflaters")
+public class InflaterPool extends CompressionPool<Inflater>
+{
+    /**
+     * The zlib inflate state needs (1 &lt;&lt; windowBits) bytes plus about 7KB,
+     * for the default window of 15 bits.
+     */
+    private static final int NATIVE_MEMORY = (1 << 15) + 7 * 1024;
+
+    private final boolean _nowrap;
+
+    /**
+     * @param nowrap true to support GZIP compatible compression without a zlib header
+     * @param maxIdle the maximum number of released {@link Inflater}s kept for reuse
+     */
+    public InflaterPool(boolean nowrap, int maxIdle)
+    {
+        super(maxIdle);
+        _nowrap = nowrap;
+    }
+
+    @ManagedAttribute("True if the Inflaters do not expect a zlib header")
+    public boolean isNowrap()
+    {
+        return _nowrap;
+    }
+
+    @Override
+    protected Inflater newObject()
+    {
+        return new Inflater(_nowrap);
+    }
+
+    @Override
+    protected void reset(Inflater inflater)
+    {
+        inflater.reset();
+    }
+
+    @Override
+    protected void end(Inflater inflater)
+    {
+        inflater.end();
+    }
+
+    @Override
+    public int getNativeMemoryPerObject()
+    {
+        return NATIVE_MEMORY;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{nowrap=%b,idle=%d/%d,inUse=%d}", getClass().getSimpleName(), hashCode(), _nowrap, getIdleCount(), getMaxIdle(), getInUseCount());
+    }
+}
@@ -25,6 +25,7 @@ import org.eclipse.jetty.util.Loader;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
 import org.eclipse.jetty.util.thread.strategy.ExecuteProduceRun;
+import org.eclipse.jetty.util.thread.strategy.ProduceExecuteRun;
 
 /**
  * <p>An {@link ExecutionStrategy} executes {@link Runnable} tasks produced by a {@link Producer}.
@@ -94,6 +95,10 @@ public interface ExecutionStrategy
                 }
             }
             
+            // Tasks run in virtual threads, so the producer keeps its platform thread
+            if (executor instanceof VirtualThreadPool && ((VirtualThreadPool)executor).isVirtualThreadsSupported())
+                return new ProduceExecuteRun(producer,executor);
+
             return new ExecuteProduceRun(producer,executor);
         }
     }
@@ -0,0 +1,355 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+
+package org.eclipse.jetty.util.thread;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.Name;
+import org.eclipse.jetty.util.component.ContainerLifeCycle;
+import org.eclipse.jetty.util.component.Dumpable;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+import org.eclipse.jetty.util.thread.ThreadPool.SizedThreadPool;
+
+/**
+ * <p>A {@link ThreadPool} that runs jobs in virtual threads, when the JVM supports them.</p>
+ * <p>Jobs that implement {@link PlatformJob}, such as selector and acceptor loops, are run
+ * by a small {@link QueuedThreadPool} of platform threads. All other jobs, such as the
+ * handling of requests, are run each in a new virtual thread, so that blocking application
+ * code does not need a platform thread and its stack.</p>
+ * <p>The max threads is the number of concurrently running virtual threads above which
+ * the pool reports to be {@link #isLowOnThreads() low on threads}, so that the
+ * {@code LowResourceMonitor} keeps working. Virtual threads are never idle, so the idle
+ * threads are those of the platform pool.</p>
+ * <p>If the JVM does not support virtual threads, all jobs are run by the platform pool,
+ * which is then sized with the max threads, and this pool behaves as a {@link QueuedThreadPool}.</p>
+ */
+@ManagedObject("A thread pool running jobs in virtual threads")
+public class VirtualThreadPool extends ContainerLifeCycle implements SizedThreadPool, Dumpable
+{
+    private static final Logger LOG = Log.getLogger(VirtualThreadPool.class);
+
+    /**
+     * <p>A marker interface for jobs that must be run by a platform thread,
+     * typically because they run for the whole lifetime of a component.</p>
+     */
+    public interface PlatformJob extends Runnable
+    {
+    }
+
+    private final AtomicInteger _virtualThreadsBusy = new AtomicInteger();
+    private final Set<Thread> _virtualThreads = Collections.newSetFromMap(new ConcurrentHashMap<Thread, Boolean>());
+    private final QueuedThreadPool _platform;
+    private final ThreadFactory _virtualThreadFactory;
+    private int _maxThreads;
+
+    public VirtualThreadPool()
+    {
+        this(200);
+    }
+
+    public VirtualThreadPool(@Name("maxThreads") int maxThreads)
+    {
+        this(maxThreads, 16);
+    }
+
+    /**
+     * @param maxThreads the number of busy virtual threads above which the pool is low on threads
+     * @param platformThreads the maximum number of platform threads, used only if virtual threads are supported
+     */
+    public VirtualThreadPool(@Name("maxThreads") int maxThreads, @Name("platformThreads") int platformThreads)
+    {
+        _virtualThreadFactory = newVirtualThreadFactory("vtp" + hashCode() + "-virtual-");
+        _maxThreads = maxThreads;
+        int platformMaxThreads = _virtualThreadFactory == null ? maxThreads : platformThreads;
+        _platform = new QueuedThreadPool(platformMaxThreads, Math.min(8, platformMaxThreads));
+        _platform.setName("vtp" + hashCode());
+        addBean(_platform);
+        setStopTimeout(5000);
+        if (_virtualThreadFactory == null)
+            LOG.info("Virtual threads not supported, using platform threads for {}", this);
+    }
+
+    /**
+     * @param prefix the prefix of the virtual thread names
+     * @return a factory of virtual threads, or null if the JVM does not support them
+     */
+    protected ThreadFactory newVirtualThreadFactory(String prefix)
+    {
+        try
+        {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, prefix, 0L);
+            Method factory = builderClass.getMethod("factory");
+            return (ThreadFactory)factory.invoke(builder);
+        }
+        catch (Throwable x)
+        {
+            LOG.ignore(x);
+            return null;
+        }
+    }
+
+    @Override
+    protected void doStop() throws Exception
+    {
+        super.doStop();
+
+        // Wait for the virtual threads for half the stop timeout, then interrupt them
+        long timeout = getStopTimeout();
+        long stopby = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout) / 2;
+        for (Thread thread : _virtualThreads)
+        {
+            long canwait = TimeUnit.NANOSECONDS.toMillis(stopby - System.nanoTime());
+            if (canwait > 0)
+                thread.join(canwait);
+        }
+
+        for (Thread thread : _virtualThreads)
+            thread.interrupt();
+
+        stopby = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout) / 2;
+        for (Thread thread : _virtualThreads)
+        {
+            long canwait = TimeUnit.NANOSECONDS.toMillis(stopby - System.nanoTime());
+            if (canwait > 0)
+                thread.join(canwait);
+        }
+
+        for (Thread thread : _virtualThreads)
+            LOG.warn("{} Couldn't stop {}", this, thread);
+    }
+
+    /**
+     * @return whether jobs are run in virtual threads
+     */
+    @ManagedAttribute("whether jobs are run in virtual threads")
+    public boolean isVirtualThreadsSupported()
+    {
+        return _virtualThreadFactory != null;
+    }
+
+    /**
+     * @return the pool of platform threads
+     */
+    public QueuedThreadPool getPlatformThreadPool()
+    {
+        return _platform;
+    }
+
+    /**
+     * @param name Name of this thread pool to use when naming platform threads.
+     */
+    public void setName(String name)
+    {
+        _platform.setName(name);
+    }
+
+    @ManagedAttribute("name of the thread pool")
+    public String getName()
+    {
+        return _platform.getName();
+    }
+
+    @Override
+    @ManagedAttribute("maximum number of busy virtual threads before the pool is low on threads")
+    public int getMaxThreads()
+    {
+        return isVirtualThreadsSupported() ? _maxThreads : _platform.getMaxThreads();
+    }
+
+    @Override
+    public void setMaxThreads(int threads)
+    {
+        if (isVirtualThreadsSupported())
+            _maxThreads = threads;
+        else
+            _platform.setMaxThreads(threads);
+    }
+
+    @Override
+    @ManagedAttribute("minimum number of platform threads in the pool")
+    public int getMinThreads()
+    {
+        return _platform.getMinThreads();
+    }
+
+    @Override
+    public void setMinThreads(int threads)
+    {
+        _platform.setMinThreads(threads);
+    }
+
+    @Override
+    public void execute(Runnable job)
+    {
+        if (!isRunning())
+        {
+            LOG.warn("{} rejected {}", this, job);
+            throw new RejectedExecutionException(job.toString());
+        }
+
+        if (_virtualThreadFactory == null || job instanceof PlatformJob)
+        {
+            _platform.execute(job);
+        }
+        else
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("virtual {}", job);
+            _virtualThreadsBusy.incrementAndGet();
+            boolean started = false;
+            try
+            {
+                _virtualThreadFactory.newThread(new VirtualJob(job)).start();
+                started = true;
+            }
+            finally
+            {
+                if (!started)
+                    _virtualThreadsBusy.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Blocks until the thread pool is {@link org.eclipse.jetty.util.component.LifeCycle#stop stopped}.
+     */
+    @Override
+    public void join() throws InterruptedException
+    {
+        _platform.join();
+    }
+
+    /**
+     * @return the number of platform threads plus the number of busy virtual threads
+     */
+    @Override
+    @ManagedAttribute("total number of threads currently in the pool")
+    public int getThreads()
+    {
+        return _platform.getThreads() + _virtualThreadsBusy.get();
+    }
+
+    /**
+     * @return the number of idle platform threads
+     */
+    @Override
+    @ManagedAttribute("total number of idle threads in the pool")
+    public int getIdleThreads()
+    {
+        return _platform.getIdleThreads();
+    }
+
+    @ManagedAttribute("total number of busy threads in the pool")
+    public int getBusyThreads()
+    {
+        return getThreads() - getIdleThreads();
+    }
+
+    @ManagedAttribute("number of busy virtual threads")
+    public int getVirtualThreads()
+    {
+        return _virtualThreadsBusy.get();
+    }
+
+    /**
+     * @return True if the number of busy virtual threads has reached max threads,
+     * or if virtual threads are not supported and the platform pool is low on threads
+     */
+    @Override
+    @ManagedAttribute("True if the number of busy virtual threads has reached max threads")
+    public boolean isLowOnThreads()
+    {
+        if (isVirtualThreadsSupported())
+            return _virtualThreadsBusy.get() >= _maxThreads;
+        return _platform.isLowOnThreads();
+    }
+
+    @Override
+    public void dump(Appendable out, String indent) throws IOException
+    {
+        List<String> threads = new ArrayList<>();
+        for (Thread thread : _virtualThreads)
+        {
+            StackTraceElement[] trace = thread.getStackTrace();
+            threads.add(thread.getName() + " " + thread.getState() + " @ " + (trace.length > 0 ? trace[0] : "???"));
+        }
+        dumpBeans(out, indent, threads);
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{%s,virtual=%b,%d<=%d,v=%d}", getClass().getSimpleName(), hashCode(), getState(),
+                isVirtualThreadsSupported(), _platform.getThreads(), getMaxThreads(), _virtualThreadsBusy.get());
+    }
+
+    private class VirtualJob implements Runnable
+    {
+        private final Runnable _job;
+
+        private VirtualJob(Runnable job)
+        {
+            _job = job;
+        }
+
+        @Override
+        public void run()
+        {
+            Thread thread = Thread.currentThread();
+            _virtualThreads.add(thread);
+            try
+            {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("run {}", _job);
+                _job.run();
+            }
+            catch (Throwable x)
+            {
+                LOG.warn(x);
+            }
+            finally
+            {
+                _virtualThreadsBusy.decrementAndGet();
+                _virtualThreads.remove(thread);
+            }
+        }
+
+        @Override
+        public String toString()
+        {
+            return _job.toString();
+        }
+    }
+}
@@ -0,0 +1,709 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+
+package org.eclipse.jetty.util.thread;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.annotation.Name;
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.eclipse.jetty.util.component.ContainerLifeCycle;
+import org.eclipse.jetty.util.component.Dumpable;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+import org.eclipse.jetty.util.thread.ThreadPool.SizedThreadPool;
+
+/**
+ * <p>A {@link SizedThreadPool} where every worker thread has its own job queue.</p>
+ * <p>Jobs executed by a worker thread are queued in the local queue of that worker, while
+ * jobs executed by other threads, or that do not fit in the local queue, are queued in a
+ * shared overflow queue. A worker takes jobs from its local queue first, then from the
+ * overflow queue, and finally steals jobs from the tail of the local queues of the other
+ * workers. All the queues are lock free, so that unlike {@link QueuedThreadPool} there is
+ * no single lock contended by all the threads that execute or take jobs.</p>
+ * <p>Idle workers park until they are woken by a new job or until the idle timeout expires,
+ * in which case they exit if there are more than the minimum number of threads.</p>
+ */
+@ManagedObject("A work stealing thread pool")
+public class WorkStealingThreadPool extends AbstractLifeCycle implements SizedThreadPool, Dumpable
+{
+    private static final Logger LOG = Log.getLogger(WorkStealingThreadPool.class);
+
+    private final AtomicInteger _threadsStarted = new AtomicInteger();
+    private final AtomicInteger _threadsIdle = new AtomicInteger();
+    private final AtomicInteger _overflowSize = new AtomicInteger();
+    private final AtomicLong _retiredSteals = new AtomicLong();
+    private final Queue<Runnable> _overflow = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedDeque<Worker> _idleWorkers = new ConcurrentLinkedDeque<>();
+    private final List<Worker> _workers = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<Worker> _worker = new ThreadLocal<>();
+    private final Object _joinLock = new Object();
+    private final int _localCapacity;
+    private String _name = "wstp" + hashCode();
+    private int _idleTimeout;
+    private int _maxThreads;
+    private int _minThreads;
+    private int _priority = Thread.NORM_PRIORITY;
+    private boolean _daemon = false;
+
+    public WorkStealingThreadPool()
+    {
+        this(200);
+    }
+
+    public WorkStealingThreadPool(@Name("maxThreads") int maxThreads)
+    {
+        this(maxThreads, 8);
+    }
+
+    public WorkStealingThreadPool(@Name("maxThreads") int maxThreads, @Name("minThreads") int minThreads)
+    {
+        this(maxThreads, minThreads, 60000);
+    }
+
+    public WorkStealingThreadPool(@Name("maxThreads") int maxThreads, @Name("minThreads") int minThreads, @Name("idleTimeout") int idleTimeout)
+    {
+        this(maxThreads, minThreads, idleTimeout, 256);
+    }
+
+    /**
+     * @param maxThreads the maximum number of threads
+     * @param minThreads the minimum number of threads
+     * @param idleTimeout the time in ms a thread may be idle before it exits
+     * @param localCapacity the maximum number of jobs in the local queue of a worker
+     */
+    public WorkStealingThreadPool(@Name("maxThreads") int maxThreads, @Name("minThreads") int minThreads, @Name("idleTimeout") int idleTimeout, @Name("localCapacity") int localCapacity)
+    {
+        setMinThreads(minThreads);
+        setMaxThreads(maxThreads);
+        setIdleTimeout(idleTimeout);
+        setStopTimeout(5000);
+        _localCapacity = localCapacity;
+    }
+
+    @Override
+    protected void doStart() throws Exception
+    {
+        super.doStart();
+        _threadsStarted.set(0);
+
+        startThreads(_minThreads);
+    }
+
+    @Override
+    protected void doStop() throws Exception
+    {
+        super.doStop();
+
+        long timeout = getStopTimeout();
+
+        // If no stop timeout, clear the job queues
+        if (timeout <= 0)
+        {
+            _overflow.clear();
+            _overflowSize.set(0);
+            for (Worker worker : _workers)
+                worker.clear();
+        }
+
+        // Wake up the idle workers so that they notice the stop
+        for (Worker worker : _workers)
+            LockSupport.unpark(worker._thread);
+
+        // try to let jobs complete naturally for half our stop time
+        long stopby = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout) / 2;
+        for (Worker worker : _workers)
+        {
+            long canwait = TimeUnit.NANOSECONDS.toMillis(stopby - System.nanoTime());
+            if (canwait > 0)
+                worker._thread.join(canwait);
+        }
+
+        // interrupt remaining threads
+        if (_threadsStarted.get() > 0)
+            for (Worker worker : _workers)
+                worker._thread.interrupt();
+
+        // wait again for the other half of our stop time
+        stopby = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout) / 2;
+        for (Worker worker : _workers)
+        {
+            long canwait = TimeUnit.NANOSECONDS.toMillis(stopby - System.nanoTime());
+            if (canwait > 0)
+                worker._thread.join(canwait);
+        }
+
+        for (Worker worker : _workers)
+            LOG.warn("{} Couldn't stop {}", this, worker._thread);
+
+        synchronized (_joinLock)
+        {
+            _joinLock.notifyAll();
+        }
+    }
+
+    /**
+     * @param daemon true if the pool threads are daemon threads
+     * @see Thread#setDaemon(boolean)
+     */
+    public void setDaemon(boolean daemon)
+    {
+        _daemon = daemon;
+    }
+
+    /**
+     * @param idleTimeout the time in ms a thread may be idle before it exits
+     * @see #getIdleTimeout
+     */
+    public void setIdleTimeout(int idleTimeout)
+    {
+        _idleTimeout = idleTimeout;
+    }
+
+    @Override
+    public void setMaxThreads(int maxThreads)
+    {
+        _maxThreads = maxThreads;
+        if (_minThreads > _maxThreads)
+            _minThreads = _maxThreads;
+    }
+
+    @Override
+    public void setMinThreads(int minThreads)
+    {
+        _minThreads = minThreads;
+
+        if (_minThreads > _maxThreads)
+            _maxThreads = _minThreads;
+
+        int threads = _threadsStarted.get();
+        if (isStarted() && threads < _minThreads)
+            startThreads(_minThreads - threads);
+    }
+
+    /**
+     * @param name Name of this thread pool to use when naming threads.
+     */
+    public void setName(String name)
+    {
+        if (isRunning())
+            throw new IllegalStateException("started");
+        _name = name;
+    }
+
+    /**
+     * @param priority the priority of the pool threads
+     */
+    public void setThreadsPriority(int priority)
+    {
+        _priority = priority;
+    }
+
+    @ManagedAttribute("maximum time a thread may be idle in ms")
+    public int getIdleTimeout()
+    {
+        return _idleTimeout;
+    }
+
+    @Override
+    @ManagedAttribute("maximum number of threads in the pool")
+    public int getMaxThreads()
+    {
+        return _maxThreads;
+    }
+
+    @Override
+    @ManagedAttribute("minimum number of threads in the pool")
+    public int getMinThreads()
+    {
+        return _minThreads;
+    }
+
+    @ManagedAttribute("name of the thread pool")
+    public String getName()
+    {
+        return _name;
+    }
+
+    @ManagedAttribute("priority of threads in the pool")
+    public int getThreadsPriority()
+    {
+        return _priority;
+    }
+
+    @ManagedAttribute("thread pool using a daemon thread")
+    public boolean isDaemon()
+    {
+        return _daemon;
+    }
+
+    @ManagedAttribute("maximum number of jobs in the local queue of a worker")
+    public int getLocalCapacity()
+    {
+        return _localCapacity;
+    }
+
+    /**
+     * @return the number of jobs queued in the overflow queue and in the local queues of the workers
+     */
+    @ManagedAttribute("Size of the job queues")
+    public int getQueueSize()
+    {
+        int size = _overflowSize.get();
+        for (Worker worker : _workers)
+            size += worker._size.get();
+        return size;
+    }
+
+    @ManagedAttribute("Size of the overflow job queue")
+    public int getOverflowQueueSize()
+    {
+        return _overflowSize.get();
+    }
+
+    @ManagedAttribute("Size of the local job queue of each worker")
+    public int[] getWorkerQueueSizes()
+    {
+        List<Worker> workers = new ArrayList<>(_workers);
+        int[] sizes = new int[workers.size()];
+        for (int i = 0; i < sizes.length; ++i)
+            sizes[i] = workers.get(i)._size.get();
+        return sizes;
+    }
+
+    @ManagedAttribute("Number of jobs stolen by each worker")
+    public long[] getWorkerSteals()
+    {
+        List<Worker> workers = new ArrayList<>(_workers);
+        long[] steals = new long[workers.size()];
+        for (int i = 0; i < steals.length; ++i)
+            steals[i] = workers.get(i)._steals.get();
+        return steals;
+    }
+
+    @ManagedAttribute("Number of jobs stolen from the local queues of other workers")
+    public long getSteals()
+    {
+        long steals = _retiredSteals.get();
+        for (Worker worker : _workers)
+            steals += worker._steals.get();
+        return steals;
+    }
+
+    @Override
+    public void execute(Runnable job)
+    {
+        if (LOG.isDebugEnabled())
+            LOG.debug("queue {}", job);
+        if (!isRunning())
+        {
+            LOG.warn("{} rejected {}", this, job);
+            throw new RejectedExecutionException(job.toString());
+        }
+
+        Worker worker = _worker.get();
+        if (worker == null || !worker.offer(job))
+        {
+            _overflow.offer(job);
+            _overflowSize.incrementAndGet();
+        }
+
+        // Make sure there is a thread to take the job
+        if (!wakeIdleWorker())
+            startThreads(1);
+    }
+
+    /**
+     * Blocks until the thread pool is {@link org.eclipse.jetty.util.component.LifeCycle#stop stopped}.
+     */
+    @Override
+    public void join() throws InterruptedException
+    {
+        synchronized (_joinLock)
+        {
+            while (isRunning())
+                _joinLock.wait();
+        }
+
+        while (isStopping())
+            Thread.sleep(1);
+    }
+
+    @Override
+    @ManagedAttribute("total number of threads currently in the pool")
+    public int getThreads()
+    {
+        return _threadsStarted.get();
+    }
+
+    @Override
+    @ManagedAttribute("total number of idle threads in the pool")
+    public int getIdleThreads()
+    {
+        return _threadsIdle.get();
+    }
+
+    @ManagedAttribute("total number of busy threads in the pool")
+    public int getBusyThreads()
+    {
+        return getThreads() - getIdleThreads();
+    }
+
+    /**
+     * @return True if the pool is at maxThreads and there are not more idle threads than queued jobs
+     */
+    @Override
+    @ManagedAttribute("True if the pools is at maxThreads and there are not idle threads than queued jobs")
+    public boolean isLowOnThreads()
+    {
+        return _threadsStarted.get() == _maxThreads && getQueueSize() >= _threadsIdle.get();
+    }
+
+    private boolean wakeIdleWorker()
+    {
+        while (true)
+        {
+            Worker worker = _idleWorkers.pollFirst();
+            if (worker == null)
+                return false;
+            if (worker._idle.compareAndSet(true, false))
+            {
+                LockSupport.unpark(worker._thread);
+                return true;
+            }
+        }
+    }
+
+    private boolean startThreads(int threadsToStart)
+    {
+        while (threadsToStart > 0 && isRunning())
+        {
+            int threads = _threadsStarted.get();
+            if (threads >= _maxThreads)
+                return false;
+
+            if (!_threadsStarted.compareAndSet(threads, threads + 1))
+                continue;
+
+            boolean started = false;
+            try
+            {
+                Worker worker = new Worker();
+                Thread thread = newThread(worker);
+                thread.setDaemon(isDaemon());
+                thread.setPriority(getThreadsPriority());
+                thread.setName(_name + "-" + thread.getId());
+                worker._thread = thread;
+                _workers.add(worker);
+
+                thread.start();
+                started = true;
+                --threadsToStart;
+            }
+            finally
+            {
+                if (!started)
+                    _threadsStarted.decrementAndGet();
+            }
+        }
+        return true;
+    }
+
+    protected Thread newThread(Runnable runnable)
+    {
+        return new Thread(runnable);
+    }
+
+    /**
+     * <p>Runs the given job in the {@link Thread#currentThread() current thread}.</p>
+     * <p>Subclasses may override to perform pre/post actions before/after the job is run.</p>
+     *
+     * @param job the job to run
+     */
+    protected void runJob(Runnable job)
+    {
+        job.run();
+    }
+
+    @Override
+    @ManagedOperation("dump thread state")
+    public String dump()
+    {
+        return ContainerLifeCycle.dump(this);
+    }
+
+    @Override
+    public void dump(Appendable out, String indent) throws IOException
+    {
+        List<Object> dump = new ArrayList<>(getMaxThreads());
+        for (Worker worker : _workers)
+        {
+            Thread thread = worker._thread;
+            StackTraceElement[] trace = thread.getStackTrace();
+            int p = thread.getPriority();
+            dump.add(thread.getId() + " " + thread.getName() + " " + thread.getState() + " @ " + (trace.length > 0 ? trace[0] : "???") +
+                    (worker._idle.get() ? " IDLE" : "") + " q=" + worker._size.get() + " steals=" + worker._steals.get() + (p == Thread.NORM_PRIORITY ? "" : (" prio=" + p)));
+        }
+
+        ContainerLifeCycle.dumpObject(out, this);
+        ContainerLifeCycle.dump(out, indent, dump);
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s{%s,%d<=%d<=%d,i=%d,q=%d,s=%d}", _name, getState(), getMinThreads(), getThreads(), getMaxThreads(), getIdleThreads(), getQueueSize(), getSteals());
+    }
+
+    private class Worker implements Runnable
+    {
+        private final ConcurrentLinkedDeque<Runnable> _jobs = new ConcurrentLinkedDeque<>();
+        private final AtomicInteger _size = new AtomicInteger();
+        private final AtomicLong _steals = new AtomicLong();
+        private final AtomicBoolean _idle = new AtomicBoolean();
+        private volatile Thread _thread;
+
+        private boolean offer(Runnable job)
+        {
+            if (_size.incrementAndGet() > _localCapacity)
+            {
+                _size.decrementAndGet();
+                return false;
+            }
+            _jobs.offerLast(job);
+            return true;
+        }
+
+        private Runnable poll()
+        {
+            Runnable job = _jobs.pollFirst();
+            if (job != null)
+                _size.decrementAndGet();
+            return job;
+        }
+
+        private Runnable steal()
+        {
+            Runnable job = _jobs.pollLast();
+            if (job != null)
+                _size.decrementAndGet();
+            return job;
+        }
+
+        private void clear()
+        {
+            while (steal() != null)
+            {
+            }
+        }
+
+        private Runnable nextJob()
+        {
+            Runnable job = poll();
+            if (job != null)
+                return job;
+
+            job = _overflow.poll();
+            if (job != null)
+            {
+                _overflowSize.decrementAndGet();
+                return job;
+            }
+
+            // Steal from the other workers, starting from a random one
+            Worker[] workers = _workers.toArray(new Worker[0]);
+            int length = workers.length;
+            if (length > 1)
+            {
+                int start = ThreadLocalRandom.current().nextInt(length);
+                for (int i = 0; i < length; ++i)
+                {
+                    Worker victim = workers[(start + i) % length];
+                    if (victim == this)
+                        continue;
+                    job = victim.steal();
+                    if (job != null)
+                    {
+                        _steals.incrementAndGet();
+                        return job;
+                    }
+                }
+            }
+            return null;
+        }
+
+        /**
+         * @return a job, or null if the worker should exit
+         */
+        private Runnable idleJobPoll() throws InterruptedException
+        {
+            _threadsIdle.incrementAndGet();
+            try
+            {
+                long idleSince = System.nanoTime();
+                while (isRunning())
+                {
+                    _idle.set(true);
+                    _idleWorkers.offerFirst(this);
+
+                    // Check again after becoming visible as idle, so that no wake up is missed
+                    Runnable job = nextJob();
+                    if (job != null)
+                    {
+                        if (_idle.compareAndSet(true, false))
+                            _idleWorkers.remove(this);
+                        else
+                            wakeIdleWorker();
+                        return job;
+                    }
+
+                    if (_idleTimeout <= 0)
+                        LockSupport.park(this);
+                    else
+                        LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(_idleTimeout));
+                    if (Thread.interrupted())
+                        throw new InterruptedException();
+
+                    if (_idle.compareAndSet(true, false))
+                    {
+                        // Not woken by a new job
+                        _idleWorkers.remove(this);
+                        if (_idleTimeout > 0 && System.nanoTime() - idleSince >= TimeUnit.MILLISECONDS.toNanos(_idleTimeout))
+                        {
+                            int size = _threadsStarted.get();
+                            if (size > _minThreads && _threadsStarted.compareAndSet(size, size - 1))
+                                return null;
+                            idleSince = System.nanoTime();
+                        }
+                    }
+
+                    job = nextJob();
+                    if (job != null)
+                        return job;
+                }
+                return null;
+            }
+            finally
+            {
+                _threadsIdle.decrementAndGet();
+            }
+        }
+
+        @Override
+        public void run()
+        {
+            _worker.set(this);
+            boolean shrink = false;
+            boolean ignore = false;
+            try
+            {
+                while (isRunning())
+                {
+                    Runnable job = nextJob();
+                    if (job == null)
+                    {
+                        job = idleJobPoll();
+                        if (job == null)
+                        {
+                            shrink = isRunning();
+                            break;
+                        }
+                    }
+
+                    if (LOG.isDebugEnabled())
+                        LOG.debug("run {}", job);
+                    runJob(job);
+                    if (LOG.isDebugEnabled())
+                        LOG.debug("ran {}", job);
+                    if (Thread.interrupted())
+                    {
+                        ignore = true;
+                        break;
+                    }
+                }
+            }
+            catch (InterruptedException e)
+            {
+                ignore = true;
+                LOG.ignore(e);
+            }
+            catch (Throwable e)
+            {
+                LOG.warn(e);
+            }
+            finally
+            {
+                _worker.remove();
+                _idle.set(false);
+                _idleWorkers.remove(this);
+                _workers.remove(this);
+                _retiredSteals.addAndGet(_steals.get());
+
+                // Hand over the jobs left in the local queue
+                Runnable job;
+                while ((job = poll()) != null)
+                {
+                    _overflow.offer(job);
+                    _overflowSize.incrementAndGet();
+                }
+
+                if (!shrink)
+                {
+                    if (isRunning())
+                    {
+                        if (!ignore)
+                            LOG.warn("Unexpected thread death: {} in {}", this, WorkStealingThreadPool.this);
+                        if (_threadsStarted.decrementAndGet() < getMaxThreads())
+                            startThreads(1);
+                    }
+                    else
+                    {
+                        _threadsStarted.decrementAndGet();
+                    }
+                }
+                else if (!_overflow.isEmpty())
+                {
+                    wakeIdleWorker();
+                }
+            }
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s{q=%d,steals=%d}", _thread, _size.get(), _steals.get());
+        }
+    }
+}
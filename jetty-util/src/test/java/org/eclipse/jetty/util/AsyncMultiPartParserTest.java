@@ -0,0 +1,263 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.util;
+
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.MultipartConfigElement;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.Part;
+
+import org.junit.Test;
+
+public class AsyncMultiPartParserTest
+{
+    private static final String CONTENT_TYPE = "multipart/form-data; boundary=AaB03x";
+    private final File _tmpDir = new File(System.getProperty("java.io.tmpdir")+File.separator+"async-multipart-"+System.currentTimeMillis());
+
+    /**
+     * An async input stream that makes its content available one chunk at a time, calling
+     * the listener as a container does: only after isReady() has returned false.
+     */
+    private static class ChunkedInputStream extends ServletInputStream
+    {
+        private final Queue<byte[]> _chunks = new ArrayDeque<>();
+        private ReadListener _listener;
+        private byte[] _available;
+        private boolean _eof;
+        private boolean _interested = true;
+
+        private ChunkedInputStream(byte[] content, int chunkSize)
+        {
+            for (int i=0;i<content.length;i+=chunkSize)
+            {
+                byte[] chunk = new byte[Math.min(chunkSize,content.length-i)];
+                System.arraycopy(content,i,chunk,0,chunk.length);
+                _chunks.add(chunk);
+            }
+        }
+
+        @Override
+        public synchronized boolean isFinished()
+        {
+            return _eof && _available==null;
+        }
+
+        @Override
+        public synchronized boolean isReady()
+        {
+            if (_available!=null || _eof)
+                return true;
+            _interested=true;
+            return false;
+        }
+
+        @Override
+        public void setReadListener(ReadListener listener)
+        {
+            _listener=listener;
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len)
+        {
+            if (_available==null)
+            {
+                if (_eof)
+                    return -1;
+                throw new IllegalStateException();
+            }
+            int length=_available.length;
+            System.arraycopy(_available,0,b,off,length);
+            _available=null;
+            notifyAll();
+            return length;
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        /**
+         * Make each chunk available once the previous one is read, as the network would.
+         */
+        private void deliver() throws Exception
+        {
+            while (true)
+            {
+                boolean interested;
+                boolean eof;
+                synchronized (this)
+                {
+                    long end=System.nanoTime()+TimeUnit.SECONDS.toNanos(1);
+                    while (_available!=null && System.nanoTime()<end)
+                        wait(100);
+                    if (_available!=null)
+                        return; // the listener has stopped reading
+                    _available=_chunks.poll();
+                    eof=_eof=_available==null;
+                    interested=_interested;
+                    _interested=false;
+                }
+                if (interested)
+                {
+                    if (eof)
+                        _listener.onAllDataRead();
+                    else
+                        _listener.onDataAvailable();
+                }
+                if (eof)
+                    return;
+            }
+        }
+    }
+
+    private static String multipart(String fileContent)
+    {
+        return "--AaB03x\r\n"+
+                "content-disposition: form-data; name=\"field1\"\r\n"+
+                "\r\n"+
+                "Joe Blow\r\n"+
+                "--AaB03x\r\n"+
+                "content-disposition: form-data; name=\"stuff\"; filename=\"stuff.txt\"\r\n"+
+                "Content-Type: text/plain\r\n"+
+                "\r\n"+
+                fileContent+"\r\n"+
+                "--AaB03x--\r\n";
+    }
+
+    private static String read(Part part) throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        IO.copy(part.getInputStream(),out);
+        return out.toString("UTF-8");
+    }
+
+    private Collection<Part> parse(String content, MultipartConfigElement config, int chunkSize) throws Exception
+    {
+        ChunkedInputStream in = new ChunkedInputStream(content.getBytes(StandardCharsets.UTF_8),chunkSize);
+        FuturePromise<Collection<Part>> promise = new FuturePromise<>();
+        AsyncMultiPartParser parser = new AsyncMultiPartParser(in,CONTENT_TYPE,config,_tmpDir,promise,64);
+        parser.setDeleteOnExit(true);
+        parser.start();
+        in.deliver();
+        return promise.get(5,TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testInMemory() throws Exception
+    {
+        MultipartConfigElement config = new MultipartConfigElement(_tmpDir.getAbsolutePath(),-1,-1,0);
+        Collection<Part> parts = parse(multipart("some file content"),config,7);
+        assertThat(parts.size(),is(2));
+
+        Part field = null;
+        Part stuff = null;
+        for (Part part : parts)
+        {
+            if ("field1".equals(part.getName()))
+                field=part;
+            else if ("stuff".equals(part.getName()))
+                stuff=part;
+        }
+        assertThat(field,notNullValue());
+        assertThat(read(field),is("Joe Blow"));
+        assertThat(field.getSubmittedFileName(),nullValue());
+        assertThat(stuff,notNullValue());
+        assertThat(stuff.getSubmittedFileName(),is("stuff.txt"));
+        assertThat(stuff.getContentType(),is("text/plain"));
+        assertThat(read(stuff),is("some file content"));
+        assertThat(((AsyncMultiPartParser.MultiPart)stuff).getFile(),nullValue());
+    }
+
+    @Test
+    public void testToFile() throws Exception
+    {
+        StringBuilder large = new StringBuilder();
+        for (int i=0;i<1000;i++)
+            large.append("line ").append(i).append("\r\n--AaB03 not a boundary\r\n");
+
+        MultipartConfigElement config = new MultipartConfigElement(_tmpDir.getAbsolutePath(),-1,-1,100);
+        Collection<Part> parts = parse(multipart(large.toString()),config,33);
+        assertThat(parts.size(),is(2));
+        for (Part part : parts)
+        {
+            if ("stuff".equals(part.getName()))
+            {
+                File file = ((AsyncMultiPartParser.MultiPart)part).getFile();
+                assertThat(file,notNullValue());
+                assertThat(file.length(),is((long)large.length()));
+                assertThat(read(part),is(large.toString()));
+                assertThat(part.getSize(),is((long)large.length()));
+                part.delete();
+            }
+            else
+                assertThat(read(part),is("Joe Blow"));
+        }
+    }
+
+    @Test
+    public void testMaxFileSize() throws Exception
+    {
+        MultipartConfigElement config = new MultipartConfigElement(_tmpDir.getAbsolutePath(),10,-1,0);
+        try
+        {
+            parse(multipart("more than ten bytes of content"),config,16);
+            fail();
+        }
+        catch (ExecutionException e)
+        {
+            assertThat(e.getCause(),instanceOf(IllegalStateException.class));
+        }
+    }
+
+    @Test
+    public void testIncomplete() throws Exception
+    {
+        MultipartConfigElement config = new MultipartConfigElement(_tmpDir.getAbsolutePath(),-1,-1,0);
+        String content = multipart("content");
+        try
+        {
+            parse(content.substring(0,content.length()-20),config,16);
+            fail();
+        }
+        catch (ExecutionException e)
+        {
+            assertThat(e.getCause(),instanceOf(IllegalStateException.class));
+        }
+    }
+}
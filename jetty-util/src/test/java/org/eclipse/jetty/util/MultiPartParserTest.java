@@ -0,0 +1,201 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.util;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class MultiPartParserTest
+{
+    private static final String BOUNDARY = "AaB03x";
+
+    private static final String CONTENT =
+            "preamble\r\n" +
+            "--AaB03x\r\n" +
+            "Content-Disposition: form-data; name=\"field1\"\r\n" +
+            "\r\n" +
+            "Joe Blow\r\n" +
+            "--AaB03x \r\n" +
+            "content-disposition: form-data;\r\n" +
+            "  name=\"pics\"; filename=\"file1.txt\"\r\n" +
+            "Content-Type: text/plain\r\n" +
+            "\r\n" +
+            "--AaB03 is not\r\n--AaB03 a boundary\r\n-\r\n\r\r\n" +
+            "--AaB03x--\r\n" +
+            "epilogue";
+
+    private static class TestHandler implements MultiPartParser.Handler
+    {
+        private final List<String> events = new ArrayList<>();
+        private final StringBuilder content = new StringBuilder();
+        private boolean pause;
+
+        @Override
+        public void startPart()
+        {
+            events.add("start");
+        }
+
+        @Override
+        public void parsedField(String name, String value)
+        {
+            events.add(name + ": " + value);
+        }
+
+        @Override
+        public boolean headerComplete()
+        {
+            events.add("headers");
+            return false;
+        }
+
+        @Override
+        public boolean content(ByteBuffer item, boolean last)
+        {
+            content.append(BufferUtil.toString(item,StandardCharsets.UTF_8));
+            if (last)
+            {
+                events.add("content<" + content + ">");
+                content.setLength(0);
+            }
+            return pause;
+        }
+
+        @Override
+        public boolean messageComplete()
+        {
+            events.add("complete");
+            return false;
+        }
+
+        @Override
+        public void earlyEOF()
+        {
+            events.add("earlyEOF");
+        }
+
+        @Override
+        public void badMessage(String reason)
+        {
+            events.add("bad " + reason);
+        }
+    }
+
+    private static void assertParsed(List<String> events)
+    {
+        assertThat(events,contains(
+                "start",
+                "Content-Disposition: form-data; name=\"field1\"",
+                "headers",
+                "content<Joe Blow>",
+                "start",
+                "content-disposition: form-data; name=\"pics\"; filename=\"file1.txt\"",
+                "Content-Type: text/plain",
+                "headers",
+                "content<--AaB03 is not\r\n--AaB03 a boundary\r\n-\r\n\r>",
+                "complete"));
+    }
+
+    @Test
+    public void testSingleBuffer() throws Exception
+    {
+        TestHandler handler = new TestHandler();
+        MultiPartParser parser = new MultiPartParser(handler,BOUNDARY);
+        ByteBuffer buffer = BufferUtil.toBuffer(CONTENT);
+        assertThat(parser.parse(buffer,true),is(false));
+        assertThat(buffer.remaining(),is(0));
+        assertParsed(handler.events);
+        assertThat(parser.getState(),is(MultiPartParser.State.END));
+    }
+
+    @Test
+    public void testEverySplit() throws Exception
+    {
+        byte[] bytes = CONTENT.getBytes(StandardCharsets.ISO_8859_1);
+        for (int split = 0; split <= bytes.length; split++)
+        {
+            TestHandler handler = new TestHandler();
+            MultiPartParser parser = new MultiPartParser(handler,BOUNDARY);
+            parser.parse(ByteBuffer.wrap(bytes,0,split),false);
+            parser.parse(ByteBuffer.wrap(bytes,split,bytes.length - split),true);
+            assertParsed(handler.events);
+        }
+    }
+
+    @Test
+    public void testByteByByte() throws Exception
+    {
+        byte[] bytes = CONTENT.getBytes(StandardCharsets.ISO_8859_1);
+        TestHandler handler = new TestHandler();
+        MultiPartParser parser = new MultiPartParser(handler,BOUNDARY);
+        for (int i = 0; i < bytes.length; i++)
+            parser.parse(ByteBuffer.wrap(bytes,i,1),false);
+        parser.parse(BufferUtil.EMPTY_BUFFER,true);
+        assertParsed(handler.events);
+    }
+
+    @Test
+    public void testNoPreamble() throws Exception
+    {
+        TestHandler handler = new TestHandler();
+        MultiPartParser parser = new MultiPartParser(handler,BOUNDARY);
+        parser.parse(BufferUtil.toBuffer("--AaB03x\r\nname: value\r\n\r\ndata\r\n--AaB03x--"),true);
+        assertThat(handler.events,contains("start","name: value","headers","content<data>","complete"));
+    }
+
+    @Test
+    public void testPause() throws Exception
+    {
+        TestHandler handler = new TestHandler();
+        handler.pause = true;
+        MultiPartParser parser = new MultiPartParser(handler,BOUNDARY);
+        ByteBuffer buffer = BufferUtil.toBuffer(CONTENT);
+        int calls = 0;
+        while (parser.parse(buffer,true))
+            calls++;
+        assertThat(calls,is(2));
+        assertParsed(handler.events);
+    }
+
+    @Test
+    public void testEarlyEOF() throws Exception
+    {
+        TestHandler handler = new TestHandler();
+        MultiPartParser parser = new MultiPartParser(handler,BOUNDARY);
+        parser.parse(BufferUtil.toBuffer("--AaB03x\r\nname: value\r\n\r\ndata\r\n--AaB0"),true);
+        assertThat(handler.events,contains("start","name: value","headers","earlyEOF"));
+    }
+
+    @Test
+    public void testHeadersTooLarge() throws Exception
+    {
+        TestHandler handler = new TestHandler();
+        MultiPartParser parser = new MultiPartParser(handler,BOUNDARY,16);
+        parser.parse(BufferUtil.toBuffer("--AaB03x\r\nname: a very long value\r\n\r\ndata\r\n--AaB03x--"),true);
+        assertThat(handler.events,contains("start","bad Part headers too large"));
+    }
+}
@@ -0,0 +1,173 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.util;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class UrlEncodedDecoderTest
+{
+    private static final String[] FORMS =
+    {
+        "",
+        "name",
+        "name=",
+        "name=value",
+        "a=1&b=2&a=3",
+        "a+b=c+d&e%20f=g%2Bh",
+        "euro=%E2%82%AC&pound=%C2%A3",
+        "unicode=%u20AC&x=y=z",
+        "&&a=&=b&",
+    };
+
+    @Test
+    public void testEverySplit() throws Exception
+    {
+        for (String form : FORMS)
+        {
+            for (Charset charset : new Charset[]{StandardCharsets.UTF_8,StandardCharsets.ISO_8859_1})
+            {
+                byte[] bytes=form.getBytes(charset);
+                MultiMap<String> expected=new MultiMap<>();
+                if (StandardCharsets.UTF_8.equals(charset))
+                    UrlEncoded.decodeTo(new ByteArrayInputStream(bytes),expected,charset,-1,-1);
+                else
+                    UrlEncoded.decodeTo(form,expected,charset);
+
+                for (int split=0;split<=bytes.length;split++)
+                {
+                    MultiMap<String> map=new MultiMap<>();
+                    UrlEncodedDecoder decoder=new UrlEncodedDecoder(map,charset,-1,-1);
+                    decoder.decode(ByteBuffer.wrap(bytes,0,split));
+                    decoder.decode(ByteBuffer.wrap(bytes,split,bytes.length-split).slice());
+                    decoder.complete();
+                    assertThat(form+" "+charset+" @"+split,map,is(expected));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testIncompleteEscape() throws Exception
+    {
+        for (String form : new String[]{"trailing=%","trailing=%4","trailing=%u20"})
+        {
+            MultiMap<String> map=new MultiMap<>();
+            UrlEncodedDecoder decoder=new UrlEncodedDecoder(map,StandardCharsets.UTF_8,-1,-1);
+            decoder.decode(BufferUtil.toBuffer(form));
+            decoder.complete();
+            assertThat(form,map.getString("trailing"),is(""+Utf8Appendable.REPLACEMENT));
+        }
+    }
+
+    @Test
+    public void testDirectBuffer() throws Exception
+    {
+        ByteBuffer buffer=BufferUtil.toBuffer("a=1&b=%E2%82%AC",StandardCharsets.UTF_8);
+        ByteBuffer direct=ByteBuffer.allocateDirect(buffer.remaining());
+        direct.put(buffer).flip();
+
+        MultiMap<String> map=new MultiMap<>();
+        UrlEncodedDecoder decoder=new UrlEncodedDecoder(map,"utf-8",-1,-1);
+        decoder.decode(direct);
+        decoder.complete();
+
+        assertThat(direct.hasRemaining(),is(false));
+        assertThat(map.getString("a"),is("1"));
+        assertThat(map.getString("b"),is("€"));
+    }
+
+    @Test
+    public void testUtf16() throws Exception
+    {
+        byte[] bytes="a=1&b=€".getBytes(StandardCharsets.UTF_16);
+        MultiMap<String> map=new MultiMap<>();
+        UrlEncodedDecoder decoder=new UrlEncodedDecoder(map,StandardCharsets.UTF_16,-1,-1);
+        for (byte b : bytes)
+            decoder.decode(new byte[]{b},0,1);
+        decoder.complete();
+
+        assertThat(map.getString("a"),is("1"));
+        assertThat(map.getString("b"),is("€"));
+    }
+
+    @Test
+    public void testUtf16DirectBuffer() throws Exception
+    {
+        byte[] bytes="a=1&b=€".getBytes(StandardCharsets.UTF_16);
+        MultiMap<String> map=new MultiMap<>();
+        UrlEncodedDecoder decoder=new UrlEncodedDecoder(map,StandardCharsets.UTF_16,-1,-1);
+        // Split the content at odd offsets, within the 2 byte characters.
+        for (int i=0;i<bytes.length;i+=3)
+        {
+            int length=Math.min(3,bytes.length-i);
+            ByteBuffer direct=ByteBuffer.allocateDirect(length);
+            direct.put(bytes,i,length).flip();
+            decoder.decode(direct);
+            assertThat(direct.hasRemaining(),is(false));
+        }
+        decoder.complete();
+
+        assertThat(decoder.getLength(),is(bytes.length));
+        assertThat(map.getString("a"),is("1"));
+        assertThat(map.getString("b"),is("€"));
+    }
+
+    @Test
+    public void testMaxLength() throws Exception
+    {
+        UrlEncodedDecoder decoder=new UrlEncodedDecoder(new MultiMap<String>(),StandardCharsets.UTF_8,10,-1);
+        decoder.decode(BufferUtil.toBuffer("a=12345"));
+        try
+        {
+            decoder.decode(BufferUtil.toBuffer("6789"));
+            fail();
+        }
+        catch(IllegalStateException e)
+        {
+            assertThat(decoder.getLength(),is(11));
+        }
+    }
+
+    @Test
+    public void testMaxKeys() throws Exception
+    {
+        MultiMap<String> map=new MultiMap<>();
+        UrlEncodedDecoder decoder=new UrlEncodedDecoder(map,StandardCharsets.UTF_8,-1,2);
+        decoder.decode(BufferUtil.toBuffer("a=1&b=2&"));
+        try
+        {
+            decoder.decode(BufferUtil.toBuffer("c=3&d=4"));
+            fail();
+        }
+        catch(IllegalStateException e)
+        {
+            // The limit is enforced before all the content is seen
+            assertThat(map.size(),is(3));
+        }
+    }
+}
@@ -0,0 +1,88 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.util.compression;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.junit.Test;
+
+public class CompressionPoolsTest
+{
+    @Test
+    public void testDeflaterReused() throws Exception
+    {
+        CompressionPools pools = new CompressionPools(2);
+        DeflaterPool pool = pools.getDeflaterPool(Deflater.DEFAULT_COMPRESSION,true);
+        assertThat(pools.getDeflaterPool(Deflater.DEFAULT_COMPRESSION,true),sameInstance(pool));
+        assertThat(pools.getDeflaterPool(Deflater.DEFAULT_COMPRESSION,false),not(sameInstance(pool)));
+        assertThat(pools.getDeflaterPool(Deflater.BEST_SPEED,true),not(sameInstance(pool)));
+
+        Deflater deflater = pool.acquire();
+        assertThat(pool.getInUseCount(),is(1));
+        deflater.setInput(new byte[]{1,2,3});
+        deflater.finish();
+        deflater.deflate(new byte[64]);
+        pool.release(deflater);
+
+        assertThat(pool.getInUseCount(),is(0));
+        assertThat(pool.getIdleCount(),is(1));
+
+        Deflater again = pool.acquire();
+        assertThat(again,sameInstance(deflater));
+        assertThat(again.getTotalIn(),is(0));
+        assertThat(again.finished(),is(false));
+        assertThat(pool.getCreatedCount(),is(1L));
+        pool.release(again);
+        pools.clear();
+    }
+
+    @Test
+    public void testMaxIdle() throws Exception
+    {
+        CompressionPools pools = new CompressionPools(2);
+        InflaterPool pool = pools.getInflaterPool(true);
+
+        Inflater[] inflaters = new Inflater[4];
+        for (int i=0;i<inflaters.length;i++)
+            inflaters[i]=pool.acquire();
+        assertThat(pool.getInUseCount(),is(4));
+        assertThat(pool.getNativeMemory(),is(4L*pool.getNativeMemoryPerObject()));
+
+        for (Inflater inflater : inflaters)
+            pool.release(inflater);
+
+        assertThat(pool.getInUseCount(),is(0));
+        assertThat(pool.getIdleCount(),is(2));
+        assertThat(pool.getEndedCount(),is(2L));
+        assertThat(pools.getIdleNativeMemory(),is(2L*pool.getNativeMemoryPerObject()));
+
+        pools.setMaxIdle(1);
+        assertThat(pool.getIdleCount(),is(1));
+
+        pools.clear();
+        assertThat(pool.getIdleCount(),is(0));
+        assertThat(pool.getEndedCount(),is(4L));
+    }
+}
@@ -0,0 +1,169 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+
+package org.eclipse.jetty.util.thread;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class VirtualThreadPoolTest
+{
+    private VirtualThreadPool _pool;
+
+    @After
+    public void dispose() throws Exception
+    {
+        if (_pool != null)
+            _pool.stop();
+    }
+
+    @Test
+    public void testExecute() throws Exception
+    {
+        _pool = new VirtualThreadPool(10);
+        _pool.start();
+
+        final CountDownLatch latch = new CountDownLatch(100);
+        for (int i = 0; i < 100; ++i)
+        {
+            _pool.execute(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    latch.countDown();
+                }
+            });
+        }
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testPlatformJobRunsInPlatformPool() throws Exception
+    {
+        _pool = new VirtualThreadPool(10);
+        _pool.start();
+
+        final AtomicReference<String> name = new AtomicReference<>();
+        final CountDownLatch latch = new CountDownLatch(1);
+        _pool.execute(new VirtualThreadPool.PlatformJob()
+        {
+            @Override
+            public void run()
+            {
+                name.set(Thread.currentThread().getName());
+                latch.countDown();
+            }
+        });
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertTrue(name.get().startsWith(_pool.getPlatformThreadPool().getName()));
+    }
+
+    @Test
+    public void testFallbackWithoutVirtualThreads() throws Exception
+    {
+        _pool = new VirtualThreadPool(4, 1)
+        {
+            @Override
+            protected ThreadFactory newVirtualThreadFactory(String prefix)
+            {
+                return null;
+            }
+        };
+        assertFalse(_pool.isVirtualThreadsSupported());
+        assertThat(_pool.getMaxThreads(), is(4));
+        assertThat(_pool.getPlatformThreadPool().getMaxThreads(), is(4));
+        _pool.start();
+
+        final CountDownLatch latch = new CountDownLatch(1);
+        _pool.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                latch.countDown();
+            }
+        });
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testLowOnThreads() throws Exception
+    {
+        _pool = new VirtualThreadPool(2, 4)
+        {
+            @Override
+            protected ThreadFactory newVirtualThreadFactory(String prefix)
+            {
+                // Emulate virtual threads with platform threads.
+                return new ThreadFactory()
+                {
+                    @Override
+                    public Thread newThread(Runnable r)
+                    {
+                        return new Thread(r);
+                    }
+                };
+            }
+        };
+        _pool.start();
+
+        final CountDownLatch started = new CountDownLatch(2);
+        final CountDownLatch latch = new CountDownLatch(1);
+        for (int i = 0; i < 2; ++i)
+        {
+            _pool.execute(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    started.countDown();
+                    try
+                    {
+                        latch.await();
+                    }
+                    catch (InterruptedException x)
+                    {
+                        throw new RuntimeException(x);
+                    }
+                }
+            });
+        }
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertThat(_pool.getVirtualThreads(), is(2));
+        assertTrue(_pool.isLowOnThreads());
+
+        latch.countDown();
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (_pool.getVirtualThreads() > 0 && System.nanoTime() < end)
+            Thread.sleep(10);
+        assertThat(_pool.getVirtualThreads(), is(0));
+        assertFalse(_pool.isLowOnThreads());
+    }
+}
@@ -0,0 +1,208 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+
+package org.eclipse.jetty.util.thread;
+
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class WorkStealingThreadPoolTest
+{
+    private WorkStealingThreadPool _pool;
+
+    @After
+    public void dispose() throws Exception
+    {
+        if (_pool != null)
+            _pool.stop();
+    }
+
+    @Test
+    public void testStartsMinThreads() throws Exception
+    {
+        _pool = new WorkStealingThreadPool(10, 3);
+        _pool.start();
+
+        waitFor(3, 3);
+        assertFalse(_pool.isLowOnThreads());
+    }
+
+    @Test
+    public void testExecuteFromOtherThreads() throws Exception
+    {
+        _pool = new WorkStealingThreadPool(8, 2);
+        _pool.start();
+
+        int jobs = 10000;
+        final CountDownLatch latch = new CountDownLatch(jobs);
+        for (int i = 0; i < jobs; ++i)
+        {
+            _pool.execute(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    latch.countDown();
+                }
+            });
+        }
+
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testJobsOfBusyWorkerAreStolen() throws Exception
+    {
+        _pool = new WorkStealingThreadPool(4, 4);
+        _pool.start();
+        waitFor(4, 4);
+
+        final int jobs = 16;
+        final CountDownLatch latch = new CountDownLatch(jobs);
+        final CountDownLatch release = new CountDownLatch(1);
+        _pool.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                // Queue jobs in the local queue of this worker and then block it.
+                for (int i = 0; i < jobs; ++i)
+                {
+                    _pool.execute(new Runnable()
+                    {
+                        @Override
+                        public void run()
+                        {
+                            latch.countDown();
+                        }
+                    });
+                }
+                try
+                {
+                    release.await();
+                }
+                catch (InterruptedException x)
+                {
+                    throw new RuntimeException(x);
+                }
+            }
+        });
+
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertThat(_pool.getSteals(), greaterThan(0L));
+        release.countDown();
+    }
+
+    @Test
+    public void testIdleThreadsShrink() throws Exception
+    {
+        _pool = new WorkStealingThreadPool(10, 2, 200);
+        _pool.start();
+
+        final CountDownLatch latch = new CountDownLatch(1);
+        for (int i = 0; i < 6; ++i)
+        {
+            _pool.execute(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        latch.await();
+                    }
+                    catch (InterruptedException x)
+                    {
+                        throw new RuntimeException(x);
+                    }
+                }
+            });
+        }
+        waitFor(6, 0);
+        latch.countDown();
+
+        waitFor(2, 2);
+    }
+
+    @Test
+    public void testLowOnThreads() throws Exception
+    {
+        _pool = new WorkStealingThreadPool(2, 2);
+        _pool.start();
+        waitFor(2, 2);
+
+        final CountDownLatch latch = new CountDownLatch(1);
+        Runnable blocking = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    latch.await();
+                }
+                catch (InterruptedException x)
+                {
+                    throw new RuntimeException(x);
+                }
+            }
+        };
+        _pool.execute(blocking);
+        _pool.execute(blocking);
+        waitFor(2, 0);
+        assertTrue(_pool.isLowOnThreads());
+
+        latch.countDown();
+        waitFor(2, 2);
+        assertFalse(_pool.isLowOnThreads());
+        assertThat(_pool.getQueueSize(), is(0));
+    }
+
+    @Test(expected = RejectedExecutionException.class)
+    public void testRejectWhenStopped() throws Exception
+    {
+        WorkStealingThreadPool pool = new WorkStealingThreadPool();
+        pool.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+            }
+        });
+    }
+
+    private void waitFor(int threads, int idle) throws InterruptedException
+    {
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() < end && (_pool.getThreads() != threads || _pool.getIdleThreads() != idle))
+            Thread.sleep(10);
+        assertThat(_pool.getThreads(), is(threads));
+        assertThat(_pool.getIdleThreads(), is(idle));
+    }
+}
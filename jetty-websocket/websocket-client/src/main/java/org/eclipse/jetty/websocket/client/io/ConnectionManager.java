@@ -60,7 +60,7 @@ public class ConnectionManager extends ContainerLifeCycle
             SocketChannel channel = null;
             try
             {
-                channel = SocketChannel.open();
+                channel = getSelector().getSelectorProvider().openSocketChannel();
                 if (bindAddress != null)
                 {
                     channel.bind(bindAddress);
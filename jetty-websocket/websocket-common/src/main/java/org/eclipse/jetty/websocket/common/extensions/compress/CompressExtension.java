@@ -18,7 +18,9 @@
 
 package org.eclipse.jetty.websocket.common.extensions.compress;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
 import java.util.Queue;
 import java.util.zip.DataFormatException;
 import java.util.zip.Deflater;
@@ -28,6 +30,9 @@ import java.util.zip.ZipException;
 import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.ConcurrentArrayQueue;
 import org.eclipse.jetty.util.IteratingCallback;
+import org.eclipse.jetty.util.compression.CompressionPools;
+import org.eclipse.jetty.util.compression.DeflaterPool;
+import org.eclipse.jetty.util.compression.InflaterPool;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
 import org.eclipse.jetty.websocket.api.BadPayloadException;
@@ -62,29 +67,101 @@ public abstract class CompressExtension extends AbstractExtension
 
     private final Queue<FrameEntry> entries = new ConcurrentArrayQueue<>();
     private final IteratingCallback flusher = new Flusher();
-    private final Deflater compressor;
-    private final Inflater decompressor;
+    private final DeflaterPool deflaterPool;
+    private final InflaterPool inflaterPool;
+    private final Object deflaterLock = new Object();
+    private Deflater compressor;
+    private boolean deflaterClosed;
+    private Inflater decompressor;
     private int tailDrop = TAIL_DROP_NEVER;
     private int rsvUse = RSV_USE_ALWAYS;
 
     protected CompressExtension()
     {
-        compressor = new Deflater(Deflater.BEST_COMPRESSION, true);
-        decompressor = new Inflater(true);
+        this(CompressionPools.getDefault());
+    }
+
+    /**
+     * @param compressionPools the pools from which the {@link Deflater} and {@link Inflater} are acquired
+     */
+    protected CompressExtension(CompressionPools compressionPools)
+    {
+        deflaterPool = compressionPools.getDeflaterPool(Deflater.BEST_COMPRESSION, true);
+        inflaterPool = compressionPools.getInflaterPool(true);
         tailDrop = getTailDropMode();
         rsvUse = getRsvUseMode();
     }
     
+    /**
+     * @return the {@link Deflater}, acquired from the pool when first needed
+     */
     public Deflater getDeflater()
     {
-        return compressor;
+        synchronized (deflaterLock)
+        {
+            if (compressor == null)
+                compressor = deflaterPool.acquire();
+            return compressor;
+        }
     }
 
+    /**
+     * @return the {@link Inflater}, acquired from the pool when first needed
+     */
     public Inflater getInflater()
     {
+        if (decompressor == null)
+            decompressor = inflaterPool.acquire();
         return decompressor;
     }
 
+    /**
+     * Releases the {@link Deflater} to the pool, discarding its compression context.
+     */
+    protected void releaseDeflater()
+    {
+        synchronized (deflaterLock)
+        {
+            Deflater deflater = compressor;
+            compressor = null;
+            deflaterPool.release(deflater);
+        }
+    }
+
+    /**
+     * Releases the {@link Inflater} to the pool, discarding its decompression context.
+     */
+    protected void releaseInflater()
+    {
+        Inflater inflater = decompressor;
+        decompressor = null;
+        inflaterPool.release(inflater);
+    }
+
+    @Override
+    protected void doStart() throws Exception
+    {
+        synchronized (deflaterLock)
+        {
+            deflaterClosed = false;
+        }
+        super.doStart();
+    }
+
+    @Override
+    protected void doStop() throws Exception
+    {
+        // The flusher may be compressing concurrently, so wait for it to finish
+        // with the Deflater before it goes back to the pool.
+        synchronized (deflaterLock)
+        {
+            deflaterClosed = true;
+            releaseDeflater();
+        }
+        releaseInflater();
+        super.doStop();
+    }
+
     /**
      * Indicates use of RSV1 flag for indicating deflation is in use.
      */
@@ -134,6 +211,7 @@ public abstract class CompressExtension extends AbstractExtension
         int maxSize = Math.max(getPolicy().getMaxTextMessageSize(), getPolicy().getMaxBinaryMessageBufferSize());
         ByteAccumulator accumulator = new ByteAccumulator(maxSize);
 
+        Inflater decompressor = getInflater();
         decompressor.setInput(input, 0, input.length);
 
         if (LOG.isDebugEnabled())
@@ -275,7 +353,7 @@ public abstract class CompressExtension extends AbstractExtension
             return Action.SCHEDULED;
         }
 
-        private void deflate(FrameEntry entry)
+        private void deflate(FrameEntry entry) throws IOException
         {
             Frame frame = entry.frame;
             BatchMode batchMode = entry.batchMode;
@@ -288,7 +366,7 @@ public abstract class CompressExtension extends AbstractExtension
             compress(entry, true);
         }
 
-        private void compress(FrameEntry entry, boolean first)
+        private void compress(FrameEntry entry, boolean first) throws IOException
         {
             // Get a chunk of the payload to avoid to blow
             // the heap if the payload is a huge mapped file.
@@ -318,29 +396,40 @@ public abstract class CompressExtension extends AbstractExtension
             }
             finished = inputLength == remaining;
 
-            compressor.setInput(input, inputOffset, inputLength);
-
             // Use an additional space in case the content is not compressible.
             byte[] output = new byte[inputLength + 64];
             int outputOffset = 0;
             int outputLength = 0;
-            while (true)
+            synchronized (deflaterLock)
             {
-                int space = output.length - outputOffset;
-                int compressed = compressor.deflate(output, outputOffset, space, Deflater.SYNC_FLUSH);
-                outputLength += compressed;
-                if (compressed < space)
+                if (deflaterClosed)
                 {
-                    // Everything was compressed.
-                    break;
+                    ClosedChannelException failure = new ClosedChannelException();
+                    notifyCallbackFailure(entry.callback, failure);
+                    throw failure;
                 }
-                else
+
+                Deflater compressor = getDeflater();
+                compressor.setInput(input, inputOffset, inputLength);
+
+                while (true)
                 {
-                    // The compressed output is bigger than the uncompressed input.
-                    byte[] newOutput = new byte[output.length * 2];
-                    System.arraycopy(output, 0, newOutput, 0, output.length);
-                    outputOffset += output.length;
-                    output = newOutput;
+                    int space = output.length - outputOffset;
+                    int compressed = compressor.deflate(output, outputOffset, space, Deflater.SYNC_FLUSH);
+                    outputLength += compressed;
+                    if (compressed < space)
+                    {
+                        // Everything was compressed.
+                        break;
+                    }
+                    else
+                    {
+                        // The compressed output is bigger than the uncompressed input.
+                        byte[] newOutput = new byte[output.length * 2];
+                        System.arraycopy(output, 0, newOutput, 0, output.length);
+                        outputOffset += output.length;
+                        output = newOutput;
+                    }
                 }
             }
 
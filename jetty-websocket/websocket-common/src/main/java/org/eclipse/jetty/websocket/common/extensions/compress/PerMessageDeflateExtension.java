@@ -87,7 +87,7 @@ public class PerMessageDeflateExtension extends CompressExtension
         if (frame.isFin() && !incomingContextTakeover)
         {
             LOG.debug("Incoming Context Reset");
-            getInflater().reset();
+            releaseInflater();
         }
         super.nextIncomingFrame(frame);
     }
@@ -98,7 +98,7 @@ public class PerMessageDeflateExtension extends CompressExtension
         if (frame.isFin() && !outgoingContextTakeover)
         {
             LOG.debug("Outgoing Context Reset");
-            getDeflater().reset();
+            releaseDeflater();
         }
         super.nextOutgoingFrame(frame, callback, batchMode);
     }
@@ -25,10 +25,15 @@ import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.Deflater;
 
 import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.compression.CompressionPools;
+import org.eclipse.jetty.util.compression.DeflaterPool;
 import org.eclipse.jetty.websocket.api.BatchMode;
 import org.eclipse.jetty.websocket.api.WebSocketPolicy;
+import org.eclipse.jetty.websocket.api.WriteCallback;
 import org.eclipse.jetty.websocket.api.extensions.ExtensionConfig;
 import org.eclipse.jetty.websocket.api.extensions.Frame;
 import org.eclipse.jetty.websocket.common.OpCode;
@@ -336,6 +341,47 @@ public class PerMessageDeflateExtensionTest extends AbstractExtensionTest
         ByteBufferAssert.assertEquals("Frame.payload", expected, actual.getPayload().slice());
     }
 
+    @Test
+    public void testStopReleasesDeflaterAndFailsLaterFrames() throws Exception
+    {
+        DeflaterPool pool = CompressionPools.getDefault().getDeflaterPool(Deflater.BEST_COMPRESSION, true);
+        int inUse = pool.getInUseCount();
+
+        PerMessageDeflateExtension ext = new PerMessageDeflateExtension();
+        ext.setBufferPool(bufferPool);
+        ext.setPolicy(WebSocketPolicy.newServerPolicy());
+        ext.setConfig(ExtensionConfig.parse("permessage-deflate"));
+        OutgoingFramesCapture capture = new OutgoingFramesCapture();
+        ext.setNextOutgoingFrames(capture);
+        ext.start();
+
+        // The compression context is kept between messages.
+        ext.outgoingFrame(new TextFrame().setPayload("Hello"), null, BatchMode.OFF);
+        capture.assertFrameCount(1);
+        Assert.assertThat("In use after message", pool.getInUseCount(), is(inUse + 1));
+
+        ext.stop();
+        Assert.assertThat("In use after stop", pool.getInUseCount(), is(inUse));
+
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        ext.outgoingFrame(new TextFrame().setPayload("World"), new WriteCallback()
+        {
+            @Override
+            public void writeFailed(Throwable x)
+            {
+                failure.set(x);
+            }
+
+            @Override
+            public void writeSuccess()
+            {
+            }
+        }, BatchMode.OFF);
+        capture.assertFrameCount(1);
+        Assert.assertThat("Failure", failure.get() != null, is(true));
+        Assert.assertThat("In use after failed frame", pool.getInUseCount(), is(inUse));
+    }
+
     @Test
     public void testPyWebSocket_Client_NoContextTakeover_ThreeOra()
     {
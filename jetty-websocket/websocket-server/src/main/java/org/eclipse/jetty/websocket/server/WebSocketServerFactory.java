@@ -485,6 +485,7 @@ public class WebSocketServerFactory extends ContainerLifeCycle implements WebSoc
     public void onSessionClosed(WebSocketSession session)
     {
         this.openSessions.remove(session);
+        removeBean(session);
     }
 
     @Override